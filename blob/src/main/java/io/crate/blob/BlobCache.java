@@ -0,0 +1,235 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.blob;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import io.crate.blob.stats.BlobCacheStats;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.index.shard.ShardId;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Node wide cache of the content of small blobs, so that frequently requested blobs
+ * can be served without accessing the file system.
+ *
+ * The content is held in heap buffers, so the memory of evicted or invalidated entries is
+ * reclaimed by the garbage collector once no response uses them anymore. Direct buffers
+ * can't be freed on eviction as their content may still be sent, and would only be released
+ * by their cleaner after a full GC. The total size of the cached blobs is bounded by
+ * {@link #SETTING_CACHE_SIZE}. The cache is disabled by default.
+ *
+ * Blobs are immutable, so entries only have to be invalidated if a blob is deleted
+ * or its shard is closed. Hits and misses are counted per shard.
+ */
+public class BlobCache extends AbstractComponent {
+
+    public static final String SETTING_CACHE_SIZE = "blobs.cache.size";
+    public static final String SETTING_CACHE_MAX_BLOB_SIZE = "blobs.cache.max_blob_size";
+
+    private static final ByteSizeValue DEFAULT_MAX_BLOB_SIZE = new ByteSizeValue(64, ByteSizeUnit.KB);
+
+    private final long maxBlobSize;
+    @Nullable
+    private final Cache<Key, Entry> cache;
+    private final ConcurrentMap<ShardId, Counters> counters = ConcurrentCollections.newConcurrentMap();
+
+    @Inject
+    public BlobCache(Settings settings) {
+        super(settings);
+        long cacheSize = settings.getAsBytesSize(SETTING_CACHE_SIZE, new ByteSizeValue(0)).bytes();
+        this.maxBlobSize = Math.min(Math.min(cacheSize, Integer.MAX_VALUE),
+            settings.getAsBytesSize(SETTING_CACHE_MAX_BLOB_SIZE, DEFAULT_MAX_BLOB_SIZE).bytes());
+        if (cacheSize > 0) {
+            logger.debug("using blob cache with size [{}] for blobs up to [{}]",
+                new ByteSizeValue(cacheSize), new ByteSizeValue(maxBlobSize));
+            cache = CacheBuilder.newBuilder()
+                .maximumWeight(cacheSize)
+                .weigher(new Weigher<Key, Entry>() {
+                    @Override
+                    public int weigh(Key key, Entry value) {
+                        return value.content.capacity();
+                    }
+                })
+                .build();
+        } else {
+            cache = null;
+        }
+    }
+
+    public boolean enabled() {
+        return cache != null;
+    }
+
+    /**
+     * @return true if a blob of the given length is small enough to be cached
+     */
+    public boolean cacheable(long length) {
+        return cache != null && length <= maxBlobSize;
+    }
+
+    /**
+     * @return the cached content of the blob or null if it isn't cached.
+     * The returned buffer may be modified by the caller.
+     */
+    @Nullable
+    public ByteBuffer get(String index, String digest) {
+        if (cache == null) {
+            return null;
+        }
+        Entry entry = cache.getIfPresent(new Key(index, digest));
+        if (entry == null) {
+            return null;
+        }
+        entry.counters.hits.inc();
+        return entry.content.duplicate();
+    }
+
+    /**
+     * read the content of a blob of the given shard that wasn't found in the cache into
+     * a buffer and add it to the cache. The file position of the given file is not changed.
+     *
+     * Only lookups of cacheable blobs count as misses, so that the hit rate isn't affected
+     * by blobs which are too large to be cached.
+     *
+     * @return the content of the blob, the returned buffer may be modified by the caller.
+     */
+    public ByteBuffer load(ShardId shardId, String digest, RandomAccessFile file) throws IOException {
+        assert cacheable(file.length()) : "blob is too large to be cached";
+        Counters shardCounters = counters(shardId);
+        shardCounters.misses.inc();
+        FileChannel channel = file.getChannel();
+        ByteBuffer content = ByteBuffer.allocate((int) channel.size());
+        ByteBuffer target = content.duplicate();
+        long position = 0;
+        while (target.hasRemaining()) {
+            int read = channel.read(target, position);
+            if (read < 0) {
+                throw new EOFException("blob " + digest + " was truncated while it was read");
+            }
+            position += read;
+        }
+        cache.put(new Key(shardId.getIndex(), digest), new Entry(shardId, content, shardCounters));
+        return content.duplicate();
+    }
+
+    public void invalidate(String index, String digest) {
+        if (cache != null) {
+            cache.invalidate(new Key(index, digest));
+        }
+    }
+
+    /**
+     * remove all blobs of the given shard from the cache and reset its hits and misses
+     */
+    public void invalidateShard(ShardId shardId) {
+        counters.remove(shardId);
+        if (cache == null) {
+            return;
+        }
+        Iterator<Entry> it = cache.asMap().values().iterator();
+        while (it.hasNext()) {
+            if (it.next().shardId.equals(shardId)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the hits and misses of the cache for the blobs of the given shard
+     */
+    public BlobCacheStats stats(ShardId shardId) {
+        Counters shardCounters = counters.get(shardId);
+        if (shardCounters == null) {
+            return new BlobCacheStats();
+        }
+        return new BlobCacheStats(shardCounters.hits.count(), shardCounters.misses.count());
+    }
+
+    private Counters counters(ShardId shardId) {
+        Counters shardCounters = counters.get(shardId);
+        if (shardCounters == null) {
+            shardCounters = new Counters();
+            Counters existing = counters.putIfAbsent(shardId, shardCounters);
+            if (existing != null) {
+                shardCounters = existing;
+            }
+        }
+        return shardCounters;
+    }
+
+    private static class Counters {
+        final CounterMetric hits = new CounterMetric();
+        final CounterMetric misses = new CounterMetric();
+    }
+
+    private static class Entry {
+        final ShardId shardId;
+        final ByteBuffer content;
+        final Counters counters;
+
+        Entry(ShardId shardId, ByteBuffer content, Counters counters) {
+            this.shardId = shardId;
+            this.content = content;
+            this.counters = counters;
+        }
+    }
+
+    private static class Key {
+        final String index;
+        final String digest;
+
+        Key(String index, String digest) {
+            this.index = index;
+            this.digest = digest;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return index.equals(key.index) && digest.equals(key.digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * index.hashCode() + digest.hashCode();
+        }
+    }
+}
@@ -29,10 +29,16 @@ import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 
 import java.io.*;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 
 public class BlobContainer {
 
@@ -42,8 +48,35 @@ public class BlobContainer {
 
     public static final byte[] PREFIXES = new byte[256];
 
+    /**
+     * name of the file inside the base directory the blob stats are written to on a clean shutdown
+     */
+    public static final String STATS_CHECKPOINT = "blobstats.ckp";
+
+    private static final int STATS_CHECKPOINT_VERSION = 2;
+
     private final File[] subDirs = new File[256];
 
+    /**
+     * number and size of the committed blobs per prefix and the digest summary,
+     * mutations of a prefix are guarded by the corresponding prefixLocks entry
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(256);
+    private final AtomicLongArray sizes = new AtomicLongArray(256);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalSize = new AtomicLong();
+    private final AtomicLongArray bucketCounts = new AtomicLongArray(DigestSummary.NUM_BUCKETS);
+    private final AtomicLongArray bucketHashes = new AtomicLongArray(DigestSummary.NUM_BUCKETS);
+    private final Object[] prefixLocks = new Object[256];
+    private final Object checkpointLock = new Object();
+    private volatile boolean statsCheckpointed = false;
+
+    /**
+     * whether the stats of a prefix are known, guarded by the corresponding prefixLocks entry
+     */
+    private final boolean[] prefixStatsBuilt = new boolean[256];
+    private volatile boolean statsBuilt = false;
+
     static {
         for (int i = 0; i < 256; i++) {
             SUB_DIRS[i] = String.format(Locale.ENGLISH, "%02x", i & 0xFFFFF);
@@ -55,14 +88,28 @@ public class BlobContainer {
     private final File tmpDirectory;
     private final File varDirectory;
 
+    /**
+     * The stats are read from the checkpoint written on the last clean shutdown. Without a valid checkpoint
+     * they are unknown until {@link #rebuildStats()} walked all blobs, which isn't done here as it
+     * can take long for large containers.
+     */
     public BlobContainer(File baseDirectory) {
         this.baseDirectory = baseDirectory;
         this.tmpDirectory = new File(baseDirectory, "tmp");
         this.varDirectory = new File(baseDirectory, "var");
+        boolean newContainer = !this.varDirectory.exists();
         FileSystemUtils.mkdirs(this.varDirectory);
         FileSystemUtils.mkdirs(this.tmpDirectory);
 
         createSubDirectories(this.varDirectory);
+        for (int i = 0; i < prefixLocks.length; i++) {
+            prefixLocks[i] = new Object();
+        }
+        if (newContainer || loadStatsCheckpoint()) {
+            // there is nothing to rebuild
+            Arrays.fill(prefixStatsBuilt, true);
+            statsBuilt = true;
+        }
     }
 
     /**
@@ -110,7 +157,46 @@ public class BlobContainer {
      */
     public byte[][] cleanAndReturnDigests(byte prefix) {
         int index = prefix & 0xFF;  // byte is signed and may be negative, convert to int to get correct index
+        return decodeDigests(cleanDigests(subDirs[index].list(), index));
+    }
+
+    /**
+     * get the digests of a sub-bucket of a subfolder, see {@link DigestSummary}
+     *
+     * incomplete files leftover from a previous recovery are deleted.
+     *
+     * @param prefix the subfolder for which to get the digests
+     * @param subBucket the sub-bucket within the subfolder
+     * @return byte array containing the digests (digest = byte[20])
+     */
+    public byte[][] cleanAndReturnDigests(byte prefix, int subBucket) {
+        int index = prefix & 0xFF;
         String[] names = cleanDigests(subDirs[index].list(), index);
+        List<String> bucketNames = new ArrayList<>(names.length / DigestSummary.SUB_BUCKETS + 1);
+        for (String name : names) {
+            if (DigestSummary.subBucket(name) == subBucket) {
+                bucketNames.add(name);
+            }
+        }
+        return decodeDigests(bucketNames.toArray(new String[bucketNames.size()]));
+    }
+
+    /**
+     * delete the incomplete files leftover from a previous recovery in all subfolders
+     */
+    public void cleanIncompleteFiles() {
+        for (int i = 0; i < subDirs.length; i++) {
+            String[] names = subDirs[i].list(new FilenameFilter() {
+                @Override
+                public boolean accept(File dir, String name) {
+                    return name.contains(".");
+                }
+            });
+            cleanDigests(names, i);
+        }
+    }
+
+    private static byte[][] decodeDigests(String[] names) {
         byte[][] digests = new byte[names.length][];
         for(int i = 0; i < names.length; i ++){
             try {
@@ -145,6 +231,297 @@ public class BlobContainer {
         return newNames.toArray(new String[newNames.size()]);
     }
 
+    /**
+     * @return false while the stats are rebuilt, see {@link #rebuildStats()}
+     */
+    public boolean statsAvailable() {
+        return statsBuilt;
+    }
+
+    /**
+     * @return the number of blobs in this container or -1 while the stats are rebuilt
+     */
+    public long blobCount() {
+        return statsBuilt ? totalCount.get() : -1L;
+    }
+
+    /**
+     * @return the number of bytes used by the blobs in this container or -1 while the stats are rebuilt
+     */
+    public long totalSize() {
+        return statsBuilt ? totalSize.get() : -1L;
+    }
+
+    /**
+     * @return the number of blobs whose digest starts with the given prefix or -1 while the stats are rebuilt
+     */
+    public long blobCount(byte prefix) {
+        return statsBuilt ? counts.get(prefix & 0xFF) : -1L;
+    }
+
+    /**
+     * @return the number of bytes used by the blobs whose digest starts with the given prefix
+     * or -1 while the stats are rebuilt
+     */
+    public long totalSize(byte prefix) {
+        return statsBuilt ? sizes.get(prefix & 0xFF) : -1L;
+    }
+
+    /**
+     * move a completely written file into the var directory as blob with the given digest.
+     * An existing blob with the same digest is replaced.
+     *
+     * @return false if the file couldn't be moved
+     */
+    public boolean commitFile(File source, String digest) {
+        int index = prefixIndex(digest);
+        if (index < 0) {
+            return false;
+        }
+        File target = getFile(digest);
+        synchronized (prefixLocks[index]) {
+            boolean existed = target.exists();
+            long previousSize = target.length();
+            if (!source.renameTo(target)) {
+                return false;
+            }
+            if (prefixStatsBuilt[index]) {
+                // otherwise the blob is counted once the prefix is rebuilt
+                if (!existed) {
+                    adjustSummary(digest, 1);
+                }
+                adjustStats(index, existed ? 0 : 1, target.length() - previousSize);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * delete the blob with the given digest
+     *
+     * @return false if the blob doesn't exist or couldn't be deleted
+     */
+    public boolean delete(String digest) {
+        int index = prefixIndex(digest);
+        if (index < 0) {
+            return false;
+        }
+        File file = getFile(digest);
+        synchronized (prefixLocks[index]) {
+            long size = file.length();
+            if (!file.delete()) {
+                return false;
+            }
+            if (prefixStatsBuilt[index]) {
+                adjustSummary(digest, -1);
+                adjustStats(index, -1, -size);
+            }
+        }
+        return true;
+    }
+
+    private static int prefixIndex(String digest) {
+        if (digest.length() < 2) {
+            return -1;
+        }
+        int high = Character.digit(digest.charAt(0), 16);
+        int low = Character.digit(digest.charAt(1), 16);
+        if (high < 0 || low < 0) {
+            return -1;
+        }
+        return (high << 4) | low;
+    }
+
+    /**
+     * @return a snapshot of the digest summary of this container,
+     * the stats are rebuilt first if they aren't available yet
+     */
+    public DigestSummary digestSummary() {
+        rebuildStats();
+        long[] counts = new long[DigestSummary.NUM_BUCKETS];
+        long[] hashes = new long[DigestSummary.NUM_BUCKETS];
+        for (int index = 0; index < 256; index++) {
+            synchronized (prefixLocks[index]) {
+                for (int bucket = index * DigestSummary.SUB_BUCKETS;
+                     bucket < (index + 1) * DigestSummary.SUB_BUCKETS; bucket++) {
+                    counts[bucket] = bucketCounts.get(bucket);
+                    hashes[bucket] = bucketHashes.get(bucket);
+                }
+            }
+        }
+        return new DigestSummary(counts, hashes);
+    }
+
+    /**
+     * add (count = 1) or remove (count = -1) a digest to/from the digest summary,
+     * must be called while holding the lock of the digest prefix
+     */
+    private void adjustSummary(String digest, long count) {
+        int bucket = DigestSummary.bucket(digest);
+        bucketCounts.addAndGet(bucket, count);
+        bucketHashes.set(bucket, bucketHashes.get(bucket) ^ DigestSummary.hash(digest));
+    }
+
+    /**
+     * must be called after the digest summary was adjusted, as it invalidates the stats checkpoint
+     */
+    private void adjustStats(int index, long count, long size) {
+        counts.addAndGet(index, count);
+        sizes.addAndGet(index, size);
+        totalCount.addAndGet(count);
+        totalSize.addAndGet(size);
+        if (statsCheckpointed) {
+            // the checkpoint doesn't contain this change, it mustn't be used on the next start
+            synchronized (checkpointLock) {
+                statsCheckpointed = false;
+                File checkpoint = new File(baseDirectory, STATS_CHECKPOINT);
+                if (checkpoint.exists() && !checkpoint.delete()) {
+                    logger.error("Could not delete outdated blob stats checkpoint {}", checkpoint);
+                }
+            }
+        }
+    }
+
+    /**
+     * write the current blob stats to the checkpoint file so that they don't have
+     * to be rebuilt by walking all blobs the next time this container is opened.
+     *
+     * Any change to the container after the checkpoint was written invalidates it.
+     * Nothing is written while the stats are rebuilt.
+     */
+    public void writeStatsCheckpoint() throws IOException {
+        if (!statsBuilt) {
+            logger.debug("blob stats of {} are being rebuilt, not writing a checkpoint", baseDirectory);
+            return;
+        }
+        synchronized (checkpointLock) {
+            // set before taking the snapshot so that concurrent changes invalidate the checkpoint
+            statsCheckpointed = true;
+            File tmpFile = new File(baseDirectory, STATS_CHECKPOINT + ".tmp");
+            CheckedOutputStream checkedOut = new CheckedOutputStream(new FileOutputStream(tmpFile), new CRC32());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checkedOut))) {
+                out.writeInt(STATS_CHECKPOINT_VERSION);
+                for (int i = 0; i < 256; i++) {
+                    out.writeLong(counts.get(i));
+                    out.writeLong(sizes.get(i));
+                }
+                for (int i = 0; i < DigestSummary.NUM_BUCKETS; i++) {
+                    out.writeLong(bucketCounts.get(i));
+                    out.writeLong(bucketHashes.get(i));
+                }
+                out.flush();
+                out.writeLong(checkedOut.getChecksum().getValue());
+            }
+            File checkpoint = new File(baseDirectory, STATS_CHECKPOINT);
+            if (!tmpFile.renameTo(checkpoint)) {
+                statsCheckpointed = false;
+                tmpFile.delete();
+                throw new IOException("Could not write blob stats checkpoint " + checkpoint);
+            }
+        }
+    }
+
+    /**
+     * read the blob stats from the checkpoint file written on the last clean shutdown.
+     * The checkpoint is deleted afterwards as it becomes outdated with the first change.
+     *
+     * @return false if there is no checkpoint or it is corrupt
+     */
+    private boolean loadStatsCheckpoint() {
+        File checkpoint = new File(baseDirectory, STATS_CHECKPOINT);
+        if (!checkpoint.exists()) {
+            return false;
+        }
+        long[] checkpointCounts = new long[256];
+        long[] checkpointSizes = new long[256];
+        long[] checkpointBucketCounts = new long[DigestSummary.NUM_BUCKETS];
+        long[] checkpointBucketHashes = new long[DigestSummary.NUM_BUCKETS];
+        boolean valid = false;
+        try {
+            byte[] bytes = Files.readAllBytes(checkpoint.toPath());
+            if (bytes.length == 4 + 256 * 16 + DigestSummary.NUM_BUCKETS * 16 + 8) {
+                CRC32 crc = new CRC32();
+                crc.update(bytes, 0, bytes.length - 8);
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+                valid = in.readInt() == STATS_CHECKPOINT_VERSION;
+                for (int i = 0; i < 256; i++) {
+                    checkpointCounts[i] = in.readLong();
+                    checkpointSizes[i] = in.readLong();
+                    valid &= checkpointCounts[i] >= 0 && checkpointSizes[i] >= 0;
+                }
+                for (int i = 0; i < DigestSummary.NUM_BUCKETS; i++) {
+                    checkpointBucketCounts[i] = in.readLong();
+                    checkpointBucketHashes[i] = in.readLong();
+                    valid &= checkpointBucketCounts[i] >= 0;
+                }
+                valid &= in.readLong() == crc.getValue();
+            }
+        } catch (IOException e) {
+            logger.warn("Could not read blob stats checkpoint {}", e, checkpoint);
+            valid = false;
+        }
+        if (!checkpoint.delete()) {
+            logger.error("Could not delete blob stats checkpoint {}", checkpoint);
+            return false;
+        }
+        if (!valid) {
+            logger.warn("Blob stats checkpoint {} is corrupt, rebuilding blob stats", checkpoint);
+            return false;
+        }
+        for (int i = 0; i < 256; i++) {
+            adjustStats(i, checkpointCounts[i], checkpointSizes[i]);
+        }
+        for (int i = 0; i < DigestSummary.NUM_BUCKETS; i++) {
+            bucketCounts.set(i, checkpointBucketCounts[i]);
+            bucketHashes.set(i, checkpointBucketHashes[i]);
+        }
+        return true;
+    }
+
+    /**
+     * rebuild the stats which aren't known yet by walking the blobs of each prefix.
+     *
+     * Blobs may be committed or deleted meanwhile. May be called concurrently, every prefix is only walked once.
+     */
+    public void rebuildStats() {
+        if (statsBuilt) {
+            return;
+        }
+        for (int i = 0; i < subDirs.length; i++) {
+            synchronized (prefixLocks[i]) {
+                if (!prefixStatsBuilt[i]) {
+                    rebuildStats(i);
+                    prefixStatsBuilt[i] = true;
+                }
+            }
+        }
+        statsBuilt = true;
+    }
+
+    /**
+     * must be called while holding the lock of the prefix
+     */
+    private void rebuildStats(int index) {
+        File[] files = subDirs[index].listFiles();
+        if (files == null) {
+            return;
+        }
+        long size = 0;
+        long count = 0;
+        for (File file : files) {
+            // files with a suffix are leftovers of an interrupted recovery
+            String name = file.getName();
+            if (name.indexOf('.') == -1) {
+                size += file.length();
+                count++;
+                if (name.length() == 40) {
+                    adjustSummary(name, 1);
+                }
+            }
+        }
+        adjustStats(index, count, size);
+    }
+
     public File getBaseDirectory() {
         return baseDirectory;
     }
@@ -0,0 +1,156 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.blob;
+
+import com.carrotsearch.hppc.IntArrayList;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Streamable;
+
+import java.io.IOException;
+
+/**
+ * Summary of the digests of a {@link BlobContainer}.
+ *
+ * The digests are grouped into buckets by their prefix (first byte) and a sub-bucket
+ * (high nibble of the second byte). Each bucket holds the number of digests and a hash
+ * which is the xor of the hashes of the digests, so it doesn't depend on the order in which
+ * the blobs were added and can be maintained incrementally.
+ *
+ * Two containers with equal bucket count and hash contain the same digests in that bucket,
+ * which allows the blob recovery to exchange only the digests of the buckets that differ.
+ */
+public class DigestSummary implements Streamable {
+
+    public static final int SUB_BUCKETS = 16;
+    public static final int NUM_BUCKETS = 256 * SUB_BUCKETS;
+
+    private long[] counts;
+    private long[] hashes;
+
+    public DigestSummary() {
+    }
+
+    public DigestSummary(long[] counts, long[] hashes) {
+        assert counts.length == NUM_BUCKETS && hashes.length == NUM_BUCKETS : "invalid number of buckets";
+        this.counts = counts;
+        this.hashes = hashes;
+    }
+
+    public long count(int bucket) {
+        return counts[bucket];
+    }
+
+    public long hash(int bucket) {
+        return hashes[bucket];
+    }
+
+    /**
+     * compare this summary to another one top-down, the sub-buckets of a prefix are only compared
+     * if the summaries of the whole prefix differ.
+     *
+     * @return the buckets whose digests differ
+     */
+    public IntArrayList differingBuckets(DigestSummary other) {
+        IntArrayList buckets = new IntArrayList();
+        for (int prefix = 0; prefix < 256; prefix++) {
+            int first = prefix * SUB_BUCKETS;
+            long count = 0;
+            long otherCount = 0;
+            long hash = 0;
+            long otherHash = 0;
+            for (int bucket = first; bucket < first + SUB_BUCKETS; bucket++) {
+                count += counts[bucket];
+                otherCount += other.counts[bucket];
+                hash ^= hashes[bucket];
+                otherHash ^= other.hashes[bucket];
+            }
+            if (count == otherCount && hash == otherHash) {
+                continue;
+            }
+            for (int bucket = first; bucket < first + SUB_BUCKETS; bucket++) {
+                if (counts[bucket] != other.counts[bucket] || hashes[bucket] != other.hashes[bucket]) {
+                    buckets.add(bucket);
+                }
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * @return the bucket of the given hex encoded digest
+     */
+    public static int bucket(String digest) {
+        int prefix = (Character.digit(digest.charAt(0), 16) << 4) | Character.digit(digest.charAt(1), 16);
+        return prefix * SUB_BUCKETS + subBucket(digest);
+    }
+
+    /**
+     * @return the sub-bucket of the given hex encoded digest within its prefix
+     */
+    public static int subBucket(String digest) {
+        return digest.length() > 2 ? Character.digit(digest.charAt(2), 16) & 0x0F : 0;
+    }
+
+    public static byte prefix(int bucket) {
+        return (byte) (bucket / SUB_BUCKETS);
+    }
+
+    public static int subBucket(int bucket) {
+        return bucket % SUB_BUCKETS;
+    }
+
+    /**
+     * @return the hash of a hex encoded digest, the digests are sha1 hashes already so
+     * the 64 bits following the bucket nibbles are used as they are.
+     */
+    public static long hash(String digest) {
+        long hash = 0;
+        for (int i = 3; i < Math.min(19, digest.length()); i++) {
+            hash = (hash << 4) | (Character.digit(digest.charAt(i), 16) & 0x0F);
+        }
+        return hash;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        counts = new long[NUM_BUCKETS];
+        hashes = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts[i] = in.readVLong();
+            if (counts[i] > 0) {
+                hashes[i] = in.readLong();
+            }
+        }
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            out.writeVLong(counts[i]);
+            if (counts[i] > 0) {
+                out.writeLong(hashes[i]);
+            }
+        }
+    }
+}
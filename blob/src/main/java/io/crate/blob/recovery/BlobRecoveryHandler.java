@@ -21,12 +21,16 @@
 
 package io.crate.blob.recovery;
 
+import com.carrotsearch.hppc.IntArrayList;
+import com.carrotsearch.hppc.cursors.IntCursor;
 import io.crate.blob.BlobContainer;
 import io.crate.blob.BlobTransferTarget;
+import io.crate.blob.DigestSummary;
 import io.crate.blob.v2.BlobIndices;
 import io.crate.blob.v2.BlobShard;
 import io.crate.common.Hex;
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.common.StopWatch;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.logging.ESLogger;
@@ -77,12 +81,49 @@ public class BlobRecoveryHandler {
         }
     }
 
+    /**
+     * @return the digest summary of the target shard or null if the target node doesn't support it
+     */
+    private DigestSummary getDigestSummaryFromTarget() {
+        try {
+            BlobDigestSummaryResponse response =
+                (BlobDigestSummaryResponse)transportService.submitRequest(
+                    request.targetNode(),
+                    BlobRecoveryTarget.Actions.DIGEST_SUMMARY,
+                    new BlobDigestSummaryRequest(request.recoveryId(), request.shardId()),
+                    TransportRequestOptions.options(),
+                    new FutureTransportResponseHandler<TransportResponse>() {
+                        @Override
+                        public TransportResponse newInstance() {
+                            return new BlobDigestSummaryResponse();
+                        }
+                    }
+                ).txGet();
+            return response.digestSummary;
+        } catch (ElasticsearchException e) {
+            if (ExceptionsHelper.unwrapCause(e) instanceof ActionNotFoundTransportException) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
     private Set<BytesArray> getExistingDigestsFromTarget(byte prefix) {
+        return existingDigests(BlobRecoveryTarget.Actions.START_PREFIX,
+            new BlobStartPrefixSyncRequest(request.recoveryId(), request.shardId(), prefix));
+    }
+
+    private Set<BytesArray> getExistingDigestsFromTarget(byte prefix, int subBucket) {
+        return existingDigests(BlobRecoveryTarget.Actions.START_BUCKET,
+            new BlobStartBucketSyncRequest(request.recoveryId(), request.shardId(), prefix, subBucket));
+    }
+
+    private Set<BytesArray> existingDigests(String action, BlobRecoveryRequest syncRequest) {
         BlobStartPrefixResponse response =
             (BlobStartPrefixResponse)transportService.submitRequest(
                 request.targetNode(),
-                BlobRecoveryTarget.Actions.START_PREFIX,
-                new BlobStartPrefixSyncRequest(request.recoveryId(), request.shardId(), prefix),
+                action,
+                syncRequest,
                 TransportRequestOptions.options(),
                 new FutureTransportResponseHandler<TransportResponse>() {
                     @Override
@@ -153,37 +194,59 @@ public class BlobRecoveryHandler {
     }
 
     private void syncVarFiles(AtomicReference<Exception> lastException) throws InterruptedException {
-
-        for (byte prefix : BlobContainer.PREFIXES) {
-            // byte[1] and byte[1] have different hashCodes
-            // so setA.removeAll(setB) wouldn't work with byte[], that's why BytesArray is used here
-            Set<BytesArray> remoteDigests = getExistingDigestsFromTarget(prefix);
-            Set<BytesArray> localDigests = new HashSet<BytesArray>();
-            for (byte[] digest : blobShard.currentDigests(prefix)) {
-                localDigests.add(new BytesArray(digest));
+        DigestSummary remoteSummary = getDigestSummaryFromTarget();
+        if (remoteSummary == null) {
+            // target node doesn't know about digest summaries, compare the digests of every prefix
+            for (byte prefix : BlobContainer.PREFIXES) {
+                syncDigests(getExistingDigestsFromTarget(prefix), blobShard.currentDigests(prefix), lastException);
             }
+            return;
+        }
+
+        // only the differing buckets are listed, leftovers of the other buckets have to be deleted separately
+        blobShard.cleanIncompleteFiles();
+        IntArrayList buckets = blobShard.digestSummary().differingBuckets(remoteSummary);
+        logger.debug("[{}][{}] {} of {} digest buckets differ on {}",
+            request.shardId().index().name(), request.shardId().id(), buckets.size(),
+            DigestSummary.NUM_BUCKETS, request.targetNode().getName());
+        for (IntCursor cursor : buckets) {
+            byte prefix = DigestSummary.prefix(cursor.value);
+            int subBucket = DigestSummary.subBucket(cursor.value);
+            syncDigests(getExistingDigestsFromTarget(prefix, subBucket),
+                blobShard.currentDigests(prefix, subBucket), lastException);
+        }
+    }
 
-            Set<BytesArray> localButNotRemoteDigests = new HashSet<BytesArray>(localDigests);
-            localButNotRemoteDigests.removeAll(remoteDigests);
+    private void syncDigests(Set<BytesArray> remoteDigests,
+                             byte[][] currentDigests,
+                             AtomicReference<Exception> lastException) throws InterruptedException {
+        // byte[1] and byte[1] have different hashCodes
+        // so setA.removeAll(setB) wouldn't work with byte[], that's why BytesArray is used here
+        Set<BytesArray> localDigests = new HashSet<BytesArray>();
+        for (byte[] digest : currentDigests) {
+            localDigests.add(new BytesArray(digest));
+        }
 
-            final CountDownLatch latch = new CountDownLatch(localButNotRemoteDigests.size());
-            for (BytesArray digestBytes : localButNotRemoteDigests) {
-                final String digest = Hex.encodeHexString(digestBytes.toBytes());
-                logger.trace("[{}][{}] start to transfer file var/{} to {}",
-                    request.shardId().index().name(), request.shardId().id(), digest,
-                    request.targetNode().getName());
+        Set<BytesArray> localButNotRemoteDigests = new HashSet<BytesArray>(localDigests);
+        localButNotRemoteDigests.removeAll(remoteDigests);
 
-                recoverySettings.concurrentStreamPool().execute(
-                    new TransferFileRunnable(blobShard.blobContainer().getFile(digest),
-                        lastException, latch)
-                );
-            }
-            latch.await();
+        final CountDownLatch latch = new CountDownLatch(localButNotRemoteDigests.size());
+        for (BytesArray digestBytes : localButNotRemoteDigests) {
+            final String digest = Hex.encodeHexString(digestBytes.toBytes());
+            logger.trace("[{}][{}] start to transfer file var/{} to {}",
+                request.shardId().index().name(), request.shardId().id(), digest,
+                request.targetNode().getName());
 
-            remoteDigests.removeAll(localDigests);
-            if (!remoteDigests.isEmpty()) {
-                deleteFilesRequest(remoteDigests.toArray(new BytesArray[remoteDigests.size()]));
-            }
+            recoverySettings.concurrentStreamPool().execute(
+                new TransferFileRunnable(blobShard.blobContainer().getFile(digest),
+                    lastException, latch)
+            );
+        }
+        latch.await();
+
+        remoteDigests.removeAll(localDigests);
+        if (!remoteDigests.isEmpty()) {
+            deleteFilesRequest(remoteDigests.toArray(new BytesArray[remoteDigests.size()]));
         }
     }
 
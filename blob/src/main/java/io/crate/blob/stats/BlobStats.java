@@ -35,6 +35,7 @@ public class BlobStats implements Streamable, ToXContent {
     private long totalUsage;
     private long availableSpace;
     private String location;
+    private BlobCacheStats cacheStats = new BlobCacheStats();
 
     public String location() {
         return location;
@@ -44,6 +45,9 @@ public class BlobStats implements Streamable, ToXContent {
         this.location = location;
     }
 
+    /**
+     * @return the number of blobs or -1 while the stats are rebuilt
+     */
     public long count() {
         return count;
     }
@@ -60,6 +64,9 @@ public class BlobStats implements Streamable, ToXContent {
         this.availableSpace = availableSpace;
     }
 
+    /**
+     * @return the number of bytes used by the blobs or -1 while the stats are rebuilt
+     */
     public long totalUsage() {
         return totalUsage;
     }
@@ -68,20 +75,34 @@ public class BlobStats implements Streamable, ToXContent {
         this.totalUsage = totalUsage;
     }
 
+    /**
+     * @return the hits and misses of the blob cache of this node for the blob table of the shard
+     */
+    public BlobCacheStats cacheStats() {
+        return cacheStats;
+    }
+
+    public void cacheStats(BlobCacheStats cacheStats) {
+        this.cacheStats = cacheStats;
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
-        count = in.readVLong();
-        totalUsage = in.readVLong();
+        count = in.readLong();
+        totalUsage = in.readLong();
         availableSpace = in.readVLong();
         location = in.readString();
+        cacheStats = new BlobCacheStats();
+        cacheStats.readFrom(in);
     }
 
     @Override
     public void writeTo(StreamOutput out) throws IOException {
-        out.writeVLong(count);
-        out.writeVLong(totalUsage);
+        out.writeLong(count);
+        out.writeLong(totalUsage);
         out.writeVLong(availableSpace);
         out.writeString(location);
+        cacheStats.writeTo(out);
     }
 
     @Override
@@ -92,7 +113,9 @@ public class BlobStats implements Streamable, ToXContent {
             .field("size", totalUsage)
             .field("available_space", availableSpace)
             .field("location", location)
-        .endObject();
+            .field("cache");
+        cacheStats.toXContent(builder, params);
+        builder.endObject();
 
         return builder;
     }
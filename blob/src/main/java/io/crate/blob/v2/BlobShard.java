@@ -21,17 +21,21 @@
 
 package io.crate.blob.v2;
 
-import com.google.common.base.Throwables;
+import io.crate.blob.BlobCache;
 import io.crate.blob.BlobContainer;
 import io.crate.blob.BlobEnvironment;
+import io.crate.blob.DigestSummary;
 import io.crate.blob.stats.BlobStats;
 import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.settings.IndexSettings;
 import org.elasticsearch.index.shard.AbstractIndexShardComponent;
 import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.indices.IndicesLifecycle;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.File;
 import java.io.IOException;
@@ -40,24 +44,68 @@ public class BlobShard extends AbstractIndexShardComponent {
 
     private final BlobContainer blobContainer;
     private final IndexShard indexShard;
+    private final BlobCache blobCache;
 
     @Inject
     protected BlobShard(ShardId shardId, @IndexSettings Settings indexSettings,
                         BlobEnvironment blobEnvironment,
-                        IndexShard indexShard) {
+                        IndexShard indexShard,
+                        BlobCache blobCache,
+                        ThreadPool threadPool,
+                        final IndicesLifecycle indicesLifecycle) {
         super(shardId, indexSettings);
         this.indexShard = indexShard;
+        this.blobCache = blobCache;
         File blobDir = blobDir(blobEnvironment);
         logger.info("creating BlobContainer at {}", blobDir);
         this.blobContainer = new BlobContainer(blobDir);
+        if (!blobContainer.statsAvailable()) {
+            threadPool.generic().execute(new Runnable() {
+                @Override
+                public void run() {
+                    logger.debug("rebuilding blob stats of {}", blobContainer.getBaseDirectory());
+                    blobContainer.rebuildStats();
+                }
+            });
+        }
+
+        indicesLifecycle.addListener(new IndicesLifecycle.Listener() {
+            @Override
+            public void beforeIndexShardClosed(ShardId closedShardId, @Nullable IndexShard closedIndexShard,
+                                               @IndexSettings Settings closedIndexSettings) {
+                if (BlobShard.this.shardId.equals(closedShardId)) {
+                    indicesLifecycle.removeListener(this);
+                    writeStatsCheckpoint();
+                    BlobShard.this.blobCache.invalidateShard(closedShardId);
+                }
+            }
+        });
     }
 
     public byte[][] currentDigests(byte prefix) {
         return blobContainer.cleanAndReturnDigests(prefix);
     }
 
+    public byte[][] currentDigests(byte prefix, int subBucket) {
+        return blobContainer.cleanAndReturnDigests(prefix, subBucket);
+    }
+
+    public void cleanIncompleteFiles() {
+        blobContainer.cleanIncompleteFiles();
+    }
+
+    public DigestSummary digestSummary() {
+        return blobContainer.digestSummary();
+    }
+
     public boolean delete(String digest) {
-        return blobContainer.getFile(digest).delete();
+        boolean deleted = blobContainer.delete(digest);
+        blobCache.invalidate(shardId.getIndex(), digest);
+        return deleted;
+    }
+
+    public BlobCache blobCache() {
+        return blobCache;
     }
 
     public BlobContainer blobContainer() {
@@ -73,20 +121,18 @@ public class BlobShard extends AbstractIndexShardComponent {
 
         stats.location(blobContainer().getBaseDirectory().getAbsolutePath());
         stats.availableSpace(blobContainer().getBaseDirectory().getFreeSpace());
+        stats.count(blobContainer.blobCount());
+        stats.totalUsage(blobContainer.totalSize());
+        stats.cacheStats(blobCache.stats(shardId));
+        return stats;
+    }
+
+    private void writeStatsCheckpoint() {
         try {
-            blobContainer().walkFiles(null, new BlobContainer.FileVisitor() {
-                @Override
-                public boolean visit(File file) {
-                    stats.totalUsage(stats.totalUsage() + file.length());
-                    stats.count(stats.count() + 1);
-                    return true;
-                }
-            });
+            blobContainer.writeStatsCheckpoint();
         } catch (IOException e) {
-            logger.error("error getting blob stats", e);
-            Throwables.propagate(e);
+            logger.warn("could not write blob stats checkpoint, stats will be rebuilt on the next start", e);
         }
-        return stats;
     }
 
     private File blobDir(BlobEnvironment blobEnvironment) {
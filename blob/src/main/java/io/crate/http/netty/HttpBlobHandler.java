@@ -21,6 +21,7 @@
 
 package io.crate.http.netty;
 
+import io.crate.blob.BlobCache;
 import io.crate.blob.BlobService;
 import io.crate.blob.DigestBlob;
 import io.crate.blob.RemoteDigestBlob;
@@ -42,6 +43,7 @@ import org.jboss.netty.util.CharsetUtil;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.util.Locale;
 import java.util.regex.Matcher;
@@ -70,14 +72,16 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
     private final Matcher blobsMatcher = BLOBS_PATTERN.matcher("");
     private final BlobService blobService;
     private final BlobIndices blobIndices;
+    private final BlobCache blobCache;
     private HttpMessage currentMessage;
     private ChannelHandlerContext ctx;
 
     private RemoteDigestBlob digestBlob;
 
-    public HttpBlobHandler(BlobService blobService, BlobIndices blobIndices) {
+    public HttpBlobHandler(BlobService blobService, BlobIndices blobIndices, BlobCache blobCache) {
         this.blobService = blobService;
         this.blobIndices = blobIndices;
+        this.blobCache = blobCache;
     }
 
 
@@ -162,7 +166,7 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
             get(request, index, digest);
             reset();
         } else if (request.getMethod().equals(HttpMethod.HEAD)) {
-            head(index, digest);
+            head(request, index, digest);
             reset();
         } else if (request.getMethod().equals(HttpMethod.PUT)) {
             put(request, index, digest);
@@ -257,12 +261,15 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
         simpleResponse(status, body);
     }
 
-    private void head(String index, String digest) throws IOException {
+    private void head(HttpRequest request, String index, String digest) throws IOException {
 
         // this method only supports local mode, which is ok, since there
         // should be a redirect upfront if data is not local
 
         BlobShard blobShard = localBlobShard(index, digest);
+        if (notModified(request, blobShard, digest)) {
+            return;
+        }
         long length = blobShard.blobContainer().getFile(digest).length();
         if (length < 1) {
             simpleResponse(HttpResponseStatus.NOT_FOUND);
@@ -270,11 +277,14 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
         }
         HttpResponse response = new DefaultHttpResponse(HTTP_1_1, OK);
         HttpHeaders.setContentLength(response, length);
-        setDefaultGetHeaders(response);
+        setDefaultGetHeaders(response, digest);
         sendResponse(response);
     }
 
     private void get(HttpRequest request, String index, final String digest) throws IOException {
+        if (notModified(request, localBlobShard(index, digest), digest)) {
+            return;
+        }
         String range = request.headers().get(RANGE);
         if (range != null) {
             partialContentResponse(range, request, index, digest);
@@ -287,6 +297,46 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
         return blobIndices.localBlobShard(index, digest);
     }
 
+    /**
+     * the digest is the hash of the content and used as etag, so if the client sends it
+     * within If-None-Match it already has the content and 304 Not Modified is sent.
+     *
+     * @return true if the response has been sent
+     */
+    private boolean notModified(HttpRequest request, BlobShard blobShard, String digest) {
+        String ifNoneMatch = request.headers().get(IF_NONE_MATCH);
+        if (ifNoneMatch == null || !etagMatches(ifNoneMatch, digest)) {
+            return false;
+        }
+        if (!blobShard.blobContainer().getFile(digest).exists()) {
+            // let the regular request handling respond with 404
+            return false;
+        }
+        HttpResponse response = prepareResponse(NOT_MODIFIED);
+        setDefaultGetHeaders(response, digest);
+        sendResponse(response);
+        return true;
+    }
+
+    public static boolean etagMatches(String ifNoneMatch, String digest) {
+        for (String etag : ifNoneMatch.split(",")) {
+            etag = etag.trim();
+            if (etag.equals("*")) {
+                return true;
+            }
+            if (etag.startsWith("W/")) {
+                etag = etag.substring(2);
+            }
+            if (etag.length() > 1 && etag.startsWith("\"") && etag.endsWith("\"")) {
+                etag = etag.substring(1, etag.length() - 1);
+            }
+            if (etag.equals(digest)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void partialContentResponse(String range, HttpRequest request, String index, final String digest)
         throws  IOException {
         assert range != null : "Getting partial response but no byte-range is not present.";
@@ -323,7 +373,7 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
             HttpResponse response = prepareResponse(PARTIAL_CONTENT);
             HttpHeaders.setContentLength(response, end - start + 1);
             response.headers().set(CONTENT_RANGE, "bytes " + start + "-" + end + "/" + raf.length());
-            setDefaultGetHeaders(response);
+            setDefaultGetHeaders(response, digest);
 
             ctx.getChannel().write(response);
             ChannelFuture writeFuture = transferFile(digest, raf, start, end - start + 1);
@@ -342,12 +392,27 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
     }
 
     private void fullContentResponse(HttpRequest request, String index, final String digest) throws  IOException {
+        ByteBuffer cachedContent = blobCache.get(index, digest);
+        if (cachedContent != null) {
+            cachedContentResponse(request, digest, cachedContent);
+            return;
+        }
         BlobShard blobShard = localBlobShard(index, digest);
         HttpResponse response = new DefaultHttpResponse(HTTP_1_1, OK);
         final RandomAccessFile raf = blobShard.blobContainer().getRandomAccessFile(digest);
         try {
+            if (blobCache.cacheable(raf.length())) {
+                ByteBuffer content = blobCache.load(blobShard.shardId(), digest, raf);
+                raf.close();
+                if (!blobShard.blobContainer().getFile(digest).exists()) {
+                    // deleted while it was loaded, the invalidation might have happened before
+                    blobCache.invalidate(index, digest);
+                }
+                cachedContentResponse(request, digest, content);
+                return;
+            }
             HttpHeaders.setContentLength(response, raf.length());
-            setDefaultGetHeaders(response);
+            setDefaultGetHeaders(response, digest);
             LOGGER.trace("HttpResponse: {}", response);
             ctx.getChannel().write(response);
             ChannelFuture writeFuture = transferFile(digest, raf, 0, raf.length());
@@ -365,6 +430,17 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
         }
     }
 
+    private void cachedContentResponse(HttpRequest request, String digest, ByteBuffer content) {
+        HttpResponse response = new DefaultHttpResponse(HTTP_1_1, OK);
+        HttpHeaders.setContentLength(response, content.remaining());
+        setDefaultGetHeaders(response, digest);
+        response.setContent(ChannelBuffers.wrappedBuffer(content));
+        ChannelFuture writeFuture = ctx.getChannel().write(response);
+        if (!HttpHeaders.isKeepAlive(request)) {
+            writeFuture.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
     private ChannelFuture transferFile(final String digest, RandomAccessFile raf, long position, long count)
         throws IOException
     {
@@ -385,7 +461,8 @@ public class HttpBlobHandler extends SimpleChannelUpstreamHandler implements
         return writeFuture;
     }
 
-    private void setDefaultGetHeaders(HttpResponse response) {
+    private void setDefaultGetHeaders(HttpResponse response, String digest) {
+        response.headers().set(ETAG, "\"" + digest + "\"");
         response.headers().set(ACCEPT_RANGES, "bytes");
         response.headers().set(EXPIRES, EXPIRES_VALUE);
         response.headers().set(CACHE_CONTROL, CACHE_CONTROL_VALUE);
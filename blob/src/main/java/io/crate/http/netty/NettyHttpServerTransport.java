@@ -22,6 +22,7 @@
 package io.crate.http.netty;
 
 import com.google.common.collect.ImmutableMap;
+import io.crate.blob.BlobCache;
 import io.crate.blob.BlobService;
 import io.crate.blob.v2.BlobIndices;
 import org.elasticsearch.ElasticsearchException;
@@ -96,6 +97,7 @@ public class NettyHttpServerTransport extends AbstractLifecycleComponent<HttpSer
     private final DiscoveryNodeService discoveryNodeService;
     private final BlobService blobService;
     private final BlobIndices blobIndices;
+    private final BlobCache blobCache;
 
     protected final ByteSizeValue maxContentLength;
     protected final ByteSizeValue maxInitialLineLength;
@@ -149,13 +151,15 @@ public class NettyHttpServerTransport extends AbstractLifecycleComponent<HttpSer
 
     @Inject
     public NettyHttpServerTransport(Settings settings, NetworkService networkService, BigArrays bigArrays,
-                                    DiscoveryNodeService discoveryNodeService, BlobService blobService, BlobIndices blobIndices) {
+                                    DiscoveryNodeService discoveryNodeService, BlobService blobService, BlobIndices blobIndices,
+                                    BlobCache blobCache) {
         super(settings);
         this.networkService = networkService;
         this.bigArrays = bigArrays;
         this.discoveryNodeService = discoveryNodeService;
         this.blobService = blobService;
         this.blobIndices = blobIndices;
+        this.blobCache = blobCache;
 
         if (settings.getAsBoolean("netty.epollBugWorkaround", false)) {
             System.setProperty("org.jboss.netty.epollBugWorkaround", "true");
@@ -428,7 +432,8 @@ public class NettyHttpServerTransport extends AbstractLifecycleComponent<HttpSer
             pipeline.addLast("decoder", requestDecoder);
             pipeline.addLast("decoder_compress", new ESHttpContentDecompressor(transport.compression));
 
-            HttpBlobHandler blobHandler = new HttpBlobHandler(transport.blobService, transport.blobIndices);
+            HttpBlobHandler blobHandler = new HttpBlobHandler(transport.blobService, transport.blobIndices,
+                transport.blobCache);
             pipeline.addLast("blob_handler", blobHandler);
 
             HttpChunkAggregator httpChunkAggregator = new HttpChunkAggregator((int) transport.maxContentLength.bytes());
@@ -50,9 +50,13 @@ public class BlobRecoveryTarget extends AbstractComponent {
     * actor SourceNode as s
     * actor TargetNode as t
     *
-    * group for every two char prefix
-    * s -> t:StartPrefixSync(prefix)
-    * t -> t:getDigests for prefix
+    * s -> t:DigestSummary
+    * t --> s:digest summary
+    * s -> s: compare with local summary
+    *
+    * group for every bucket (prefix, sub-bucket) whose summary differs
+    * s -> t:StartBucketSync(prefix, subBucket)
+    * t -> t:getDigests for bucket
     * t --> s:found digests
     * s -> s: get missing digests
     * group for every missing digest
@@ -81,6 +85,8 @@ public class BlobRecoveryTarget extends AbstractComponent {
         public static final String DELETE_FILE = "crate/blob/shard/recovery/delete_file";
         public static final String START_RECOVERY = "crate/blob/shard/recovery/start";
         public static final String START_PREFIX = "crate/blob/shard/recovery/start_prefix";
+        public static final String DIGEST_SUMMARY = "crate/blob/shard/recovery/digest_summary";
+        public static final String START_BUCKET = "crate/blob/shard/recovery/start_bucket";
         public static final String TRANSFER_CHUNK = "crate/blob/shard/recovery/transfer_chunk";
         public static final String START_TRANSFER = "crate/blob/shard/recovery/start_transfer";
     }
@@ -94,6 +100,8 @@ public class BlobRecoveryTarget extends AbstractComponent {
 
         transportService.registerHandler(Actions.START_RECOVERY, new StartRecoveryRequestHandler());
         transportService.registerHandler(Actions.START_PREFIX, new StartPrefixSyncRequestHandler());
+        transportService.registerHandler(Actions.DIGEST_SUMMARY, new DigestSummaryRequestHandler());
+        transportService.registerHandler(Actions.START_BUCKET, new StartBucketSyncRequestHandler());
         transportService.registerHandler(Actions.TRANSFER_CHUNK, new TransferChunkRequestHandler());
         transportService.registerHandler(Actions.START_TRANSFER, new StartTransferRequestHandler());
         transportService.registerHandler(Actions.DELETE_FILE, new DeleteFileRequestHandler());
@@ -189,7 +197,7 @@ public class BlobRecoveryTarget extends AbstractComponent {
                     // this might happen on bad timing while recovering/relocating.
                     // noop
                 } else {
-                    if (!source.renameTo(target)) {
+                    if (!shard.blobContainer().commitFile(source, target.getName())) {
                         throw new BlobWriteException(target.getName(), target.length(), null);
                     }
                 }
@@ -227,6 +235,58 @@ public class BlobRecoveryTarget extends AbstractComponent {
     }
 
 
+    class DigestSummaryRequestHandler extends BaseHandler<BlobDigestSummaryRequest> {
+
+        @Override
+        public BlobDigestSummaryRequest newInstance() {
+            return new BlobDigestSummaryRequest();
+        }
+
+        @Override
+        public void messageReceived(BlobDigestSummaryRequest request, TransportChannel channel) throws Exception {
+            BlobRecoveryStatus status = onGoingRecoveries.get(request.recoveryId());
+            if (status == null) {
+                throw new IllegalBlobRecoveryStateException(
+                    "could not retrieve BlobRecoveryStatus"
+                );
+            }
+            if (status.canceled()) {
+                throw new IndexShardClosedException(status.shardId());
+            }
+            // leftovers aren't part of the summary, they'd be kept in buckets which don't differ
+            status.blobShard.cleanIncompleteFiles();
+            BlobDigestSummaryResponse response = new BlobDigestSummaryResponse();
+            response.digestSummary = status.blobShard.digestSummary();
+            channel.sendResponse(response);
+        }
+    }
+
+
+    class StartBucketSyncRequestHandler extends BaseHandler<BlobStartBucketSyncRequest> {
+
+        @Override
+        public BlobStartBucketSyncRequest newInstance() {
+            return new BlobStartBucketSyncRequest();
+        }
+
+        @Override
+        public void messageReceived(BlobStartBucketSyncRequest request, TransportChannel channel) throws Exception {
+            BlobRecoveryStatus status = onGoingRecoveries.get(request.recoveryId());
+            if (status == null) {
+                throw new IllegalBlobRecoveryStateException(
+                    "could not retrieve BlobRecoveryStatus"
+                );
+            }
+            if (status.canceled()) {
+                throw new IndexShardClosedException(status.shardId());
+            }
+            BlobStartPrefixResponse response = new BlobStartPrefixResponse();
+            response.existingDigests = status.blobShard.currentDigests(request.prefix(), request.subBucket());
+            channel.sendResponse(response);
+        }
+    }
+
+
     private class StartTransferRequestHandler extends BaseHandler<BlobRecoveryStartTransferRequest> {
 
 
@@ -264,7 +324,7 @@ public class BlobRecoveryTarget extends AbstractComponent {
                 File source = new File(shard.blobContainer().getBaseDirectory(), tmpPath);
                 File target = new File(shard.blobContainer().getBaseDirectory(), request.path());
                 if (!target.exists()) {
-                    if (!source.renameTo(target)) {
+                    if (!shard.blobContainer().commitFile(source, target.getName())) {
                         throw new IllegalBlobRecoveryStateException(
                             "couldn't rename file to " + request.path()
                         );
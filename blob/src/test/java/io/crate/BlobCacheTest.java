@@ -0,0 +1,146 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate;
+
+import io.crate.blob.BlobCache;
+import io.crate.blob.stats.BlobCacheStats;
+import io.crate.test.integration.CrateUnitTest;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.index.shard.ShardId;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class BlobCacheTest extends CrateUnitTest {
+
+    private static final String DIGEST = "417de3231e23dcd6d224ff60918024bc6c59aa58";
+    private static final ShardId B1_SHARD = new ShardId(".blob_b1", 0);
+    private static final ShardId B2_SHARD = new ShardId(".blob_b2", 0);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BlobCache blobCache(String size) {
+        return new BlobCache(ImmutableSettings.builder()
+            .put(BlobCache.SETTING_CACHE_SIZE, size)
+            .put(BlobCache.SETTING_CACHE_MAX_BLOB_SIZE, "10b")
+            .build());
+    }
+
+    private ByteBuffer load(BlobCache cache, ShardId shardId, String digest, String content) throws Exception {
+        File file = folder.newFile();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes("UTF-8"));
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            assertTrue(cache.cacheable(raf.length()));
+            return cache.load(shardId, digest, raf);
+        }
+    }
+
+    @Test
+    public void testCacheIsDisabledByDefault() throws Exception {
+        BlobCache cache = new BlobCache(ImmutableSettings.EMPTY);
+        assertFalse(cache.enabled());
+        assertFalse(cache.cacheable(1));
+        assertThat(cache.get(".blob_b1", DIGEST), nullValue());
+    }
+
+    @Test
+    public void testLoadAndGet() throws Exception {
+        BlobCache cache = blobCache("1kb");
+        assertFalse(cache.cacheable(11));
+        assertThat(cache.get(".blob_b1", DIGEST), nullValue());
+
+        ByteBuffer content = load(cache, B1_SHARD, DIGEST, "abc");
+        assertThat(content.remaining(), is(3));
+        assertFalse(content.isDirect());
+
+        // consuming a returned buffer doesn't affect the cached one
+        content.get(new byte[3]);
+        content = cache.get(".blob_b1", DIGEST);
+        assertThat(content, notNullValue());
+        assertThat(content.remaining(), is(3));
+        assertThat(content.get(0), is((byte) 'a'));
+
+        assertThat(cache.get(".blob_b2", DIGEST), nullValue());
+
+        BlobCacheStats stats = cache.stats(B1_SHARD);
+        assertThat(stats.hits(), is(1L));
+        assertThat(stats.misses(), is(1L));
+        assertThat(stats.hitRate(), is(0.5));
+        assertThat(cache.stats(new ShardId(".blob_b1", 1)).hits(), is(0L));
+        assertThat(cache.stats(B2_SHARD).hits(), is(0L));
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        BlobCache cache = blobCache("1kb");
+        load(cache, B1_SHARD, DIGEST, "abc");
+        load(cache, B2_SHARD, DIGEST, "abc");
+
+        cache.invalidate(".blob_b1", DIGEST);
+        assertThat(cache.get(".blob_b1", DIGEST), nullValue());
+        assertThat(cache.get(".blob_b2", DIGEST), notNullValue());
+
+        cache.invalidateShard(B2_SHARD);
+        assertThat(cache.get(".blob_b2", DIGEST), nullValue());
+    }
+
+    @Test
+    public void testInvalidateShardResetsItsStats() throws Exception {
+        BlobCache cache = blobCache("1kb");
+        load(cache, B1_SHARD, DIGEST, "abc");
+        cache.get(".blob_b1", DIGEST);
+        load(cache, B2_SHARD, DIGEST, "abc");
+
+        cache.invalidateShard(B1_SHARD);
+        assertThat(cache.stats(B1_SHARD).hits(), is(0L));
+        assertThat(cache.stats(B1_SHARD).misses(), is(0L));
+        assertThat(cache.stats(B2_SHARD).misses(), is(1L));
+    }
+
+    @Test
+    public void testCacheSizeIsBounded() throws Exception {
+        BlobCache cache = blobCache("20b");
+        for (int i = 0; i < 10; i++) {
+            load(cache, B1_SHARD, String.valueOf(i), "0123456789");
+        }
+        int cached = 0;
+        for (int i = 0; i < 10; i++) {
+            if (cache.get(".blob_b1", String.valueOf(i)) != null) {
+                cached++;
+            }
+        }
+        assertTrue(cached <= 2);
+    }
+}
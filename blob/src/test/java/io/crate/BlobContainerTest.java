@@ -0,0 +1,246 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate;
+
+import io.crate.blob.BlobContainer;
+import io.crate.blob.DigestSummary;
+import io.crate.test.integration.CrateUnitTest;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.hamcrest.Matchers.is;
+
+public class BlobContainerTest extends CrateUnitTest {
+
+    private static final String DIGEST_1 = "417de3231e23dcd6d224ff60918024bc6c59aa58";
+    private static final String DIGEST_2 = "41aabbcc1e23dcd6d224ff60918024bc6c59aa58";
+    private static final String DIGEST_3 = "ff7de3231e23dcd6d224ff60918024bc6c59aa58";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File baseDirectory;
+
+    @Before
+    public void prepare() throws Exception {
+        baseDirectory = folder.newFolder();
+    }
+
+    private void commit(BlobContainer container, String digest, int size) throws IOException {
+        File file = new File(container.getTmpDirectory(), digest);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[size]);
+        }
+        assertTrue(container.commitFile(file, digest));
+    }
+
+    @Test
+    public void testStatsAreUpdatedOnCommitAndDelete() throws Exception {
+        BlobContainer container = new BlobContainer(baseDirectory);
+        assertThat(container.blobCount(), is(0L));
+        assertThat(container.totalSize(), is(0L));
+
+        commit(container, DIGEST_1, 10);
+        commit(container, DIGEST_2, 20);
+        commit(container, DIGEST_3, 5);
+        assertThat(container.blobCount(), is(3L));
+        assertThat(container.totalSize(), is(35L));
+        assertThat(container.blobCount((byte) 0x41), is(2L));
+        assertThat(container.totalSize((byte) 0x41), is(30L));
+        assertThat(container.blobCount((byte) 0xff), is(1L));
+
+        // replacing an existing blob doesn't change the count
+        commit(container, DIGEST_1, 12);
+        assertThat(container.blobCount(), is(3L));
+        assertThat(container.totalSize(), is(37L));
+
+        assertTrue(container.delete(DIGEST_2));
+        assertFalse(container.delete(DIGEST_2));
+        assertFalse(container.delete("not a digest"));
+        assertThat(container.blobCount(), is(2L));
+        assertThat(container.totalSize(), is(17L));
+        assertThat(container.blobCount((byte) 0x41), is(1L));
+    }
+
+    @Test
+    public void testStatsAreRebuiltWithoutCheckpoint() throws Exception {
+        BlobContainer container = new BlobContainer(baseDirectory);
+        commit(container, DIGEST_1, 10);
+        commit(container, DIGEST_3, 5);
+        // leftover of an interrupted recovery
+        assertTrue(new File(container.getFile(DIGEST_1).getAbsolutePath() + ".1").createNewFile());
+
+        // the blobs aren't walked when the container is opened
+        container = new BlobContainer(baseDirectory);
+        assertFalse(container.statsAvailable());
+        assertThat(container.blobCount(), is(-1L));
+        assertThat(container.totalSize(), is(-1L));
+
+        container.rebuildStats();
+        assertTrue(container.statsAvailable());
+        assertThat(container.blobCount(), is(2L));
+        assertThat(container.totalSize(), is(15L));
+    }
+
+    @Test
+    public void testStatsAreLoadedFromCheckpoint() throws Exception {
+        BlobContainer container = new BlobContainer(baseDirectory);
+        commit(container, DIGEST_1, 10);
+        container.writeStatsCheckpoint();
+        File checkpoint = new File(baseDirectory, BlobContainer.STATS_CHECKPOINT);
+        assertTrue(checkpoint.exists());
+
+        // a blob that is only visible to a rebuild, the stats must come from the checkpoint
+        new File(container.getVarDirectory(), "ff" + File.separator + DIGEST_3).createNewFile();
+
+        container = new BlobContainer(baseDirectory);
+        assertThat(container.blobCount(), is(1L));
+        assertThat(container.totalSize(), is(10L));
+        // the checkpoint is outdated with the next change and is therefore removed once loaded
+        assertFalse(checkpoint.exists());
+    }
+
+    @Test
+    public void testCorruptCheckpointIsIgnored() throws Exception {
+        BlobContainer container = new BlobContainer(baseDirectory);
+        commit(container, DIGEST_1, 10);
+        container.writeStatsCheckpoint();
+        File checkpoint = new File(baseDirectory, BlobContainer.STATS_CHECKPOINT);
+        try (RandomAccessFile file = new RandomAccessFile(checkpoint, "rw")) {
+            file.seek(4);
+            file.writeLong(100L);
+        }
+
+        container = new BlobContainer(baseDirectory);
+        container.rebuildStats();
+        assertThat(container.blobCount(), is(1L));
+        assertThat(container.totalSize(), is(10L));
+        assertFalse(checkpoint.exists());
+    }
+
+    @Test
+    public void testChangeAfterCheckpointInvalidatesIt() throws Exception {
+        BlobContainer container = new BlobContainer(baseDirectory);
+        commit(container, DIGEST_1, 10);
+        container.writeStatsCheckpoint();
+        File checkpoint = new File(baseDirectory, BlobContainer.STATS_CHECKPOINT);
+        assertTrue(checkpoint.exists());
+
+        commit(container, DIGEST_3, 5);
+        assertFalse(checkpoint.exists());
+
+        container = new BlobContainer(baseDirectory);
+        container.rebuildStats();
+        assertThat(container.blobCount(), is(2L));
+        assertThat(container.totalSize(), is(15L));
+    }
+
+    @Test
+    public void testChangesBeforeRebuildAreCountedOnce() throws Exception {
+        BlobContainer container = new BlobContainer(baseDirectory);
+        commit(container, DIGEST_1, 10);
+
+        container = new BlobContainer(baseDirectory);
+        commit(container, DIGEST_2, 20);
+        commit(container, DIGEST_3, 5);
+        assertTrue(container.delete(DIGEST_1));
+        // no checkpoint is written as long as the stats are unknown
+        container.writeStatsCheckpoint();
+        assertFalse(new File(baseDirectory, BlobContainer.STATS_CHECKPOINT).exists());
+
+        container.rebuildStats();
+        assertThat(container.blobCount(), is(2L));
+        assertThat(container.totalSize(), is(25L));
+        commit(container, DIGEST_1, 10);
+        assertThat(container.blobCount(), is(3L));
+    }
+
+    @Test
+    public void testDigestSummaryIsMaintained() throws Exception {
+        BlobContainer container = new BlobContainer(baseDirectory);
+        commit(container, DIGEST_1, 10);
+        commit(container, DIGEST_2, 20);
+        DigestSummary summary = container.digestSummary();
+        int bucket1 = DigestSummary.bucket(DIGEST_1);
+        int bucket2 = DigestSummary.bucket(DIGEST_2);
+        assertThat(bucket1, is(0x41 * DigestSummary.SUB_BUCKETS + 7));
+        assertThat(bucket2, is(0x41 * DigestSummary.SUB_BUCKETS + 0xa));
+        assertThat(summary.count(bucket1), is(1L));
+        assertThat(summary.hash(bucket1), is(DigestSummary.hash(DIGEST_1)));
+
+        // replacing doesn't change the summary, deleting restores the previous one
+        commit(container, DIGEST_1, 12);
+        commit(container, DIGEST_3, 5);
+        assertTrue(container.delete(DIGEST_3));
+        assertThat(container.digestSummary().differingBuckets(summary).size(), is(0));
+
+        assertTrue(container.delete(DIGEST_1));
+        summary = container.digestSummary();
+        assertThat(summary.count(bucket1), is(0L));
+        assertThat(summary.hash(bucket1), is(0L));
+        assertThat(summary.count(bucket2), is(1L));
+
+        byte[][] digests = container.cleanAndReturnDigests((byte) 0x41, 0xa);
+        assertThat(digests.length, is(1));
+        assertThat(container.cleanAndReturnDigests((byte) 0x41, 7).length, is(0));
+    }
+
+    @Test
+    public void testDigestSummaryIsRestored() throws Exception {
+        BlobContainer container = new BlobContainer(baseDirectory);
+        commit(container, DIGEST_1, 10);
+        commit(container, DIGEST_3, 5);
+        DigestSummary summary = container.digestSummary();
+
+        // rebuilt from the files
+        assertThat(new BlobContainer(baseDirectory).digestSummary().differingBuckets(summary).size(), is(0));
+
+        container.writeStatsCheckpoint();
+        container = new BlobContainer(baseDirectory);
+        assertThat(container.digestSummary().differingBuckets(summary).size(), is(0));
+    }
+
+    @Test
+    public void testCleanIncompleteFilesOfAllPrefixes() throws Exception {
+        BlobContainer container = new BlobContainer(baseDirectory);
+        commit(container, DIGEST_1, 10);
+        File leftover1 = new File(container.getFile(DIGEST_1).getAbsolutePath() + ".1");
+        File leftover3 = new File(container.getFile(DIGEST_3).getAbsolutePath() + ".2");
+        assertTrue(leftover1.createNewFile());
+        assertTrue(leftover3.createNewFile());
+        DigestSummary summary = container.digestSummary();
+
+        container.cleanIncompleteFiles();
+        assertFalse(leftover1.exists());
+        assertFalse(leftover3.exists());
+        assertTrue(container.getFile(DIGEST_1).exists());
+        assertThat(container.digestSummary().differingBuckets(summary).size(), is(0));
+    }
+}
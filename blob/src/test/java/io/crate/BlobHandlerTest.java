@@ -55,4 +55,16 @@ public class BlobHandlerTest extends CrateUnitTest {
             assertThat(invalidUrl, HttpBlobHandler.BLOBS_PATTERN.matcher(invalidUrl).matches(), is(false));
         }
     }
+
+    @Test
+    public void testEtagMatches() throws Exception {
+        String digest = "f3b4df9c032a14ad415455354798fa2fc3bf1df7";
+        assertThat(HttpBlobHandler.etagMatches("\"" + digest + "\"", digest), is(true));
+        assertThat(HttpBlobHandler.etagMatches(digest, digest), is(true));
+        assertThat(HttpBlobHandler.etagMatches("W/\"" + digest + "\"", digest), is(true));
+        assertThat(HttpBlobHandler.etagMatches("\"foo\", \"" + digest + "\"", digest), is(true));
+        assertThat(HttpBlobHandler.etagMatches("*", digest), is(true));
+        assertThat(HttpBlobHandler.etagMatches("\"foo\"", digest), is(false));
+        assertThat(HttpBlobHandler.etagMatches("\"\"", digest), is(false));
+    }
 }
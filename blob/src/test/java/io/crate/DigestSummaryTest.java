@@ -0,0 +1,85 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate;
+
+import com.carrotsearch.hppc.IntArrayList;
+import io.crate.blob.DigestSummary;
+import io.crate.test.integration.CrateUnitTest;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+
+public class DigestSummaryTest extends CrateUnitTest {
+
+    private static DigestSummary summary(String... digests) {
+        long[] counts = new long[DigestSummary.NUM_BUCKETS];
+        long[] hashes = new long[DigestSummary.NUM_BUCKETS];
+        for (String digest : digests) {
+            int bucket = DigestSummary.bucket(digest);
+            counts[bucket]++;
+            hashes[bucket] ^= DigestSummary.hash(digest);
+        }
+        return new DigestSummary(counts, hashes);
+    }
+
+    @Test
+    public void testDifferingBuckets() throws Exception {
+        DigestSummary source = summary(
+            "417de3231e23dcd6d224ff60918024bc6c59aa58",
+            "41aabbcc1e23dcd6d224ff60918024bc6c59aa58",
+            "ff7de3231e23dcd6d224ff60918024bc6c59aa58");
+        DigestSummary target = summary(
+            "417de3231e23dcd6d224ff60918024bc6c59aa58",
+            "41abbbcc1e23dcd6d224ff60918024bc6c59aa58",
+            "ff7de3231e23dcd6d224ff60918024bc6c59aa58",
+            "007de3231e23dcd6d224ff60918024bc6c59aa58");
+
+        assertThat(source.differingBuckets(source).size(), is(0));
+
+        IntArrayList buckets = source.differingBuckets(target);
+        assertThat(buckets.size(), is(2));
+        assertThat(buckets.get(0), is(0x00 * DigestSummary.SUB_BUCKETS + 7));
+        assertThat(buckets.get(1), is(0x41 * DigestSummary.SUB_BUCKETS + 0xa));
+        assertThat(DigestSummary.prefix(buckets.get(1)), is((byte) 0x41));
+        assertThat(DigestSummary.subBucket(buckets.get(1)), is(0xa));
+    }
+
+    @Test
+    public void testStreaming() throws Exception {
+        DigestSummary summary = summary(
+            "417de3231e23dcd6d224ff60918024bc6c59aa58",
+            "ff7de3231e23dcd6d224ff60918024bc6c59aa58");
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        summary.writeTo(out);
+        DigestSummary streamed = new DigestSummary();
+        streamed.readFrom(new BytesStreamInput(out.bytes()));
+
+        assertThat(streamed.differingBuckets(summary).size(), is(0));
+        int bucket = DigestSummary.bucket("ff7de3231e23dcd6d224ff60918024bc6c59aa58");
+        assertThat(streamed.count(bucket), is(1L));
+        assertThat(streamed.hash(bucket), is(summary.hash(bucket)));
+    }
+}
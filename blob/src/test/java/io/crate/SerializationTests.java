@@ -22,10 +22,14 @@
 package io.crate;
 
 import io.crate.blob.PutChunkReplicaRequest;
+import io.crate.blob.stats.BlobCacheStats;
+import io.crate.blob.stats.BlobStats;
 import io.crate.test.integration.CrateUnitTest;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.io.stream.BytesStreamInput;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.indices.recovery.BlobStartBucketSyncRequest;
 import org.junit.Test;
 
 import java.util.UUID;
@@ -59,4 +63,40 @@ public class SerializationTests extends CrateUnitTest {
         assertEquals(requestOut.transferId, requestIn.transferId);
         assertEquals(requestOut.index(), requestIn.index());
     }
+
+    @Test
+    public void testBlobStartBucketSyncRequestSerialization() throws Exception {
+        BytesStreamOutput outputStream = new BytesStreamOutput();
+        BlobStartBucketSyncRequest requestOut = new BlobStartBucketSyncRequest(
+            42L, new ShardId("foo", 1), (byte) 0xa4, 7);
+        requestOut.writeTo(outputStream);
+
+        BlobStartBucketSyncRequest requestIn = new BlobStartBucketSyncRequest();
+        requestIn.readFrom(new BytesStreamInput(outputStream.bytes().copyBytesArray()));
+
+        assertEquals(requestOut.recoveryId(), requestIn.recoveryId());
+        assertEquals(requestOut.prefix(), requestIn.prefix());
+        assertEquals(requestOut.subBucket(), requestIn.subBucket());
+    }
+
+    @Test
+    public void testBlobStatsSerialization() throws Exception {
+        BytesStreamOutput outputStream = new BytesStreamOutput();
+        BlobStats statsOut = new BlobStats();
+        statsOut.count(-1L);
+        statsOut.totalUsage(-1L);
+        statsOut.availableSpace(100L);
+        statsOut.location("/tmp/blobs");
+        statsOut.cacheStats(new BlobCacheStats(3L, 1L));
+        statsOut.writeTo(outputStream);
+
+        BlobStats statsIn = new BlobStats();
+        statsIn.readFrom(new BytesStreamInput(outputStream.bytes().copyBytesArray()));
+
+        assertEquals(statsOut.count(), statsIn.count());
+        assertEquals(statsOut.totalUsage(), statsIn.totalUsage());
+        assertEquals(statsOut.location(), statsIn.location());
+        assertEquals(3L, statsIn.cacheStats().hits());
+        assertEquals(1L, statsIn.cacheStats().misses());
+    }
 }
@@ -24,6 +24,7 @@ package io.crate.integrationtests;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
+import io.crate.blob.BlobCache;
 import io.crate.blob.v2.BlobIndices;
 import io.crate.plugin.CrateCorePlugin;
 import io.crate.rest.CrateRestFilter;
@@ -69,6 +70,7 @@ public class BlobHttpIntegrationTest extends ElasticsearchIntegrationTest {
                 .put("plugin.types", CrateCorePlugin.class.getName())
                 .put(InternalNode.HTTP_ENABLED, true)
                 .put(CrateRestFilter.ES_API_ENABLED_SETTING, true)
+                .put(BlobCache.SETTING_CACHE_SIZE, "1mb")
                 .build();
     }
 
@@ -1,6 +1,9 @@
 package io.crate.integrationtests;
 
 
+import io.crate.blob.stats.BlobCacheStats;
+import io.crate.blob.v2.BlobIndices;
+import io.crate.blob.v2.BlobShard;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.Header;
 import org.apache.http.client.methods.CloseableHttpResponse;
@@ -101,6 +104,64 @@ public class BlobIntegrationTest extends BlobHttpIntegrationTest {
         assertEquals("max-age=315360000", res.getFirstHeader("Cache-Control").getValue());
     }
 
+    @Test
+    public void testConditionalGet() throws IOException {
+        String digest = uploadSmallBlob();
+        CloseableHttpResponse res = get(blobUri(digest));
+        assertEquals(200, res.getStatusLine().getStatusCode());
+        assertEquals("\"" + digest + "\"", res.getFirstHeader("ETag").getValue());
+        assertEquals(StringUtils.repeat("a", 1500), EntityUtils.toString(res.getEntity()));
+
+        Header[] headers = {
+            new BasicHeader("If-None-Match", "\"" + digest + "\"")
+        };
+        res = get(blobUri(digest), headers);
+        assertEquals(304, res.getStatusLine().getStatusCode());
+        assertNull(res.getEntity());
+
+        headers = new Header[]{
+            new BasicHeader("If-None-Match", "\"32d10c7b8cf96570ca04ce37f2a19d84240d3a89\"")
+        };
+        res = get(blobUri(digest), headers);
+        assertEquals(200, res.getStatusLine().getStatusCode());
+        assertEquals(StringUtils.repeat("a", 1500), EntityUtils.toString(res.getEntity()));
+    }
+
+    @Test
+    public void testCacheStatsOfBlobShards() throws IOException {
+        String digest = uploadSmallBlob();
+        BlobCacheStats before = cacheStats();
+        for (int i = 0; i < 2; i++) {
+            CloseableHttpResponse res = get(blobUri(digest));
+            assertEquals(200, res.getStatusLine().getStatusCode());
+            EntityUtils.consume(res.getEntity());
+        }
+        BlobCacheStats after = cacheStats();
+        // the first GET is a miss unless a previous test already read the blob
+        assertThat(after.hits() + after.misses() - before.hits() - before.misses(), is(2L));
+        assertTrue(after.hits() - before.hits() >= 1L);
+    }
+
+    /**
+     * sum of the cache stats of all shards on all nodes
+     */
+    private BlobCacheStats cacheStats() {
+        long hits = 0;
+        long misses = 0;
+        String index = BlobIndices.fullIndexName("test");
+        for (BlobIndices blobIndices : internalCluster().getInstances(BlobIndices.class)) {
+            for (int shardId = 0; shardId < 2; shardId++) {
+                BlobShard blobShard = blobIndices.blobShard(index, shardId);
+                if (blobShard != null) {
+                    BlobCacheStats stats = blobShard.blobStats().cacheStats();
+                    hits += stats.hits();
+                    misses += stats.misses();
+                }
+            }
+        }
+        return new BlobCacheStats(hits, misses);
+    }
+
     @Test
     public void testRedirect() throws IOException {
         //One of the head requests must be redirected::
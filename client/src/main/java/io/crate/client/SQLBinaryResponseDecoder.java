@@ -0,0 +1,95 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.client;
+
+import io.crate.Streamer;
+import io.crate.action.sql.SQLBinaryResponse;
+import io.crate.action.sql.SQLResponse;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.StreamInput;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Decodes the body of a <code>/_sql</code> response which has been requested
+ * with the {@link SQLBinaryResponse#CONTENT_TYPE} content type.
+ */
+public class SQLBinaryResponseDecoder {
+
+    private SQLBinaryResponseDecoder() {}
+
+    public static SQLResponse decode(byte[] bytes) throws IOException {
+        return decode(new BytesArray(bytes));
+    }
+
+    public static SQLResponse decode(BytesReference bytes) throws IOException {
+        StreamInput in = bytes.streamInput();
+        byte version = in.readByte();
+        if (version != SQLBinaryResponse.VERSION) {
+            throw new IOException(String.format(Locale.ENGLISH,
+                    "unsupported binary sql response version %d", version));
+        }
+        String[] cols = in.readStringArray();
+        DataType[] types = new DataType[cols.length];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = DataTypes.fromStream(in);
+        }
+        boolean includeTypes = in.readBoolean();
+        long rowCount = in.readLong();
+        long duration = in.readLong();
+        String cursor = in.readOptionalString();
+        int numRows = in.readVInt();
+
+        Object[][] rows = new Object[numRows][cols.length];
+        for (int c = 0; c < cols.length; c++) {
+            readColumn(in, types[c], rows, c);
+        }
+        SQLResponse response = new SQLResponse(cols, rows, types, rowCount, 0L, includeTypes);
+        response.duration(duration);
+        response.cursor(cursor);
+        return response;
+    }
+
+    private static void readColumn(StreamInput in, DataType type, Object[][] rows, int column) throws IOException {
+        if (SQLBinaryResponse.isStreamable(type)) {
+            Streamer streamer = type.streamer();
+            boolean isString = SQLBinaryResponse.isStringLike(type);
+            for (Object[] row : rows) {
+                Object value = streamer.readValueFrom(in);
+                if (isString && value != null) {
+                    value = ((BytesRef) value).utf8ToString();
+                }
+                row[column] = value;
+            }
+        } else {
+            for (Object[] row : rows) {
+                row[column] = in.readGenericValue();
+            }
+        }
+    }
+}
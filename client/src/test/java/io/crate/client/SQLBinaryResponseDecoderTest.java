@@ -0,0 +1,91 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.client;
+
+import com.google.common.collect.ImmutableMap;
+import io.crate.action.sql.SQLBinaryResponse;
+import io.crate.action.sql.SQLResponse;
+import io.crate.types.ArrayType;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class SQLBinaryResponseDecoderTest extends Assert {
+
+    private static final String[] COLS = new String[]{"name", "age", "height", "ip", "ts", "details", "tags"};
+    private static final DataType[] TYPES = new DataType[]{
+            DataTypes.STRING, DataTypes.INTEGER, DataTypes.DOUBLE, DataTypes.IP, DataTypes.TIMESTAMP,
+            DataTypes.OBJECT, new ArrayType(DataTypes.STRING)
+    };
+
+    private static SQLResponse roundTrip(SQLResponse response) throws IOException {
+        return SQLBinaryResponseDecoder.decode(SQLBinaryResponse.encode(response).toBytes());
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Map<String, Object> details = ImmutableMap.<String, Object>of("planet", "earth");
+        Object[][] rows = new Object[][]{
+                new Object[]{"Arthur", 42, 1.8d, "127.0.0.1", 1449999900000L, details, new String[]{"a", "b"}},
+                new Object[]{null, null, null, null, null, null, null}
+        };
+        SQLResponse response = new SQLResponse(COLS, rows, TYPES, 2L, 0L, true);
+        response.duration(12L);
+
+        SQLResponse decoded = roundTrip(response);
+        assertThat(decoded.cols(), is(COLS));
+        assertThat(decoded.columnTypes(), is(TYPES));
+        assertThat(decoded.rowCount(), is(2L));
+        assertThat(decoded.duration(), is(12L));
+        assertThat(decoded.cursor(), nullValue());
+        assertThat(decoded.rows().length, is(2));
+        assertThat(decoded.rows()[0], is(new Object[]{
+                "Arthur", 42, 1.8d, "127.0.0.1", 1449999900000L, details, new String[]{"a", "b"}}));
+        assertThat(decoded.rows()[1], is(new Object[]{null, null, null, null, null, null, null}));
+    }
+
+    @Test
+    public void testRoundTripWithoutTypesAndWithCursor() throws Exception {
+        Object[][] rows = new Object[][]{new Object[]{"Ford", 10}};
+        SQLResponse response = new SQLResponse(new String[]{"name", "age"}, rows,
+                new DataType[]{DataTypes.STRING, DataTypes.INTEGER}, 1L, 0L, false);
+        response.cursor("c1");
+
+        SQLResponse decoded = roundTrip(response);
+        assertThat(decoded.includeTypes(), is(false));
+        assertThat(decoded.cursor(), is("c1"));
+        assertThat(decoded.rows()[0], is(new Object[]{"Ford", 10}));
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnknownVersion() throws Exception {
+        SQLBinaryResponseDecoder.decode(new byte[]{99});
+    }
+}
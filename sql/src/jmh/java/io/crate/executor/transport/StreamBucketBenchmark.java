@@ -0,0 +1,104 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.executor.transport;
+
+import io.crate.Streamer;
+import io.crate.core.collections.Row;
+import io.crate.core.collections.RowN;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class StreamBucketBenchmark {
+
+    private static final int NUM_ROWS = 100_000;
+
+    private static final Streamer<?>[] STREAMERS = new Streamer[] {
+            DataTypes.INTEGER.streamer(),
+            DataTypes.LONG.streamer(),
+            DataTypes.STRING.streamer(),
+            DataTypes.DOUBLE.streamer()
+    };
+
+    private List<Row> rows;
+    private BytesReference encoded;
+
+    @Setup
+    public void prepare() throws IOException {
+        rows = new ArrayList<>(NUM_ROWS);
+        for (int i = 0; i < NUM_ROWS; i++) {
+            rows.add(new RowN(new Object[] { i, (long) i * 31, new BytesRef("value" + (i % 1000)), i / 3.0d }));
+        }
+        encoded = encode();
+    }
+
+    private BytesReference encode() throws IOException {
+        StreamBucket.Builder builder = new StreamBucket.Builder(STREAMERS);
+        for (Row row : rows) {
+            builder.add(row);
+        }
+        BytesStreamOutput out = new BytesStreamOutput();
+        builder.build().writeTo(out);
+        return out.bytes();
+    }
+
+    @Benchmark
+    public BytesReference encodeBucket() throws IOException {
+        return encode();
+    }
+
+    @Benchmark
+    public void decodeBucket(Blackhole blackhole) throws IOException {
+        StreamBucket bucket = new StreamBucket(STREAMERS);
+        bucket.readFrom(new BytesStreamInput(encoded));
+        for (Row row : bucket) {
+            for (int i = 0; i < row.size(); i++) {
+                blackhole.consume(row.get(i));
+            }
+        }
+    }
+
+    /**
+     * only a single column is accessed, the others are skipped without being decoded
+     */
+    @Benchmark
+    public void decodeSingleColumn(Blackhole blackhole) throws IOException {
+        StreamBucket bucket = new StreamBucket(STREAMERS);
+        bucket.readFrom(new BytesStreamInput(encoded));
+        for (Row row : bucket) {
+            blackhole.consume(row.get(2));
+        }
+    }
+}
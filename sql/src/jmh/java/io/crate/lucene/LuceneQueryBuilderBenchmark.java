@@ -0,0 +1,101 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.lucene;
+
+import com.google.common.collect.ImmutableMap;
+import io.crate.analyze.EvaluatingNormalizer;
+import io.crate.analyze.WhereClause;
+import io.crate.analyze.relations.AnalyzedRelation;
+import io.crate.analyze.relations.TableRelation;
+import io.crate.metadata.Functions;
+import io.crate.metadata.TableIdent;
+import io.crate.metadata.doc.DocTableInfo;
+import io.crate.metadata.table.TestingTableInfo;
+import io.crate.sql.tree.QualifiedName;
+import io.crate.testing.SqlExpressions;
+import io.crate.types.ArrayType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.search.Query;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.cache.IndexCache;
+import org.elasticsearch.index.cache.filter.none.NoneFilterCache;
+import org.elasticsearch.index.fielddata.IndexFieldDataService;
+import org.elasticsearch.index.mapper.MapperService;
+import org.mockito.Answers;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class LuceneQueryBuilderBenchmark {
+
+    @Param({
+            "x = 10",
+            "x >= 10 and x < 100",
+            "name in ('foo', 'bar', 'baz') or x = 1",
+            "name like 'foo%'",
+            "y_array = [10, 20, 30]",
+            "abs(x) + 1 > 10"
+    })
+    public String expression;
+
+    private LuceneQueryBuilder builder;
+    private MapperService mapperService;
+    private IndexFieldDataService indexFieldDataService;
+    private IndexCache indexCache;
+    private WhereClause whereClause;
+
+    @Setup
+    public void prepare() {
+        DocTableInfo users = TestingTableInfo.builder(new TableIdent(null, "users"), null)
+                .add("name", DataTypes.STRING)
+                .add("x", DataTypes.INTEGER)
+                .add("d", DataTypes.DOUBLE)
+                .add("y_array", new ArrayType(DataTypes.LONG))
+                .build();
+        TableRelation usersTr = new TableRelation(users);
+        Map<QualifiedName, AnalyzedRelation> sources = ImmutableMap.<QualifiedName, AnalyzedRelation>of(
+                new QualifiedName("users"), usersTr);
+        SqlExpressions expressions = new SqlExpressions(sources);
+        EvaluatingNormalizer normalizer = new EvaluatingNormalizer(expressions.analysisMD(), usersTr, true);
+        builder = new LuceneQueryBuilder(expressions.getInstance(Functions.class));
+        whereClause = new WhereClause(normalizer.normalize(expressions.asSymbol(expression)));
+
+        mapperService = mock(MapperService.class);
+        indexFieldDataService = mock(IndexFieldDataService.class);
+        indexCache = mock(IndexCache.class, Answers.RETURNS_MOCKS.get());
+        when(indexCache.filter()).thenReturn(new NoneFilterCache(new Index("users"), ImmutableSettings.EMPTY));
+    }
+
+    @Benchmark
+    public Query convert() {
+        return builder.convert(whereClause, mapperService, indexFieldDataService, indexCache).query;
+    }
+}
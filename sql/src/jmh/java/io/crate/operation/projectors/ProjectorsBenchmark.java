@@ -0,0 +1,146 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors;
+
+import com.google.common.collect.Ordering;
+import io.crate.analyze.symbol.Aggregation;
+import io.crate.analyze.symbol.InputColumn;
+import io.crate.analyze.symbol.Symbol;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.core.collections.Row;
+import io.crate.core.collections.Row1;
+import io.crate.jobs.ExecutionState;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionInfo;
+import io.crate.metadata.Functions;
+import io.crate.operation.AggregationContext;
+import io.crate.operation.Input;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.aggregation.impl.AggregationImplModule;
+import io.crate.operation.aggregation.impl.MinimumAggregation;
+import io.crate.operation.aggregation.impl.SumAggregation;
+import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.collect.InputCollectExpression;
+import io.crate.operation.projectors.sorting.OrderingByPosition;
+import io.crate.testing.CollectingRowReceiver;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.common.inject.ModulesBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ProjectorsBenchmark {
+
+    private static final RamAccountingContext RAM_ACCOUNTING_CONTEXT =
+            new RamAccountingContext("dummy", new NoopCircuitBreaker(CircuitBreaker.Name.FIELDDATA));
+
+    private static final int NUM_ROWS = 1_000_000;
+
+    private Functions functions;
+    private List<Row> stringRows;
+    private List<Row> integerRows;
+
+    static class CountingRowReceiver extends CollectingRowReceiver {
+
+        int numRows = 0;
+
+        @Override
+        public boolean setNextRow(Row row) {
+            numRows++;
+            return true;
+        }
+    }
+
+    @Setup
+    public void prepare() {
+        functions = new ModulesBuilder().add(new AggregationImplModule())
+                .createInjector().getInstance(Functions.class);
+
+        String[] countries = Locale.getISOCountries();
+        stringRows = new ArrayList<>(NUM_ROWS);
+        integerRows = new ArrayList<>(NUM_ROWS);
+        for (int i = 0; i < NUM_ROWS; i++) {
+            stringRows.add(new Row1(new BytesRef(countries[i % countries.length])));
+            integerRows.add(new Row1(i % 200));
+        }
+    }
+
+    private GroupingProjector groupingProjector(String aggregationName, DataType type) {
+        InputCollectExpression keyInput = new InputCollectExpression(0);
+        List<Input<?>> keyInputs = Arrays.<Input<?>>asList(keyInput);
+        CollectExpression[] collectExpressions = new CollectExpression[] { keyInput };
+
+        FunctionIdent functionIdent = new FunctionIdent(aggregationName, Arrays.<DataType>asList(type));
+        FunctionInfo functionInfo = new FunctionInfo(functionIdent, type, FunctionInfo.Type.AGGREGATE);
+        AggregationFunction function = (AggregationFunction) functions.get(functionIdent);
+        Aggregation aggregation = Aggregation.finalAggregation(functionInfo,
+                Arrays.<Symbol>asList(new InputColumn(0)), Aggregation.Step.ITER);
+        AggregationContext aggregationContext = new AggregationContext(function, aggregation);
+        aggregationContext.addInput(keyInput);
+        return new GroupingProjector(Arrays.asList(type), keyInputs, collectExpressions,
+                new AggregationContext[] { aggregationContext }, RAM_ACCOUNTING_CONTEXT);
+    }
+
+    private static int run(Projector projector, List<Row> rows) {
+        CountingRowReceiver receiver = new CountingRowReceiver();
+        projector.downstream(receiver);
+        projector.prepare(mock(ExecutionState.class));
+        for (Row row : rows) {
+            projector.setNextRow(row);
+        }
+        projector.finish();
+        return receiver.numRows;
+    }
+
+    @Benchmark
+    public int groupByMinBytesRef() {
+        return run(groupingProjector(MinimumAggregation.NAME, DataTypes.STRING), stringRows);
+    }
+
+    @Benchmark
+    public int groupBySumInteger() {
+        return run(groupingProjector(SumAggregation.NAME, DataTypes.INTEGER), integerRows);
+    }
+
+    @Benchmark
+    public int sortingTopN() {
+        InputCollectExpression input = new InputCollectExpression(0);
+        Ordering<Object[]> ordering = OrderingByPosition.arrayOrdering(0, true, null);
+        SortingTopNProjector projector = new SortingTopNProjector(
+                Arrays.<Input<?>>asList(input), Arrays.asList(input), 1, ordering, 100, 0);
+        return run(projector, integerRows);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors.sorting;
+
+import com.google.common.collect.Ordering;
+import io.crate.core.collections.Row;
+import io.crate.core.collections.RowN;
+import org.apache.lucene.util.BytesRef;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class OrderingByPositionBenchmark {
+
+    private static final int NUM_ROWS = 100_000;
+
+    private static final Ordering<Row> SINGLE_COLUMN_ORDERING =
+            OrderingByPosition.rowOrdering(new int[]{0}, new boolean[]{false}, new Boolean[]{null});
+    private static final Ordering<Row> MULTI_COLUMN_ORDERING =
+            OrderingByPosition.rowOrdering(new int[]{1, 0}, new boolean[]{true, false}, new Boolean[]{true, null});
+    private static final Ordering<Object[]> ARRAY_ORDERING =
+            OrderingByPosition.arrayOrdering(new int[]{1, 0}, new boolean[]{true, false}, new Boolean[]{true, null});
+
+    private Row[] rows;
+    private Object[][] cells;
+
+    @Setup
+    public void prepare() {
+        Random random = new Random(42);
+        rows = new Row[NUM_ROWS];
+        cells = new Object[NUM_ROWS][];
+        for (int i = 0; i < NUM_ROWS; i++) {
+            // every 10th value is null, to include the null handling of the comparators
+            BytesRef name = i % 10 == 0 ? null : new BytesRef("name" + random.nextInt(1000));
+            cells[i] = new Object[] { random.nextLong(), name };
+            rows[i] = new RowN(cells[i]);
+        }
+    }
+
+    @Benchmark
+    public Row[] sortRowsBySingleColumn() {
+        Row[] copy = Arrays.copyOf(rows, rows.length);
+        Arrays.sort(copy, SINGLE_COLUMN_ORDERING);
+        return copy;
+    }
+
+    @Benchmark
+    public Row[] sortRowsByMultipleColumns() {
+        Row[] copy = Arrays.copyOf(rows, rows.length);
+        Arrays.sort(copy, MULTI_COLUMN_ORDERING);
+        return copy;
+    }
+
+    @Benchmark
+    public Object[][] sortArraysByMultipleColumns() {
+        Object[][] copy = Arrays.copyOf(cells, cells.length);
+        Arrays.sort(copy, ARRAY_ORDERING);
+        return copy;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.scalar;
+
+import io.crate.analyze.symbol.Literal;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.Functions;
+import io.crate.metadata.Scalar;
+import io.crate.operation.Input;
+import io.crate.operation.scalar.arithmetic.AbsFunction;
+import io.crate.operation.scalar.string.LowerFunction;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.index.*;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Version;
+import org.elasticsearch.common.inject.ModulesBuilder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluates scalar functions on the doc values of an in-memory index,
+ * the way they're evaluated for every document which is collected.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ScalarFunctionsBenchmark {
+
+    private static final int NUM_DOCS = 100_000;
+
+    private RAMDirectory directory;
+    private DirectoryReader reader;
+    private AtomicReader leafReader;
+
+    private Scalar absFunction;
+    private Scalar lowerFunction;
+    private Scalar substrFunction;
+
+    static class DocValueInput<T> implements Input<T> {
+
+        T value;
+
+        @Override
+        public T value() {
+            return value;
+        }
+    }
+
+    @Setup
+    public void prepare() throws IOException {
+        directory = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(Version.LUCENE_4_10_4, new KeywordAnalyzer()));
+        String[] countries = Locale.getISOCountries();
+        for (int i = 0; i < NUM_DOCS; i++) {
+            Document doc = new Document();
+            doc.add(new NumericDocValuesField("x", i - NUM_DOCS / 2));
+            doc.add(new SortedDocValuesField("name", new BytesRef("Country " + countries[i % countries.length])));
+            writer.addDocument(doc);
+        }
+        writer.forceMerge(1);
+        writer.close();
+        reader = DirectoryReader.open(directory);
+        leafReader = SlowCompositeReaderWrapper.wrap(reader);
+
+        Functions functions = new ModulesBuilder().add(new ScalarFunctionModule())
+                .createInjector().getInstance(Functions.class);
+        absFunction = (Scalar) functions.get(new FunctionIdent(AbsFunction.NAME,
+                Arrays.<DataType>asList(DataTypes.LONG)));
+        lowerFunction = (Scalar) functions.get(new FunctionIdent(LowerFunction.NAME,
+                Arrays.<DataType>asList(DataTypes.STRING)));
+        substrFunction = (Scalar) functions.get(new FunctionIdent(SubstrFunction.NAME,
+                Arrays.<DataType>asList(DataTypes.STRING, DataTypes.INTEGER, DataTypes.INTEGER)));
+    }
+
+    @TearDown
+    public void close() throws IOException {
+        reader.close();
+        directory.close();
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public void absOnLongColumn(Blackhole blackhole) throws IOException {
+        NumericDocValues values = leafReader.getNumericDocValues("x");
+        DocValueInput<Long> input = new DocValueInput<>();
+        for (int doc = 0; doc < leafReader.maxDoc(); doc++) {
+            input.value = values.get(doc);
+            blackhole.consume(absFunction.evaluate(input));
+        }
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public void lowerOnStringColumn(Blackhole blackhole) throws IOException {
+        SortedDocValues values = leafReader.getSortedDocValues("name");
+        DocValueInput<BytesRef> input = new DocValueInput<>();
+        for (int doc = 0; doc < leafReader.maxDoc(); doc++) {
+            input.value = values.get(doc);
+            blackhole.consume(lowerFunction.evaluate(input));
+        }
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public void substrOnStringColumn(Blackhole blackhole) throws IOException {
+        SortedDocValues values = leafReader.getSortedDocValues("name");
+        DocValueInput<BytesRef> input = new DocValueInput<>();
+        Input<Integer> from = Literal.newLiteral(9);
+        Input<Integer> length = Literal.newLiteral(2);
+        for (int doc = 0; doc < leafReader.maxDoc(); doc++) {
+            input.value = values.get(doc);
+            blackhole.consume(substrFunction.evaluate(input, from, length));
+        }
+    }
+}
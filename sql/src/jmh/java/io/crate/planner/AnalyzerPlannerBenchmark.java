@@ -0,0 +1,178 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.planner;
+
+import io.crate.analyze.Analysis;
+import io.crate.analyze.Analyzer;
+import io.crate.analyze.ParameterContext;
+import io.crate.analyze.repositories.RepositorySettingsModule;
+import io.crate.core.collections.TreeMapBuilder;
+import io.crate.executor.transport.RepositoryService;
+import io.crate.metadata.*;
+import io.crate.metadata.table.SchemaInfo;
+import io.crate.metadata.table.TableInfo;
+import io.crate.metadata.table.TestingTableInfo;
+import io.crate.operation.aggregation.impl.AggregationImplModule;
+import io.crate.operation.operator.OperatorModule;
+import io.crate.operation.predicate.PredicateModule;
+import io.crate.operation.scalar.ScalarFunctionModule;
+import io.crate.sql.parser.SqlParser;
+import io.crate.sql.tree.Statement;
+import io.crate.testing.TestingHelpers;
+import io.crate.types.DataTypes;
+import org.elasticsearch.action.admin.indices.template.put.TransportPutIndexTemplateAction;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.IndexTemplateMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.inject.Injector;
+import org.elasticsearch.common.inject.ModulesBuilder;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measures parsing, analyzing and planning of statements, which is done for every request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class AnalyzerPlannerBenchmark {
+
+    private static final String LOCAL_NODE_ID = "n1";
+
+    @Param({
+            "select name from users where id = 1",
+            "select id, name from users where name like 'foo%' order by id desc limit 100",
+            "select name, count(*), max(date) from users group by name",
+            "select count(*) from users where id > 10",
+            "update users set name = 'foo' where id > 10"
+    })
+    public String statement;
+
+    private ThreadPool threadPool;
+    private Analyzer analyzer;
+    private Planner planner;
+    private Statement parsedStatement;
+    private ParameterContext parameterContext;
+
+    @Setup
+    public void prepare() {
+        threadPool = TestingHelpers.newMockedThreadPool();
+        Injector injector = new ModulesBuilder()
+                .add(new AggregationImplModule())
+                .add(new ScalarFunctionModule())
+                .add(new PredicateModule())
+                .add(new OperatorModule())
+                .add(new RepositorySettingsModule())
+                .add(new BenchmarkModule())
+                .createInjector();
+        analyzer = injector.getInstance(Analyzer.class);
+        planner = injector.getInstance(Planner.class);
+        parsedStatement = SqlParser.createStatement(statement);
+        parameterContext = new ParameterContext(new Object[0], new Object[0][], Schemas.DEFAULT_SCHEMA_NAME);
+    }
+
+    @TearDown
+    public void shutdown() throws InterruptedException {
+        threadPool.shutdown();
+        threadPool.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public Statement parse() {
+        return SqlParser.createStatement(statement);
+    }
+
+    @Benchmark
+    public Analysis analyze() {
+        return analyzer.analyze(parsedStatement, parameterContext);
+    }
+
+    @Benchmark
+    public Plan analyzeAndPlan() {
+        return planner.plan(analyzer.analyze(parsedStatement, parameterContext), UUID.randomUUID());
+    }
+
+    private class BenchmarkModule extends MetaDataModule {
+
+        @Override
+        protected void configure() {
+            bind(RepositoryService.class).toInstance(mock(RepositoryService.class));
+            bind(TableStatsService.class).toInstance(mock(TableStatsService.class));
+            bind(ThreadPool.class).toInstance(threadPool);
+            bind(FulltextAnalyzerResolver.class).toInstance(mock(FulltextAnalyzerResolver.class));
+            bind(TransportPutIndexTemplateAction.class).toInstance(mock(TransportPutIndexTemplateAction.class));
+
+            ClusterService clusterService = mock(ClusterService.class);
+            DiscoveryNode localNode = mock(DiscoveryNode.class);
+            when(localNode.id()).thenReturn(LOCAL_NODE_ID);
+            when(clusterService.localNode()).thenReturn(localNode);
+            ClusterState clusterState = mock(ClusterState.class);
+            MetaData metaData = mock(MetaData.class);
+            when(metaData.concreteAllOpenIndices()).thenReturn(new String[0]);
+            when(metaData.templates()).thenReturn(ImmutableOpenMap.<String, IndexTemplateMetaData>of());
+            when(clusterState.metaData()).thenReturn(metaData);
+            DiscoveryNodes nodes = mock(DiscoveryNodes.class);
+            when(clusterService.state()).thenReturn(clusterState);
+            when(clusterState.nodes()).thenReturn(nodes);
+            ImmutableOpenMap<String, DiscoveryNode> dataNodes =
+                    ImmutableOpenMap.<String, DiscoveryNode>builder().fPut(LOCAL_NODE_ID, localNode).build();
+            when(nodes.dataNodes()).thenReturn(dataNodes);
+            when(nodes.localNodeId()).thenReturn(LOCAL_NODE_ID);
+            bind(ClusterService.class).toInstance(clusterService);
+            super.configure();
+        }
+
+        @Override
+        protected void bindSchemas() {
+            super.bindSchemas();
+            Routing routing = new Routing(TreeMapBuilder.<String, Map<String, List<Integer>>>newMapBuilder()
+                    .put(LOCAL_NODE_ID, TreeMapBuilder.<String, List<Integer>>newMapBuilder()
+                            .put("users", Arrays.asList(0, 1, 2, 3)).map())
+                    .map());
+            TableIdent userTableIdent = new TableIdent(Schemas.DEFAULT_SCHEMA_NAME, "users");
+            TableInfo userTableInfo = TestingTableInfo.builder(userTableIdent, routing)
+                    .add("name", DataTypes.STRING, null)
+                    .add("id", DataTypes.LONG, null)
+                    .add("date", DataTypes.TIMESTAMP, null)
+                    .addPrimaryKey("id")
+                    .clusteredBy("id")
+                    .build();
+            SchemaInfo schemaInfo = mock(SchemaInfo.class);
+            when(schemaInfo.getTableInfo(userTableIdent.name())).thenReturn(userTableInfo);
+            schemaBinder.addBinding(Schemas.DEFAULT_SCHEMA_NAME).toInstance(schemaInfo);
+        }
+    }
+}
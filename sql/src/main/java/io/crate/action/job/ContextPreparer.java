@@ -41,12 +41,15 @@ import io.crate.operation.NodeOperation;
 import io.crate.operation.PageDownstream;
 import io.crate.operation.PageDownstreamFactory;
 import io.crate.operation.Paging;
+import io.crate.operation.TempFiles;
 import io.crate.operation.collect.JobCollectContext;
 import io.crate.operation.collect.MapSideDataCollectOperation;
 import io.crate.operation.count.CountOperation;
 import io.crate.operation.fetch.FetchContext;
+import io.crate.operation.join.HashJoinOperation;
 import io.crate.operation.join.NestedLoopOperation;
 import io.crate.operation.projectors.FlatProjectorChain;
+import io.crate.operation.projectors.ListenableRowReceiver;
 import io.crate.operation.projectors.RowDownstreamFactory;
 import io.crate.operation.projectors.RowReceiver;
 import io.crate.planner.distribution.DistributionType;
@@ -58,6 +61,7 @@ import io.crate.planner.node.StreamerVisitor;
 import io.crate.planner.node.dql.CollectPhase;
 import io.crate.planner.node.dql.CountPhase;
 import io.crate.planner.node.dql.MergePhase;
+import io.crate.planner.node.dql.join.HashJoinSpec;
 import io.crate.planner.node.dql.join.NestedLoopPhase;
 import io.crate.planner.node.fetch.FetchPhase;
 import io.crate.types.DataTypes;
@@ -71,6 +75,7 @@ import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import javax.annotation.Nullable;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.Executor;
 
@@ -87,9 +92,11 @@ public class ContextPreparer {
     private final PageDownstreamFactory pageDownstreamFactory;
     private final RowDownstreamFactory rowDownstreamFactory;
     private final InnerPreparer innerPreparer;
+    private final Path tmpDirectory;
 
     @Inject
-    public ContextPreparer(MapSideDataCollectOperation collectOperation,
+    public ContextPreparer(TempFiles tempFiles,
+                           MapSideDataCollectOperation collectOperation,
                            ClusterService clusterService,
                            CrateCircuitBreakerService breakerService,
                            CountOperation countOperation,
@@ -104,6 +111,7 @@ public class ContextPreparer {
         this.pageDownstreamFactory = pageDownstreamFactory;
         this.rowDownstreamFactory = rowDownstreamFactory;
         innerPreparer = new InnerPreparer();
+        tmpDirectory = tempFiles.directory();
     }
 
     public List<ListenableFuture<Bucket>> prepareOnRemote(UUID jobId,
@@ -464,24 +472,48 @@ public class ContextPreparer {
                 flatProjectorChain = FlatProjectorChain.withReceivers(Collections.singletonList(downstreamRowReceiver));
             }
 
-            NestedLoopOperation nestedLoopOperation = new NestedLoopOperation(phase.executionPhaseId(), flatProjectorChain.firstProjector());
+            ListenableRowReceiver leftRowReceiver;
+            ListenableRowReceiver rightRowReceiver;
+            HashJoinSpec hashJoinSpec = phase.hashJoinSpec();
+            if (hashJoinSpec == null) {
+                NestedLoopOperation nestedLoopOperation = new NestedLoopOperation(
+                        phase.executionPhaseId(), flatProjectorChain.firstProjector());
+                leftRowReceiver = nestedLoopOperation.leftRowReceiver();
+                rightRowReceiver = nestedLoopOperation.rightRowReceiver();
+            } else {
+                HashJoinOperation hashJoinOperation = new HashJoinOperation(
+                        phase.executionPhaseId(),
+                        flatProjectorChain.firstProjector(),
+                        hashJoinSpec.leftTypes(),
+                        hashJoinSpec.rightTypes(),
+                        hashJoinSpec.leftKeys(),
+                        hashJoinSpec.rightKeys(),
+                        hashJoinSpec.buildLeft(),
+                        hashJoinSpec.estimatedBuildRows(),
+                        hashJoinSpec.spillable(),
+                        ramAccountingContext,
+                        tmpDirectory);
+                leftRowReceiver = hashJoinOperation.leftRowReceiver();
+                rightRowReceiver = hashJoinOperation.rightRowReceiver();
+            }
             return new NestedLoopContext(
                     phase,
                     flatProjectorChain,
-                    nestedLoopOperation,
+                    leftRowReceiver,
+                    rightRowReceiver,
                     pageDownstreamContextForNestedLoop(
                             phase.executionPhaseId(),
                             context,
                             (byte) 0,
                             phase.leftMergePhase(),
-                            nestedLoopOperation.leftRowReceiver(),
+                            leftRowReceiver,
                             ramAccountingContext),
                     pageDownstreamContextForNestedLoop(
                             phase.executionPhaseId(),
                             context,
                             (byte) 1,
                             phase.rightMergePhase(),
-                            nestedLoopOperation.rightRowReceiver(),
+                            rightRowReceiver,
                             ramAccountingContext
                     )
             );
@@ -0,0 +1,362 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.action.sql;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Predicate;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.crate.analyze.Analysis;
+import io.crate.analyze.AnalysisMetaData;
+import io.crate.analyze.EvaluatingNormalizer;
+import io.crate.analyze.ParameterContext;
+import io.crate.analyze.QuerySpec;
+import io.crate.analyze.SelectAnalyzedStatement;
+import io.crate.analyze.WhereClause;
+import io.crate.analyze.relations.DocTableRelation;
+import io.crate.analyze.relations.QueriedDocTable;
+import io.crate.analyze.relations.RelationAnalysisContext;
+import io.crate.analyze.symbol.Field;
+import io.crate.analyze.symbol.Function;
+import io.crate.analyze.symbol.Symbol;
+import io.crate.analyze.symbol.SymbolType;
+import io.crate.analyze.symbol.SymbolVisitors;
+import io.crate.analyze.where.WhereClauseAnalyzer;
+import io.crate.metadata.Path;
+import io.crate.metadata.TableIdent;
+import io.crate.sql.tree.AliasedRelation;
+import io.crate.sql.tree.CurrentTime;
+import io.crate.sql.tree.DefaultTraversalVisitor;
+import io.crate.sql.tree.Expression;
+import io.crate.sql.tree.Node;
+import io.crate.sql.tree.ParameterExpression;
+import io.crate.sql.tree.Query;
+import io.crate.sql.tree.QueryBody;
+import io.crate.sql.tree.QuerySpecification;
+import io.crate.sql.tree.Relation;
+import io.crate.sql.tree.Statement;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Cache for the analysis of select statements.
+ *
+ * Entries are keyed by the statement, the default schema, the request flags and the version of the cluster
+ * metadata the statement has been analyzed against. Only analyses which the planner doesn't modify are cached,
+ * so a cached analysis can be planned again for every execution: the plan embeds the jobId and the routing,
+ * which is allocated from the current cluster state.
+ *
+ * A statement with parameters is cached as a {@link Template} if all its parameters are part of the where clause.
+ * Everything but the where clause is shared between executions, the where clause is analyzed again with the
+ * parameters of each execution, see {@link Template#bind(ParameterContext, AnalysisMetaData)}.
+ */
+class AnalysisCache {
+
+    static final int MAX_SIZE = 1000;
+
+    private static final Predicate<Symbol> IS_NON_DETERMINISTIC = new Predicate<Symbol>() {
+        @Override
+        public boolean apply(@Nullable Symbol input) {
+            return input != null && input.symbolType() == SymbolType.FUNCTION
+                   && !((Function) input).info().isDeterministic();
+        }
+    };
+
+    private final AnalysisMetaData analysisMetaData;
+    private final Cache<Key, Template> cache = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SIZE)
+            .build();
+
+    AnalysisCache(AnalysisMetaData analysisMetaData) {
+        this.analysisMetaData = analysisMetaData;
+    }
+
+    /**
+     * @return the cached analysis bound to the given parameters or null if there is none or
+     *         if the statement has to be analyzed again for these parameters
+     */
+    @Nullable
+    public Analysis get(String stmt, ParameterContext parameterContext, long metaDataVersion) {
+        if (parameterContext.hasBulkParams()) {
+            return null;
+        }
+        Template template = cache.getIfPresent(new Key(stmt, parameterContext, metaDataVersion));
+        if (template == null) {
+            return null;
+        }
+        return template.bind(parameterContext, analysisMetaData);
+    }
+
+    /**
+     * cache the analysis if it can be planned repeatedly and only its where clause depends on parameters
+     */
+    public void put(String stmt, Statement statement, Analysis analysis, long metaDataVersion) {
+        if (isReusable(statement, analysis)) {
+            cache.put(new Key(stmt, analysis.parameterContext(), metaDataVersion), new Template(statement, analysis));
+        }
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    static boolean isReusable(Statement statement, Analysis analysis) {
+        if (analysis.parameterContext().hasBulkParams()
+            || analysis.expectsAffectedRows()
+            || !(analysis.analyzedStatement() instanceof SelectAnalyzedStatement)) {
+            return false;
+        }
+        if (!(analysis.rootRelation() instanceof QueriedDocTable)) {
+            return false;
+        }
+        QueriedDocTable table = (QueriedDocTable) analysis.rootRelation();
+        if (!isPlannedReadOnly(table)) {
+            return false;
+        }
+        QuerySpecification querySpecification = querySpecification(statement);
+        if (querySpecification == null || querySpecification.getFrom().size() != 1) {
+            return false;
+        }
+        int numWhereParameters = 0;
+        if (querySpecification.getWhere().isPresent()) {
+            numWhereParameters = countParameters(querySpecification.getWhere().get());
+        }
+        // only the where clause is analyzed again when the statement is executed with other parameters
+        if (countParameters(statement) != numWhereParameters) {
+            return false;
+        }
+        QuerySpec querySpec = table.querySpec();
+        List<Symbol> symbols = new ArrayList<>(querySpec.outputs());
+        if (querySpec.where().hasQuery()) {
+            symbols.add(querySpec.where().query());
+        }
+        if (querySpec.groupBy().isPresent()) {
+            symbols.addAll(querySpec.groupBy().get());
+        }
+        if (querySpec.having().isPresent() && querySpec.having().get().hasQuery()) {
+            symbols.add(querySpec.having().get().query());
+        }
+        if (querySpec.orderBy().isPresent()) {
+            symbols.addAll(querySpec.orderBy().get().orderBySymbols());
+        }
+        if (SymbolVisitors.any(IS_NON_DETERMINISTIC, symbols.toArray(new Symbol[symbols.size()]))) {
+            return false;
+        }
+        // CURRENT_TIMESTAMP is evaluated during the analysis
+        return !containsCurrentTime(statement);
+    }
+
+    @Nullable
+    private static QuerySpecification querySpecification(Statement statement) {
+        if (!(statement instanceof Query)) {
+            return null;
+        }
+        QueryBody queryBody = ((Query) statement).getQueryBody();
+        if (!(queryBody instanceof QuerySpecification)) {
+            return null;
+        }
+        return (QuerySpecification) queryBody;
+    }
+
+    /**
+     * The query then fetch planning pushes the query down into a new relation and clears the where clause
+     * of the analyzed one. Aggregations, primary key lookups and statements without matches are planned
+     * without modifying the analyzed relation, see {@link io.crate.planner.SelectStatementPlanner}.
+     */
+    private static boolean isPlannedReadOnly(QueriedDocTable table) {
+        QuerySpec querySpec = table.querySpec();
+        if (querySpec.hasAggregates() || querySpec.groupBy().isPresent()) {
+            return true;
+        }
+        if (querySpec.where().docKeys().isPresent()) {
+            return !querySpec.where().docKeys().get().withVersions()
+                   && !table.tableRelation().tableInfo().isAlias();
+        }
+        return querySpec.where().noMatch();
+    }
+
+    private static boolean containsCurrentTime(Statement statement) {
+        CurrentTimeVisitor visitor = new CurrentTimeVisitor();
+        visitor.process(statement, null);
+        return visitor.found;
+    }
+
+    private static int countParameters(Node node) {
+        ParameterCountVisitor visitor = new ParameterCountVisitor();
+        visitor.process(node, null);
+        return visitor.count;
+    }
+
+    private static class CurrentTimeVisitor extends DefaultTraversalVisitor<Void, Void> {
+
+        private boolean found = false;
+
+        @Override
+        protected Void visitCurrentTime(CurrentTime node, Void context) {
+            found = true;
+            return null;
+        }
+    }
+
+    private static class ParameterCountVisitor extends DefaultTraversalVisitor<Void, Void> {
+
+        private int count = 0;
+
+        @Override
+        protected Void visitQuery(Query node, Void context) {
+            processLimitAndOffset(node.getLimit(), node.getOffset());
+            return super.visitQuery(node, context);
+        }
+
+        @Override
+        protected Void visitQuerySpecification(QuerySpecification node, Void context) {
+            processLimitAndOffset(node.getLimit(), node.getOffset());
+            return super.visitQuerySpecification(node, context);
+        }
+
+        private void processLimitAndOffset(Optional<Expression> limit, Optional<Expression> offset) {
+            if (limit.isPresent()) {
+                process(limit.get(), null);
+            }
+            if (offset.isPresent()) {
+                process(offset.get(), null);
+            }
+        }
+
+        @Override
+        public Void visitParameterExpression(ParameterExpression node, Void context) {
+            count++;
+            return null;
+        }
+    }
+
+    /**
+     * The analysis of a statement without its where clause.
+     */
+    static class Template {
+
+        private final Analysis analysis;
+        private final QueriedDocTable relation;
+        private final Optional<Expression> where;
+        @Nullable
+        private final String alias;
+        private final boolean hasParameters;
+
+        Template(Statement statement, Analysis analysis) {
+            this.analysis = analysis;
+            this.relation = (QueriedDocTable) analysis.rootRelation();
+            QuerySpecification querySpecification = querySpecification(statement);
+            assert querySpecification != null : "template requires a query specification";
+            this.where = querySpecification.getWhere();
+            Relation from = querySpecification.getFrom().get(0);
+            this.alias = from instanceof AliasedRelation ? ((AliasedRelation) from).getAlias() : null;
+            this.hasParameters = countParameters(statement) > 0;
+        }
+
+        /**
+         * Analyzes the where clause with the given parameters, the same way the
+         * {@link io.crate.analyze.relations.RelationAnalyzer} does, and combines it with the cached analysis.
+         *
+         * @return the analysis or null if the where clause with these parameters is planned by modifying
+         *         the analyzed relation
+         */
+        @Nullable
+        Analysis bind(ParameterContext parameterContext, AnalysisMetaData analysisMetaData) {
+            if (!hasParameters) {
+                return analysis;
+            }
+            DocTableRelation tableRelation = relation.tableRelation();
+            RelationAnalysisContext context = new RelationAnalysisContext(parameterContext, analysisMetaData);
+            if (alias == null) {
+                TableIdent ident = tableRelation.tableInfo().ident();
+                context.addSourceRelation(ident.schema(), ident.name(), tableRelation);
+            } else {
+                context.addSourceRelation(alias, tableRelation);
+            }
+            WhereClause whereClause = WhereClause.MATCH_ALL;
+            if (where.isPresent()) {
+                Symbol query = context.expressionAnalyzer().convert(where.get(), context.expressionAnalysisContext());
+                whereClause = new WhereClause(context.expressionAnalyzer().normalize(query));
+                whereClause = whereClause.normalize(new EvaluatingNormalizer(analysisMetaData, tableRelation, true));
+            }
+            whereClause = new WhereClauseAnalyzer(analysisMetaData, tableRelation).analyze(whereClause);
+
+            QuerySpec template = relation.querySpec();
+            QuerySpec querySpec = new QuerySpec()
+                    .orderBy(template.orderBy().orNull())
+                    .having(template.having().orNull())
+                    .limit(template.limit().orNull())
+                    .offset(template.offset())
+                    .outputs(new ArrayList<>(template.outputs()))
+                    .where(whereClause)
+                    .groupBy(template.groupBy().orNull())
+                    .hasAggregates(template.hasAggregates());
+            List<Path> paths = new ArrayList<>(relation.fields().size());
+            for (Field field : relation.fields()) {
+                paths.add(field.path());
+            }
+            QueriedDocTable boundRelation = new QueriedDocTable(tableRelation, paths, querySpec);
+            if (!isPlannedReadOnly(boundRelation)) {
+                return null;
+            }
+            Analysis boundAnalysis = new Analysis(parameterContext);
+            boundAnalysis.rootRelation(boundRelation);
+            boundAnalysis.analyzedStatement(new SelectAnalyzedStatement(boundRelation));
+            return boundAnalysis;
+        }
+    }
+
+    private static class Key {
+
+        private final String stmt;
+        private final String defaultSchema;
+        private final int headerFlags;
+        private final long metaDataVersion;
+
+        Key(String stmt, ParameterContext parameterContext, long metaDataVersion) {
+            this.stmt = stmt;
+            this.defaultSchema = parameterContext.defaultSchema();
+            this.headerFlags = parameterContext.headerFlags();
+            this.metaDataVersion = metaDataVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return metaDataVersion == key.metaDataVersion
+                   && headerFlags == key.headerFlags
+                   && stmt.equals(key.stmt)
+                   && Objects.equals(defaultSchema, key.defaultSchema);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(stmt, defaultSchema, headerFlags, metaDataVersion);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.action.sql;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import io.crate.core.collections.Buckets;
+import io.crate.exceptions.CursorUnknownException;
+import io.crate.exceptions.Exceptions;
+import io.crate.executor.BytesRefUtils;
+import io.crate.executor.TaskResult;
+import io.crate.executor.transport.kill.KillJobsRequest;
+import io.crate.executor.transport.kill.KillResponse;
+import io.crate.executor.transport.kill.TransportKillJobsNodeAction;
+import io.crate.jobs.JobContextService;
+import io.crate.jobs.KeepAliveTimers;
+import io.crate.operation.PagingResultRowDownstream;
+import io.crate.operation.collect.StatsTables;
+import io.crate.types.DataType;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of the open cursors of this node.
+ *
+ * A cursor is opened if a {@link SQLRequest} with a fetch size doesn't fit into the first page.
+ * The job of the statement stays paused until the next page is fetched. A cursor which isn't accessed within
+ * {@link #KEEP_ALIVE_SETTING} is closed and its job is killed.
+ */
+@Singleton
+public class Cursors {
+
+    private static final ESLogger LOGGER = Loggers.getLogger(Cursors.class);
+
+    public static final String KEEP_ALIVE_SETTING = "jobs.cursor_keep_alive_timeout";
+    public static final TimeValue DEFAULT_KEEP_ALIVE = TimeValue.timeValueMinutes(5);
+
+    private final ConcurrentMap<String, Cursor> cursors = new ConcurrentHashMap<>();
+    private final KeepAliveTimers keepAliveTimers;
+    private final TimeValue jobKeepAlive;
+    private final TimeValue keepAlive;
+    private final TransportKillJobsNodeAction transportKillJobsNodeAction;
+    private final StatsTables statsTables;
+
+    @Inject
+    public Cursors(Settings settings,
+                   KeepAliveTimers keepAliveTimers,
+                   @JobContextService.JobKeepAlive TimeValue jobKeepAlive,
+                   TransportKillJobsNodeAction transportKillJobsNodeAction,
+                   StatsTables statsTables) {
+        this.keepAliveTimers = keepAliveTimers;
+        this.jobKeepAlive = jobKeepAlive;
+        this.keepAlive = settings.getAsTime(KEEP_ALIVE_SETTING, DEFAULT_KEEP_ALIVE);
+        if (keepAlive.millis() <= 0) {
+            throw new IllegalArgumentException(KEEP_ALIVE_SETTING + " must be positive");
+        }
+        this.transportKillJobsNodeAction = transportKillJobsNodeAction;
+        this.statsTables = statsTables;
+    }
+
+    /**
+     * register the remaining result of a job
+     *
+     * @param nodeIds the nodes which take part in the job, their job contexts are kept alive while the cursor is open
+     * @return the id of the cursor
+     */
+    public String open(UUID jobId,
+                       Collection<String> nodeIds,
+                       PagingResultRowDownstream result,
+                       String[] cols,
+                       DataType[] colTypes,
+                       boolean includeTypes) {
+        final String id = jobId.toString();
+        Cursor cursor = new Cursor(jobId, result, cols, colTypes, includeTypes);
+        if (jobKeepAlive.millis() > 0) {
+            // job contexts are only reaped if the job keep alive is enabled
+            for (String nodeId : nodeIds) {
+                cursor.timers.add(keepAliveTimers.forJobOnNode(jobId, nodeId));
+            }
+        }
+        cursor.expiryTimer = keepAliveTimers.forRunnable(new Runnable() {
+            @Override
+            public void run() {
+                LOGGER.debug("cursor [{}] expired", id);
+                close(id, "cursor expired");
+            }
+        }, keepAlive);
+        cursor.timers.add(cursor.expiryTimer);
+        cursors.put(id, cursor);
+        for (KeepAliveTimers.ResettableTimer timer : cursor.timers) {
+            timer.start();
+        }
+        return id;
+    }
+
+    /**
+     * fetch the next page of a cursor. The response contains the cursor id as long as there are rows left.
+     *
+     * Concurrent fetches of the same cursor are served one after another in the order they arrived.
+     *
+     * @throws CursorUnknownException if there is no open cursor with the given id
+     */
+    public ListenableFuture<SQLResponse> fetch(final String id) {
+        final Cursor cursor = cursors.get(id);
+        if (cursor == null) {
+            throw new CursorUnknownException(id);
+        }
+        cursor.expiryTimer.reset();
+        final SettableFuture<SQLResponse> response = SettableFuture.create();
+        ListenableFuture<SQLResponse> previous;
+        synchronized (cursor) {
+            previous = cursor.lastFetch;
+            cursor.lastFetch = response;
+        }
+        if (previous == null) {
+            fetchNextPage(id, cursor, response);
+        } else {
+            previous.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    fetchNextPage(id, cursor, response);
+                }
+            }, MoreExecutors.directExecutor());
+        }
+        return response;
+    }
+
+    private void fetchNextPage(final String id, final Cursor cursor, final SettableFuture<SQLResponse> response) {
+        if (cursors.get(id) != cursor) {
+            // closed or exhausted by the preceding fetch
+            response.setException(new CursorUnknownException(id));
+            return;
+        }
+        final long startedTime = System.currentTimeMillis();
+        ListenableFuture<SQLResponse> page = Futures.transform(cursor.result.fetch(), new Function<TaskResult, SQLResponse>() {
+            @Nullable
+            @Override
+            public SQLResponse apply(TaskResult input) {
+                Object[][] rows = Buckets.materialize(input.rows());
+                BytesRefUtils.ensureStringTypesAreStrings(cursor.colTypes, rows);
+                SQLResponse response = new SQLResponse(
+                        cursor.cols, rows, cursor.colTypes, rows.length, startedTime, cursor.includeTypes);
+                if (cursor.result.hasMore()) {
+                    response.cursor(id);
+                } else {
+                    finish(id, null);
+                }
+                return response;
+            }
+        });
+        Futures.addCallback(page, new FutureCallback<SQLResponse>() {
+            @Override
+            public void onSuccess(@Nullable SQLResponse result) {
+                response.set(result);
+            }
+
+            @Override
+            public void onFailure(@Nonnull Throwable t) {
+                finish(id, Exceptions.messageOf(t));
+                response.setException(t);
+            }
+        });
+    }
+
+    /**
+     * close a cursor before all its rows are fetched and kill its job
+     *
+     * @throws CursorUnknownException if there is no open cursor with the given id
+     */
+    public void close(String id) {
+        if (!close(id, null)) {
+            throw new CursorUnknownException(id);
+        }
+    }
+
+    public int size() {
+        return cursors.size();
+    }
+
+    private boolean close(final String id, @Nullable String errorMessage) {
+        Cursor cursor = finish(id, errorMessage);
+        if (cursor == null) {
+            return false;
+        }
+        transportKillJobsNodeAction.executeKillOnAllNodes(
+                new KillJobsRequest(Collections.singletonList(cursor.jobId)), new ActionListener<KillResponse>() {
+                    @Override
+                    public void onResponse(KillResponse killResponse) {
+                        LOGGER.trace("killed job of closed cursor [{}]", id);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable e) {
+                        LOGGER.warn("failed to kill the job of closed cursor [{}]", e, id);
+                    }
+                });
+        return true;
+    }
+
+    @Nullable
+    private Cursor finish(String id, @Nullable String errorMessage) {
+        Cursor cursor = cursors.remove(id);
+        if (cursor == null) {
+            return null;
+        }
+        for (KeepAliveTimers.ResettableTimer timer : cursor.timers) {
+            timer.cancel();
+        }
+        statsTables.jobFinished(cursor.jobId, errorMessage);
+        return cursor;
+    }
+
+    private static class Cursor {
+
+        private final UUID jobId;
+        private final PagingResultRowDownstream result;
+        private final String[] cols;
+        private final DataType[] colTypes;
+        private final boolean includeTypes;
+        private final List<KeepAliveTimers.ResettableTimer> timers = new ArrayList<>();
+        private KeepAliveTimers.ResettableTimer expiryTimer;
+        private ListenableFuture<SQLResponse> lastFetch;
+
+        Cursor(UUID jobId, PagingResultRowDownstream result, String[] cols, DataType[] colTypes, boolean includeTypes) {
+            this.jobId = jobId;
+            this.result = result;
+            this.cols = cols;
+            this.colTypes = colTypes;
+            this.includeTypes = includeTypes;
+        }
+    }
+}
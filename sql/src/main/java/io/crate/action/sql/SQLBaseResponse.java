@@ -45,6 +45,7 @@ public abstract class SQLBaseResponse extends ActionResponse implements ToXConte
         static final XContentBuilderString ROWCOUNT = new XContentBuilderString("rowcount");
         static final XContentBuilderString DURATION = new XContentBuilderString("duration");
         static final XContentBuilderString ERROR_MESSAGE = new XContentBuilderString("error_message");
+        static final XContentBuilderString CURSOR = new XContentBuilderString("cursor");
     }
 
     protected String[] cols;
@@ -83,6 +84,10 @@ public abstract class SQLBaseResponse extends ActionResponse implements ToXConte
         this.includeTypes = includeTypes;
     }
 
+    public boolean includeTypes() {
+        return includeTypes;
+    }
+
     public long duration() {
         if (duration == null) {
             if (requestStartedTime > 0) {
@@ -94,6 +99,10 @@ public abstract class SQLBaseResponse extends ActionResponse implements ToXConte
         return duration;
     }
 
+    public void duration(long duration) {
+        this.duration = duration;
+    }
+
     protected void writeSharedAttributes(XContentBuilder builder) throws IOException {
         builder.array(Fields.COLS, cols);
         if (includeTypes) {
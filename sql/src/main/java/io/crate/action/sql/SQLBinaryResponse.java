@@ -0,0 +1,124 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.action.sql;
+
+import io.crate.Streamer;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.lucene.BytesRefs;
+
+import java.io.IOException;
+
+/**
+ * Compact binary encoding of a {@link SQLResponse} which is sent over HTTP if
+ * the client requests {@link #CONTENT_TYPE} using the <code>Accept</code> header.
+ *
+ * Layout:
+ * <pre>
+ *  version (byte)
+ *  cols (string array)
+ *  column types (one per column, always written)
+ *  includeTypes (boolean)
+ *  rowCount (long)
+ *  duration (long)
+ *  cursor (optional string)
+ *  numRows (vInt)
+ *  values, column by column
+ * </pre>
+ *
+ * Values of primitive columns are written using the streamer of the column type,
+ * all other values are written as generic values.
+ */
+public class SQLBinaryResponse {
+
+    public static final String CONTENT_TYPE = "application/vnd.crate.sql-result";
+    public static final byte VERSION = 1;
+
+    private SQLBinaryResponse() {}
+
+    public static BytesReference encode(SQLResponse response) throws IOException {
+        BytesStreamOutput out = new BytesStreamOutput();
+        String[] cols = response.cols();
+        DataType[] types = columnTypes(response);
+        Object[][] rows = response.rows();
+
+        out.writeByte(VERSION);
+        out.writeStringArray(cols);
+        for (DataType type : types) {
+            DataTypes.toStream(type, out);
+        }
+        out.writeBoolean(response.includeTypes());
+        out.writeLong(response.rowCount());
+        out.writeLong(response.duration());
+        out.writeOptionalString(response.cursor());
+        out.writeVInt(rows.length);
+        for (int c = 0; c < cols.length; c++) {
+            writeColumn(out, types[c], rows, c);
+        }
+        return out.bytes();
+    }
+
+    private static void writeColumn(StreamOutput out, DataType type, Object[][] rows, int column) throws IOException {
+        if (isStreamable(type)) {
+            Streamer streamer = type.streamer();
+            boolean isString = isStringLike(type);
+            for (Object[] row : rows) {
+                Object value = row[column];
+                streamer.writeValueTo(out, isString ? BytesRefs.toBytesRef(value) : type.value(value));
+            }
+        } else {
+            for (Object[] row : rows) {
+                out.writeGenericValue(row[column]);
+            }
+        }
+    }
+
+    private static DataType[] columnTypes(SQLResponse response) {
+        DataType[] colTypes = response.columnTypes();
+        if (colTypes != null && colTypes.length == response.cols().length) {
+            return colTypes;
+        }
+        DataType[] types = new DataType[response.cols().length];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = DataTypes.UNDEFINED;
+        }
+        return types;
+    }
+
+    /**
+     * @return true if values of the given type are encoded using its streamer
+     */
+    public static boolean isStreamable(DataType type) {
+        return DataTypes.PRIMITIVE_TYPES.contains(type);
+    }
+
+    /**
+     * @return true if values of the given type are streamed as BytesRef and must be converted to strings
+     */
+    public static boolean isStringLike(DataType type) {
+        return type.equals(DataTypes.STRING) || type.equals(DataTypes.IP);
+    }
+}
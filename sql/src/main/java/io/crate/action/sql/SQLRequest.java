@@ -34,6 +34,7 @@ import java.util.Arrays;
 public class SQLRequest extends SQLBaseRequest {
 
     public final static Object[] EMPTY_ARGS = new Object[0];
+    private static final String FETCH_SIZE_HEADER_KEY = "_f";
     private Object[] args;
 
     public SQLRequest() {} // used for serialization
@@ -72,6 +73,25 @@ public class SQLRequest extends SQLBaseRequest {
         this.args = MoreObjects.firstNonNull(args, EMPTY_ARGS);
     }
 
+    /**
+     * deliver the result of the statement in pages of fetchSize rows.
+     *
+     * If the result doesn't fit into the first page the response contains a cursor which can be used
+     * to fetch the remaining rows page by page.
+     * A fetchSize of 0 (the default) returns the whole result at once.
+     */
+    public void fetchSize(int fetchSize) {
+        if (fetchSize < 0) {
+            throw new IllegalArgumentException("fetchSize must not be negative");
+        }
+        putHeader(FETCH_SIZE_HEADER_KEY, fetchSize);
+    }
+
+    public int fetchSize() {
+        Integer fetchSize = getHeader(FETCH_SIZE_HEADER_KEY);
+        return fetchSize == null ? 0 : fetchSize;
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         super.readFrom(in);
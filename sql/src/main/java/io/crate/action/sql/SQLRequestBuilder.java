@@ -55,6 +55,10 @@ public class SQLRequestBuilder extends ActionRequestBuilder<SQLRequest, SQLRespo
         request.includeTypesOnResponse(includeTypes);
     }
 
+    public void fetchSize(int fetchSize) {
+        request.fetchSize(fetchSize);
+    }
+
     public void addFlagsToRequestHeader(int flags) {
         request.putHeader(SQLBaseRequest.FLAGS_HEADER_KEY, flags);
     }
@@ -28,6 +28,7 @@ import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.crate.analyze.Analysis;
+import io.crate.analyze.AnalysisMetaData;
 import io.crate.analyze.Analyzer;
 import io.crate.analyze.ParameterContext;
 import io.crate.analyze.symbol.Field;
@@ -35,10 +36,12 @@ import io.crate.exceptions.*;
 import io.crate.executor.Executor;
 import io.crate.executor.Job;
 import io.crate.executor.TaskResult;
+import io.crate.executor.transport.ExecutionPhasesTask;
 import io.crate.executor.transport.kill.KillJobsRequest;
 import io.crate.executor.transport.kill.KillResponse;
 import io.crate.executor.transport.kill.TransportKillJobsNodeAction;
 import io.crate.metadata.PartitionName;
+import io.crate.operation.PagingResultRowDownstream;
 import io.crate.operation.collect.StatsTables;
 import io.crate.planner.Plan;
 import io.crate.planner.PlanPrinter;
@@ -74,11 +77,13 @@ import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TResponse extends SQLBaseResponse>
         extends TransportAction<TRequest, TResponse> {
@@ -100,6 +105,8 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
                     }
             );
 
+    private final AnalysisCache analysisCache;
+
     private final ClusterService clusterService;
     private final TransportKillJobsNodeAction transportKillJobsNodeAction;
     private final Analyzer analyzer;
@@ -113,6 +120,7 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
                                   String actionName,
                                   ThreadPool threadPool,
                                   Analyzer analyzer,
+                                  AnalysisMetaData analysisMetaData,
                                   Planner planner,
                                   Provider<Executor> executorProvider,
                                   StatsTables statsTables,
@@ -121,6 +129,7 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
         super(settings, actionName, threadPool, actionFilters);
         this.clusterService = clusterService;
         this.analyzer = analyzer;
+        this.analysisCache = new AnalysisCache(analysisMetaData);
         this.planner = planner;
         this.executorProvider = executorProvider;
         this.statsTables = statsTables;
@@ -129,6 +138,34 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
 
     public abstract ParameterContext getParamContext(TRequest request);
 
+    /**
+     * @return the paging of the result of the request, or null if the whole result is returned at once
+     */
+    @Nullable
+    protected ResultPaging<TResponse> resultPaging(TRequest request) {
+        return null;
+    }
+
+    /**
+     * Delivers the result of a statement page by page, see {@link #resultPaging(SQLBaseRequest)}
+     */
+    protected interface ResultPaging<TResponse> {
+
+        /**
+         * the number of rows of the first page of the result
+         */
+        int fetchSize();
+
+        /**
+         * called if the result didn't fit into the first page contained in the response.
+         * The remaining rows have to be fetched from <code>pagedResult</code>.
+         */
+        void openCursor(TResponse response,
+                        UUID jobId,
+                        Collection<String> nodeIds,
+                        PagingResultRowDownstream pagedResult);
+    }
+
 
     /**
      * create an empty SQLBaseResponse instance with no rows
@@ -201,8 +238,7 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
             return;
         }
         try {
-            Statement statement = statementCache.get(request.stmt());
-            Analysis analysis = analyzer.analyze(statement, getParamContext(request));
+            Analysis analysis = analyze(request);
             processAnalysis(analysis, request, listener, attempt, jobId);
         } catch (Throwable e) {
             logger.debug("Error executing SQLRequest", e);
@@ -211,6 +247,18 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
         }
     }
 
+    private Analysis analyze(TRequest request) throws ExecutionException {
+        ParameterContext parameterContext = getParamContext(request);
+        long metaDataVersion = clusterService.state().metaData().version();
+        Analysis analysis = analysisCache.get(request.stmt(), parameterContext, metaDataVersion);
+        if (analysis == null) {
+            Statement statement = statementCache.get(request.stmt());
+            analysis = analyzer.analyze(statement, parameterContext);
+            analysisCache.put(request.stmt(), statement, analysis, metaDataVersion);
+        }
+        return analysis;
+    }
+
     private void sendResponse(ActionListener<TResponse> listener, Throwable throwable) {
         listener.onFailure(throwable);
         statsTables.activeRequestsDec();
@@ -235,6 +283,10 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
                              final int attempt) {
         Executor executor = executorProvider.get();
         Job job = executor.newJob(plan);
+        final ResultPaging<TResponse> paging = resultPaging(request);
+        final ExecutionPhasesTask pagedTask = paging == null ? null : pagedTask(job, analysis);
+        final PagingResultRowDownstream pagedResult =
+                pagedTask == null ? null : pagedTask.pagedResult(paging.fetchSize());
 
         List<? extends ListenableFuture<TaskResult>> resultFutureList = executor.execute(job);
         Futures.addCallback(Futures.allAsList(resultFutureList), new FutureCallback<List<TaskResult>>() {
@@ -244,6 +296,12 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
                         TResponse response;
                         try {
                             response = createResponseFromResult(result, analysis, request);
+                            if (pagedResult != null && pagedResult.hasMore()) {
+                                // the job is finished in the stats once the cursor is closed
+                                paging.openCursor(response, plan.jobId(), pagedTask.participatingNodes(), pagedResult);
+                                sendResponse(listener, response);
+                                return;
+                            }
                         } catch (Throwable e) {
                             sendResponse(listener, buildSQLActionException(e));
                             return;
@@ -296,6 +354,16 @@ public abstract class TransportBaseSQLAction<TRequest extends SQLBaseRequest, TR
         );
     }
 
+    @Nullable
+    private static ExecutionPhasesTask pagedTask(Job job, Analysis analysis) {
+        if (!analysis.expectsAffectedRows()
+            && job.tasks().size() == 1
+            && job.tasks().get(0) instanceof ExecutionPhasesTask) {
+            return (ExecutionPhasesTask) job.tasks().get(0);
+        }
+        return null;
+    }
+
     private void tracePlan(Plan plan) {
         if (logger.isTraceEnabled()) {
             String json = null;
@@ -21,6 +21,7 @@
 
 package io.crate.action.sql;
 
+import io.crate.analyze.AnalysisMetaData;
 import io.crate.analyze.Analyzer;
 import io.crate.analyze.ParameterContext;
 import io.crate.core.collections.Bucket;
@@ -30,6 +31,7 @@ import io.crate.executor.BytesRefUtils;
 import io.crate.executor.Executor;
 import io.crate.executor.TaskResult;
 import io.crate.executor.transport.kill.TransportKillJobsNodeAction;
+import io.crate.operation.PagingResultRowDownstream;
 import io.crate.operation.collect.StatsTables;
 import io.crate.planner.Planner;
 import io.crate.action.ActionListeners;
@@ -47,27 +49,34 @@ import org.elasticsearch.transport.TransportChannel;
 import org.elasticsearch.transport.TransportService;
 
 import javax.annotation.Nullable;
+import java.util.Collection;
 import java.util.List;
+import java.util.UUID;
 
 
 @Singleton
 public class TransportSQLAction extends TransportBaseSQLAction<SQLRequest, SQLResponse> {
 
+    private final Cursors cursors;
+
     @Inject
     protected TransportSQLAction(
             ClusterService clusterService,
             Settings settings,
             ThreadPool threadPool,
             Analyzer analyzer,
+            AnalysisMetaData analysisMetaData,
             Planner planner,
             Provider<Executor> executor,
             TransportService transportService,
             StatsTables statsTables,
             ActionFilters actionFilters,
-            TransportKillJobsNodeAction transportKillJobsNodeAction) {
+            TransportKillJobsNodeAction transportKillJobsNodeAction,
+            Cursors cursors) {
         super(clusterService, settings, SQLAction.NAME, threadPool,
-                analyzer, planner, executor, statsTables, actionFilters,
+                analyzer, analysisMetaData, planner, executor, statsTables, actionFilters,
                 transportKillJobsNodeAction);
+        this.cursors = cursors;
         transportService.registerHandler(SQLAction.NAME, new TransportHandler());
     }
 
@@ -77,6 +86,30 @@ public class TransportSQLAction extends TransportBaseSQLAction<SQLRequest, SQLRe
                 request.args(), SQLBulkRequest.EMPTY_BULK_ARGS, request.getDefaultSchema(), request.getRequestFlags());
     }
 
+    @Nullable
+    @Override
+    protected ResultPaging<SQLResponse> resultPaging(final SQLRequest request) {
+        final int fetchSize = request.fetchSize();
+        if (fetchSize == 0) {
+            return null;
+        }
+        return new ResultPaging<SQLResponse>() {
+            @Override
+            public int fetchSize() {
+                return fetchSize;
+            }
+
+            @Override
+            public void openCursor(SQLResponse response,
+                                   UUID jobId,
+                                   Collection<String> nodeIds,
+                                   PagingResultRowDownstream pagedResult) {
+                response.cursor(cursors.open(jobId, nodeIds, pagedResult,
+                        response.cols(), response.columnTypes(), request.includeTypesOnResponse()));
+            }
+        };
+    }
+
     @Override
     public SQLResponse emptyResponse(SQLRequest request,
                                      String[] outputNames,
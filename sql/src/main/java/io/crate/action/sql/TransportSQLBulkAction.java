@@ -21,6 +21,7 @@
 
 package io.crate.action.sql;
 
+import io.crate.analyze.AnalysisMetaData;
 import io.crate.analyze.Analyzer;
 import io.crate.analyze.ParameterContext;
 import io.crate.executor.Executor;
@@ -52,6 +53,7 @@ public class TransportSQLBulkAction extends TransportBaseSQLAction<SQLBulkReques
                                   Settings settings,
                                   ThreadPool threadPool,
                                   Analyzer analyzer,
+                                  AnalysisMetaData analysisMetaData,
                                   Planner planner,
                                   Provider<Executor> executor,
                                   TransportService transportService,
@@ -59,7 +61,7 @@ public class TransportSQLBulkAction extends TransportBaseSQLAction<SQLBulkReques
                                   ActionFilters actionFilters,
                                   TransportKillJobsNodeAction transportKillJobsNodeAction) {
         super(clusterService, settings, SQLBulkAction.NAME, threadPool, analyzer,
-                planner, executor, statsTables, actionFilters, transportKillJobsNodeAction);
+                analysisMetaData, planner, executor, statsTables, actionFilters, transportKillJobsNodeAction);
         transportService.registerHandler(SQLBulkAction.NAME, new TransportHandler());
     }
 
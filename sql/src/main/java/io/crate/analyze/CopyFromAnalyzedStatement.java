@@ -24,6 +24,7 @@ package io.crate.analyze;
 
 import io.crate.analyze.symbol.Symbol;
 import io.crate.metadata.doc.DocTableInfo;
+import io.crate.operation.collect.files.FileReadingCollector;
 import org.elasticsearch.common.settings.Settings;
 
 import javax.annotation.Nullable;
@@ -33,14 +34,17 @@ public class CopyFromAnalyzedStatement extends AbstractCopyAnalyzedStatement {
     private final DocTableInfo table;
     @Nullable
     private final String partitionIdent;
+    private final FileReadingCollector.FileFormat fileFormat;
 
     public CopyFromAnalyzedStatement(DocTableInfo table,
                                      Settings settings,
                                      Symbol uri,
-                                     @Nullable String partitionIdent) {
+                                     @Nullable String partitionIdent,
+                                     FileReadingCollector.FileFormat fileFormat) {
         super(settings, uri);
         this.table = table;
         this.partitionIdent = partitionIdent;
+        this.fileFormat = fileFormat;
     }
 
     public DocTableInfo table() {
@@ -52,6 +56,10 @@ public class CopyFromAnalyzedStatement extends AbstractCopyAnalyzedStatement {
         return this.partitionIdent;
     }
 
+    public FileReadingCollector.FileFormat fileFormat() {
+        return fileFormat;
+    }
+
     @Override
     public <C, R> R accept(AnalyzedStatementVisitor<C, R> analyzedStatementVisitor, C context) {
         return analyzedStatementVisitor.visitCopyFromStatement(this, context);
@@ -42,6 +42,7 @@ import io.crate.metadata.doc.DocSysColumns;
 import io.crate.metadata.doc.DocTableInfo;
 import io.crate.metadata.settings.StringSetting;
 import io.crate.metadata.table.TableInfo;
+import io.crate.operation.collect.files.FileReadingCollector;
 import io.crate.planner.projection.WriterProjection;
 import io.crate.sql.tree.*;
 import org.elasticsearch.common.inject.Inject;
@@ -119,7 +120,9 @@ public class CopyStatementAnalyzer {
         Settings settings = processGenericProperties(node.genericProperties(), context);
         Symbol uri = context.processExpression(node.path());
 
-        return new CopyFromAnalyzedStatement(tableInfo, settings, uri, partitionIdent);
+        FileReadingCollector.FileFormat fileFormat = inputFormat(settings.get(OUTPUT_FORMAT_SETTING));
+
+        return new CopyFromAnalyzedStatement(tableInfo, settings, uri, partitionIdent, fileFormat);
     }
 
     public CopyToAnalyzedStatement convertCopyTo(CopyTo node, Analysis analysis) {
@@ -198,6 +201,18 @@ public class CopyStatementAnalyzer {
         return setting;
     }
 
+    private static FileReadingCollector.FileFormat inputFormat(@Nullable String format) {
+        if (format == null) {
+            return FileReadingCollector.FileFormat.JSON;
+        }
+        try {
+            return settingAsEnum(FileReadingCollector.FileFormat.class, format);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                    "Invalid format '%s' for COPY FROM, supported formats are: json, csv", format));
+        }
+    }
+
     private List<String> resolvePartitions(CopyTo node, Analysis analysis, DocTableRelation tableRelation) {
         List<String> partitions = ImmutableList.of();
         if (!node.table().partitionProperties().isEmpty()) {
@@ -22,6 +22,7 @@
 package io.crate.analyze.symbol;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import io.crate.metadata.FunctionIdent;
 import io.crate.metadata.FunctionInfo;
 import io.crate.types.DataType;
@@ -49,11 +50,11 @@ public class Aggregation extends Symbol {
     public static enum Step {
         ITER, PARTIAL, FINAL;
 
-        static void writeTo(Step step, StreamOutput out) throws IOException {
+        public static void writeTo(Step step, StreamOutput out) throws IOException {
             out.writeVInt(step.ordinal());
         }
 
-        static Step readFrom(StreamInput in) throws IOException {
+        public static Step readFrom(StreamInput in) throws IOException {
             return values()[in.readVInt()];
         }
     }
@@ -114,6 +115,13 @@ public class Aggregation extends Symbol {
         return toStep;
     }
 
+    /**
+     * @return an aggregation which continues this aggregation from its partial result, read from the given input
+     */
+    public Aggregation fromPartial(Symbol partialInput) {
+        return new Aggregation(functionInfo, valueType, ImmutableList.of(partialInput), Step.PARTIAL, toStep);
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         functionInfo = new FunctionInfo();
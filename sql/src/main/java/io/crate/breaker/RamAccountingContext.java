@@ -66,7 +66,8 @@ public class RamAccountingContext {
             return;
         }
         long currentFlushBuffer = flushBuffer.addAndGet(bytes);
-        if (currentFlushBuffer >= FLUSH_BUFFER_SIZE) {
+        // released bytes are flushed as well so that other users of the breaker can use them
+        if (Math.abs(currentFlushBuffer) >= FLUSH_BUFFER_SIZE) {
             flush(currentFlushBuffer);
         }
     }
@@ -134,6 +135,19 @@ public class RamAccountingContext {
         return breaker.getLimit();
     }
 
+    /**
+     * Returns the number of bytes which can still be added before the breaker trips.
+     * This includes the bytes used by all other contexts of the same breaker and the not yet flushed
+     * bytes of this context. Returns {@link Long#MAX_VALUE} if the breaker has no limit.
+     */
+    public long remainingBytes() {
+        long limit = breaker.getLimit();
+        if (limit <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return (long) (limit / breaker.getOverhead()) - breaker.getUsed() - flushBuffer.get();
+    }
+
     /**
      * Returns the context id string.
      */
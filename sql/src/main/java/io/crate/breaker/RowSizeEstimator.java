@@ -0,0 +1,72 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.breaker;
+
+import io.crate.types.DataType;
+import io.crate.types.FixedWidthType;
+import io.crate.types.IpType;
+import io.crate.types.StringType;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Estimates the heap size of materialized rows (<code>Object[]</code>) with cells of the given types.
+ *
+ * Types without a {@link SizeEstimator} (objects, arrays, ...) are estimated with a constant size.
+ */
+public class RowSizeEstimator {
+
+    private static final SizeEstimator<Object> UNKNOWN_SIZE_ESTIMATOR = new SizeEstimator<Object>() {
+        @Override
+        public long estimateSize(@Nullable Object value) {
+            return value == null ? 8 : 64;
+        }
+    };
+
+    private final SizeEstimator<Object>[] estimators;
+
+    @SuppressWarnings("unchecked")
+    public RowSizeEstimator(List<? extends DataType> types) {
+        estimators = new SizeEstimator[types.size()];
+        for (int i = 0; i < estimators.length; i++) {
+            estimators[i] = create(types.get(i));
+        }
+    }
+
+    private static SizeEstimator<Object> create(DataType type) {
+        if (type instanceof FixedWidthType || type.id() == StringType.ID || type.id() == IpType.ID) {
+            return SizeEstimatorFactory.create(type);
+        }
+        return UNKNOWN_SIZE_ESTIMATOR;
+    }
+
+    public long estimateSize(Object[] cells) {
+        // array header + one reference per cell
+        long size = RamAccountingContext.roundUp(12 + cells.length * 4);
+        for (int i = 0; i < estimators.length; i++) {
+            size += estimators[i].estimateSize(cells[i]);
+        }
+        return size;
+    }
+}
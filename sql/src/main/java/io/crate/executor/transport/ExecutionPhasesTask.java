@@ -37,6 +37,7 @@ import io.crate.operation.projectors.RowReceiver;
 import io.crate.planner.node.ExecutionPhase;
 import io.crate.planner.node.ExecutionPhases;
 import io.crate.planner.node.NodeOperationGrouper;
+import io.crate.planner.node.dql.MergePhase;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.common.collect.Tuple;
@@ -62,7 +63,9 @@ public class ExecutionPhasesTask extends JobTask {
 
 
     private final List<SettableFuture<TaskResult>> results = new ArrayList<>();
+    private final Set<String> participatingNodes = new HashSet<>();
     private boolean hasDirectResponse;
+    private PagingResultRowDownstream pagedResult;
 
     public enum OperationType {
         BULK,
@@ -90,7 +93,10 @@ public class ExecutionPhasesTask extends JobTask {
         this.operationType = operationType;
 
         for (NodeOperationTree nodeOperationTree : nodeOperationTrees) {
-            results.add(SettableFuture.<TaskResult>create());
+            int numResults = numResults(nodeOperationTree);
+            for (int i = 0; i < numResults; i++) {
+                results.add(SettableFuture.<TaskResult>create());
+            }
             for (NodeOperation nodeOperation : nodeOperationTree.nodeOperations()) {
                 if (ExecutionPhases.hasDirectResponseDownstream(nodeOperation.downstreamNodes())) {
                     hasDirectResponse = true;
@@ -100,6 +106,16 @@ public class ExecutionPhasesTask extends JobTask {
         }
     }
 
+    /**
+     * a bulk operation which executes several argument sets in one tree returns one row count per argument set
+     */
+    private int numResults(NodeOperationTree nodeOperationTree) {
+        if (operationType == OperationType.BULK && nodeOperationTree.leaf() instanceof MergePhase) {
+            return ((MergePhase) nodeOperationTree.leaf()).outputTypes().size();
+        }
+        return 1;
+    }
+
     @Override
     public void start() {
         FluentIterable<NodeOperation> nodeOperations = FluentIterable.from(nodeOperationTrees)
@@ -112,19 +128,24 @@ public class ExecutionPhasesTask extends JobTask {
                 });
 
         Map<String, Collection<NodeOperation>> operationByServer = NodeOperationGrouper.groupByServer(nodeOperations);
+        participatingNodes.add(clusterService.localNode().id());
+        participatingNodes.addAll(operationByServer.keySet());
         List<PageDownstreamContext> pageDownstreamContexts = new ArrayList<>(nodeOperationTrees.size());
         List<Tuple<ExecutionPhase, RowReceiver>> handlerPhases = new ArrayList<>(nodeOperationTrees.size());
 
         if (operationType == OperationType.BULK || nodeOperationTrees.size() > 1) {
             // bulk Operation with rowCountResult
-            for (int i = 0; i < nodeOperationTrees.size(); i++) {
-                SettableFuture<TaskResult> result = results.get(i);
-                RowCountResultRowDownstream rowDownstream = new RowCountResultRowDownstream(result);
-                handlerPhases.add(new Tuple<ExecutionPhase, RowReceiver>(nodeOperationTrees.get(i).leaf(), rowDownstream));
+            int resultIdx = 0;
+            for (NodeOperationTree nodeOperationTree : nodeOperationTrees) {
+                int numResults = numResults(nodeOperationTree);
+                RowCountResultRowDownstream rowDownstream = new RowCountResultRowDownstream(
+                        results.subList(resultIdx, resultIdx + numResults));
+                resultIdx += numResults;
+                handlerPhases.add(new Tuple<ExecutionPhase, RowReceiver>(nodeOperationTree.leaf(), rowDownstream));
             }
         } else {
             SettableFuture<TaskResult> result = Iterables.getOnlyElement(results);
-            QueryResultRowDownstream downstream = new QueryResultRowDownstream(result);
+            RowReceiver downstream = pagedResult == null ? new QueryResultRowDownstream(result) : pagedResult;
             handlerPhases.add(new Tuple<ExecutionPhase, RowReceiver>(Iterables.getOnlyElement(nodeOperationTrees).leaf(), downstream));
         }
 
@@ -224,6 +245,28 @@ public class ExecutionPhasesTask extends JobTask {
         return executionSubContexts;
     }
 
+    /**
+     * deliver the result in pages of fetchSize rows instead of a single QueryResult.
+     * Must be called before the task is started.
+     *
+     * @return the receiver to fetch the pages after the first one from or null if the result can't be paged
+     */
+    @Nullable
+    public PagingResultRowDownstream pagedResult(int fetchSize) {
+        if (operationType == OperationType.BULK || nodeOperationTrees.size() > 1) {
+            return null;
+        }
+        pagedResult = new PagingResultRowDownstream(Iterables.getOnlyElement(results), fetchSize);
+        return pagedResult;
+    }
+
+    /**
+     * the ids of the nodes which take part in the execution of the job. Available once the task is started.
+     */
+    public Set<String> participatingNodes() {
+        return participatingNodes;
+    }
+
     @Override
     public List<? extends ListenableFuture<TaskResult>> result() {
         return results;
@@ -24,6 +24,9 @@ package io.crate.executor.transport;
 import com.carrotsearch.hppc.IntArrayList;
 import com.google.common.base.MoreObjects;
 import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.io.ThrowableObjectInputStream;
+import org.elasticsearch.common.io.ThrowableObjectOutputStream;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
@@ -97,6 +100,13 @@ public class ShardResponse extends ActionResponse {
     private IntArrayList locations = new IntArrayList();
     private List<Failure> failures = new ArrayList<>();
 
+    /**
+     * The failure which stopped the execution of the items on the primary shard.
+     * The items which have been executed before are still sent to the replicas.
+     */
+    @Nullable
+    private Throwable failure;
+
     public ShardResponse() {
     }
 
@@ -118,6 +128,15 @@ public class ShardResponse extends ActionResponse {
         return failures;
     }
 
+    public void failure(@Nullable Throwable failure) {
+        this.failure = failure;
+    }
+
+    @Nullable
+    public Throwable failure() {
+        return failure;
+    }
+
 
     @Override
     public void readFrom(StreamInput in) throws IOException {
@@ -133,6 +152,14 @@ public class ShardResponse extends ActionResponse {
                 failures.add(null);
             }
         }
+        if (in.readBoolean()) {
+            ThrowableObjectInputStream tis = new ThrowableObjectInputStream(in);
+            try {
+                failure = (Throwable) tis.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("failed to read the failure of the shard operation", e);
+            }
+        }
     }
 
     @Override
@@ -148,6 +175,13 @@ public class ShardResponse extends ActionResponse {
                 failures.get(i).writeTo(out);
             }
         }
+        if (failure == null) {
+            out.writeBoolean(false);
+        } else {
+            out.writeBoolean(true);
+            ThrowableObjectOutputStream too = new ThrowableObjectOutputStream(out);
+            too.writeObject(failure);
+        }
     }
 
 }
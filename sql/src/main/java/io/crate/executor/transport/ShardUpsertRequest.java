@@ -29,10 +29,12 @@ import io.crate.analyze.symbol.Symbol;
 import io.crate.metadata.doc.DocSysColumns;
 import org.elasticsearch.action.bulk.BulkShardProcessor;
 import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.lucene.uid.Versions;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.VersionType;
 import org.elasticsearch.index.shard.ShardId;
 
 import java.io.IOException;
@@ -218,6 +220,20 @@ public class ShardUpsertRequest extends ShardRequest<ShardUpsertRequest, ShardUp
 
         private long version = Versions.MATCH_ANY;
 
+        /**
+         * The source, routing and version of the document as it was indexed on the primary shard.
+         * Set by the primary shard so that the replicas can index the same document,
+         * the version requested by the user is kept in {@link #version}.
+         */
+        @Nullable
+        private BytesReference source;
+
+        @Nullable
+        private String routing;
+
+        private long replicaVersion = Versions.MATCH_ANY;
+        private VersionType replicaVersionType = VersionType.INTERNAL;
+
         /**
          * List of symbols used on update if document exist
          */
@@ -259,6 +275,50 @@ public class ShardUpsertRequest extends ShardRequest<ShardUpsertRequest, ShardUp
             return version;
         }
 
+        /**
+         * @return the source indexed on the primary shard or null if the item wasn't indexed
+         */
+        @Nullable
+        public BytesReference source() {
+            return source;
+        }
+
+        @Nullable
+        public String routing() {
+            return routing;
+        }
+
+        public long replicaVersion() {
+            return replicaVersion;
+        }
+
+        public VersionType replicaVersionType() {
+            return replicaVersionType;
+        }
+
+        /**
+         * set the document as it was indexed on the primary shard, so that it can be indexed on the replicas
+         */
+        public void indexedOnPrimary(BytesReference source,
+                                     @Nullable String routing,
+                                     long replicaVersion,
+                                     VersionType replicaVersionType) {
+            this.source = source;
+            this.routing = routing;
+            this.replicaVersion = replicaVersion;
+            this.replicaVersionType = replicaVersionType;
+        }
+
+        /**
+         * reset the result of a previous execution on the primary shard, the item won't be sent to the replicas
+         */
+        public void resetIndexedOnPrimary() {
+            source = null;
+            routing = null;
+            replicaVersion = Versions.MATCH_ANY;
+            replicaVersionType = VersionType.INTERNAL;
+        }
+
         public int retryOnConflict() {
             return version == Versions.MATCH_ANY ? Constants.UPDATE_RETRY_ON_CONFLICT : 0;
         }
@@ -279,7 +339,11 @@ public class ShardUpsertRequest extends ShardRequest<ShardUpsertRequest, ShardUp
             if (o == null || getClass() != o.getClass()) return false;
             Item item = (Item) o;
             return version == item.version &&
+                   replicaVersion == item.replicaVersion &&
+                   replicaVersionType == item.replicaVersionType &&
                    Objects.equal(id, item.id) &&
+                   Objects.equal(source, item.source) &&
+                   Objects.equal(routing, item.routing) &&
                    Arrays.deepEquals(updateAssignments, item.updateAssignments) &&
                    Arrays.deepEquals(insertValues, item.insertValues) &&
                    Arrays.equals(insertValuesStreamer, item.insertValuesStreamer);
@@ -287,7 +351,7 @@ public class ShardUpsertRequest extends ShardRequest<ShardUpsertRequest, ShardUp
 
         @Override
         public int hashCode() {
-            return Objects.hashCode(id, version, updateAssignments, insertValues, insertValuesStreamer);
+            return Objects.hashCode(id, version, source, routing, replicaVersion, replicaVersionType, updateAssignments, insertValues, insertValuesStreamer);
         }
 
         static Item readItem(StreamInput in, @Nullable Streamer[] streamers) throws IOException {
@@ -316,6 +380,12 @@ public class ShardUpsertRequest extends ShardRequest<ShardUpsertRequest, ShardUp
             }
 
             version = Versions.readVersion(in);
+            if (in.readBoolean()) {
+                source = in.readBytesReference();
+                routing = in.readOptionalString();
+                replicaVersion = Versions.readVersion(in);
+                replicaVersionType = VersionType.fromValue(in.readByte());
+            }
         }
 
         @Override
@@ -340,6 +410,15 @@ public class ShardUpsertRequest extends ShardRequest<ShardUpsertRequest, ShardUp
             }
 
             Versions.writeVersion(version, out);
+            if (source == null) {
+                out.writeBoolean(false);
+            } else {
+                out.writeBoolean(true);
+                out.writeBytesReference(source);
+                out.writeOptionalString(routing);
+                Versions.writeVersion(replicaVersion, out);
+                out.writeByte(replicaVersionType.getValue());
+            }
         }
     }
 
@@ -29,6 +29,7 @@ import io.crate.Streamer;
 import io.crate.core.collections.Bucket;
 import io.crate.core.collections.Row;
 import io.crate.core.collections.RowN;
+import org.elasticsearch.Version;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -37,27 +38,62 @@ import org.elasticsearch.common.io.stream.Streamable;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
+/**
+ * A bucket which holds its rows in serialized form.
+ *
+ * The values are stored column by column, preceded by an index with the length of each column:
+ *
+ * <pre>
+ *     vInt numColumns | vInt columnLength * numColumns | column values * numColumns
+ * </pre>
+ *
+ * Columns are only decoded once a value of them is accessed, and a StreamBucket which is streamed again
+ * is written as it is, without decoding and encoding its values. Pages which are built from rows,
+ * like the ones of a DistributingDownstream or an IteratorPageDownstream, are always encoded from their rows;
+ * their rows pass through projectors, so there is no unchanged bucket which could be forwarded.
+ *
+ * Streams of nodes before {@link #COLUMNAR_VERSION} use the row by row layout
+ * <code>vInt length | values of row 1 | values of row 2 | ...</code>, buckets are converted between the layouts
+ * if such a node sends or receives them.
+ */
 public class StreamBucket implements Bucket, Streamable {
 
+    static final Version COLUMNAR_VERSION = Version.V_1_7_3;
+
     private Streamer<?>[] streamers;
     private int size = -1;
-    private BytesReference bytes;
+    private BytesReference[] columns;
 
-    public static class Builder {
+    /**
+     * the values in the row by row layout, only set for buckets received from nodes before {@link #COLUMNAR_VERSION}
+     * until they're converted to columns
+     */
+    private BytesReference rows;
 
+    public static class Builder {
 
         private static final int INITIAL_PAGE_SIZE = 1024;
         private int size = 0;
         private final Streamer<?>[] streamers;
-        private BytesStreamOutput out;
+        private BytesStreamOutput[] columns;
 
         public Builder(Streamer<?>[] streamers) {
             assert validStreamers(streamers) : "streamers must not be null and they shouldn't be of undefinedType";
             this.streamers = streamers;
-            out = new BytesStreamOutput(INITIAL_PAGE_SIZE);
+            columns = newColumns(streamers.length, INITIAL_PAGE_SIZE);
+        }
+
+        private static BytesStreamOutput[] newColumns(int numColumns, int expectedSize) {
+            BytesStreamOutput[] columns = new BytesStreamOutput[numColumns];
+            for (int i = 0; i < numColumns; i++) {
+                columns[i] = new BytesStreamOutput(expectedSize);
+            }
+            return columns;
         }
 
         public void add(Row row) throws IOException {
@@ -65,26 +101,49 @@ public class StreamBucket implements Bucket, Streamable {
 
             size++;
             for (int i = 0; i < row.size(); i++) {
-                streamers[i].writeValueTo(out, row.get(i));
+                streamers[i].writeValueTo(columns[i], row.get(i));
+            }
+        }
+
+        /**
+         * number of bytes the serialized values of the rows added so far occupy
+         */
+        public long sizeInBytes() {
+            long sizeInBytes = 0;
+            for (BytesStreamOutput column : columns) {
+                sizeInBytes += column.size();
             }
+            return sizeInBytes;
         }
 
         public void writeToStream(StreamOutput output) throws IOException {
-            output.writeVInt(size);
-            if (size > 0) {
-                output.writeBytesReference(out.bytes());
+            if (output.getVersion().onOrAfter(COLUMNAR_VERSION)) {
+                output.writeVInt(size);
+                if (size > 0) {
+                    writeColumns(output, columnBytes());
+                }
+            } else {
+                build().writeTo(output);
             }
         }
 
         public StreamBucket build() throws IOException {
             StreamBucket sb = new StreamBucket(streamers);
             sb.size = size;
-            sb.bytes = out.bytes();
+            sb.columns = columnBytes();
             return sb;
         }
 
+        private BytesReference[] columnBytes() {
+            BytesReference[] columnBytes = new BytesReference[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                columnBytes[i] = columns[i].bytes();
+            }
+            return columnBytes;
+        }
+
         public void reset() {
-            out = new BytesStreamOutput(size); // next bucket is probably going to have the same size
+            columns = newColumns(streamers.length, size); // next bucket is probably going to have the same size
             size = 0;
         }
     }
@@ -99,6 +158,23 @@ public class StreamBucket implements Bucket, Streamable {
         return size;
     }
 
+    /**
+     * number of bytes the serialized values of this bucket occupy
+     */
+    public long sizeInBytes() {
+        if (size < 1) {
+            return 0L;
+        }
+        if (columns == null) {
+            return rows.length();
+        }
+        long sizeInBytes = 0;
+        for (BytesReference column : columns) {
+            sizeInBytes += column.length();
+        }
+        return sizeInBytes;
+    }
+
     public void streamers(Streamer<?>[] streamers) {
         assert validStreamers(streamers) : "streamers must not be null and they shouldn't be of undefinedType";
         this.streamers = streamers;
@@ -126,12 +202,127 @@ public class StreamBucket implements Bucket, Streamable {
         }
     }
 
+    /**
+     * writes the column index and the columns in the same format as {@link StreamOutput#writeBytesReference(BytesReference)}
+     * so that they can be read as one BytesReference.
+     */
+    private static void writeColumns(StreamOutput out, BytesReference[] columns) throws IOException {
+        BytesStreamOutput index = new BytesStreamOutput(5 * (columns.length + 1));
+        index.writeVInt(columns.length);
+        int length = 0;
+        for (BytesReference column : columns) {
+            index.writeVInt(column.length());
+            length += column.length();
+        }
+        out.writeVInt(index.size() + length);
+        index.bytes().writeTo(out);
+        for (BytesReference column : columns) {
+            column.writeTo(out);
+        }
+    }
+
+    private static BytesReference[] readColumns(BytesReference bytes) throws IOException {
+        StreamInput index = bytes.streamInput();
+        int numColumns = index.readVInt();
+        int offset = vIntSize(numColumns);
+        int[] lengths = new int[numColumns];
+        for (int i = 0; i < numColumns; i++) {
+            lengths[i] = index.readVInt();
+            offset += vIntSize(lengths[i]);
+        }
+        BytesReference[] columns = new BytesReference[numColumns];
+        for (int i = 0; i < numColumns; i++) {
+            columns[i] = bytes.slice(offset, lengths[i]);
+            offset += lengths[i];
+        }
+        return columns;
+    }
+
+    private BytesReference[] rowsToColumns() throws IOException {
+        StreamInput input = rows.streamInput();
+        Object[] values = new Object[streamers.length];
+        Row row = new RowN(values);
+        Builder builder = new Builder(streamers);
+        for (int i = 0; i < size; i++) {
+            for (int c = 0; c < streamers.length; c++) {
+                values[c] = streamers[c].readValueFrom(input);
+            }
+            builder.add(row);
+        }
+        return builder.columnBytes();
+    }
+
+    private BytesReference columnsToRows() throws IOException {
+        BytesStreamOutput out = new BytesStreamOutput((int) sizeInBytes());
+        for (Row row : this) {
+            for (int c = 0; c < streamers.length; c++) {
+                streamers[c].writeValueTo(out, row.get(c));
+            }
+        }
+        return out.bytes();
+    }
+
+    private static int vIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Iterates over the rows of the bucket, the values of a column are only decoded
+     * if they're accessed using {@link Row#get(int)}.
+     */
     private class RowIterator implements Iterator<Row> {
 
-        private final StreamInput input = bytes.streamInput();
-        private int pos = 0;
+        private final StreamInput[] inputs = new StreamInput[streamers.length];
+        private final int[] numDecoded = new int[streamers.length];
         private final Object[] current = new Object[streamers.length];
-        private final Row row = new RowN(current);
+        private int pos = 0;
+
+        private final Row row = new Row() {
+            @Override
+            public int size() {
+                return current.length;
+            }
+
+            @Override
+            public Object get(int index) {
+                return value(index);
+            }
+
+            @Override
+            public Object[] materialize() {
+                Object[] values = new Object[current.length];
+                for (int c = 0; c < values.length; c++) {
+                    values[c] = value(c);
+                }
+                return values;
+            }
+
+            @Override
+            public String toString() {
+                return "StreamBucket.Row{" + Arrays.toString(materialize()) + '}';
+            }
+        };
+
+        private Object value(int column) {
+            // values of rows which have been skipped without accessing this column must still be read
+            try {
+                while (numDecoded[column] < pos) {
+                    if (inputs[column] == null) {
+                        inputs[column] = columns[column].streamInput();
+                    }
+                    current[column] = streamers[column].readValueFrom(inputs[column]);
+                    numDecoded[column]++;
+                }
+            } catch (IOException e) {
+                Throwables.propagate(e);
+            }
+            return current[column];
+        }
 
         @Override
         public boolean hasNext() {
@@ -140,12 +331,8 @@ public class StreamBucket implements Bucket, Streamable {
 
         @Override
         public Row next() {
-            for (int c = 0; c < streamers.length; c++) {
-                try {
-                    current[c] = streamers[c].readValueFrom(input);
-                } catch (IOException e) {
-                    Throwables.propagate(e);
-                }
+            if (!hasNext()) {
+                throw new NoSuchElementException("StreamBucket has no more rows");
             }
             pos++;
             return row;
@@ -163,6 +350,15 @@ public class StreamBucket implements Bucket, Streamable {
             return Collections.emptyIterator();
         }
         assert streamers != null;
+        if (columns == null) {
+            try {
+                columns = rowsToColumns();
+            } catch (IOException e) {
+                Throwables.propagate(e);
+            }
+            rows = null;
+        }
+        assert streamers.length == columns.length : "number of streamers must match the number of columns";
         return new RowIterator();
     }
 
@@ -170,7 +366,11 @@ public class StreamBucket implements Bucket, Streamable {
     public void readFrom(StreamInput in) throws IOException {
         size = in.readVInt();
         if (size > 0) {
-            bytes = in.readBytesReference();
+            if (in.getVersion().onOrAfter(COLUMNAR_VERSION)) {
+                columns = readColumns(in.readBytesReference());
+            } else {
+                rows = in.readBytesReference();
+            }
         }
     }
 
@@ -178,8 +378,19 @@ public class StreamBucket implements Bucket, Streamable {
     public void writeTo(StreamOutput out) throws IOException {
         assert size > -1;
         out.writeVInt(size);
-        if (size > 0) {
-            out.writeBytesReference(bytes);
+        if (size < 1) {
+            return;
+        }
+        if (out.getVersion().onOrAfter(COLUMNAR_VERSION)) {
+            if (columns == null) {
+                columns = rowsToColumns();
+                rows = null;
+            }
+            writeColumns(out, columns);
+        } else if (columns == null) {
+            out.writeBytesReference(rows);
+        } else {
+            out.writeBytesReference(columnsToRows());
         }
     }
 }
@@ -43,6 +43,7 @@ import io.crate.metadata.RowGranularity;
 import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.NodeOperation;
 import io.crate.operation.NodeOperationTree;
+import io.crate.operation.TempFiles;
 import io.crate.operation.projectors.ProjectionToProjectorVisitor;
 import io.crate.planner.IterablePlan;
 import io.crate.planner.NoopPlan;
@@ -90,6 +91,7 @@ public class TransportExecutor implements Executor {
 
     @Inject
     public TransportExecutor(Settings settings,
+                             TempFiles tempFiles,
                              JobContextService jobContextService,
                              ContextPreparer contextPreparer,
                              TransportActionProvider transportActionProvider,
@@ -118,6 +120,7 @@ public class TransportExecutor implements Executor {
                 clusterService,
                 threadPool,
                 settings,
+                tempFiles,
                 transportActionProvider,
                 bulkRetryCoordinatorPool,
                 globalImplementationSymbolVisitor,
@@ -28,6 +28,7 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 import io.crate.executor.transport.kill.KillableCallable;
 import io.crate.jobs.KillAllListener;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.support.ActionFilters;
 import org.elasticsearch.action.support.replication.TransportShardReplicationOperationAction;
 import org.elasticsearch.cluster.ClusterService;
@@ -65,6 +66,29 @@ public abstract class TransportShardAction<R extends ShardRequest>
         return new ShardResponse();
     }
 
+    /**
+     * A {@link ShardResponse} with a {@link ShardResponse#failure()} is turned into a failure once
+     * the items which succeeded on the primary shard have been replicated.
+     */
+    @Override
+    protected void doExecute(R request, final ActionListener<ShardResponse> listener) {
+        super.doExecute(request, new ActionListener<ShardResponse>() {
+            @Override
+            public void onResponse(ShardResponse response) {
+                if (response.failure() == null) {
+                    listener.onResponse(response);
+                } else {
+                    listener.onFailure(response.failure());
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
     @Override
     protected String executor() {
         return ThreadPool.Names.BULK;
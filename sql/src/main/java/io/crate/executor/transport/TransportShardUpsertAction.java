@@ -38,13 +38,15 @@ import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexResponse;
-import org.elasticsearch.action.index.TransportIndexAction;
 import org.elasticsearch.action.support.ActionFilters;
 import org.elasticsearch.action.support.TransportActions;
 import org.elasticsearch.client.Requests;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.action.index.MappingUpdatedAction;
 import org.elasticsearch.cluster.action.shard.ShardStateAction;
+import org.elasticsearch.cluster.metadata.MappingMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.cluster.routing.ShardIterator;
 import org.elasticsearch.cluster.routing.operation.plain.Preference;
 import org.elasticsearch.common.bytes.BytesArray;
@@ -63,8 +65,10 @@ import org.elasticsearch.index.VersionType;
 import org.elasticsearch.index.engine.DocumentAlreadyExistsException;
 import org.elasticsearch.index.engine.DocumentMissingException;
 import org.elasticsearch.index.engine.DocumentSourceMissingException;
+import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.engine.VersionConflictEngineException;
 import org.elasticsearch.index.get.GetResult;
+import org.elasticsearch.index.mapper.SourceToParse;
 import org.elasticsearch.index.mapper.internal.ParentFieldMapper;
 import org.elasticsearch.index.mapper.internal.RoutingFieldMapper;
 import org.elasticsearch.index.mapper.internal.TTLFieldMapper;
@@ -88,7 +92,7 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
     private final static SymbolToFieldExtractor<GetResult> SYMBOL_TO_FIELD_EXTRACTOR =
             new SymbolToFieldExtractor<>(new GetResultFieldExtractorFactory());
 
-    private final TransportIndexAction indexAction;
+    private final MappingUpdatedAction mappingUpdatedAction;
     private final IndicesService indicesService;
     private final Functions functions;
     private final Schemas schemas;
@@ -100,13 +104,13 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
                                       TransportService transportService,
                                       ActionFilters actionFilters,
                                       JobContextService jobContextService,
-                                      TransportIndexAction indexAction,
+                                      MappingUpdatedAction mappingUpdatedAction,
                                       IndicesService indicesService,
                                       ShardStateAction shardStateAction,
                                       Functions functions,
                                       Schemas schemas) {
         super(settings, ACTION_NAME, transportService, clusterService, indicesService, threadPool, shardStateAction, actionFilters);
-        this.indexAction = indexAction;
+        this.mappingUpdatedAction = mappingUpdatedAction;
         this.indicesService = indicesService;
         this.functions = functions;
         this.schemas = schemas;
@@ -128,11 +132,6 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
         return false;
     }
 
-    @Override
-    protected boolean ignoreReplicas() {
-        return true;
-    }
-
     @Override
     protected ShardIterator shards(ClusterState state, InternalRequest request) {
         return clusterService.operationRouting()
@@ -145,11 +144,17 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
                                                 AtomicBoolean killed) {
         ShardResponse shardResponse = new ShardResponse();
         DocTableInfo tableInfo = schemas.getWritableTable(TableIdent.fromIndexName(request.index()));
+        for (ShardUpsertRequest.Item item : request.items()) {
+            // the request may be executed on the primary again, e.g. after the primary was relocated
+            item.resetIndexedOnPrimary();
+        }
         for (int i = 0; i < request.itemIndices().size(); i++) {
             int location = request.itemIndices().get(i);
             ShardUpsertRequest.Item item = request.items().get(i);
             if (killed.get()) {
-                throw new CancellationException();
+                // stop, but still replicate the items which have been indexed
+                shardResponse.failure(new CancellationException());
+                break;
             }
             try {
                 indexItem(
@@ -161,16 +166,17 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
                         0);
                 shardResponse.add(location);
             } catch (Throwable t) {
+                logger.debug("{} failed to execute upsert for [{}]/[{}]",
+                        t, request.shardId(), request.type(), item.id());
+                shardResponse.add(location,
+                        new ShardResponse.Failure(
+                                item.id(),
+                                ExceptionsHelper.detailedMessage(t),
+                                (t instanceof VersionConflictEngineException)));
                 if (!TransportActions.isShardNotAvailableException(t) && !request.continueOnError()) {
-                    throw t;
-                } else {
-                    logger.debug("{} failed to execute upsert for [{}]/[{}]",
-                            t, request.shardId(), request.type(), item.id());
-                    shardResponse.add(location,
-                            new ShardResponse.Failure(
-                                    item.id(),
-                                    ExceptionsHelper.detailedMessage(t),
-                                    (t instanceof VersionConflictEngineException)));
+                    // stop, but still replicate the items which have been indexed
+                    shardResponse.failure(t);
+                    break;
                 }
             }
         }
@@ -178,11 +184,35 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
         return shardResponse;
     }
 
-    /**
-     * Should never be called because replicas should be ignored, see {@link #ignoreReplicas}
-     */
     @Override
     protected void processRequestItemsOnReplica(ShardId shardId, ShardUpsertRequest request, AtomicBoolean killed) {
+        IndexService indexService = indicesService.indexServiceSafe(request.index());
+        IndexShard indexShard = indexService.shardSafe(request.shardId());
+        for (ShardUpsertRequest.Item item : request.items()) {
+            if (killed.get()) {
+                throw new CancellationException();
+            }
+            if (item.source() == null) {
+                // item failed on the primary shard
+                continue;
+            }
+            try {
+                SourceToParse sourceToParse = SourceToParse.source(SourceToParse.Origin.REPLICA, item.source())
+                        .type(request.type())
+                        .id(item.id())
+                        .routing(item.routing());
+                Engine.Index index = indexShard.prepareIndex(sourceToParse, item.replicaVersion(), item.replicaVersionType(),
+                        Engine.Operation.Origin.REPLICA, request.canHaveDuplicates());
+                indexShard.index(index);
+                logger.trace("{} REPLICA: successfully indexed [{}]/[{}]", request.shardId(), request.type(), item.id());
+            } catch (Throwable e) {
+                // if its not an ignore replica failure, we need to make sure to bubble up the failure
+                // so we will fail the shard
+                if (!ignoreReplicaException(e)) {
+                    throw e;
+                }
+            }
+        }
     }
 
     protected IndexResponse indexItem(DocTableInfo tableInfo,
@@ -197,14 +227,14 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
             if (tryInsertFirst) {
                 // try insert first without fetching the document
                 try {
-                    indexRequest = new IndexRequest(prepareInsert(tableInfo, request, item), request);
+                    indexRequest = prepareInsert(tableInfo, request, item);
                 } catch (IOException e) {
                     throw ExceptionsHelper.convertToElastic(e);
                 }
             } else {
-                indexRequest = new IndexRequest(prepareUpdate(tableInfo, request, item, shardId), request);
+                indexRequest = prepareUpdate(tableInfo, request, item, shardId);
             }
-            return indexAction.execute(indexRequest).actionGet();
+            return shardIndexOperationOnPrimary(request, item, indexRequest, shardId);
         } catch (Throwable t) {
             if (t instanceof VersionConflictEngineException
                 && retryCount < item.retryOnConflict()) {
@@ -219,6 +249,60 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
         }
     }
 
+    /**
+     * Indexes the document directly on the primary shard instead of executing an index action per item.
+     * The indexed source and version are kept on the item so it can be applied on the replicas.
+     */
+    private IndexResponse shardIndexOperationOnPrimary(ShardUpsertRequest request,
+                                                       ShardUpsertRequest.Item item,
+                                                       IndexRequest indexRequest,
+                                                       ShardId shardId) {
+        IndexService indexService = indicesService.indexServiceSafe(shardId.getIndex());
+        IndexShard indexShard = indexService.shardSafe(shardId.id());
+        MetaData metaData = clusterService.state().metaData();
+        MappingMetaData mappingMd = metaData.index(shardId.getIndex()).mappingOrDefault(indexRequest.type());
+        indexRequest.process(metaData, mappingMd, false, shardId.getIndex());
+
+        SourceToParse sourceToParse = SourceToParse.source(SourceToParse.Origin.PRIMARY, indexRequest.source())
+                .type(indexRequest.type())
+                .id(indexRequest.id())
+                .routing(indexRequest.routing())
+                .parent(indexRequest.parent())
+                .timestamp(indexRequest.timestamp())
+                .ttl(indexRequest.ttl());
+
+        Engine.IndexingOperation operation;
+        boolean created;
+        if (indexRequest.opType() == IndexRequest.OpType.INDEX) {
+            Engine.Index index = indexShard.prepareIndex(sourceToParse, indexRequest.version(),
+                    indexRequest.versionType(), Engine.Operation.Origin.PRIMARY, request.canHaveDuplicates());
+            updateMappingOnMaster(indexService, index);
+            indexShard.index(index);
+            created = index.created();
+            operation = index;
+        } else {
+            Engine.Create create = indexShard.prepareCreate(sourceToParse, indexRequest.version(),
+                    indexRequest.versionType(), Engine.Operation.Origin.PRIMARY, request.canHaveDuplicates(), false);
+            updateMappingOnMaster(indexService, create);
+            indexShard.create(create);
+            created = true;
+            operation = create;
+        }
+
+        // keep the indexed document so it will go to the replicas, the requested version stays untouched
+        VersionType replicaVersionType = operation.versionType().versionTypeForReplicationAndRecovery();
+        assert replicaVersionType.validateVersionForWrites(operation.version());
+        item.indexedOnPrimary(operation.source(), operation.routing(), operation.version(), replicaVersionType);
+
+        return new IndexResponse(shardId.getIndex(), indexRequest.type(), indexRequest.id(), operation.version(), created);
+    }
+
+    private void updateMappingOnMaster(IndexService indexService, Engine.IndexingOperation operation) {
+        if (operation.parsedDoc().mappingsModified()) {
+            mappingUpdatedAction.updateMappingOnMaster(indexService.index().name(), operation.docMapper(), indexService.indexUUID());
+        }
+    }
+
     /**
      * Prepares an update request by converting it into an index request.
      * <p/>
@@ -276,15 +360,13 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
 
         updateSourceByPaths(updatedSourceAsMap, pathsToUpdate);
 
-        final IndexRequest indexRequest = Requests.indexRequest(request.index())
+        return Requests.indexRequest(request.index())
                 .type(request.type())
                 .id(item.id())
                 .routing(routing)
                 .parent(parent)
                 .source(updatedSourceAsMap, updateSourceContentType)
                 .version(getResult.getVersion());
-        indexRequest.operationThreaded(false);
-        return indexRequest;
     }
 
     private IndexRequest prepareInsert(DocTableInfo tableInfo, ShardUpsertRequest request, ShardUpsertRequest.Item item) throws IOException {
@@ -330,8 +412,7 @@ public class TransportShardUpsertAction extends TransportShardAction<ShardUpsert
                 .id(item.id())
                 .routing(request.routing())
                 .source(source)
-                .create(!request.overwriteDuplicates())
-                .operationThreaded(false);
+                .create(!request.overwriteDuplicates());
         if (logger.isTraceEnabled()) {
             logger.trace("Inserting document with id {}, source: {}", item.id(), indexRequest.source().toUtf8());
         }
@@ -38,6 +38,7 @@ public class BroadcastingBucketBuilder implements MultiBucketBuilder {
     private final int numBuckets;
     private final StreamBucket.Builder bucketBuilder;
     private volatile int size = 0;
+    private volatile long sizeInBytes = 0;
 
     public BroadcastingBucketBuilder(Streamer<?>[] streamers, int numBuckets) {
         this.numBuckets = numBuckets;
@@ -50,6 +51,7 @@ public class BroadcastingBucketBuilder implements MultiBucketBuilder {
             synchronized (this) {
                 bucketBuilder.add(row);
                 size++;
+                sizeInBytes = bucketBuilder.sizeInBytes();
             }
         } catch (IOException e) {
             throw Throwables.propagate(e);
@@ -61,6 +63,11 @@ public class BroadcastingBucketBuilder implements MultiBucketBuilder {
         return size;
     }
 
+    @Override
+    public long sizeInBytes() {
+        return sizeInBytes;
+    }
+
     @Override
     public synchronized void build(Bucket[] buckets) {
         assert buckets.length == numBuckets : "length of the provided array must match numBuckets";
@@ -75,5 +82,6 @@ public class BroadcastingBucketBuilder implements MultiBucketBuilder {
             buckets[i] = bucket;
         }
         size = 0;
+        sizeInBytes = 0;
     }
 }
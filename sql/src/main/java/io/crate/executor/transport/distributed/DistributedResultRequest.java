@@ -40,6 +40,7 @@ public class DistributedResultRequest extends TransportRequest {
     private byte inputId;
     private int executionPhaseId;
     private int bucketIdx;
+    private int pageIdx;
 
     private Streamer<?>[] streamers;
     private Bucket rows;
@@ -63,10 +64,12 @@ public class DistributedResultRequest extends TransportRequest {
                                     int executionPhaseId,
                                     byte inputId,
                                     int bucketIdx,
+                                    int pageIdx,
                                     Streamer<?>[] streamers,
                                     Bucket rows,
                                     boolean isLast) {
         this(jobId, inputId, executionPhaseId, bucketIdx, streamers);
+        this.pageIdx = pageIdx;
         this.rows = rows;
         this.isLast = isLast;
     }
@@ -97,6 +100,14 @@ public class DistributedResultRequest extends TransportRequest {
         return bucketIdx;
     }
 
+    /**
+     * sequence number of the page within all pages of the bucket,
+     * pages may arrive in a different order than they've been sent.
+     */
+    public int pageIdx() {
+        return pageIdx;
+    }
+
     public void streamers(Streamer<?>[] streamers) {
         if (rows instanceof StreamBucket) {
             assert streamers != null;
@@ -131,6 +142,7 @@ public class DistributedResultRequest extends TransportRequest {
         jobId = new UUID(in.readLong(), in.readLong());
         executionPhaseId = in.readVInt();
         bucketIdx = in.readVInt();
+        pageIdx = in.readVInt();
         isLast = in.readBoolean();
         inputId = in.readByte();
 
@@ -156,6 +168,7 @@ public class DistributedResultRequest extends TransportRequest {
         out.writeLong(jobId.getLeastSignificantBits());
         out.writeVInt(executionPhaseId);
         out.writeVInt(bucketIdx);
+        out.writeVInt(pageIdx);
         out.writeBoolean(isLast);
         out.writeByte(inputId);
 
@@ -21,6 +21,7 @@
 
 package io.crate.executor.transport.distributed;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.transport.TransportResponse;
@@ -29,7 +30,15 @@ import java.io.IOException;
 
 public class DistributedResultResponse extends TransportResponse {
 
+    public static final long UNKNOWN_CREDIT = -1L;
+
+    /**
+     * nodes before this version neither send nor expect the credit
+     */
+    static final Version CREDIT_VERSION = Version.V_1_7_3;
+
     private boolean needMore = false;
+    private long creditInBytes = UNKNOWN_CREDIT;
 
     public DistributedResultResponse() {
     }
@@ -38,19 +47,37 @@ public class DistributedResultResponse extends TransportResponse {
         this.needMore = needMore;
     }
 
+    public DistributedResultResponse(boolean needMore, long creditInBytes) {
+        this.needMore = needMore;
+        this.creditInBytes = creditInBytes;
+    }
+
     public boolean needMore() {
         return needMore;
     }
 
+    /**
+     * @return the number of bytes the receiver can still take or {@link #UNKNOWN_CREDIT}
+     */
+    public long creditInBytes() {
+        return creditInBytes;
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         super.readFrom(in);
         needMore = in.readBoolean();
+        if (in.getVersion().onOrAfter(CREDIT_VERSION)) {
+            creditInBytes = in.readLong();
+        }
     }
 
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         super.writeTo(out);
         out.writeBoolean(needMore);
+        if (out.getVersion().onOrAfter(CREDIT_VERSION)) {
+            out.writeLong(creditInBytes);
+        }
     }
 }
@@ -25,6 +25,7 @@ import com.google.common.annotations.VisibleForTesting;
 import io.crate.Streamer;
 import io.crate.core.collections.Bucket;
 import io.crate.core.collections.Row;
+import io.crate.executor.transport.StreamBucket;
 import io.crate.jobs.ExecutionState;
 import io.crate.jobs.KeepAliveTimers;
 import io.crate.operation.RowUpstream;
@@ -34,18 +35,47 @@ import io.crate.operation.projectors.RowReceiver;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
 
 import java.util.Collection;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CancellationException;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Distributes the rows it receives as pages to the downstream nodes.
+ *
+ * A page is sent once it contains {@code pageSize} rows or {@code pageSizeInBytes} bytes.
+ * Each downstream grants a credit of at most {@code creditInBytes}, so several pages can be in flight
+ * to a downstream at once and the upstream is only paused if there isn't enough credit left
+ * for the next page. Credit is given back once a downstream has consumed a page; the response
+ * also tells how many bytes the downstream can still take before its circuit breaker trips,
+ * which lowers the credit of that downstream accordingly.
+ */
 public class DistributingDownstream implements RowReceiver {
 
     private final static ESLogger LOGGER = Loggers.getLogger(DistributingDownstream.class);
 
+    /**
+     * pages are sent once they reach this size in bytes, even if they contain less than {@code pageSize} rows
+     */
+    public static final String PAGE_SIZE_BYTES_SETTING = "jobs.distribution.page_size";
+    public static final ByteSizeValue DEFAULT_PAGE_SIZE_BYTES = new ByteSizeValue(2, ByteSizeUnit.MB);
+
+    /**
+     * number of bytes which may be in flight to a single downstream node before an upstream has to wait
+     * for the downstream to consume some of them
+     */
+    public static final String CREDIT_BYTES_SETTING = "jobs.distribution.credit";
+    public static final ByteSizeValue DEFAULT_CREDIT_BYTES = new ByteSizeValue(8, ByteSizeUnit.MB);
+
+    /**
+     * upper limit of pages in flight to a downstream, for pages which hardly take up any bytes
+     */
+    private static final int MAX_PAGES_IN_FLIGHT = 8;
+
     private static final ActionListener<DistributedResultResponse> NO_OP_ACTION_LISTENER = new ActionListener<DistributedResultResponse>() {
         @Override
         public void onResponse(DistributedResultResponse distributedResultResponse) {
@@ -68,16 +98,19 @@ public class DistributingDownstream implements RowReceiver {
     private final KeepAliveTimers keepAliveTimers;
     private final Streamer<?>[] streamers;
     private final int pageSize;
+    private final long pageSizeInBytes;
+    private final long creditInBytes;
     private RowUpstream upstream;
     private final AtomicReference<Throwable> failure = new AtomicReference<>();
-    private final AtomicInteger requestsPending = new AtomicInteger(0);
     private final Downstream[] downstreams;
     private final Object lock = new Object();
-    private final AtomicInteger finishedDownstreams = new AtomicInteger(0);
     private final Bucket[] buckets;
 
     private volatile boolean gatherMoreRows = true;
     private boolean hasUpstreamFinished = false;
+    private boolean paused = false;
+    private boolean lastPageSent = false;
+    private int finishedDownstreams = 0;
 
     public DistributingDownstream(UUID jobId,
                                   MultiBucketBuilder multiBucketBuilder,
@@ -89,6 +122,23 @@ public class DistributingDownstream implements RowReceiver {
                                   KeepAliveTimers keepAliveTimers,
                                   Streamer<?>[] streamers,
                                   int pageSize) {
+        this(jobId, multiBucketBuilder, targetExecutionPhaseId, inputId, bucketIdx, downstreamNodeIds,
+                transportDistributedResultAction, keepAliveTimers, streamers, pageSize,
+                DEFAULT_PAGE_SIZE_BYTES.bytes(), DEFAULT_CREDIT_BYTES.bytes());
+    }
+
+    public DistributingDownstream(UUID jobId,
+                                  MultiBucketBuilder multiBucketBuilder,
+                                  int targetExecutionPhaseId,
+                                  byte inputId,
+                                  int bucketIdx,
+                                  Collection<String> downstreamNodeIds,
+                                  TransportDistributedResultAction transportDistributedResultAction,
+                                  KeepAliveTimers keepAliveTimers,
+                                  Streamer<?>[] streamers,
+                                  int pageSize,
+                                  long pageSizeInBytes,
+                                  long creditInBytes) {
         this.jobId = jobId;
         this.multiBucketBuilder = multiBucketBuilder;
         this.targetExecutionPhaseId = targetExecutionPhaseId;
@@ -98,6 +148,8 @@ public class DistributingDownstream implements RowReceiver {
         this.keepAliveTimers = keepAliveTimers;
         this.streamers = streamers;
         this.pageSize = pageSize;
+        this.pageSizeInBytes = pageSizeInBytes;
+        this.creditInBytes = creditInBytes;
 
         buckets = new Bucket[downstreamNodeIds.size()];
         downstreams = new Downstream[downstreamNodeIds.size()];
@@ -112,27 +164,68 @@ public class DistributingDownstream implements RowReceiver {
     public boolean setNextRow(Row row) {
         multiBucketBuilder.add(row);
         synchronized (lock) {
-            if (multiBucketBuilder.size() >= pageSize) {
-                if (requestsPending.get() > 0) {
-                    LOGGER.trace("page is full and requests are pending.. pausing upstream");
-                    pause();
-                } else {
+            if (isPageFull()) {
+                if (downstreamsHaveCredit()) {
                     LOGGER.trace("page is full. Sending request");
-                    multiBucketBuilder.build(buckets);
                     sendRequests(false);
+                } else if (!paused) {
+                    LOGGER.trace("page is full and the downstreams have no credit left.. pausing upstream");
+                    paused = true;
+                    pause();
                 }
             }
         }
         return gatherMoreRows;
     }
 
+    private boolean isPageFull() {
+        return multiBucketBuilder.size() >= pageSize || multiBucketBuilder.sizeInBytes() >= pageSizeInBytes;
+    }
+
+    /**
+     * whether all downstreams which still need rows have enough credit left for the current page.
+     * The size of the whole page is used, even if a downstream only receives a part of it.
+     */
+    private boolean downstreamsHaveCredit() {
+        long sizeInBytes = multiBucketBuilder.sizeInBytes();
+        for (Downstream downstream : downstreams) {
+            if (!downstream.hasCredit(sizeInBytes)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean hasRequestsInFlight() {
+        for (Downstream downstream : downstreams) {
+            if (downstream.pagesInFlight > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void sendRequests(boolean isLast) {
-        requestsPending.addAndGet(downstreams.length);
+        multiBucketBuilder.build(buckets);
         for (int i = 0; i < buckets.length; i++) {
             downstreams[i].sendRequest(buckets[i], isLast);
         }
     }
 
+    /**
+     * the last page is only sent once all previous pages have been consumed,
+     * so that it isn't sent to downstreams which finished in the meantime.
+     */
+    private void sendLastRequestsIfPossible() {
+        if (!lastPageSent && !hasRequestsInFlight()) {
+            LOGGER.trace("all upstreams finished. Sending last requests");
+            lastPageSent = true;
+            sendRequests(true);
+        } else if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("all upstreams finished. Doing nothing since there are pending requests");
+        }
+    }
+
     private void pause() {
         upstream.pause();
     }
@@ -163,17 +256,14 @@ public class DistributingDownstream implements RowReceiver {
     }
 
     private void upstreamFinished() {
-        hasUpstreamFinished = true;
         final Throwable throwable = failure.get();
-        if (throwable == null) {
-            if (requestsPending.get() == 0) {
-                LOGGER.trace("all upstreams finished. Sending last requests");
-                multiBucketBuilder.build(buckets);
-                sendRequests(true);
-            } else if (LOGGER.isTraceEnabled()) {
-                LOGGER.trace("all upstreams finished. Doing nothing since there are pending requests");
+        synchronized (lock) {
+            hasUpstreamFinished = true;
+            if (throwable == null) {
+                sendLastRequestsIfPossible();
             }
-        } else if (!(throwable instanceof CancellationException)) { // no need to forward kill - downstream will receive it too
+        }
+        if (throwable != null && !(throwable instanceof CancellationException)) { // no need to forward kill - downstream will receive it too
             LOGGER.trace("all upstreams finished; forwarding failure");
             for (Downstream downstream : downstreams) {
                 downstream.forwardFailure(throwable);
@@ -198,12 +288,22 @@ public class DistributingDownstream implements RowReceiver {
         upstream = rowUpstream;
     }
 
-    private class Downstream implements ActionListener<DistributedResultResponse>, AutoCloseable {
+    private static long sizeInBytes(Bucket bucket) {
+        if (bucket instanceof StreamBucket) {
+            return ((StreamBucket) bucket).sizeInBytes();
+        }
+        return 0L;
+    }
+
+    private class Downstream implements AutoCloseable {
 
         private final String node;
         private final KeepAliveTimers.ResettableTimer keepAliveTimer;
         private boolean finished = false;
-
+        private int pageIdx = 0;
+        private int pagesInFlight = 0;
+        private long bytesInFlight = 0;
+        private long credit = creditInBytes;
 
         public Downstream(String node) {
             this.node = node;
@@ -214,6 +314,15 @@ public class DistributingDownstream implements RowReceiver {
             keepAliveTimer.start();
         }
 
+        /**
+         * a page can always be sent if none is in flight, regardless of its size
+         */
+        private boolean hasCredit(long sizeInBytes) {
+            return finished
+                   || pagesInFlight == 0
+                   || (pagesInFlight < MAX_PAGES_IN_FLIGHT && bytesInFlight + sizeInBytes <= credit);
+        }
+
         public void forwardFailure(Throwable throwable) {
             LOGGER.trace("Sending failure to {}", node);
             keepAliveTimer.cancel();
@@ -226,60 +335,66 @@ public class DistributingDownstream implements RowReceiver {
 
         public void sendRequest(Bucket bucket, boolean isLast) {
             if (finished) {
-                requestsPending.decrementAndGet();
                 return;
             }
+            final long sizeInBytes = sizeInBytes(bucket);
+            pagesInFlight++;
+            bytesInFlight += sizeInBytes;
             keepAliveTimer.reset();
             LOGGER.trace("Sending request to {}", node);
             transportDistributedResultAction.pushResult(
                     node,
-                    new DistributedResultRequest(jobId, targetExecutionPhaseId, inputId, bucketIdx, streamers, bucket, isLast),
-                    this
+                    new DistributedResultRequest(jobId, targetExecutionPhaseId, inputId, bucketIdx, pageIdx++, streamers, bucket, isLast),
+                    new ActionListener<DistributedResultResponse>() {
+                        @Override
+                        public void onResponse(DistributedResultResponse distributedResultResponse) {
+                            Downstream.this.onResponse(sizeInBytes, distributedResultResponse.needMore(),
+                                    distributedResultResponse.creditInBytes());
+                        }
+
+                        @Override
+                        public void onFailure(Throwable e) {
+                            gatherMoreRows = false;
+                            Downstream.this.onResponse(sizeInBytes, false, DistributedResultResponse.UNKNOWN_CREDIT);
+                        }
+                    }
             );
         }
 
-        @Override
-        public void onResponse(DistributedResultResponse distributedResultResponse) {
-            onResponse(distributedResultResponse.needMore());
-        }
-
-        @Override
-        public void onFailure(Throwable e) {
-            gatherMoreRows = false;
-            onResponse(false);
-        }
-
-        private void onResponse(boolean needMore) {
-            finished = !needMore;
-            final int numPending = requestsPending.decrementAndGet();
-
-            LOGGER.trace("Received response from downstream: {}; requires more: {}, other pending requests: {}, finished: {}",
-                    node, needMore, numPending, hasUpstreamFinished);
-            if (numPending > 0) {
-                return;
-            }
-            if (hasUpstreamFinished) {
-                // upstreams (e.g. collector(s)) finished (after the requests have been sent)
-                // send request with isLast=true with remaining buckets to downstream nodes
-                multiBucketBuilder.build(buckets);
-                sendRequests(true); // only sends to nodes that aren't finished already
-            } else if (needMore) {
-                boolean resume = false;
-                synchronized (lock) {
-                    if (multiBucketBuilder.size() >= pageSize) {
-                        multiBucketBuilder.build(buckets);
-                        sendRequests(false);
-                    } else {
-                        resume = true;
-                    }
+        private void onResponse(long sizeInBytes, boolean needMore, long grantedCredit) {
+            boolean resume = false;
+            synchronized (lock) {
+                pagesInFlight--;
+                bytesInFlight -= sizeInBytes;
+                if (grantedCredit != DistributedResultResponse.UNKNOWN_CREDIT) {
+                    credit = Math.min(creditInBytes, grantedCredit);
                 }
-                if (resume) {
-                    resume();
+                if (!needMore && !finished) {
+                    finished = true;
+                    finishedDownstreams++;
                 }
-            } else {
-                if (finishedDownstreams.incrementAndGet() == downstreams.length) {
+                LOGGER.trace("Received response from downstream: {}; requires more: {}, pages in flight: {}, finished: {}",
+                        node, needMore, pagesInFlight, hasUpstreamFinished);
+
+                if (hasUpstreamFinished) {
+                    // upstreams (e.g. collector(s)) finished (after the requests have been sent)
+                    // send request with isLast=true with remaining buckets to downstream nodes
+                    sendLastRequestsIfPossible(); // only sends to nodes that aren't finished already
+                } else if (finishedDownstreams == downstreams.length) {
                     gatherMoreRows = false;
+                    resume = paused;
+                    paused = false;
+                } else if (paused) {
+                    if (isPageFull() && downstreamsHaveCredit()) {
+                        sendRequests(false);
+                    }
+                    if (!isPageFull()) {
+                        paused = false;
+                        resume = true;
+                    }
                 }
+            }
+            if (resume) {
                 resume();
             }
         }
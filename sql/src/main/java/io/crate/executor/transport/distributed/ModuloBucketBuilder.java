@@ -44,6 +44,7 @@ public class ModuloBucketBuilder implements MultiBucketBuilder {
     private final List<StreamBucket.Builder> bucketBuilders;
     private final int distributedByColumnIdx;
     private volatile int size = 0;
+    private volatile long sizeInBytes = 0;
 
     public ModuloBucketBuilder(Streamer<?>[] streamers, int numBuckets, int distributedByColumnIdx) {
         this.numBuckets = numBuckets;
@@ -59,8 +60,10 @@ public class ModuloBucketBuilder implements MultiBucketBuilder {
         final StreamBucket.Builder builder = bucketBuilders.get(getBucket(row));
         try {
             synchronized (this) {
+                long bucketSizeInBytes = builder.sizeInBytes();
                 builder.add(row);
                 size++;
+                sizeInBytes += builder.sizeInBytes() - bucketSizeInBytes;
             }
         } catch (IOException e) {
             throw Throwables.propagate(e);
@@ -72,6 +75,11 @@ public class ModuloBucketBuilder implements MultiBucketBuilder {
         return size;
     }
 
+    @Override
+    public long sizeInBytes() {
+        return sizeInBytes;
+    }
+
     @Override
     public synchronized void build(Bucket[] buckets) {
         assert buckets.length == numBuckets : "length of the provided array must match numBuckets";
@@ -85,6 +93,7 @@ public class ModuloBucketBuilder implements MultiBucketBuilder {
             }
         }
         size = 0;
+        sizeInBytes = 0;
     }
 
     /**
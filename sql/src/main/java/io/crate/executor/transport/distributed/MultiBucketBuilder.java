@@ -40,6 +40,12 @@ public interface MultiBucketBuilder {
      */
     int size();
 
+    /**
+     * current number of bytes the serialized rows within the page occupy.
+     * Will be reset to 0 on each build call.
+     */
+    long sizeInBytes();
+
     /**
      * Builds the buckets and writes them into the provided array.
      * The provided array must have size N where N is the number of buckets the page contains.
@@ -135,9 +135,10 @@ public class TransportDistributedResultAction extends AbstractComponent implemen
             request.streamers(pageDownstreamContext.streamer());
             pageDownstreamContext.setBucket(
                     request.bucketIdx(),
+                    request.pageIdx(),
                     request.rows(),
                     request.isLast(),
-                    new SendResponsePageResultListener(listener, request));
+                    new SendResponsePageResultListener(listener, request, pageDownstreamContext));
         } else {
             pageDownstreamContext.failure(request.bucketIdx(), throwable);
             listener.onResponse(new DistributedResultResponse(false));
@@ -163,16 +164,20 @@ public class TransportDistributedResultAction extends AbstractComponent implemen
     private class SendResponsePageResultListener implements PageResultListener {
         private final ActionListener<DistributedResultResponse> listener;
         private final DistributedResultRequest request;
+        private final PageDownstreamContext pageDownstreamContext;
 
-        public SendResponsePageResultListener(ActionListener<DistributedResultResponse> listener, DistributedResultRequest request) {
+        public SendResponsePageResultListener(ActionListener<DistributedResultResponse> listener,
+                                              DistributedResultRequest request,
+                                              PageDownstreamContext pageDownstreamContext) {
             this.listener = listener;
             this.request = request;
+            this.pageDownstreamContext = pageDownstreamContext;
         }
 
         @Override
         public void needMore(boolean needMore) {
             logger.trace("sending needMore response, need more? {}", needMore);
-            listener.onResponse(new DistributedResultResponse(needMore));
+            listener.onResponse(new DistributedResultResponse(needMore, pageDownstreamContext.creditInBytes()));
         }
 
         @Override
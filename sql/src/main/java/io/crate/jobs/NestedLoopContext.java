@@ -23,7 +23,6 @@ package io.crate.jobs;
 
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
-import io.crate.operation.join.NestedLoopOperation;
 import io.crate.operation.projectors.FlatProjectorChain;
 import io.crate.operation.projectors.ListenableRowReceiver;
 import io.crate.planner.node.dql.join.NestedLoopPhase;
@@ -51,7 +50,8 @@ public class NestedLoopContext extends AbstractExecutionSubContext implements Do
 
     public NestedLoopContext(NestedLoopPhase phase,
                              FlatProjectorChain flatProjectorChain,
-                             NestedLoopOperation nestedLoopOperation,
+                             ListenableRowReceiver leftRowReceiver,
+                             ListenableRowReceiver rightRowReceiver,
                              @Nullable PageDownstreamContext leftPageDownstreamContext,
                              @Nullable PageDownstreamContext rightPageDownstreamContext) {
         super(phase.executionPhaseId());
@@ -61,8 +61,8 @@ public class NestedLoopContext extends AbstractExecutionSubContext implements Do
         this.leftPageDownstreamContext = leftPageDownstreamContext;
         this.rightPageDownstreamContext = rightPageDownstreamContext;
 
-        leftRowReceiver = nestedLoopOperation.leftRowReceiver();
-        rightRowReceiver = nestedLoopOperation.rightRowReceiver();
+        this.leftRowReceiver = leftRowReceiver;
+        this.rightRowReceiver = rightRowReceiver;
 
         if (leftPageDownstreamContext == null) {
             Futures.addCallback(leftRowReceiver.finishFuture(), new RemoveContextCallback());
@@ -26,10 +26,12 @@ import io.crate.Streamer;
 import io.crate.breaker.RamAccountingContext;
 import io.crate.core.collections.Bucket;
 import io.crate.core.collections.BucketPage;
+import io.crate.executor.transport.StreamBucket;
 import io.crate.operation.PageConsumeListener;
 import io.crate.operation.PageDownstream;
 import io.crate.operation.PageResultListener;
 import io.crate.operation.projectors.FlatProjectorChain;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 
@@ -61,10 +63,14 @@ public class PageDownstreamContext extends AbstractExecutionSubContext implement
     private final Streamer<?>[] streamer;
     private final RamAccountingContext ramAccountingContext;
     private final int numBuckets;
-    private final ArrayList<SettableFuture<Bucket>> bucketFutures;
+    private ArrayList<SettableFuture<Bucket>> bucketFutures;
     private final BitSet allFuturesSet;
     private final BitSet exhausted;
     private final ArrayList<PageResultListener> listeners = new ArrayList<>();
+    private final int[] nextPageIdx;
+    private final ArrayList<PendingBucket> pendingBuckets = new ArrayList<>();
+    private boolean consumingPage = false;
+    private ResultListenerBridgingConsumeListener pageConsumeListener;
 
     private volatile SubContextMode subContextMode = SubContextMode.PASSIVE;
     private final SubContextModeResetListener resetListener = new SubContextModeResetListener();
@@ -86,14 +92,15 @@ public class PageDownstreamContext extends AbstractExecutionSubContext implement
         this.ramAccountingContext = ramAccountingContext;
         this.numBuckets = numBuckets;
         this.projectorChain = projectorChain;
-        bucketFutures = new ArrayList<>(numBuckets);
         allFuturesSet = new BitSet(numBuckets);
         exhausted = new BitSet(numBuckets);
+        nextPageIdx = new int[numBuckets];
         initBucketFutures();
     }
 
     private void initBucketFutures() {
-        bucketFutures.clear();
+        // a new list, the previous one is still referenced by the page which is consumed
+        bucketFutures = new ArrayList<>(numBuckets);
         for (int i = 0; i < numBuckets; i++) {
             bucketFutures.add(SettableFuture.<Bucket>create());
         }
@@ -112,33 +119,68 @@ public class PageDownstreamContext extends AbstractExecutionSubContext implement
     }
 
     public void setBucket(int bucketIdx, Bucket rows, boolean isLast, PageResultListener pageResultListener) {
-        subContextMode = SubContextMode.ACTIVE;
-        synchronized (listeners) {
-            listeners.add(pageResultListener);
-            listeners.add(resetListener);
-        }
         synchronized (lock) {
-            LOGGER.trace("setBucket: {}", bucketIdx);
             if (allFuturesSet.get(bucketIdx)) {
                 pageDownstream.fail(new IllegalStateException("May not set the same bucket of a page more than once"));
                 return;
             }
+            setBucket(bucketIdx, nextPageIdx[bucketIdx], rows, isLast, pageResultListener);
+        }
+    }
 
-            if (pageEmpty()) {
-                LOGGER.trace("calling nextPage");
-                pageDownstream.nextPage(new BucketPage(bucketFutures), new ResultListenerBridgingConsumeListener());
+    /**
+     * Set the bucket of an upstream for the page with the given pageIdx.
+     *
+     * Upstreams may send several pages without waiting for the previous ones to be consumed,
+     * so pages which arrive before their predecessors, or before the current page has been consumed,
+     * are kept until it's their turn.
+     * The serialized size of a received bucket is accounted until the page it belongs to has been consumed.
+     */
+    public void setBucket(int bucketIdx, int pageIdx, Bucket rows, boolean isLast, PageResultListener pageResultListener) {
+        synchronized (lock) {
+            long bytes = sizeInBytes(rows);
+            try {
+                ramAccountingContext.addBytes(bytes);
+            } catch (CircuitBreakingException e) {
+                // the bytes are accounted anyway and released once the context is closed
+                LOGGER.trace("setBucket: {} page {} tripped the circuit breaker", bucketIdx, pageIdx);
+                pageResultListener.needMore(false);
+                addBucketOrApply(new PendingBucket(bucketIdx, -1, null, true, null, e, 0L));
+                return;
             }
-            setExhaustedUpstreams();
+            addBucketOrApply(new PendingBucket(bucketIdx, pageIdx, rows, isLast, pageResultListener, null, bytes));
+        }
+    }
 
-            if (isLast) {
-                exhausted.set(bucketIdx);
-            }
-            bucketFutures.get(bucketIdx).set(rows);
-            allFuturesSet.set(bucketIdx);
+    private void addBucketOrApply(PendingBucket pendingBucket) {
+        if (canApply(pendingBucket)) {
+            apply(pendingBucket);
+        } else {
+            LOGGER.trace("setBucket: {} page {} is kept until the current page is consumed",
+                    pendingBucket.bucketIdx, pendingBucket.pageIdx);
+            pendingBuckets.add(pendingBucket);
+        }
+    }
 
-            clearPageIfFull();
+    private static long sizeInBytes(Bucket rows) {
+        // buckets of local upstreams are accounted by the upstream which created them
+        if (rows instanceof StreamBucket) {
+            return ((StreamBucket) rows).sizeInBytes();
         }
+        return 0L;
+    }
 
+    /**
+     * @return the number of bytes upstreams may still send before the circuit breaker of this context trips
+     */
+    public long creditInBytes() {
+        return Math.max(0L, ramAccountingContext.remainingBytes());
+    }
+
+    private void releaseBytes(long bytes) {
+        if (bytes > 0) {
+            ramAccountingContext.addBytes(-bytes);
+        }
     }
 
     public synchronized void failure(int bucketIdx, Throwable throwable) {
@@ -146,21 +188,66 @@ public class PageDownstreamContext extends AbstractExecutionSubContext implement
         // upstreams still require
         synchronized (lock) {
             LOGGER.trace("failure: bucket: {} {}", bucketIdx, throwable);
-            if (allFuturesSet.get(bucketIdx)) {
-                pageDownstream.fail(new IllegalStateException("May not set the same bucket %d of a page more than once"));
-                return;
-            }
-            if (pageEmpty()) {
-                LOGGER.trace("calling nextPage");
-                pageDownstream.nextPage(new BucketPage(bucketFutures), new ResultListenerBridgingConsumeListener());
+            addBucketOrApply(new PendingBucket(bucketIdx, -1, null, true, null, throwable, 0L));
+        }
+    }
+
+    private boolean canApply(PendingBucket pendingBucket) {
+        return !consumingPage
+               && !allFuturesSet.get(pendingBucket.bucketIdx)
+               && (pendingBucket.pageIdx < 0 || pendingBucket.pageIdx == nextPageIdx[pendingBucket.bucketIdx]);
+    }
+
+    private void apply(PendingBucket pendingBucket) {
+        int bucketIdx = pendingBucket.bucketIdx;
+        subContextMode = SubContextMode.ACTIVE;
+        if (pendingBucket.listener != null) {
+            synchronized (listeners) {
+                listeners.add(pendingBucket.listener);
+                listeners.add(resetListener);
             }
-            setExhaustedUpstreams();
+        }
+        LOGGER.trace("setBucket: {}", bucketIdx);
+        if (pageEmpty()) {
+            LOGGER.trace("calling nextPage");
+            pageConsumeListener = new ResultListenerBridgingConsumeListener();
+            pageDownstream.nextPage(new BucketPage(bucketFutures), pageConsumeListener);
+        }
+        pageConsumeListener.bytes += pendingBucket.bytes;
+        setExhaustedUpstreams();
 
-            LOGGER.trace("failure: {}", bucketIdx);
+        if (pendingBucket.isLast) {
             exhausted.set(bucketIdx);
-            bucketFutures.get(bucketIdx).setException(throwable);
-            allFuturesSet.set(bucketIdx);
-            clearPageIfFull();
+        }
+        nextPageIdx[bucketIdx]++;
+        // the page must be cleared before the last future is set,
+        // setting it might trigger the consumption of the page
+        SettableFuture<Bucket> bucketFuture = bucketFutures.get(bucketIdx);
+        allFuturesSet.set(bucketIdx);
+        clearPageIfFull();
+        if (pendingBucket.throwable == null) {
+            bucketFuture.set(pendingBucket.rows);
+        } else {
+            bucketFuture.setException(pendingBucket.throwable);
+        }
+    }
+
+    /**
+     * applies the buckets which have been kept for the next page(s), in the order they arrived
+     */
+    private void applyPendingBuckets() {
+        boolean applied = true;
+        while (applied && !consumingPage) {
+            applied = false;
+            for (int i = 0; i < pendingBuckets.size(); i++) {
+                PendingBucket pendingBucket = pendingBuckets.get(i);
+                if (canApply(pendingBucket)) {
+                    pendingBuckets.remove(i);
+                    apply(pendingBucket);
+                    applied = true;
+                    break;
+                }
+            }
         }
     }
 
@@ -168,6 +255,7 @@ public class PageDownstreamContext extends AbstractExecutionSubContext implement
         if (allFuturesSet.cardinality() == numBuckets) {
             allFuturesSet.clear();
             initBucketFutures();
+            consumingPage = true;
         }
     }
 
@@ -231,8 +319,17 @@ public class PageDownstreamContext extends AbstractExecutionSubContext implement
 
     private class ResultListenerBridgingConsumeListener implements PageConsumeListener {
 
+        /**
+         * bytes of the buckets of this page, guarded by lock
+         */
+        private long bytes = 0L;
+
         @Override
         public void needMore() {
+            synchronized (lock) {
+                releaseBytes(bytes);
+                bytes = 0L;
+            }
             boolean allExhausted = allExhausted();
             LOGGER.trace("allExhausted: {}", allExhausted);
             synchronized (listeners) {
@@ -248,6 +345,11 @@ public class PageDownstreamContext extends AbstractExecutionSubContext implement
             }
             if (allExhausted) {
                 PageDownstreamContext.this.close();
+            } else {
+                synchronized (lock) {
+                    consumingPage = false;
+                    applyPendingBuckets();
+                }
             }
         }
 
@@ -259,8 +361,50 @@ public class PageDownstreamContext extends AbstractExecutionSubContext implement
                     listener.needMore(false);
                 }
                 listeners.clear();
+            }
+            synchronized (lock) {
+                releaseBytes(bytes);
+                bytes = 0L;
+                for (PendingBucket pendingBucket : pendingBuckets) {
+                    releaseBytes(pendingBucket.bytes);
+                    if (pendingBucket.listener != null) {
+                        pendingBucket.listener.needMore(false);
+                    }
+                }
+                pendingBuckets.clear();
                 PageDownstreamContext.this.close();
             }
         }
     }
+
+    private static class PendingBucket {
+
+        private final int bucketIdx;
+        private final int pageIdx;
+        private final Bucket rows;
+        private final boolean isLast;
+        private final PageResultListener listener;
+        private final Throwable throwable;
+        private final long bytes;
+
+        /**
+         * @param pageIdx the index of the page or -1 for failures, which are set as soon as the bucket is free.
+         * @param bytes the accounted size of the rows
+         */
+        PendingBucket(int bucketIdx,
+                      int pageIdx,
+                      @Nullable Bucket rows,
+                      boolean isLast,
+                      @Nullable PageResultListener listener,
+                      @Nullable Throwable throwable,
+                      long bytes) {
+            this.bucketIdx = bucketIdx;
+            this.pageIdx = pageIdx;
+            this.rows = rows;
+            this.isLast = isLast;
+            this.listener = listener;
+            this.throwable = throwable;
+            this.bytes = bytes;
+        }
+    }
 }
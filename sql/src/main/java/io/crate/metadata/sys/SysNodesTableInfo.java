@@ -70,6 +70,7 @@ public class SysNodesTableInfo extends SysTableInfo {
     public static final String SYS_COL_FS_TOTAL = "total";
     public static final String SYS_COL_FS_DISKS = "disks";
     public static final String SYS_COL_FS_DATA = "data";
+    public static final String SYS_COL_SHARD_RESULT_CACHE = "shard_result_cache";
 
 
     public SysNodesTableInfo(ClusterService service) {
@@ -188,7 +189,13 @@ public class SysNodesTableInfo extends SysTableInfo {
 
            .register(SYS_COL_FS, objectArrayType, ImmutableList.of("data"))
            .register(SYS_COL_FS, DataTypes.STRING, ImmutableList.of("data", "dev"))
-           .register(SYS_COL_FS, DataTypes.STRING, ImmutableList.of("data", "path"));
+           .register(SYS_COL_FS, DataTypes.STRING, ImmutableList.of("data", "path"))
+
+           .register(SYS_COL_SHARD_RESULT_CACHE, DataTypes.OBJECT, null)
+           .register(SYS_COL_SHARD_RESULT_CACHE, DataTypes.LONG, ImmutableList.of("hits"))
+           .register(SYS_COL_SHARD_RESULT_CACHE, DataTypes.LONG, ImmutableList.of("misses"))
+           .register(SYS_COL_SHARD_RESULT_CACHE, DataTypes.LONG, ImmutableList.of("evictions"))
+           .register(SYS_COL_SHARD_RESULT_CACHE, DataTypes.LONG, ImmutableList.of("entries"));
 
         infos = registrar.infos();
         columns = registrar.columns();
@@ -85,6 +85,10 @@ public class SysShardsTableInfo extends SysTableInfo {
                 new ColumnIdent("recovery", ImmutableList.of("size", "recovered"));
         public static final ColumnIdent RECOVERY_SIZE_PERCENT =
                 new ColumnIdent("recovery", ImmutableList.of("size", "percent"));
+
+        public static final ColumnIdent BLOB_CACHE = new ColumnIdent("blob_cache");
+        public static final ColumnIdent BLOB_CACHE_HITS = new ColumnIdent("blob_cache", ImmutableList.of("hits"));
+        public static final ColumnIdent BLOB_CACHE_MISSES = new ColumnIdent("blob_cache", ImmutableList.of("misses"));
     }
 
     public static class ReferenceIdents {
@@ -100,6 +104,7 @@ public class SysShardsTableInfo extends SysTableInfo {
         public static final ReferenceIdent ROUTING_STATE = new ReferenceIdent(IDENT, Columns.ROUTING_STATE);
         public static final ReferenceIdent ORPHAN_PARTITION = new ReferenceIdent(IDENT, Columns.ORPHAN_PARTITION);
         public static final ReferenceIdent RECOVERY = new ReferenceIdent(IDENT, Columns.RECOVERY);
+        public static final ReferenceIdent BLOB_CACHE = new ReferenceIdent(IDENT, Columns.BLOB_CACHE);
     }
 
     private static final ImmutableList<ColumnIdent> primaryKey = ImmutableList.of(
@@ -145,6 +150,10 @@ public class SysShardsTableInfo extends SysTableInfo {
                 .register(Columns.RECOVERY_FILES_REUSED, IntegerType.INSTANCE)
                 .register(Columns.RECOVERY_FILES_RECOVERED, IntegerType.INSTANCE)
                 .register(Columns.RECOVERY_FILES_PERCENT, FloatType.INSTANCE)
+
+                .register(Columns.BLOB_CACHE, ObjectType.INSTANCE)
+                .register(Columns.BLOB_CACHE_HITS, LongType.INSTANCE)
+                .register(Columns.BLOB_CACHE_MISSES, LongType.INSTANCE)
                 .putInfoOnly(SysNodesTableInfo.SYS_COL_IDENT, SysNodesTableInfo.tableColumnInfo(IDENT));
         infos = registrar.infos();
         columns = registrar.columns();
@@ -58,6 +58,7 @@ public class PageDownstreamFactory {
     public PageDownstreamFactory(ClusterService clusterService,
                                  ThreadPool threadPool,
                                  Settings settings,
+                                 TempFiles tempFiles,
                                  TransportActionProvider transportActionProvider,
                                  BulkRetryCoordinatorPool bulkRetryCoordinatorPool,
                                  NestedReferenceResolver referenceResolver,
@@ -68,6 +69,7 @@ public class PageDownstreamFactory {
                 clusterService,
                 threadPool,
                 settings,
+                tempFiles,
                 transportActionProvider,
                 bulkRetryCoordinatorPool,
                 implementationSymbolVisitor,
@@ -0,0 +1,190 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.crate.core.collections.ArrayBucket;
+import io.crate.core.collections.Row;
+import io.crate.executor.QueryResult;
+import io.crate.executor.TaskResult;
+import io.crate.jobs.ExecutionState;
+import io.crate.operation.projectors.Requirement;
+import io.crate.operation.projectors.Requirements;
+import io.crate.operation.projectors.RowReceiver;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+
+import java.util.ArrayDeque;
+import java.util.Set;
+
+/**
+ * RowDownstream which hands out the result in pages of at most fetchSize rows.
+ *
+ * The first page is set on the result future given in the constructor, further pages are requested using
+ * {@link #fetch()}. The upstream is paused as soon as a full page is buffered and resumed once the page was fetched,
+ * so at most about two pages are held in memory if the upstream supports pausing.
+ */
+public class PagingResultRowDownstream implements RowReceiver {
+
+    private static final ESLogger LOGGER = Loggers.getLogger(PagingResultRowDownstream.class);
+
+    private final int fetchSize;
+    private final ArrayDeque<Object[]> rows = new ArrayDeque<>();
+
+    private SettableFuture<TaskResult> pendingPage;
+    private RowUpstream upstream;
+    private Throwable failure;
+    private boolean paused = false;
+    private boolean pauseSupported = true;
+    private boolean finished = false;
+
+    public PagingResultRowDownstream(SettableFuture<TaskResult> firstPage, int fetchSize) {
+        assert fetchSize > 0 : "fetchSize must be greater than 0";
+        this.pendingPage = firstPage;
+        this.fetchSize = fetchSize;
+    }
+
+    @Override
+    public boolean setNextRow(Row row) {
+        SettableFuture<TaskResult> page = null;
+        TaskResult result = null;
+        synchronized (this) {
+            rows.add(row.materialize());
+            if (rows.size() >= fetchSize) {
+                if (pendingPage != null) {
+                    page = pendingPage;
+                    pendingPage = null;
+                    result = nextPage();
+                }
+                if (rows.size() >= fetchSize && pauseSupported && !paused) {
+                    try {
+                        upstream.pause();
+                        paused = true;
+                    } catch (UnsupportedOperationException e) {
+                        LOGGER.warn("upstream {} can't be paused, the whole result of the paged statement is buffered",
+                                upstream.getClass().getSimpleName());
+                        pauseSupported = false;
+                    }
+                }
+            }
+        }
+        if (page != null) {
+            page.set(result);
+        }
+        return true;
+    }
+
+    @Override
+    public void finish() {
+        SettableFuture<TaskResult> page;
+        TaskResult result = null;
+        synchronized (this) {
+            finished = true;
+            page = pendingPage;
+            pendingPage = null;
+            if (page != null) {
+                result = nextPage();
+            }
+        }
+        if (page != null) {
+            page.set(result);
+        }
+    }
+
+    @Override
+    public void fail(Throwable throwable) {
+        SettableFuture<TaskResult> page;
+        synchronized (this) {
+            finished = true;
+            failure = throwable;
+            rows.clear();
+            page = pendingPage;
+            pendingPage = null;
+        }
+        if (page != null) {
+            page.setException(throwable);
+        }
+    }
+
+    /**
+     * request the next page. Only one page may be requested at a time, concurrent requests have to be serialized
+     * by the caller (see {@link io.crate.action.sql.Cursors#fetch(String)}).
+     */
+    public ListenableFuture<TaskResult> fetch() {
+        SettableFuture<TaskResult> page = SettableFuture.create();
+        boolean resume = false;
+        synchronized (this) {
+            if (pendingPage != null) {
+                throw new IllegalStateException("The next page is already being fetched");
+            }
+            if (failure != null) {
+                page.setException(failure);
+                return page;
+            }
+            if (finished || rows.size() >= fetchSize) {
+                page.set(nextPage());
+            } else {
+                pendingPage = page;
+            }
+            if (paused && rows.size() < fetchSize) {
+                paused = false;
+                resume = true;
+            }
+        }
+        if (resume) {
+            upstream.resume(true);
+        }
+        return page;
+    }
+
+    /**
+     * @return true if there are rows left which haven't been fetched yet
+     */
+    public synchronized boolean hasMore() {
+        return failure == null && (!finished || !rows.isEmpty());
+    }
+
+    private TaskResult nextPage() {
+        int size = Math.min(fetchSize, rows.size());
+        Object[][] page = new Object[size][];
+        for (int i = 0; i < size; i++) {
+            page[i] = rows.poll();
+        }
+        return new QueryResult(new ArrayBucket(page));
+    }
+
+    @Override
+    public void prepare(ExecutionState executionState) {
+    }
+
+    @Override
+    public Set<Requirement> requirements() {
+        return Requirements.NO_REQUIREMENTS;
+    }
+
+    @Override
+    public void setUpstream(RowUpstream rowUpstream) {
+        this.upstream = rowUpstream;
+    }
+}
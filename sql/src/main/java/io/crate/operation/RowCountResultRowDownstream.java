@@ -32,20 +32,27 @@ import io.crate.operation.projectors.Requirements;
 import io.crate.operation.projectors.RowReceiver;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
 /**
  * RowDownstream that will set a TaskResultFuture once the result is ready.
  * It will also close the associated context once it is done
+ *
+ * If there are several results the row contains one row count per result.
  */
 public class RowCountResultRowDownstream implements RowReceiver {
 
-    private final SettableFuture<TaskResult> result;
+    private final List<SettableFuture<TaskResult>> results;
     private final List<Object[]> rows = new ArrayList<>();
 
     public RowCountResultRowDownstream(SettableFuture<TaskResult> result) {
-        this.result = result;
+        this(Collections.singletonList(result));
+    }
+
+    public RowCountResultRowDownstream(List<SettableFuture<TaskResult>> results) {
+        this.results = results;
     }
 
     @Override
@@ -56,12 +63,17 @@ public class RowCountResultRowDownstream implements RowReceiver {
 
     @Override
     public void finish() {
-        result.set(new RowCountResult(((Number) Iterables.getOnlyElement(rows)[0]).longValue()));
+        Object[] row = Iterables.getOnlyElement(rows);
+        for (int i = 0; i < results.size(); i++) {
+            results.get(i).set(new RowCountResult(((Number) row[i]).longValue()));
+        }
     }
 
     @Override
     public void fail(Throwable throwable) {
-        result.setException(throwable);
+        for (SettableFuture<TaskResult> result : results) {
+            result.setException(throwable);
+        }
     }
 
     @Override
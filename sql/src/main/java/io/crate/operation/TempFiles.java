@@ -0,0 +1,97 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation;
+
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.env.NodeEnvironment;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Temporary files of operations which spill rows to disk (sorted runs, hash join partitions).
+ *
+ * The files are created inside the <code>tmp</code> directory of the first data path of the node instead of
+ * <code>java.io.tmpdir</code>, which is often a small (or memory backed) file system.
+ *
+ * The directory is resolved once per node. Files are deleted by the operation which created them,
+ * files which are left over because the node was killed while an operation was running are deleted
+ * when the node starts. Nodes which don't hold data use a directory which may be shared by other nodes,
+ * it isn't cleared.
+ */
+@Singleton
+public class TempFiles extends AbstractComponent {
+
+    private static final String TMP_DIRECTORY = "tmp";
+
+    private final Path directory;
+
+    @Inject
+    public TempFiles(Settings settings, NodeEnvironment nodeEnvironment) {
+        super(settings);
+        if (nodeEnvironment.hasNodeFile()) {
+            directory = nodeEnvironment.nodeDataPaths()[0].resolve(TMP_DIRECTORY);
+            deleteLeftovers();
+        } else {
+            directory = new Environment(settings).dataWithClusterFiles()[0].toPath().resolve(TMP_DIRECTORY);
+        }
+    }
+
+    /**
+     * returns the directory for temporary files of this node
+     */
+    public Path directory() {
+        return directory;
+    }
+
+    private void deleteLeftovers() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    logger.warn("could not delete temporary file {}", e, file);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("could not list temporary files in {}", e, directory);
+        }
+    }
+
+    /**
+     * creates a new empty file inside the given directory, the directory is created if it doesn't exist yet
+     */
+    public static Path create(Path directory, String prefix, String suffix) throws IOException {
+        Files.createDirectories(directory);
+        return Files.createTempFile(directory, prefix, suffix);
+    }
+}
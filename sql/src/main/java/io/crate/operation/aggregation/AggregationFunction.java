@@ -26,6 +26,8 @@ import io.crate.analyze.symbol.Symbol;
 import io.crate.breaker.RamAccountingContext;
 import io.crate.metadata.FunctionImplementation;
 import io.crate.operation.Input;
+import io.crate.operation.projectors.ColumnVector;
+import io.crate.operation.projectors.RowBatch;
 import io.crate.types.DataType;
 import org.elasticsearch.common.breaker.CircuitBreakingException;
 
@@ -60,6 +62,28 @@ public abstract class AggregationFunction<TPartial, TFinal> implements FunctionI
     public abstract TPartial iterate(RamAccountingContext ramAccountingContext, TPartial state, Input... args)
             throws CircuitBreakingException;
 
+    /**
+     * @param column the column holding the argument of the aggregation, or null if the aggregation has no argument
+     * @return true if the values of the column can be aggregated using
+     *         {@link #iterateColumn(RamAccountingContext, Object, RowBatch, ColumnVector)}
+     */
+    public boolean supportsColumn(@Nullable ColumnVector column) {
+        return false;
+    }
+
+    /**
+     * aggregates the values of the column for all selected rows of the batch at once.
+     * Must only be called if {@link #supportsColumn(ColumnVector)} returns true for the column.
+     *
+     * @return the new/changed state, see {@link #iterate(RamAccountingContext, Object, Input[])}
+     */
+    public TPartial iterateColumn(RamAccountingContext ramAccountingContext,
+                                  TPartial state,
+                                  RowBatch batch,
+                                  @Nullable ColumnVector column) throws CircuitBreakingException {
+        throw new UnsupportedOperationException(info().ident().name() + " doesn't support columns");
+    }
+
     /**
      * This function merges two aggregation states together and returns that merged state.
      *
@@ -24,6 +24,11 @@ package io.crate.operation.aggregation;
 import io.crate.analyze.symbol.Aggregation;
 import io.crate.breaker.RamAccountingContext;
 import io.crate.operation.Input;
+import io.crate.operation.collect.InputCollectExpression;
+import io.crate.operation.projectors.ColumnVector;
+import io.crate.operation.projectors.RowBatch;
+
+import javax.annotation.Nullable;
 
 import java.util.Locale;
 
@@ -33,7 +38,11 @@ import java.util.Locale;
  */
 public class Aggregator {
 
+    private static final int NO_COLUMN = -1;
+    private static final int NO_PLAIN_COLUMN = -2;
+
     private final Input[] inputs;
+    private final int columnIndex;
     private final AggregationFunction aggregationFunction;
     private final FromImpl fromImpl;
     private final ToImpl toImpl;
@@ -74,6 +83,45 @@ public class Aggregator {
 
         this.inputs = inputs;
         this.aggregationFunction = aggregationFunction;
+        this.columnIndex = columnIndex(a, inputs);
+    }
+
+    /**
+     * @return the index of the batch column the aggregation reads its argument from,
+     *         {@link #NO_COLUMN} if it has no argument or {@link #NO_PLAIN_COLUMN} if the argument is computed
+     */
+    private static int columnIndex(Aggregation a, Input[] inputs) {
+        if (a.fromStep() != Aggregation.Step.ITER) {
+            return NO_PLAIN_COLUMN;
+        }
+        if (inputs.length == 0) {
+            return NO_COLUMN;
+        }
+        if (inputs.length == 1 && inputs[0] instanceof InputCollectExpression) {
+            return ((InputCollectExpression) inputs[0]).position();
+        }
+        return NO_PLAIN_COLUMN;
+    }
+
+    @Nullable
+    private ColumnVector column(RowBatch batch) {
+        return columnIndex == NO_COLUMN ? null : batch.column(columnIndex);
+    }
+
+    /**
+     * @return true if the aggregation function can aggregate all rows of the batch at once,
+     *         see {@link AggregationFunction#supportsColumn(ColumnVector)}
+     */
+    public boolean canProcessBatch(RowBatch batch) {
+        return columnIndex != NO_PLAIN_COLUMN && aggregationFunction.supportsColumn(column(batch));
+    }
+
+    /**
+     * aggregates all selected rows of the batch, must only be called if {@link #canProcessBatch(RowBatch)} is true
+     */
+    @SuppressWarnings("unchecked")
+    public Object processBatch(Object state, RowBatch batch) {
+        return aggregationFunction.iterateColumn(fromImpl.ramAccountingContext, state, batch, column(batch));
     }
 
 
@@ -89,6 +137,14 @@ public class Aggregator {
         return toImpl.finishCollect(state);
     }
 
+    /**
+     * merges a partial result, which has been computed without this aggregator, into the state
+     */
+    @SuppressWarnings("unchecked")
+    public Object reducePartial(Object state, Object partial) {
+        return aggregationFunction.reduce(fromImpl.ramAccountingContext, state, partial);
+    }
+
     abstract class FromImpl {
 
         protected final RamAccountingContext ramAccountingContext;
@@ -0,0 +1,156 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.aggregation.impl;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.Streamer;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionInfo;
+import io.crate.operation.Input;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.types.DataType;
+import io.crate.types.DataTypeFactory;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+
+public class ApproximateCountDistinctAggregation extends AggregationFunction<HyperLogLogPlusPlus, Long> {
+
+    public static final String NAME = "approx_count_distinct";
+
+    static {
+        DataTypes.register(HyperLogLogStateType.ID, HyperLogLogStateType.INSTANCE);
+    }
+
+    public static void register(AggregationImplModule mod) {
+        for (DataType<?> t : DataTypes.PRIMITIVE_TYPES) {
+            mod.register(new ApproximateCountDistinctAggregation(new FunctionInfo(
+                    new FunctionIdent(NAME, ImmutableList.<DataType>of(t)), DataTypes.LONG,
+                    FunctionInfo.Type.AGGREGATE)));
+        }
+    }
+
+    public static class HyperLogLogStateType extends DataType<HyperLogLogPlusPlus>
+            implements Streamer<HyperLogLogPlusPlus>, DataTypeFactory {
+
+        public static final HyperLogLogStateType INSTANCE = new HyperLogLogStateType();
+        public static final int ID = 16384;
+
+        @Override
+        public int id() {
+            return ID;
+        }
+
+        @Override
+        public String getName() {
+            return "hyper_log_log_state";
+        }
+
+        @Override
+        public Streamer<?> streamer() {
+            return this;
+        }
+
+        @Override
+        public HyperLogLogPlusPlus value(Object value) throws IllegalArgumentException, ClassCastException {
+            return (HyperLogLogPlusPlus) value;
+        }
+
+        @Override
+        public int compareValueTo(HyperLogLogPlusPlus val1, HyperLogLogPlusPlus val2) {
+            return Long.compare(val1.cardinality(), val2.cardinality());
+        }
+
+        @Override
+        public DataType<?> create() {
+            return INSTANCE;
+        }
+
+        @Override
+        public HyperLogLogPlusPlus readValueFrom(StreamInput in) throws IOException {
+            HyperLogLogPlusPlus state = new HyperLogLogPlusPlus();
+            state.readFrom(in);
+            return state;
+        }
+
+        @Override
+        public void writeValueTo(StreamOutput out, Object v) throws IOException {
+            ((HyperLogLogPlusPlus) v).writeTo(out);
+        }
+    }
+
+    private final FunctionInfo info;
+
+    ApproximateCountDistinctAggregation(FunctionInfo info) {
+        this.info = info;
+    }
+
+    @Override
+    public FunctionInfo info() {
+        return info;
+    }
+
+    @Override
+    public HyperLogLogPlusPlus newState(RamAccountingContext ramAccountingContext) {
+        HyperLogLogPlusPlus state = new HyperLogLogPlusPlus();
+        ramAccountingContext.addBytes(state.ramBytesUsed());
+        return state;
+    }
+
+    @Override
+    public HyperLogLogPlusPlus iterate(RamAccountingContext ramAccountingContext,
+                                       HyperLogLogPlusPlus state,
+                                       Input... args) throws CircuitBreakingException {
+        Object value = args[0].value();
+        if (value != null) {
+            long bytesUsed = state.ramBytesUsed();
+            state.add(HyperLogLogPlusPlus.hash(value));
+            ramAccountingContext.addBytes(state.ramBytesUsed() - bytesUsed);
+        }
+        return state;
+    }
+
+    @Override
+    public HyperLogLogPlusPlus reduce(RamAccountingContext ramAccountingContext,
+                                      HyperLogLogPlusPlus state1,
+                                      HyperLogLogPlusPlus state2) {
+        long bytesUsed = state1.ramBytesUsed();
+        state1.merge(state2);
+        ramAccountingContext.addBytes(state1.ramBytesUsed() - bytesUsed);
+        return state1;
+    }
+
+    @Override
+    public Long terminatePartial(RamAccountingContext ramAccountingContext, HyperLogLogPlusPlus state) {
+        return state.cardinality();
+    }
+
+    @Override
+    public DataType partialType() {
+        return HyperLogLogStateType.INSTANCE;
+    }
+}
@@ -30,10 +30,14 @@ import io.crate.metadata.FunctionImplementation;
 import io.crate.metadata.FunctionInfo;
 import io.crate.operation.Input;
 import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.projectors.ColumnVector;
+import io.crate.operation.projectors.RowBatch;
 import io.crate.planner.projection.AggregationProjection;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 
+import javax.annotation.Nullable;
+
 import java.util.Collections;
 import java.util.List;
 
@@ -85,6 +89,29 @@ public class CountAggregation extends AggregationFunction<Long, Long> {
         return state;
     }
 
+    @Override
+    public boolean supportsColumn(@Nullable ColumnVector column) {
+        return !hasArgs || column != null;
+    }
+
+    @Override
+    public Long iterateColumn(RamAccountingContext ramAccountingContext,
+                              Long state,
+                              RowBatch batch,
+                              @Nullable ColumnVector column) {
+        int numRows = batch.numRows();
+        if (!hasArgs || !column.hasNulls()) {
+            return state + numRows;
+        }
+        long count = state;
+        for (int i = 0; i < numRows; i++) {
+            if (!column.isNull(batch.rowIndex(i))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     @Override
     public Long newState(RamAccountingContext ramAccountingContext) {
         ramAccountingContext.addBytes(DataTypes.LONG.fixedSize());
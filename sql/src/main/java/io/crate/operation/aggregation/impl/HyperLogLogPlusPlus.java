@@ -0,0 +1,226 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.aggregation.impl;
+
+import com.carrotsearch.hppc.IntByteOpenHashMap;
+import com.carrotsearch.hppc.cursors.IntByteCursor;
+import com.carrotsearch.hppc.hash.MurmurHash3;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Streamable;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog++ sketch used to estimate the number of distinct values.
+ *
+ * Small cardinalities are kept in a sparse map with a precision of {@value #SPARSE_PRECISION} bits which
+ * is converted into the {@code 2^}{@value #PRECISION} dense registers once it would use more memory than they do.
+ * So the size of a sketch is bounded, no matter how many values are added.
+ */
+public class HyperLogLogPlusPlus implements Streamable {
+
+    public static final int PRECISION = 14;
+    static final int SPARSE_PRECISION = 25;
+
+    private static final int NUM_REGISTERS = 1 << PRECISION;
+    private static final long NUM_SPARSE_REGISTERS = 1L << SPARSE_PRECISION;
+    private static final int MAX_SPARSE_ENTRIES = NUM_REGISTERS / 8;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / NUM_REGISTERS);
+
+    private IntByteOpenHashMap sparse = new IntByteOpenHashMap();
+    private byte[] registers;
+
+    public static long hash(Object value) {
+        if (value instanceof BytesRef) {
+            BytesRef bytesRef = (BytesRef) value;
+            return org.elasticsearch.common.hash.MurmurHash3.hash128(
+                    bytesRef.bytes, bytesRef.offset, bytesRef.length, 0L,
+                    new org.elasticsearch.common.hash.MurmurHash3.Hash128()).h1;
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return MurmurHash3.hash(Double.doubleToLongBits(((Number) value).doubleValue()));
+        }
+        if (value instanceof Number) {
+            return MurmurHash3.hash(((Number) value).longValue());
+        }
+        if (value instanceof Boolean) {
+            return MurmurHash3.hash((Boolean) value ? 1L : 0L);
+        }
+        return MurmurHash3.hash((long) value.hashCode());
+    }
+
+    public void add(long hash) {
+        if (registers == null) {
+            int index = (int) (hash >>> (64 - SPARSE_PRECISION));
+            byte rank = (byte) (Long.numberOfLeadingZeros((hash << SPARSE_PRECISION) | (1L << (SPARSE_PRECISION - 1))) + 1);
+            addSparse(index, rank);
+            if (sparse.size() > MAX_SPARSE_ENTRIES) {
+                toDense();
+            }
+        } else {
+            int index = (int) (hash >>> (64 - PRECISION));
+            int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+            if (registers[index] < rank) {
+                registers[index] = (byte) rank;
+            }
+        }
+    }
+
+    public void merge(HyperLogLogPlusPlus other) {
+        if (other.registers == null) {
+            for (IntByteCursor cursor : other.sparse) {
+                if (registers == null) {
+                    addSparse(cursor.key, cursor.value);
+                } else {
+                    addSparseToRegisters(cursor.key, cursor.value);
+                }
+            }
+            if (registers == null && sparse.size() > MAX_SPARSE_ENTRIES) {
+                toDense();
+            }
+        } else {
+            if (registers == null) {
+                toDense();
+            }
+            for (int i = 0; i < NUM_REGISTERS; i++) {
+                if (registers[i] < other.registers[i]) {
+                    registers[i] = other.registers[i];
+                }
+            }
+        }
+    }
+
+    public long cardinality() {
+        if (registers == null) {
+            return Math.round(linearCounting(NUM_SPARSE_REGISTERS, NUM_SPARSE_REGISTERS - sparse.size()));
+        }
+        double sum = 0;
+        int zeros = 0;
+        for (byte rank : registers) {
+            sum += Math.scalb(1.0, -rank);
+            if (rank == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * NUM_REGISTERS * NUM_REGISTERS / sum;
+        if (zeros > 0 && estimate <= 2.5 * NUM_REGISTERS) {
+            return Math.round(linearCounting(NUM_REGISTERS, zeros));
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * estimated number of bytes used by the sparse map or the registers
+     */
+    public long ramBytesUsed() {
+        if (registers == null) {
+            // int key, byte value and the allocated flag per slot
+            return sparse.keys.length * 6L;
+        }
+        return NUM_REGISTERS;
+    }
+
+    boolean isSparse() {
+        return registers == null;
+    }
+
+    private static double linearCounting(long numRegisters, long numZeros) {
+        return numRegisters * Math.log((double) numRegisters / numZeros);
+    }
+
+    private void addSparse(int index, byte rank) {
+        if (sparse.containsKey(index)) {
+            if (sparse.lget() < rank) {
+                sparse.lset(rank);
+            }
+        } else {
+            sparse.put(index, rank);
+        }
+    }
+
+    private void toDense() {
+        registers = new byte[NUM_REGISTERS];
+        for (IntByteCursor cursor : sparse) {
+            addSparseToRegisters(cursor.key, cursor.value);
+        }
+        sparse = null;
+    }
+
+    /**
+     * the additional bits of a sparse index are the leading bits of the rank of a register
+     */
+    private void addSparseToRegisters(int sparseIndex, byte sparseRank) {
+        int additionalBits = SPARSE_PRECISION - PRECISION;
+        int index = sparseIndex >>> additionalBits;
+        int remainder = sparseIndex & ((1 << additionalBits) - 1);
+        int rank;
+        if (remainder == 0) {
+            rank = additionalBits + sparseRank;
+        } else {
+            rank = Integer.numberOfLeadingZeros(remainder) - (32 - additionalBits) + 1;
+        }
+        if (registers[index] < rank) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        if (in.readBoolean()) {
+            int size = in.readVInt();
+            sparse = new IntByteOpenHashMap(size);
+            registers = null;
+            int index = 0;
+            for (int i = 0; i < size; i++) {
+                index += in.readVInt();
+                sparse.put(index, in.readByte());
+            }
+        } else {
+            sparse = null;
+            registers = new byte[NUM_REGISTERS];
+            in.readBytes(registers, 0, NUM_REGISTERS);
+        }
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeBoolean(registers == null);
+        if (registers == null) {
+            // sorted indices are written as deltas to keep the vInts small
+            int[] indices = sparse.keys().toArray();
+            Arrays.sort(indices);
+            out.writeVInt(indices.length);
+            int previous = 0;
+            for (int index : indices) {
+                out.writeVInt(index - previous);
+                out.writeByte(sparse.get(index));
+                previous = index;
+            }
+        } else {
+            out.writeBytes(registers);
+        }
+    }
+}
@@ -29,11 +29,18 @@ import io.crate.metadata.FunctionIdent;
 import io.crate.metadata.FunctionInfo;
 import io.crate.operation.Input;
 import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.projectors.ColumnVector;
+import io.crate.operation.projectors.RowBatch;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
+import io.crate.types.DoubleType;
 import io.crate.types.FixedWidthType;
+import io.crate.types.LongType;
+import io.crate.types.TimestampType;
 import org.elasticsearch.common.breaker.CircuitBreakingException;
 
+import javax.annotation.Nullable;
+
 public abstract class MaximumAggregation extends AggregationFunction<Comparable, Comparable> {
 
     public static final String NAME = "max";
@@ -68,6 +75,51 @@ public abstract class MaximumAggregation extends AggregationFunction<Comparable,
             return null;
         }
 
+        @Override
+        public boolean supportsColumn(@Nullable ColumnVector column) {
+            int typeId = partialType().id();
+            if (column instanceof ColumnVector.LongVector) {
+                return typeId == LongType.ID || typeId == TimestampType.ID;
+            }
+            return column instanceof ColumnVector.DoubleVector && typeId == DoubleType.ID;
+        }
+
+        @Override
+        public Comparable iterateColumn(RamAccountingContext ramAccountingContext,
+                                        Comparable state,
+                                        RowBatch batch,
+                                        @Nullable ColumnVector column) {
+            assert column != null : "column must not be null";
+            int numRows = batch.numRows();
+            boolean hasValue = state != null;
+            if (column instanceof ColumnVector.LongVector) {
+                long max = hasValue ? ((Long) state) : 0L;
+                for (int i = 0; i < numRows; i++) {
+                    int row = batch.rowIndex(i);
+                    if (!column.isNull(row)) {
+                        long value = column.getLong(row);
+                        if (!hasValue || value > max) {
+                            max = value;
+                            hasValue = true;
+                        }
+                    }
+                }
+                return hasValue ? max : null;
+            }
+            double max = hasValue ? ((Double) state) : 0d;
+            for (int i = 0; i < numRows; i++) {
+                int row = batch.rowIndex(i);
+                if (!column.isNull(row)) {
+                    double value = column.getDouble(row);
+                    if (!hasValue || Double.compare(value, max) > 0) {
+                        max = value;
+                        hasValue = true;
+                    }
+                }
+            }
+            return hasValue ? max : null;
+        }
+
         @Override
         public Comparable reduce(RamAccountingContext ramAccountingContext, Comparable state1, Comparable state2) {
             if (state1 == null) {
@@ -0,0 +1,257 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.aggregation.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import io.crate.Streamer;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionInfo;
+import io.crate.operation.Input;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.types.ArrayType;
+import io.crate.types.DataType;
+import io.crate.types.DataTypeFactory;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Streamable;
+import org.elasticsearch.search.aggregations.metrics.percentiles.tdigest.TDigestState;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Locale;
+
+public class PercentileAggregation extends AggregationFunction<PercentileAggregation.PercentileState, Object> {
+
+    public static final String NAME = "percentile";
+
+    /**
+     * a digest keeps about 5 * COMPRESSION centroids, which bounds its size
+     */
+    static final double COMPRESSION = 100.0;
+
+    private static final DataType DOUBLE_ARRAY = new ArrayType(DataTypes.DOUBLE);
+
+    static {
+        DataTypes.register(PercentileStateType.ID, PercentileStateType.INSTANCE);
+    }
+
+    public static void register(AggregationImplModule mod) {
+        for (DataType t : Iterables.concat(DataTypes.NUMERIC_PRIMITIVE_TYPES, ImmutableList.of(DataTypes.TIMESTAMP))) {
+            mod.register(new PercentileAggregation(new FunctionInfo(
+                    new FunctionIdent(NAME, ImmutableList.<DataType>of(t, DataTypes.DOUBLE)), DataTypes.DOUBLE,
+                    FunctionInfo.Type.AGGREGATE)));
+            mod.register(new PercentileAggregation(new FunctionInfo(
+                    new FunctionIdent(NAME, ImmutableList.<DataType>of(t, DOUBLE_ARRAY)), DOUBLE_ARRAY,
+                    FunctionInfo.Type.AGGREGATE)));
+        }
+    }
+
+    public static class PercentileState implements Streamable {
+
+        private double[] fractions;
+        private TDigestState digest;
+
+        public PercentileState() {
+            digest = new TDigestState(COMPRESSION);
+        }
+
+        private void setFractions(Object fractions) {
+            if (this.fractions != null) {
+                return;
+            }
+            if (fractions instanceof Object[]) {
+                Object[] values = (Object[]) fractions;
+                this.fractions = new double[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    this.fractions[i] = toFraction(values[i]);
+                }
+            } else {
+                this.fractions = new double[]{toFraction(fractions)};
+            }
+        }
+
+        private static double toFraction(Object value) {
+            if (value == null) {
+                throw new IllegalArgumentException("percentile fraction must not be null");
+            }
+            double fraction = ((Number) value).doubleValue();
+            if (fraction < 0.0 || fraction > 1.0) {
+                throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                        "percentile fraction %s must be between 0 and 1", value));
+            }
+            return fraction;
+        }
+
+        private void merge(PercentileState other) {
+            if (fractions == null) {
+                fractions = other.fractions;
+            }
+            digest.add(other.digest);
+        }
+
+        private long ramBytesUsed() {
+            return digest.byteSize();
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            int numFractions = in.readVInt();
+            if (numFractions > 0) {
+                fractions = new double[numFractions];
+                for (int i = 0; i < numFractions; i++) {
+                    fractions[i] = in.readDouble();
+                }
+            }
+            digest = TDigestState.read(in);
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            if (fractions == null) {
+                out.writeVInt(0);
+            } else {
+                out.writeVInt(fractions.length);
+                for (double fraction : fractions) {
+                    out.writeDouble(fraction);
+                }
+            }
+            TDigestState.write(digest, out);
+        }
+    }
+
+    public static class PercentileStateType extends DataType<PercentileState>
+            implements Streamer<PercentileState>, DataTypeFactory {
+
+        public static final PercentileStateType INSTANCE = new PercentileStateType();
+        public static final int ID = 32768;
+
+        @Override
+        public int id() {
+            return ID;
+        }
+
+        @Override
+        public String getName() {
+            return "percentile_state";
+        }
+
+        @Override
+        public Streamer<?> streamer() {
+            return this;
+        }
+
+        @Override
+        public PercentileState value(Object value) throws IllegalArgumentException, ClassCastException {
+            return (PercentileState) value;
+        }
+
+        @Override
+        public int compareValueTo(PercentileState val1, PercentileState val2) {
+            return Long.compare(val1.digest.size(), val2.digest.size());
+        }
+
+        @Override
+        public DataType<?> create() {
+            return INSTANCE;
+        }
+
+        @Override
+        public PercentileState readValueFrom(StreamInput in) throws IOException {
+            PercentileState state = new PercentileState();
+            state.readFrom(in);
+            return state;
+        }
+
+        @Override
+        public void writeValueTo(StreamOutput out, Object v) throws IOException {
+            ((PercentileState) v).writeTo(out);
+        }
+    }
+
+    private final FunctionInfo info;
+
+    PercentileAggregation(FunctionInfo info) {
+        this.info = info;
+    }
+
+    @Override
+    public FunctionInfo info() {
+        return info;
+    }
+
+    @Override
+    public PercentileState newState(RamAccountingContext ramAccountingContext) {
+        PercentileState state = new PercentileState();
+        ramAccountingContext.addBytes(state.ramBytesUsed());
+        return state;
+    }
+
+    @Override
+    public PercentileState iterate(RamAccountingContext ramAccountingContext,
+                                   PercentileState state,
+                                   Input... args) throws CircuitBreakingException {
+        state.setFractions(args[1].value());
+        Number value = (Number) args[0].value();
+        if (value != null) {
+            long bytesUsed = state.ramBytesUsed();
+            state.digest.add(value.doubleValue());
+            ramAccountingContext.addBytes(state.ramBytesUsed() - bytesUsed);
+        }
+        return state;
+    }
+
+    @Override
+    public PercentileState reduce(RamAccountingContext ramAccountingContext,
+                                  PercentileState state1,
+                                  PercentileState state2) {
+        long bytesUsed = state1.ramBytesUsed();
+        state1.merge(state2);
+        ramAccountingContext.addBytes(state1.ramBytesUsed() - bytesUsed);
+        return state1;
+    }
+
+    @Nullable
+    @Override
+    public Object terminatePartial(RamAccountingContext ramAccountingContext, PercentileState state) {
+        if (state.digest.size() == 0) {
+            return null;
+        }
+        if (info.returnType().equals(DataTypes.DOUBLE)) {
+            return state.digest.quantile(state.fractions[0]);
+        }
+        Double[] percentiles = new Double[state.fractions.length];
+        for (int i = 0; i < state.fractions.length; i++) {
+            percentiles[i] = state.digest.quantile(state.fractions[i]);
+        }
+        return percentiles;
+    }
+
+    @Override
+    public DataType partialType() {
+        return PercentileStateType.INSTANCE;
+    }
+}
@@ -27,10 +27,14 @@ import io.crate.metadata.FunctionIdent;
 import io.crate.metadata.FunctionInfo;
 import io.crate.operation.Input;
 import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.projectors.ColumnVector;
+import io.crate.operation.projectors.RowBatch;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 import org.elasticsearch.common.breaker.CircuitBreakingException;
 
+import javax.annotation.Nullable;
+
 public class SumAggregation extends AggregationFunction<Double, Double> {
 
     public static final String NAME = "sum";
@@ -54,6 +58,40 @@ public class SumAggregation extends AggregationFunction<Double, Double> {
         return reduce(ramAccountingContext, state, DataTypes.DOUBLE.value(args[0].value()));
     }
 
+    @Override
+    public boolean supportsColumn(@Nullable ColumnVector column) {
+        return column instanceof ColumnVector.LongVector || column instanceof ColumnVector.DoubleVector;
+    }
+
+    @Override
+    public Double iterateColumn(RamAccountingContext ramAccountingContext,
+                                Double state,
+                                RowBatch batch,
+                                @Nullable ColumnVector column) {
+        assert column != null : "column must not be null";
+        boolean hasValue = state != null;
+        double sum = hasValue ? state : 0d;
+        int numRows = batch.numRows();
+        if (column instanceof ColumnVector.LongVector) {
+            for (int i = 0; i < numRows; i++) {
+                int row = batch.rowIndex(i);
+                if (!column.isNull(row)) {
+                    sum += column.getLong(row);
+                    hasValue = true;
+                }
+            }
+        } else {
+            for (int i = 0; i < numRows; i++) {
+                int row = batch.rowIndex(i);
+                if (!column.isNull(row)) {
+                    sum += column.getDouble(row);
+                    hasValue = true;
+                }
+            }
+        }
+        return hasValue ? sum : null;
+    }
+
     @Override
     public Double reduce(RamAccountingContext ramAccountingContext, Double state1, Double state2) {
         if (state1 == null) {
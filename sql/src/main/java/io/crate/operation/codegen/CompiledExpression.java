@@ -0,0 +1,41 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.codegen;
+
+import io.crate.operation.Input;
+
+/**
+ * Base class of the expressions generated by the {@link ExpressionCompiler}.
+ *
+ * The generated {@link #value()} implementation evaluates the expression on primitive values
+ * and only boxes the result. Parts of the expression which can't be compiled are evaluated by the
+ * interpreted inputs.
+ */
+public abstract class CompiledExpression implements Input<Object> {
+
+    protected final Input<?>[] inputs;
+
+    protected CompiledExpression(Input<?>[] inputs) {
+        this.inputs = inputs;
+    }
+}
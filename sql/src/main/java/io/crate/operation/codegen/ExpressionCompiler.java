@@ -0,0 +1,587 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.codegen;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import io.crate.analyze.symbol.Function;
+import io.crate.analyze.symbol.Literal;
+import io.crate.analyze.symbol.Symbol;
+import io.crate.operation.ImplementationSymbolVisitor;
+import io.crate.operation.Input;
+import io.crate.operation.operator.*;
+import io.crate.operation.predicate.NotPredicate;
+import io.crate.operation.scalar.arithmetic.*;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compiles scalar expressions into bytecode.
+ *
+ * Arithmetic functions, comparisons and the boolean operators AND, OR and NOT on numeric and boolean
+ * values are compiled into a single method which works on primitive values. Every other symbol of the
+ * expression is evaluated by the interpreted {@link Input} that the {@link ImplementationSymbolVisitor}
+ * creates for it, and its value is unboxed once. Expressions which don't contain anything that can be
+ * compiled are interpreted completely.
+ *
+ * The generated classes are cached by the shape of the expression: its compiled functions with slots for the
+ * interpreted inputs and for the literals. The literal values are passed to the constructor of the generated
+ * class, so expressions which only differ in their literals or interpreted inputs share the same class.
+ */
+public class ExpressionCompiler {
+
+    private static final ESLogger LOGGER = Loggers.getLogger(ExpressionCompiler.class);
+
+    private static final String BASE_CLASS = Type.getInternalName(CompiledExpression.class);
+    private static final String INPUT = Type.getInternalName(Input.class);
+    private static final String INPUT_ARRAY = "[" + Type.getDescriptor(Input.class);
+    private static final String OBJECT_ARRAY = "[Ljava/lang/Object;";
+    private static final int WAS_NULL = 1;
+    private static final int FIRST_TEMP = 2;
+    private static final AtomicLong CLASS_COUNTER = new AtomicLong();
+
+    private enum Kind {
+        LONG(Type.LONG_TYPE, "java/lang/Long", "longValue", Opcodes.LCONST_0),
+        DOUBLE(Type.DOUBLE_TYPE, "java/lang/Double", "doubleValue", Opcodes.DCONST_0),
+        BOOLEAN(Type.BOOLEAN_TYPE, "java/lang/Boolean", "booleanValue", Opcodes.ICONST_0);
+
+        private final Type type;
+        private final String boxedType;
+        private final String unboxMethod;
+        private final int defaultValue;
+
+        Kind(Type type, String boxedType, String unboxMethod, int defaultValue) {
+            this.type = type;
+            this.boxedType = boxedType;
+            this.unboxMethod = unboxMethod;
+            this.defaultValue = defaultValue;
+        }
+
+        int size() {
+            return type.getSize();
+        }
+
+        int pop() {
+            return size() == 2 ? Opcodes.POP2 : Opcodes.POP;
+        }
+
+        /**
+         * unboxes the non-null value on top of the stack
+         */
+        void unbox(MethodVisitor method) {
+            String owner = this == BOOLEAN ? "java/lang/Boolean" : "java/lang/Number";
+            method.visitTypeInsn(Opcodes.CHECKCAST, owner);
+            method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, owner, unboxMethod, "()" + type.getDescriptor());
+        }
+    }
+
+    /**
+     * placeholders for the arguments of the shape of an expression which aren't part of the generated code
+     */
+    private enum Slot {
+        INPUT,
+        LITERAL,
+        NULL
+    }
+
+    private static final Map<DataType, Kind> KINDS = ImmutableMap.<DataType, Kind>builder()
+            .put(DataTypes.BYTE, Kind.LONG)
+            .put(DataTypes.SHORT, Kind.LONG)
+            .put(DataTypes.INTEGER, Kind.LONG)
+            .put(DataTypes.LONG, Kind.LONG)
+            .put(DataTypes.TIMESTAMP, Kind.LONG)
+            .put(DataTypes.FLOAT, Kind.DOUBLE)
+            .put(DataTypes.DOUBLE, Kind.DOUBLE)
+            .put(DataTypes.BOOLEAN, Kind.BOOLEAN)
+            .build();
+
+    private static final Map<String, Integer> ARITHMETIC_OPCODES = ImmutableMap.of(
+            AddFunction.NAME, Opcodes.LADD,
+            SubtractFunction.NAME, Opcodes.LSUB,
+            MultiplyFunction.NAME, Opcodes.LMUL,
+            DivideFunction.NAME, Opcodes.LDIV,
+            ModulusFunction.NAME, Opcodes.LREM
+    );
+
+    private static final Map<String, Integer> COMPARISON_JUMPS = ImmutableMap.of(
+            EqOperator.NAME, Opcodes.IFEQ,
+            LtOperator.NAME, Opcodes.IFLT,
+            LteOperator.NAME, Opcodes.IFLE,
+            GtOperator.NAME, Opcodes.IFGT,
+            GteOperator.NAME, Opcodes.IFGE
+    );
+
+    private final Cache<List<Object>, Constructor<? extends CompiledExpression>> compiledExpressions =
+            CacheBuilder.newBuilder().maximumSize(1000).build();
+
+    /**
+     * returns an input which evaluates the symbol, compiled if possible. The inputs of the symbol
+     * are registered in the given context just as {@link ImplementationSymbolVisitor#process} would do.
+     */
+    public Input<?> compile(Symbol symbol, ImplementationSymbolVisitor symbolVisitor, ImplementationSymbolVisitor.Context context) {
+        if (!isCompilable(symbol)) {
+            return symbolVisitor.process(symbol, context);
+        }
+        Function function = (Function) symbol;
+        List<Symbol> interpreted = new ArrayList<>();
+        List<Object> literals = new ArrayList<>();
+        List<Object> shape = shape(function, interpreted, literals);
+        Constructor<? extends CompiledExpression> constructor = compiledExpressions.getIfPresent(shape);
+        if (constructor == null) {
+            try {
+                constructor = generate(function);
+            } catch (Exception | LinkageError e) {
+                LOGGER.debug("Couldn't compile expression {}, falling back to interpretation", e, symbol);
+                return symbolVisitor.process(symbol, context);
+            }
+            compiledExpressions.put(shape, constructor);
+        }
+        Input<?>[] inputs = new Input[interpreted.size()];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = symbolVisitor.process(interpreted.get(i), context);
+        }
+        try {
+            return constructor.newInstance(inputs, literals.toArray());
+        } catch (ReflectiveOperationException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * like {@link ImplementationSymbolVisitor#extractImplementations(Collection)} but compiles the symbols
+     */
+    public ImplementationSymbolVisitor.Context extractImplementations(Collection<? extends Symbol> symbols,
+                                                                      ImplementationSymbolVisitor symbolVisitor) {
+        ImplementationSymbolVisitor.Context context = new ImplementationSymbolVisitor.Context();
+        for (Symbol symbol : symbols) {
+            context.add(compile(symbol, symbolVisitor, context));
+        }
+        return context;
+    }
+
+    private static boolean isCompilable(Symbol symbol) {
+        if (!(symbol instanceof Function)) {
+            return false;
+        }
+        Function function = (Function) symbol;
+        String name = function.info().ident().name();
+        List<DataType> argumentTypes = function.info().ident().argumentTypes();
+        if (argumentTypes.size() != function.arguments().size()) {
+            return false;
+        }
+        Kind returnKind = KINDS.get(function.info().returnType());
+        if (ARITHMETIC_OPCODES.containsKey(name)) {
+            return argumentTypes.size() == 2
+                   && (returnKind == Kind.LONG || returnKind == Kind.DOUBLE)
+                   && isNumeric(argumentTypes.get(0))
+                   && isNumeric(argumentTypes.get(1));
+        }
+        if (COMPARISON_JUMPS.containsKey(name)) {
+            return argumentTypes.size() == 2
+                   && returnKind == Kind.BOOLEAN
+                   && KINDS.containsKey(argumentTypes.get(0))
+                   && argumentTypes.get(0).equals(argumentTypes.get(1));
+        }
+        if (name.equals(AndOperator.NAME) || name.equals(OrOperator.NAME)) {
+            return argumentTypes.size() == 2
+                   && argumentTypes.get(0).equals(DataTypes.BOOLEAN)
+                   && argumentTypes.get(1).equals(DataTypes.BOOLEAN);
+        }
+        if (name.equals(NotPredicate.NAME)) {
+            return argumentTypes.size() == 1 && argumentTypes.get(0).equals(DataTypes.BOOLEAN);
+        }
+        return false;
+    }
+
+    private static boolean isNumeric(DataType dataType) {
+        Kind kind = KINDS.get(dataType);
+        return kind == Kind.LONG || kind == Kind.DOUBLE;
+    }
+
+    /**
+     * a function argument is compiled into the code of the function if it is compilable and
+     * results in the same kind of value as the function expects
+     */
+    private static boolean isCompiledArgument(Function function, int idx) {
+        Symbol argument = function.arguments().get(idx);
+        return isCompilable(argument)
+               && KINDS.get(((Function) argument).info().returnType())
+                  == KINDS.get(function.info().ident().argumentTypes().get(idx));
+    }
+
+    /**
+     * returns the shape of the function which determines the generated code and collects the arguments
+     * which are neither compiled nor literals and the non-null literal values in the order they're evaluated
+     */
+    private static List<Object> shape(Function function, List<Symbol> interpreted, List<Object> literals) {
+        List<Symbol> arguments = function.arguments();
+        List<Object> shape = new ArrayList<>(arguments.size() + 1);
+        shape.add(function.info());
+        for (int i = 0; i < arguments.size(); i++) {
+            Symbol argument = arguments.get(i);
+            if (isCompiledArgument(function, i)) {
+                shape.add(shape((Function) argument, interpreted, literals));
+            } else if (argument instanceof Literal) {
+                Object value = ((Literal) argument).value();
+                if (value == null) {
+                    shape.add(Slot.NULL);
+                } else {
+                    literals.add(value);
+                    shape.add(Slot.LITERAL);
+                }
+            } else {
+                interpreted.add(argument);
+                shape.add(Slot.INPUT);
+            }
+        }
+        return shape;
+    }
+
+    private static Constructor<? extends CompiledExpression> generate(Function function) throws Exception {
+        String className = "io/crate/operation/codegen/GeneratedExpression" + CLASS_COUNTER.incrementAndGet();
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                // only boxed values of the same kind meet in the generated code
+                return "java/lang/Object";
+            }
+        };
+        classWriter.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER,
+                className, null, BASE_CLASS, null);
+
+        MethodVisitor method = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "value", "()Ljava/lang/Object;", null, null);
+        method.visitCode();
+        method.visitInsn(Opcodes.ICONST_0);
+        method.visitVarInsn(Opcodes.ISTORE, WAS_NULL);
+        MethodGenerator generator = new MethodGenerator(method, className);
+        Kind kind = generator.generate(function);
+        Label isNull = new Label();
+        method.visitVarInsn(Opcodes.ILOAD, WAS_NULL);
+        method.visitJumpInsn(Opcodes.IFNE, isNull);
+        method.visitMethodInsn(Opcodes.INVOKESTATIC, kind.boxedType, "valueOf",
+                "(" + kind.type.getDescriptor() + ")L" + kind.boxedType + ";");
+        method.visitInsn(Opcodes.ARETURN);
+        method.visitLabel(isNull);
+        method.visitInsn(kind.pop());
+        method.visitInsn(Opcodes.ACONST_NULL);
+        method.visitInsn(Opcodes.ARETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+
+        generateConstructor(classWriter, className, generator.literalKinds);
+        classWriter.visitEnd();
+
+        Class<?> generatedClass = new GeneratedClassLoader().define(className.replace('/', '.'), classWriter.toByteArray());
+        return generatedClass.asSubclass(CompiledExpression.class).getConstructor(Input[].class, Object[].class);
+    }
+
+    /**
+     * generates a constructor which takes the interpreted inputs and the literal values
+     * and unboxes the literal values once into their fields
+     */
+    private static void generateConstructor(ClassWriter classWriter, String className, List<Kind> literalKinds) {
+        MethodVisitor constructor = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>",
+                "(" + INPUT_ARRAY + OBJECT_ARRAY + ")V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitVarInsn(Opcodes.ALOAD, 1);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, BASE_CLASS, "<init>", "(" + INPUT_ARRAY + ")V");
+        for (int i = 0; i < literalKinds.size(); i++) {
+            Kind kind = literalKinds.get(i);
+            classWriter.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, literalField(i),
+                    kind.type.getDescriptor(), null, null).visitEnd();
+            constructor.visitVarInsn(Opcodes.ALOAD, 0);
+            constructor.visitVarInsn(Opcodes.ALOAD, 2);
+            constructor.visitLdcInsn(i);
+            constructor.visitInsn(Opcodes.AALOAD);
+            kind.unbox(constructor);
+            constructor.visitFieldInsn(Opcodes.PUTFIELD, className, literalField(i), kind.type.getDescriptor());
+        }
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+    }
+
+    private static String literalField(int idx) {
+        return "literal" + idx;
+    }
+
+    /**
+     * Generates the code of a function which leaves its primitive value on the stack and stores
+     * whether it is null in the WAS_NULL local. If the value is null the value on the stack is 0.
+     */
+    private static class MethodGenerator {
+
+        private final MethodVisitor method;
+        private final String className;
+        private final List<Kind> literalKinds = new ArrayList<>();
+        private int nextInput = 0;
+        private int nextTemp = FIRST_TEMP;
+
+        MethodGenerator(MethodVisitor method, String className) {
+            this.method = method;
+            this.className = className;
+        }
+
+        Kind generate(Function function) {
+            String name = function.info().ident().name();
+            if (ARITHMETIC_OPCODES.containsKey(name)) {
+                return generateArithmetic(function, ARITHMETIC_OPCODES.get(name));
+            }
+            if (COMPARISON_JUMPS.containsKey(name)) {
+                return generateComparison(function, COMPARISON_JUMPS.get(name));
+            }
+            if (name.equals(AndOperator.NAME)) {
+                return generateLogical(function, Opcodes.IFEQ);
+            }
+            if (name.equals(OrOperator.NAME)) {
+                return generateLogical(function, Opcodes.IFNE);
+            }
+            assert name.equals(NotPredicate.NAME) : "unsupported function " + name;
+            return generateNot(function);
+        }
+
+        private Kind generateArgument(Function function, int idx) {
+            Symbol argument = function.arguments().get(idx);
+            Kind kind = KINDS.get(function.info().ident().argumentTypes().get(idx));
+            if (isCompiledArgument(function, idx)) {
+                generate((Function) argument);
+            } else if (argument instanceof Literal) {
+                generateLiteral(((Literal) argument).value(), kind);
+            } else {
+                generateInput(nextInput++, kind);
+            }
+            return kind;
+        }
+
+        private void generateLiteral(@Nullable Object value, Kind kind) {
+            if (value == null) {
+                method.visitInsn(kind.defaultValue);
+                method.visitInsn(Opcodes.ICONST_1);
+            } else {
+                // the value is read from the field the constructor unboxed it into
+                int idx = literalKinds.size();
+                literalKinds.add(kind);
+                method.visitVarInsn(Opcodes.ALOAD, 0);
+                method.visitFieldInsn(Opcodes.GETFIELD, className, literalField(idx), kind.type.getDescriptor());
+                method.visitInsn(Opcodes.ICONST_0);
+            }
+            method.visitVarInsn(Opcodes.ISTORE, WAS_NULL);
+        }
+
+        private void generateInput(int idx, Kind kind) {
+            Label notNull = new Label();
+            Label end = new Label();
+            method.visitVarInsn(Opcodes.ALOAD, 0);
+            method.visitFieldInsn(Opcodes.GETFIELD, BASE_CLASS, "inputs", INPUT_ARRAY);
+            method.visitLdcInsn(idx);
+            method.visitInsn(Opcodes.AALOAD);
+            method.visitMethodInsn(Opcodes.INVOKEINTERFACE, INPUT, "value", "()Ljava/lang/Object;");
+            method.visitInsn(Opcodes.DUP);
+            method.visitJumpInsn(Opcodes.IFNONNULL, notNull);
+            method.visitInsn(Opcodes.POP);
+            method.visitInsn(kind.defaultValue);
+            method.visitInsn(Opcodes.ICONST_1);
+            method.visitVarInsn(Opcodes.ISTORE, WAS_NULL);
+            method.visitJumpInsn(Opcodes.GOTO, end);
+
+            method.visitLabel(notNull);
+            kind.unbox(method);
+            method.visitInsn(Opcodes.ICONST_0);
+            method.visitVarInsn(Opcodes.ISTORE, WAS_NULL);
+            method.visitLabel(end);
+        }
+
+        /**
+         * generates both arguments and stores their values in temps, jumps to {@code isNull}
+         * with the value of the null argument on the stack if one of them is null
+         */
+        private int[] generateBinaryArguments(Function function, Kind kind, Label isNull) {
+            int[] temps = new int[2];
+            for (int i = 0; i < 2; i++) {
+                Kind argumentKind = generateArgument(function, i);
+                if (argumentKind == Kind.LONG && kind == Kind.DOUBLE) {
+                    method.visitInsn(Opcodes.L2D);
+                }
+                method.visitVarInsn(Opcodes.ILOAD, WAS_NULL);
+                method.visitJumpInsn(Opcodes.IFNE, isNull);
+                temps[i] = nextTemp;
+                nextTemp += kind.size();
+                method.visitVarInsn(kind.type.getOpcode(Opcodes.ISTORE), temps[i]);
+            }
+            return temps;
+        }
+
+        private Kind generateArithmetic(Function function, int longOpcode) {
+            Kind kind = KINDS.get(function.info().returnType());
+            Label isNull = new Label();
+            Label end = new Label();
+            int[] temps = generateBinaryArguments(function, kind, isNull);
+            method.visitVarInsn(kind.type.getOpcode(Opcodes.ILOAD), temps[0]);
+            method.visitVarInsn(kind.type.getOpcode(Opcodes.ILOAD), temps[1]);
+            // the long opcodes are followed by the double variants (LADD, FADD, DADD)
+            method.visitInsn(kind == Kind.LONG ? longOpcode : longOpcode + 2);
+            method.visitJumpInsn(Opcodes.GOTO, end);
+
+            method.visitLabel(isNull);
+            method.visitInsn(kind.pop());
+            method.visitInsn(kind.defaultValue);
+            method.visitLabel(end);
+            return kind;
+        }
+
+        private Kind generateComparison(Function function, int jumpIfTrue) {
+            Kind kind = KINDS.get(function.info().ident().argumentTypes().get(0));
+            Label isNull = new Label();
+            Label isTrue = new Label();
+            Label end = new Label();
+            int[] temps = generateBinaryArguments(function, kind, isNull);
+            method.visitVarInsn(kind.type.getOpcode(Opcodes.ILOAD), temps[0]);
+            method.visitVarInsn(kind.type.getOpcode(Opcodes.ILOAD), temps[1]);
+            switch (kind) {
+                case LONG:
+                    method.visitInsn(Opcodes.LCMP);
+                    break;
+                case DOUBLE:
+                    // same semantics as Double.compareTo for NaN and -0.0
+                    method.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Double", "compare", "(DD)I");
+                    break;
+                default:
+                    method.visitInsn(Opcodes.ISUB);
+            }
+            method.visitJumpInsn(jumpIfTrue, isTrue);
+            method.visitInsn(Opcodes.ICONST_0);
+            method.visitJumpInsn(Opcodes.GOTO, end);
+            method.visitLabel(isTrue);
+            method.visitInsn(Opcodes.ICONST_1);
+            method.visitJumpInsn(Opcodes.GOTO, end);
+
+            method.visitLabel(isNull);
+            method.visitInsn(kind.pop());
+            method.visitInsn(Opcodes.ICONST_0);
+            method.visitLabel(end);
+            return Kind.BOOLEAN;
+        }
+
+        /**
+         * AND and OR with three valued logic: a value which decides the result
+         * (false for AND, true for OR) wins over null.
+         *
+         * @param jumpIfDeciding IFEQ for AND, IFNE for OR
+         */
+        private Kind generateLogical(Function function, int jumpIfDeciding) {
+            Label leftNull = new Label();
+            Label evaluateRight = new Label();
+            Label rightNull = new Label();
+            Label decided = new Label();
+            Label end = new Label();
+            int leftWasNull = nextTemp++;
+
+            generateArgument(function, 0);
+            method.visitVarInsn(Opcodes.ILOAD, WAS_NULL);
+            method.visitJumpInsn(Opcodes.IFNE, leftNull);
+            method.visitJumpInsn(jumpIfDeciding, decided);
+            method.visitInsn(Opcodes.ICONST_0);
+            method.visitVarInsn(Opcodes.ISTORE, leftWasNull);
+            method.visitJumpInsn(Opcodes.GOTO, evaluateRight);
+
+            method.visitLabel(leftNull);
+            method.visitInsn(Opcodes.POP);
+            method.visitInsn(Opcodes.ICONST_1);
+            method.visitVarInsn(Opcodes.ISTORE, leftWasNull);
+
+            method.visitLabel(evaluateRight);
+            generateArgument(function, 1);
+            method.visitVarInsn(Opcodes.ILOAD, WAS_NULL);
+            method.visitJumpInsn(Opcodes.IFNE, rightNull);
+            method.visitJumpInsn(jumpIfDeciding, decided);
+            // neither side decides the result, it's null if left is null
+            method.visitVarInsn(Opcodes.ILOAD, leftWasNull);
+            method.visitVarInsn(Opcodes.ISTORE, WAS_NULL);
+            method.visitInsn(jumpIfDeciding == Opcodes.IFEQ ? Opcodes.ICONST_1 : Opcodes.ICONST_0);
+            method.visitJumpInsn(Opcodes.GOTO, end);
+
+            method.visitLabel(rightNull);
+            method.visitInsn(Opcodes.POP);
+            method.visitInsn(Opcodes.ICONST_0);
+            method.visitJumpInsn(Opcodes.GOTO, end);
+
+            method.visitLabel(decided);
+            method.visitInsn(jumpIfDeciding == Opcodes.IFEQ ? Opcodes.ICONST_0 : Opcodes.ICONST_1);
+            method.visitInsn(Opcodes.ICONST_0);
+            method.visitVarInsn(Opcodes.ISTORE, WAS_NULL);
+            method.visitLabel(end);
+            return Kind.BOOLEAN;
+        }
+
+        /**
+         * NOT of null is true, see {@link NotPredicate#evaluate}
+         */
+        private Kind generateNot(Function function) {
+            Label isNull = new Label();
+            Label end = new Label();
+            generateArgument(function, 0);
+            method.visitVarInsn(Opcodes.ILOAD, WAS_NULL);
+            method.visitJumpInsn(Opcodes.IFNE, isNull);
+            method.visitInsn(Opcodes.ICONST_1);
+            method.visitInsn(Opcodes.IXOR);
+            method.visitJumpInsn(Opcodes.GOTO, end);
+
+            method.visitLabel(isNull);
+            method.visitInsn(Opcodes.POP);
+            method.visitInsn(Opcodes.ICONST_1);
+            method.visitInsn(Opcodes.ICONST_0);
+            method.visitVarInsn(Opcodes.ISTORE, WAS_NULL);
+            method.visitLabel(end);
+            return Kind.BOOLEAN;
+        }
+    }
+
+    private static class GeneratedClassLoader extends ClassLoader {
+
+        GeneratedClassLoader() {
+            super(CompiledExpression.class.getClassLoader());
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
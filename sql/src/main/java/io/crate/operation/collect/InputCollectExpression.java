@@ -32,6 +32,13 @@ public class InputCollectExpression implements CollectExpression<Row, Object> {
         this.position = position;
     }
 
+    /**
+     * @return the position of the value within the row
+     */
+    public int position() {
+        return position;
+    }
+
     @Override
     public void setNextRow(Row row) {
         assert row.size() > position: "row smaller than input position " + row.size() + "<=" + position;
@@ -21,13 +21,18 @@
 
 package io.crate.operation.collect;
 
+import com.google.common.collect.ImmutableList;
 import io.crate.action.job.SharedShardContext;
 import io.crate.action.sql.query.CrateSearchContext;
 import io.crate.action.sql.query.LuceneSortGenerator;
 import io.crate.analyze.EvaluatingNormalizer;
+import io.crate.analyze.symbol.Aggregation;
+import io.crate.analyze.symbol.InputColumn;
 import io.crate.analyze.symbol.Literal;
 import io.crate.analyze.symbol.Symbols;
 import io.crate.blob.v2.BlobIndices;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.core.collections.Row;
 import io.crate.executor.transport.TransportActionProvider;
 import io.crate.lucene.CrateDocIndexService;
 import io.crate.metadata.*;
@@ -35,17 +40,27 @@ import io.crate.metadata.doc.DocSysColumns;
 import io.crate.metadata.shard.RecoveryShardReferenceResolver;
 import io.crate.metadata.shard.ShardReferenceResolver;
 import io.crate.metadata.shard.blob.BlobShardReferenceResolver;
+import io.crate.operation.AggregationContext;
 import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.Input;
+import io.crate.operation.InputRow;
+import io.crate.operation.TempFiles;
+import io.crate.operation.aggregation.Aggregator;
 import io.crate.operation.collect.blobs.BlobDocCollector;
 import io.crate.operation.collect.collectors.CollectorFieldsVisitor;
 import io.crate.operation.collect.collectors.CrateDocCollector;
+import io.crate.operation.collect.collectors.GroupByOrdinalsCollector;
 import io.crate.operation.collect.collectors.OrderedDocCollector;
-import io.crate.operation.projectors.ProjectionToProjectorVisitor;
-import io.crate.operation.projectors.RowReceiver;
-import io.crate.operation.projectors.ShardProjectorChain;
+import io.crate.operation.collect.collectors.SegmentStatsAggregationCollector;
+import io.crate.operation.collect.collectors.SegmentSlices;
+import io.crate.operation.projectors.*;
+import io.crate.operation.reference.doc.lucene.BytesRefColumnReference;
 import io.crate.operation.reference.doc.lucene.CollectorContext;
 import io.crate.planner.node.dql.CollectPhase;
+import io.crate.planner.projection.AggregationProjection;
+import io.crate.planner.projection.GroupProjection;
+import io.crate.planner.projection.Projection;
+import io.crate.types.DataType;
 import org.elasticsearch.action.bulk.BulkRetryCoordinatorPool;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.common.inject.Inject;
@@ -61,6 +76,7 @@ import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Executor;
 
@@ -84,12 +100,14 @@ public class ShardCollectService {
     private final IndexFieldDataService indexFieldDataService;
     private final Functions functions;
     private final AbstractReferenceResolver shardResolver;
+    private final ShardResultCache shardResultCache;
 
     @Inject
     public ShardCollectService(SearchContextFactory searchContextFactory,
                                ThreadPool threadPool,
                                ClusterService clusterService,
                                Settings settings,
+                               TempFiles tempFiles,
                                TransportActionProvider transportActionProvider,
                                BulkRetryCoordinatorPool bulkRetryCoordinatorPool,
                                ShardId shardId,
@@ -100,7 +118,8 @@ public class ShardCollectService {
                                MapperService mapperService,
                                IndexFieldDataService indexFieldDataService,
                                BlobShardReferenceResolver blobShardReferenceResolver,
-                               CrateDocIndexService crateDocIndexService) {
+                               CrateDocIndexService crateDocIndexService,
+                               ShardResultCache shardResultCache) {
         this.searchContextFactory = searchContextFactory;
         this.threadPool = threadPool;
         this.clusterService = clusterService;
@@ -109,6 +128,7 @@ public class ShardCollectService {
         this.blobIndices = blobIndices;
         this.mapperService = mapperService;
         this.indexFieldDataService = indexFieldDataService;
+        this.shardResultCache = shardResultCache;
         isBlobShard = BlobIndices.isBlobShard(this.shardId);
 
         shardResolver = isBlobShard ? blobShardReferenceResolver : referenceResolver;
@@ -126,6 +146,7 @@ public class ShardCollectService {
                 clusterService,
                 threadPool,
                 settings,
+                tempFiles,
                 transportActionProvider,
                 bulkRetryCoordinatorPool,
                 shardImplementationSymbolVisitor,
@@ -159,30 +180,33 @@ public class ShardCollectService {
     }
 
     /**
-     * get a collector
+     * get the collectors for a shard
      *
      * @param collectPhase describes the collectOperation
      * @param projectorChain the shard projector chain to get the downstream from
-     * @return collector wrapping different collect implementations, call {@link io.crate.operation.collect.CrateCollector#doCollect()} )} to start
-     * collecting with this collector
+     * @param maxThreads the maximum number of collectors which may be used to collect the segments of the shard
+     *                   concurrently
+     * @return collectors wrapping different collect implementations, call {@link io.crate.operation.collect.CrateCollector#doCollect()} )} to start
+     * collecting with them
      */
-    public CrateCollector getDocCollector(CollectPhase collectPhase,
-                                          ShardProjectorChain projectorChain,
-                                          JobCollectContext jobCollectContext) throws Exception {
-        assert collectPhase.orderBy() == null : "getDocCollector shouldn't be called if there is an orderBy on the collectPhase";
+    public List<CrateCollector> getDocCollectors(CollectPhase collectPhase,
+                                                 ShardProjectorChain projectorChain,
+                                                 JobCollectContext jobCollectContext,
+                                                 int maxThreads) throws Exception {
+        assert collectPhase.orderBy() == null : "getDocCollectors shouldn't be called if there is an orderBy on the collectPhase";
         CollectPhase normalizedCollectNode = collectPhase.normalize(shardNormalizer);
 
         if (normalizedCollectNode.whereClause().noMatch()) {
             RowReceiver downstream = projectorChain.newShardDownstreamProjector(projectorVisitor);
-            return RowsCollector.empty(downstream);
+            return ImmutableList.<CrateCollector>of(RowsCollector.empty(downstream));
         }
 
         assert normalizedCollectNode.maxRowGranularity() == RowGranularity.DOC : "granularity must be DOC";
         if (isBlobShard) {
             RowReceiver downstream = projectorChain.newShardDownstreamProjector(projectorVisitor);
-            return getBlobIndexCollector(normalizedCollectNode, downstream);
+            return ImmutableList.of(getBlobIndexCollector(normalizedCollectNode, downstream));
         } else {
-            return getLuceneIndexCollector(threadPool, normalizedCollectNode, projectorChain, jobCollectContext);
+            return getLuceneIndexCollectors(threadPool, normalizedCollectNode, projectorChain, jobCollectContext, maxThreads);
         }
     }
 
@@ -203,15 +227,29 @@ public class ShardCollectService {
         );
     }
 
-    private CrateCollector getLuceneIndexCollector(ThreadPool threadPool,
-                                                   final CollectPhase collectNode,
-                                                   final ShardProjectorChain projectorChain,
-                                                   final JobCollectContext jobCollectContext) throws Exception {
+    private List<CrateCollector> getLuceneIndexCollectors(ThreadPool threadPool,
+                                                          final CollectPhase collectNode,
+                                                          final ShardProjectorChain projectorChain,
+                                                          final JobCollectContext jobCollectContext,
+                                                          int maxThreads) throws Exception {
         SharedShardContext sharedShardContext = jobCollectContext.sharedShardContexts().getOrCreateContext(shardId);
         Engine.Searcher searcher = sharedShardContext.searcher();
         IndexShard indexShard = sharedShardContext.indexShard();
         CrateSearchContext searchContext = null;
         try {
+            List<? extends Projection> shardProjections = projectorChain.shardProjections();
+            ShardResultCache.Recorder recorder = null;
+            if (shardResultCache.isCacheable(collectNode, shardProjections)) {
+                ShardResultCache.Key cacheKey = shardResultCache.key(searcher.reader(), collectNode, shardProjections);
+                Iterable<Row> cachedRows = shardResultCache.get(cacheKey, shardProjections);
+                if (cachedRows != null) {
+                    LOGGER.trace("{} using cached shard result", shardId);
+                    searcher.close();
+                    return ImmutableList.<CrateCollector>of(
+                            new RowsCollector(projectorChain.newShardOutputReceiver(), cachedRows));
+                }
+                recorder = shardResultCache.recorder(cacheKey, searcher.reader(), shardProjections);
+            }
              searchContext = searchContextFactory.createContext(
                     sharedShardContext.readerId(),
                     indexShard,
@@ -219,17 +257,207 @@ public class ShardCollectService {
                     collectNode.whereClause()
             );
             jobCollectContext.addSearchContext(sharedShardContext.readerId(), searchContext);
-            CollectInputSymbolVisitor.Context docCtx = docInputSymbolVisitor.extractImplementations(collectNode);
             Executor executor = threadPool.executor(ThreadPool.Names.SEARCH);
+            List<? extends DataType> inputTypes = Symbols.extractTypes(collectNode.toCollect());
+
+            CollectInputSymbolVisitor.Context docCtx = docInputSymbolVisitor.extractImplementations(collectNode);
+            GroupProjection ordinalsGroupProjection = ordinalsGroupProjection(shardProjections, docCtx);
+            if (ordinalsGroupProjection != null) {
+                return getGroupByOrdinalsCollectors(searchContext, collectNode, ordinalsGroupProjection,
+                        projectorChain, recorder, jobCollectContext, docCtx, maxThreads);
+            }
+
+            RowReceiver downstream = newShardDownstream(projectorChain, recorder);
+            SegmentSlices slices = null;
+            if (maxThreads > 1 && canSplit(shardProjections, downstream)) {
+                slices = createSlices(searchContext, maxThreads);
+            }
+            if (slices == null) {
+                return ImmutableList.<CrateCollector>of(new CrateDocCollector(
+                        searchContext,
+                        executor,
+                        jobCollectContext.keepAliveListener(),
+                        jobCollectContext.queryPhaseRamAccountingContext(),
+                        downstream,
+                        docCtx.topLevelInputs(),
+                        inputTypes,
+                        docCtx.docLevelExpressions()
+                ));
+            }
+
+            LOGGER.debug("{} collecting {} segment slices concurrently", shardId, slices.numSlices());
+            List<CrateCollector> collectors = new ArrayList<>(slices.numSlices());
+            for (int slice = 0; slice < slices.numSlices(); slice++) {
+                if (slice > 0) {
+                    downstream = newShardDownstream(projectorChain, recorder);
+                    // every slice needs its own expressions as they hold the state of the current document
+                    docCtx = docInputSymbolVisitor.extractImplementations(collectNode);
+                }
+                collectors.add(new CrateDocCollector(
+                        searchContext,
+                        executor,
+                        jobCollectContext.keepAliveListener(),
+                        jobCollectContext.queryPhaseRamAccountingContext(),
+                        downstream,
+                        docCtx.topLevelInputs(),
+                        inputTypes,
+                        docCtx.docLevelExpressions(),
+                        slices,
+                        slice
+                ));
+            }
+            return collectors;
+        } catch (Throwable t) {
+            if (searchContext == null) {
+                searcher.close();
+            } else {
+                searchContext.close(); // will close searcher too
+            }
+            throw t;
+        }
+    }
+
+    @Nullable
+    private static SegmentSlices createSlices(CrateSearchContext searchContext, int maxThreads) {
+        SegmentSlices slices = SegmentSlices.create(searchContext.searcher().getTopReaderContext().leaves(), maxThreads);
+        if (slices.numSlices() == 1) {
+            return null;
+        }
+        return slices;
+    }
+
+    /**
+     * A shard level GROUP BY on a single string column is executed on the global ordinals of the column
+     * if the column is read from the field data.
+     *
+     * @return the group projection to execute using ordinals, or null if the rows have to be grouped by a projector
+     */
+    @Nullable
+    private static GroupProjection ordinalsGroupProjection(List<? extends Projection> shardProjections,
+                                                           CollectInputSymbolVisitor.Context docCtx) {
+        if (shardProjections.size() != 1 || !(shardProjections.get(0) instanceof GroupProjection)) {
+            return null;
+        }
+        GroupProjection groupProjection = (GroupProjection) shardProjections.get(0);
+        if (groupProjection.keys().size() != 1 || !(groupProjection.keys().get(0) instanceof InputColumn)) {
+            return null;
+        }
+        int keyIndex = ((InputColumn) groupProjection.keys().get(0)).index();
+        if (docCtx.topLevelInputs().get(keyIndex) instanceof BytesRefColumnReference) {
+            return groupProjection;
+        }
+        return null;
+    }
+
+    private List<CrateCollector> getGroupByOrdinalsCollectors(CrateSearchContext searchContext,
+                                                              CollectPhase collectNode,
+                                                              GroupProjection groupProjection,
+                                                              ShardProjectorChain projectorChain,
+                                                              @Nullable ShardResultCache.Recorder recorder,
+                                                              JobCollectContext jobCollectContext,
+                                                              CollectInputSymbolVisitor.Context docCtx,
+                                                              int maxThreads) {
+        SegmentSlices slices = null;
+        if (maxThreads > 1 && SegmentSlices.canMergeSlices(projectorChain.shardProjections())) {
+            slices = createSlices(searchContext, maxThreads);
+        }
+        int numSlices = slices == null ? 1 : slices.numSlices();
+        if (slices != null) {
+            LOGGER.debug("{} grouping {} segment slices concurrently", shardId, numSlices);
+        }
+        int keyIndex = ((InputColumn) groupProjection.keys().get(0)).index();
+        List<CrateCollector> collectors = new ArrayList<>(numSlices);
+        for (int slice = 0; slice < numSlices; slice++) {
+            if (slice > 0) {
+                // every slice needs its own expressions as they hold the state of the current document
+                docCtx = docInputSymbolVisitor.extractImplementations(collectNode);
+            }
+            ImplementationSymbolVisitor.Context symbolContext = new ImplementationSymbolVisitor.Context();
+            RamAccountingContext ramAccountingContext = jobCollectContext.queryPhaseRamAccountingContext();
+            Aggregator[] aggregators = aggregators(groupProjection.values(), symbolContext, ramAccountingContext);
+            RowReceiver output = projectorChain.newShardOutputReceiver();
+            if (recorder != null) {
+                output = recorder.wrap(output);
+            }
+            collectors.add(new GroupByOrdinalsCollector(
+                    searchContext,
+                    jobCollectContext.keepAliveListener(),
+                    ramAccountingContext,
+                    output,
+                    (BytesRefColumnReference) docCtx.topLevelInputs().get(keyIndex),
+                    new InputRow(docCtx.topLevelInputs()),
+                    docCtx.docLevelExpressions(),
+                    collectExpressions(symbolContext),
+                    aggregators,
+                    slices,
+                    slice
+            ));
+        }
+        return collectors;
+    }
+
+    private Aggregator[] aggregators(List<Aggregation> aggregations,
+                                     ImplementationSymbolVisitor.Context symbolContext,
+                                     RamAccountingContext ramAccountingContext) {
+        for (Aggregation aggregation : aggregations) {
+            shardImplementationSymbolVisitor.process(aggregation, symbolContext);
+        }
+        AggregationContext[] aggregationContexts = symbolContext.aggregations();
+        Aggregator[] aggregators = new Aggregator[aggregationContexts.length];
+        for (int i = 0; i < aggregationContexts.length; i++) {
+            aggregators[i] = new Aggregator(
+                    ramAccountingContext,
+                    aggregationContexts[i].symbol(),
+                    aggregationContexts[i].function(),
+                    aggregationContexts[i].inputs()
+            );
+        }
+        return aggregators;
+    }
 
-            return new CrateDocCollector(
+    private static CollectExpression[] collectExpressions(ImplementationSymbolVisitor.Context symbolContext) {
+        return symbolContext.collectExpressions().toArray(new CollectExpression[symbolContext.collectExpressions().size()]);
+    }
+
+    /**
+     * get a collector which emits the partial results of the aggregations of the projection for the whole shard,
+     * computed from the segment statistics where possible.
+     * See {@link SegmentStatsAggregationCollector#canCollect(CollectPhase)}
+     */
+    public CrateCollector getSegmentStatsCollector(CollectPhase collectPhase,
+                                                   AggregationProjection projection,
+                                                   ShardProjectorChain projectorChain,
+                                                   JobCollectContext jobCollectContext) {
+        CollectPhase normalizedCollectNode = collectPhase.normalize(shardNormalizer);
+        RowReceiver downstream = projectorChain.newShardOutputReceiver();
+        if (normalizedCollectNode.whereClause().noMatch()) {
+            return RowsCollector.empty(downstream);
+        }
+        SharedShardContext sharedShardContext = jobCollectContext.sharedShardContexts().getOrCreateContext(shardId);
+        Engine.Searcher searcher = sharedShardContext.searcher();
+        CrateSearchContext searchContext = null;
+        try {
+            searchContext = searchContextFactory.createContext(
+                    sharedShardContext.readerId(),
+                    sharedShardContext.indexShard(),
+                    searcher,
+                    normalizedCollectNode.whereClause()
+            );
+            jobCollectContext.addSearchContext(sharedShardContext.readerId(), searchContext);
+            CollectInputSymbolVisitor.Context docCtx = docInputSymbolVisitor.extractImplementations(normalizedCollectNode);
+            ImplementationSymbolVisitor.Context symbolContext = new ImplementationSymbolVisitor.Context();
+            Aggregator[] aggregators = aggregators(
+                    projection.aggregations(), symbolContext, jobCollectContext.queryPhaseRamAccountingContext());
+            return new SegmentStatsAggregationCollector(
                     searchContext,
-                    executor,
                     jobCollectContext.keepAliveListener(),
-                    jobCollectContext.queryPhaseRamAccountingContext(),
-                    projectorChain.newShardDownstreamProjector(projectorVisitor),
-                    docCtx.topLevelInputs(),
-                    docCtx.docLevelExpressions()
+                    downstream,
+                    projection.aggregations(),
+                    normalizedCollectNode.toCollect(),
+                    aggregators,
+                    new InputRow(docCtx.topLevelInputs()),
+                    docCtx.docLevelExpressions(),
+                    collectExpressions(symbolContext)
             );
         } catch (Throwable t) {
             if (searchContext == null) {
@@ -241,14 +469,38 @@ public class ShardCollectService {
         }
     }
 
-    public OrderedDocCollector getOrderedCollector(CollectPhase collectPhase,
-                                                SharedShardContext sharedShardContext,
-                                                JobCollectContext jobCollectContext) {
+    private RowReceiver newShardDownstream(ShardProjectorChain projectorChain,
+                                           @Nullable ShardResultCache.Recorder recorder) {
+        if (recorder == null) {
+            return projectorChain.newShardDownstreamProjector(projectorVisitor);
+        }
+        return projectorChain.newShardDownstreamProjector(
+                projectorVisitor, recorder.wrap(projectorChain.newShardOutputReceiver()));
+    }
+
+    /**
+     * The segments of a shard can only be collected concurrently if the rows of every segment slice
+     * are consumed completely by its own shard projectors (partial aggregations) whose results are merged later.
+     * See {@link SegmentSlices#canMergeSlices(List)}
+     */
+    private static boolean canSplit(List<? extends Projection> shardProjections, RowReceiver downstream) {
+        return SegmentSlices.canMergeSlices(shardProjections) && !downstream.requirements().contains(Requirement.REPEAT);
+    }
+
+    /**
+     * get the ordered collectors for a shard. If the shard is split into several segment slices
+     * there is one collector per slice.
+     *
+     * @param firstNumber the number of the first collector, the other collectors are numbered consecutively
+     */
+    public List<OrderedDocCollector> getOrderedCollectors(CollectPhase collectPhase,
+                                                          SharedShardContext sharedShardContext,
+                                                          JobCollectContext jobCollectContext,
+                                                          int maxThreads,
+                                                          int firstNumber) {
         collectPhase = collectPhase.normalize(shardNormalizer);
 
         CrateSearchContext searchContext = null;
-        CollectorContext collectorContext;
-        CollectInputSymbolVisitor.Context ctx;
         try {
             searchContext = searchContextFactory.createContext(
                     sharedShardContext.readerId(),
@@ -257,29 +509,55 @@ public class ShardCollectService {
                     collectPhase.whereClause()
             );
             jobCollectContext.addSearchContext(sharedShardContext.readerId(), searchContext);
-            ctx = docInputSymbolVisitor.extractImplementations(collectPhase);
-
-            collectorContext = new CollectorContext(
-                    mapperService,
-                    indexFieldDataService,
-                    new CollectorFieldsVisitor(ctx.docLevelExpressions().size()),
-                    sharedShardContext.readerId()
-            );
+            SegmentSlices slices = null;
+            if (maxThreads > 1) {
+                slices = createSlices(searchContext, maxThreads);
+            }
+            int batchSize = collectPhase.shardQueueSize(clusterService.localNode().id());
+            if (LOGGER.isTraceEnabled()) {
+                LOGGER.trace("[{}][{}] creating OrderedDocCollector. Expected number of rows to be collected: {}",
+                        sharedShardContext.indexShard().routingEntry().currentNodeId(),
+                        sharedShardContext.indexShard().shardId(),
+                        batchSize);
+            }
+            if (slices == null) {
+                return ImmutableList.of(
+                        getOrderedCollector(collectPhase, sharedShardContext, searchContext, batchSize, firstNumber, null, 0));
+            }
+            LOGGER.debug("{} collecting {} segment slices concurrently", shardId, slices.numSlices());
+            List<OrderedDocCollector> collectors = new ArrayList<>(slices.numSlices());
+            for (int slice = 0; slice < slices.numSlices(); slice++) {
+                collectors.add(getOrderedCollector(
+                        collectPhase, sharedShardContext, searchContext, batchSize, firstNumber + slice, slices, slice));
+            }
+            return collectors;
         } catch (Throwable t) {
             if (searchContext != null) {
                 searchContext.close();
             }
             throw t;
         }
-        int batchSize = collectPhase.shardQueueSize(clusterService.localNode().id());
-        if (LOGGER.isTraceEnabled()) {
-            LOGGER.trace("[{}][{}] creating OrderedDocCollector. Expected number of rows to be collected: {}",
-                    sharedShardContext.indexShard().routingEntry().currentNodeId(),
-                    sharedShardContext.indexShard().shardId(),
-                    batchSize);
-        }
+    }
+
+    private OrderedDocCollector getOrderedCollector(CollectPhase collectPhase,
+                                                    SharedShardContext sharedShardContext,
+                                                    CrateSearchContext searchContext,
+                                                    int batchSize,
+                                                    int number,
+                                                    @Nullable SegmentSlices slices,
+                                                    int slice) {
+        CollectInputSymbolVisitor.Context ctx = docInputSymbolVisitor.extractImplementations(collectPhase);
+        CollectorContext collectorContext = new CollectorContext(
+                mapperService,
+                indexFieldDataService,
+                new CollectorFieldsVisitor(ctx.docLevelExpressions().size()),
+                sharedShardContext.readerId()
+        );
         return new OrderedDocCollector(
                 searchContext,
+                number,
+                slices,
+                slice,
                 Symbols.containsColumn(collectPhase.toCollect(), DocSysColumns.SCORE),
                 batchSize,
                 collectorContext,
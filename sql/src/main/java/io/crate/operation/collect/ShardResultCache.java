@@ -0,0 +1,362 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect;
+
+import com.google.common.base.Predicate;
+import com.google.common.cache.*;
+import com.google.common.collect.Iterables;
+import io.crate.Streamer;
+import io.crate.analyze.symbol.Function;
+import io.crate.analyze.symbol.Symbol;
+import io.crate.analyze.symbol.SymbolType;
+import io.crate.analyze.symbol.SymbolVisitors;
+import io.crate.analyze.symbol.Symbols;
+import io.crate.breaker.CrateCircuitBreakerService;
+import io.crate.core.collections.Bucket;
+import io.crate.core.collections.Row;
+import io.crate.executor.transport.StreamBucket;
+import io.crate.operation.projectors.ForwardingRowReceiver;
+import io.crate.operation.projectors.RowReceiver;
+import io.crate.planner.node.dql.CollectPhase;
+import io.crate.planner.projection.Projection;
+import io.crate.planner.projection.ProjectionType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.index.IndexReader;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Node wide LRU cache for the rows which the shard projections (partial aggregations) of a collect phase
+ * emit for a shard.
+ *
+ * Entries are keyed by the index reader of the shard and the normalized phase, so a refresh which changes the
+ * shard results in a new key. Entries of a reader are removed as soon as the reader is closed.
+ * The cache is disabled unless {@link #SIZE} is set.
+ */
+@Singleton
+public class ShardResultCache {
+
+    private static final ESLogger LOGGER = Loggers.getLogger(ShardResultCache.class);
+
+    /**
+     * maximum size of the cached shard results, 0 disables the cache
+     */
+    public static final String SIZE = "collect.shard_result_cache.size";
+
+    private static final Predicate<Symbol> IS_NON_DETERMINISTIC = new Predicate<Symbol>() {
+        @Override
+        public boolean apply(@Nullable Symbol input) {
+            return input != null && input.symbolType() == SymbolType.FUNCTION
+                   && !((Function) input).info().isDeterministic();
+        }
+    };
+
+    private final CircuitBreaker breaker;
+    private final Cache<Key, BytesReference> cache;
+    private final Set<Object> observedReaders = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+    private final long maxSize;
+
+    @Inject
+    public ShardResultCache(Settings settings, CircuitBreakerService breakerService) {
+        this.breaker = breakerService.getBreaker(CrateCircuitBreakerService.QUERY_BREAKER);
+        this.maxSize = settings.getAsBytesSize(SIZE, new ByteSizeValue(0)).bytes();
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(Math.max(maxSize, 1))
+                .weigher(new Weigher<Key, BytesReference>() {
+                    @Override
+                    public int weigh(Key key, BytesReference value) {
+                        return key.phase.length() + value.length();
+                    }
+                })
+                .removalListener(new RemovalListener<Key, BytesReference>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<Key, BytesReference> notification) {
+                        breaker.addWithoutBreaking(-(notification.getKey().phase.length() + notification.getValue().length()));
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    public boolean enabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * Only the results of shard level aggregations are cached. Their size doesn't depend on the number of
+     * documents of a shard and they are the same for every execution as long as the shard doesn't change.
+     */
+    public boolean isCacheable(CollectPhase collectPhase, List<? extends Projection> shardProjections) {
+        if (!enabled() || shardProjections.isEmpty()) {
+            return false;
+        }
+        for (Projection projection : shardProjections) {
+            if (projection.projectionType() != ProjectionType.AGGREGATION
+                && projection.projectionType() != ProjectionType.GROUP) {
+                return false;
+            }
+        }
+        if (collectPhase.whereClause().hasQuery()
+            && SymbolVisitors.any(IS_NON_DETERMINISTIC, collectPhase.whereClause().query())) {
+            return false;
+        }
+        return !SymbolVisitors.any(IS_NON_DETERMINISTIC,
+                Iterables.toArray(collectPhase.toCollect(), Symbol.class));
+    }
+
+    public Key key(IndexReader reader,
+                   CollectPhase collectPhase,
+                   List<? extends Projection> shardProjections) throws IOException {
+        BytesStreamOutput out = new BytesStreamOutput();
+        out.writeVInt(collectPhase.toCollect().size());
+        for (Symbol symbol : collectPhase.toCollect()) {
+            Symbol.toStream(symbol, out);
+        }
+        collectPhase.whereClause().writeTo(out);
+        out.writeVInt(shardProjections.size());
+        for (Projection projection : shardProjections) {
+            Projection.toStream(projection, out);
+        }
+        return new Key(reader.getCoreCacheKey(), out.bytes());
+    }
+
+    /**
+     * @return the cached rows or null if there is no entry for the key
+     */
+    @Nullable
+    public Iterable<Row> get(Key key, List<? extends Projection> shardProjections) throws IOException {
+        BytesReference bytes = cache.getIfPresent(key);
+        if (bytes == null) {
+            return null;
+        }
+        Streamer<?>[] streamers = streamers(shardProjections);
+        BytesStreamInput in = new BytesStreamInput(bytes);
+        int numBuckets = in.readVInt();
+        List<Bucket> buckets = new ArrayList<>(numBuckets);
+        for (int i = 0; i < numBuckets; i++) {
+            StreamBucket bucket = new StreamBucket(streamers);
+            bucket.readFrom(in);
+            buckets.add(bucket);
+        }
+        return Iterables.concat(buckets);
+    }
+
+    /**
+     * Creates a recorder which stores the rows of the shard projectors in the cache
+     * if all of them finished successfully.
+     */
+    public Recorder recorder(Key key, IndexReader reader, List<? extends Projection> shardProjections) {
+        return new Recorder(key, reader, streamers(shardProjections));
+    }
+
+    private static Streamer<?>[] streamers(List<? extends Projection> shardProjections) {
+        Projection lastProjection = shardProjections.get(shardProjections.size() - 1);
+        return DataTypes.getStreamer(Symbols.extractTypes(lastProjection.outputs()));
+    }
+
+    private void put(Key key, IndexReader reader, BytesReference value) {
+        if (observedReaders.add(key.reader)) {
+            reader.addReaderClosedListener(new IndexReader.ReaderClosedListener() {
+                @Override
+                public void onClose(IndexReader reader) {
+                    invalidate(reader.getCoreCacheKey());
+                }
+            });
+            if (reader.getRefCount() <= 0) {
+                // closed before the listener was added
+                invalidate(key.reader);
+                return;
+            }
+        }
+        long bytes = key.phase.length() + value.length();
+        if (bytes > maxSize) {
+            return;
+        }
+        if (breaker.getLimit() > 0 && breaker.getUsed() + bytes > breaker.getLimit()) {
+            // queries need the memory
+            LOGGER.debug("query circuit breaker is close to its limit, clearing the shard result cache");
+            cache.invalidateAll();
+            return;
+        }
+        breaker.addWithoutBreaking(bytes);
+        cache.put(key, value);
+    }
+
+    private void invalidate(Object reader) {
+        observedReaders.remove(reader);
+        for (Key key : cache.asMap().keySet()) {
+            if (key.reader == reader) {
+                cache.invalidate(key);
+            }
+        }
+    }
+
+    public long hits() {
+        return cache.stats().hitCount();
+    }
+
+    public long misses() {
+        return cache.stats().missCount();
+    }
+
+    public long evictions() {
+        return cache.stats().evictionCount();
+    }
+
+    public long entries() {
+        return cache.size();
+    }
+
+    public static class Key {
+
+        private final Object reader;
+        private final BytesReference phase;
+
+        private Key(Object reader, BytesReference phase) {
+            this.reader = reader;
+            this.phase = phase;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return reader == key.reader && phase.equals(key.phase);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(reader) + phase.hashCode();
+        }
+    }
+
+    /**
+     * Records the rows of one or more shard projector chains of a shard,
+     * e.g. one per segment slice if the shard is collected concurrently.
+     */
+    public class Recorder {
+
+        private final Key key;
+        private final IndexReader reader;
+        private final Streamer<?>[] streamers;
+        private final List<StreamBucket.Builder> builders = new ArrayList<>();
+        private final AtomicInteger pending = new AtomicInteger(0);
+        private volatile boolean complete = true;
+
+        private Recorder(Key key, IndexReader reader, Streamer<?>[] streamers) {
+            this.key = key;
+            this.reader = reader;
+            this.streamers = streamers;
+        }
+
+        /**
+         * @return a receiver which records the rows it forwards to the given receiver.
+         *         All receivers must be created before rows are sent to any of them.
+         */
+        public RowReceiver wrap(RowReceiver rowReceiver) {
+            pending.incrementAndGet();
+            return new RecordingRowReceiver(rowReceiver, new StreamBucket.Builder(streamers));
+        }
+
+        private void finished(StreamBucket.Builder builder) {
+            synchronized (builders) {
+                builders.add(builder);
+            }
+            if (pending.decrementAndGet() == 0 && complete) {
+                try {
+                    BytesStreamOutput out = new BytesStreamOutput();
+                    out.writeVInt(builders.size());
+                    for (StreamBucket.Builder bucketBuilder : builders) {
+                        bucketBuilder.writeToStream(out);
+                    }
+                    put(key, reader, out.bytes());
+                } catch (IOException e) {
+                    LOGGER.warn("failed to cache shard result", e);
+                }
+            }
+        }
+
+        private void failed() {
+            complete = false;
+            pending.decrementAndGet();
+        }
+
+        private class RecordingRowReceiver extends ForwardingRowReceiver {
+
+            private final StreamBucket.Builder builder;
+
+            public RecordingRowReceiver(RowReceiver rowReceiver, StreamBucket.Builder builder) {
+                super(rowReceiver);
+                this.builder = builder;
+            }
+
+            @Override
+            public boolean setNextRow(Row row) {
+                if (complete) {
+                    try {
+                        builder.add(row);
+                    } catch (IOException e) {
+                        complete = false;
+                    }
+                }
+                boolean wantsMore = super.setNextRow(row);
+                if (!wantsMore) {
+                    // the result isn't complete if the downstream didn't consume all rows
+                    complete = false;
+                }
+                return wantsMore;
+            }
+
+            @Override
+            public void finish() {
+                super.finish();
+                finished(builder);
+            }
+
+            @Override
+            public void fail(Throwable throwable) {
+                super.fail(throwable);
+                failed();
+            }
+        }
+    }
+}
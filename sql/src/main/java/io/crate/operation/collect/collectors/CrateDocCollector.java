@@ -33,9 +33,13 @@ import io.crate.operation.collect.CollectionFinishedEarlyException;
 import io.crate.operation.collect.CollectionPauseException;
 import io.crate.operation.collect.CrateCollector;
 import io.crate.operation.collect.UnexpectedCollectionTerminatedException;
+import io.crate.operation.projectors.BatchRowReceiver;
+import io.crate.operation.projectors.RowBatch;
 import io.crate.operation.projectors.RowReceiver;
+import io.crate.operation.projectors.RowReceivers;
 import io.crate.operation.reference.doc.lucene.CollectorContext;
 import io.crate.operation.reference.doc.lucene.LuceneCollectorExpression;
+import io.crate.types.DataType;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.search.BulkScorer;
 import org.apache.lucene.search.Collector;
@@ -62,8 +66,11 @@ public class CrateDocCollector implements CrateCollector {
     private final CrateSearchContext searchContext;
     private final RowReceiver rowReceiver;
     private final Collection<? extends LuceneCollectorExpression<?>> expressions;
+    private final LuceneDocCollector docCollector;
     private final Collector luceneCollector;
     private final TopRowUpstream upstreamState;
+    private final SegmentSlices slices;
+    private final int slice;
     private final State state = new State();
 
     public CrateDocCollector(final CrateSearchContext searchContext,
@@ -72,9 +79,30 @@ public class CrateDocCollector implements CrateCollector {
                              RamAccountingContext ramAccountingContext,
                              RowReceiver rowReceiver,
                              List<Input<?>> inputs,
+                             List<? extends DataType> inputTypes,
                              Collection<? extends LuceneCollectorExpression<?>> expressions) {
+        this(searchContext, executor, keepAliveListener, ramAccountingContext, rowReceiver,
+                inputs, inputTypes, expressions, null, 0);
+    }
+
+    /**
+     * @param slices if not null only the leaves of the given slice are collected.
+     *               The searchContext is shared by all slices and released by the one finishing last.
+     */
+    public CrateDocCollector(final CrateSearchContext searchContext,
+                             Executor executor,
+                             KeepAliveListener keepAliveListener,
+                             RamAccountingContext ramAccountingContext,
+                             RowReceiver rowReceiver,
+                             List<Input<?>> inputs,
+                             List<? extends DataType> inputTypes,
+                             Collection<? extends LuceneCollectorExpression<?>> expressions,
+                             @Nullable SegmentSlices slices,
+                             int slice) {
         this.searchContext = searchContext;
         this.rowReceiver = rowReceiver;
+        this.slices = slices;
+        this.slice = slice;
         upstreamState = new TopRowUpstream(
                 executor,
                 new Runnable() {
@@ -90,8 +118,7 @@ public class CrateDocCollector implements CrateCollector {
                         debugLog("repeat collect");
                         ContextIndexSearcher indexSearcher = searchContext.searcher();
                         indexSearcher.inStage(ContextIndexSearcher.Stage.MAIN_QUERY);
-                        Iterator<AtomicReaderContext> iterator = indexSearcher.getTopReaderContext().leaves().iterator();
-                        innerCollect(state.collector, state.weight, iterator, null);
+                        innerCollect(state.collector, state.weight, leaves(indexSearcher).iterator(), null);
                     }
                 }
         );
@@ -104,14 +131,16 @@ public class CrateDocCollector implements CrateCollector {
                 ((int) searchContext.id())
         );
         rowReceiver.setUpstream(upstreamState);
-        Collector collector = new LuceneDocCollector(
+        docCollector = new LuceneDocCollector(
                 keepAliveListener,
                 ramAccountingContext,
                 upstreamState,
                 rowReceiver,
                 new InputRow(inputs),
-                expressions
+                expressions,
+                RowReceivers.acceptsBatches(rowReceiver) ? new RowBatch(inputTypes) : null
         );
+        Collector collector = docCollector;
         if (searchContext.minimumScore() != null) {
             collector = new MinimumScoreCollector(collector, searchContext.minimumScore());
         }
@@ -146,7 +175,7 @@ public class CrateDocCollector implements CrateCollector {
         Iterator<AtomicReaderContext> leavesIt;
         try {
             weight = searchContext.engineSearcher().searcher().createNormalizedWeight(searchContext.query());
-            leavesIt = contextIndexSearcher.getTopReaderContext().leaves().iterator();
+            leavesIt = leaves(contextIndexSearcher).iterator();
         } catch (IOException e) {
             fail(e);
             return;
@@ -159,9 +188,24 @@ public class CrateDocCollector implements CrateCollector {
         innerCollect(collector, weight, leavesIt, null);
     }
 
+    private List<AtomicReaderContext> leaves(ContextIndexSearcher indexSearcher) {
+        if (slices == null) {
+            return indexSearcher.getTopReaderContext().leaves();
+        }
+        return slices.leaves(slice);
+    }
+
+    /**
+     * @return true if the searchContext can be released because no other slice is using it anymore
+     */
+    private boolean releaseSlice() {
+        return slices == null || slices.release();
+    }
+
     private void innerCollect(Collector collector, Weight weight, Iterator<AtomicReaderContext> leavesIt, @Nullable BulkScorer scorer) {
         try {
             if (collectLeaves(collector, weight, leavesIt, scorer) == Result.FINISHED) {
+                docCollector.flushBatch();
                 finishCollect();
             } else {
                 traceLog("paused collect");
@@ -176,8 +220,10 @@ public class CrateDocCollector implements CrateCollector {
     private void fail(Throwable t) {
         debugLog("finished collect with failure");
         try {
-            searchContext.searcher().finishStage(ContextIndexSearcher.Stage.MAIN_QUERY);
-            searchContext.clearReleasables(SearchContext.Lifetime.PHASE);
+            if (releaseSlice()) {
+                searchContext.searcher().finishStage(ContextIndexSearcher.Stage.MAIN_QUERY);
+                searchContext.clearReleasables(SearchContext.Lifetime.PHASE);
+            }
         } catch (AssertionError e) {
             // log it, the original failure is more interesting than the stage assertion
             LOGGER.error("Invalid searcher stage: ", e);
@@ -187,8 +233,10 @@ public class CrateDocCollector implements CrateCollector {
 
     private void finishCollect() {
         debugLog("finished collect");
-        searchContext.searcher().finishStage(ContextIndexSearcher.Stage.MAIN_QUERY);
-        searchContext.clearReleasables(SearchContext.Lifetime.PHASE);
+        if (releaseSlice()) {
+            searchContext.searcher().finishStage(ContextIndexSearcher.Stage.MAIN_QUERY);
+            searchContext.clearReleasables(SearchContext.Lifetime.PHASE);
+        }
         rowReceiver.finish();
     }
 
@@ -210,7 +258,10 @@ public class CrateDocCollector implements CrateCollector {
                 if (processScorer(collector, leaves, scorer)) return Result.PAUSED;
             }
         } finally {
-            searchContext.clearReleasables(SearchContext.Lifetime.COLLECTION);
+            if (slices == null) {
+                // other slices might still use them, they're released together with the PHASE releasables
+                searchContext.clearReleasables(SearchContext.Lifetime.COLLECTION);
+            }
         }
         return Result.FINISHED;
     }
@@ -248,21 +299,28 @@ public class CrateDocCollector implements CrateCollector {
         private final RowReceiver rowReceiver;
         private final Row inputRow;
         private final Collection<? extends LuceneCollectorExpression<?>> expressions;
+        private final RowBatch batch;
 
         private int rowCount;
 
+        /**
+         * @param batch if not null the rows are collected into the batch which is sent to the rowReceiver
+         *              once it is full, instead of sending every single row.
+         */
         public LuceneDocCollector(KeepAliveListener keepAliveListener,
                                   RamAccountingContext ramAccountingContext,
                                   TopRowUpstream topRowUpstream,
                                   RowReceiver rowReceiver,
                                   Row inputRow,
-                                  Collection<? extends LuceneCollectorExpression<?>> expressions) {
+                                  Collection<? extends LuceneCollectorExpression<?>> expressions,
+                                  @Nullable RowBatch batch) {
             this.keepAliveListener = keepAliveListener;
             this.ramAccountingContext = ramAccountingContext;
             this.topRowUpstream = topRowUpstream;
             this.rowReceiver = rowReceiver;
             this.inputRow = inputRow;
             this.expressions = expressions;
+            this.batch = batch;
         }
 
         @Override
@@ -274,8 +332,10 @@ public class CrateDocCollector implements CrateCollector {
 
         @Override
         public void collect(int doc) throws IOException {
-            topRowUpstream.throwIfKilled();
-            checkCircuitBreaker();
+            if (batch == null) {
+                topRowUpstream.throwIfKilled();
+                checkCircuitBreaker();
+            }
 
             rowCount++;
             if (rowCount % KEEP_ALIVE_AFTER_ROWS == 0) {
@@ -284,7 +344,18 @@ public class CrateDocCollector implements CrateCollector {
             for (LuceneCollectorExpression<?> expression : expressions) {
                 expression.setNextDocId(doc);
             }
-            boolean wantMore = rowReceiver.setNextRow(inputRow);
+            boolean wantMore;
+            if (batch == null) {
+                wantMore = rowReceiver.setNextRow(inputRow);
+            } else {
+                batch.add(inputRow);
+                if (!batch.isFull()) {
+                    return;
+                }
+                topRowUpstream.throwIfKilled();
+                checkCircuitBreaker();
+                wantMore = flushBatch();
+            }
             if (topRowUpstream.shouldPause()) {
                 throw CollectionPauseException.INSTANCE;
             }
@@ -293,6 +364,20 @@ public class CrateDocCollector implements CrateCollector {
             }
         }
 
+        /**
+         * sends the collected rows of the batch, if there are any, to the rowReceiver
+         *
+         * @return false if the rowReceiver doesn't need any more rows
+         */
+        boolean flushBatch() {
+            if (batch == null || batch.size() == 0) {
+                return true;
+            }
+            boolean wantMore = ((BatchRowReceiver) rowReceiver).setNextBatch(batch);
+            batch.reset();
+            return wantMore;
+        }
+
         private void checkCircuitBreaker() throws UnexpectedCollectionTerminatedException {
             if (ramAccountingContext != null && ramAccountingContext.trippedBreaker()) {
                 // stop collecting because breaker limit was reached
@@ -0,0 +1,419 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect.collectors;
+
+import com.carrotsearch.hppc.IntObjectOpenHashMap;
+import com.carrotsearch.hppc.cursors.IntObjectCursor;
+import io.crate.action.sql.query.CrateSearchContext;
+import io.crate.breaker.CrateCircuitBreakerService;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.core.collections.Row;
+import io.crate.core.collections.RowN;
+import io.crate.exceptions.GroupByOnArrayUnsupportedException;
+import io.crate.jobs.ExecutionState;
+import io.crate.jobs.KeepAliveListener;
+import io.crate.operation.aggregation.Aggregator;
+import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.collect.CrateCollector;
+import io.crate.operation.collect.UnexpectedCollectionTerminatedException;
+import io.crate.operation.projectors.IterableRowEmitter;
+import io.crate.operation.projectors.RowReceiver;
+import io.crate.operation.reference.doc.lucene.BytesRefColumnReference;
+import io.crate.operation.reference.doc.lucene.CollectorContext;
+import io.crate.operation.reference.doc.lucene.LuceneCollectorExpression;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.RandomAccessOrds;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.search.BulkScorer;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.lucene.MinimumScoreCollector;
+import org.elasticsearch.index.fielddata.IndexOrdinalsFieldData;
+import org.elasticsearch.search.internal.ContextIndexSearcher;
+import org.elasticsearch.search.internal.SearchContext;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Collects the documents of a shard and groups them by a single string column,
+ * emitting the same rows as a {@link io.crate.operation.projectors.GroupingProjector} would.
+ *
+ * Instead of copying and hashing the key of every document, the documents are grouped by the
+ * global ordinal of their key and the aggregation states are stored in an array indexed by that ordinal.
+ * If the key column has many distinct values, the states are kept in a hash map by ordinal instead until
+ * the groups fill enough of the ordinal space to be worth the array. The ordinals are resolved to their key only once per group after all documents have been collected.
+ */
+public class GroupByOrdinalsCollector implements CrateCollector, ExecutionState {
+
+    private static final ESLogger LOGGER = Loggers.getLogger(GroupByOrdinalsCollector.class);
+
+    private final CrateSearchContext searchContext;
+    private final RowReceiver rowReceiver;
+    private final Collection<? extends LuceneCollectorExpression<?>> expressions;
+    private final CollectorContext collectorContext;
+    private final StatesCollector statesCollector;
+    private final SegmentSlices slices;
+    private final int slice;
+    private volatile Throwable killed;
+
+    /**
+     * @param keyExpression the expression of the key column, which must also be part of the expressions
+     * @param collectExpressions the expressions of the aggregation inputs, reading from the inputRow
+     * @param slices if not null only the leaves of the given slice are collected, see {@link CrateDocCollector}
+     */
+    public GroupByOrdinalsCollector(CrateSearchContext searchContext,
+                                    KeepAliveListener keepAliveListener,
+                                    RamAccountingContext ramAccountingContext,
+                                    RowReceiver rowReceiver,
+                                    BytesRefColumnReference keyExpression,
+                                    Row inputRow,
+                                    Collection<? extends LuceneCollectorExpression<?>> expressions,
+                                    CollectExpression[] collectExpressions,
+                                    Aggregator[] aggregators,
+                                    @Nullable SegmentSlices slices,
+                                    int slice) {
+        this.searchContext = searchContext;
+        this.slices = slices;
+        this.slice = slice;
+        this.rowReceiver = rowReceiver;
+        this.expressions = expressions;
+        collectorContext = new CollectorContext(
+                searchContext.mapperService(),
+                searchContext.fieldData(),
+                new CollectorFieldsVisitor(expressions.size()),
+                ((int) searchContext.id())
+        );
+        statesCollector = new StatesCollector(
+                this,
+                keepAliveListener,
+                ramAccountingContext,
+                keyExpression,
+                inputRow,
+                expressions,
+                collectExpressions,
+                aggregators
+        );
+    }
+
+    @Override
+    public void doCollect() {
+        ContextIndexSearcher searcher = searchContext.searcher();
+        List<Row> rows;
+        try {
+            for (LuceneCollectorExpression<?> expression : expressions) {
+                expression.startCollect(collectorContext);
+            }
+            Collector collector = statesCollector;
+            if (searchContext.minimumScore() != null) {
+                collector = new MinimumScoreCollector(collector, searchContext.minimumScore());
+            }
+            if (collectorContext.visitor().required()) {
+                collector = new FieldVisitorCollector(collector, collectorContext.visitor());
+            }
+            searcher.inStage(ContextIndexSearcher.Stage.MAIN_QUERY);
+            try {
+                collectLeaves(collector);
+            } finally {
+                if (slices == null || slices.release()) {
+                    searcher.finishStage(ContextIndexSearcher.Stage.MAIN_QUERY);
+                    searchContext.clearReleasables(SearchContext.Lifetime.PHASE);
+                }
+            }
+            rows = statesCollector.rows();
+        } catch (Throwable t) {
+            rowReceiver.fail(killed == null ? t : killed);
+            return;
+        }
+        LOGGER.trace("{} grouped {} rows by ordinals", searchContext.indexShard().shardId(), rows.size());
+        new IterableRowEmitter(rowReceiver, this, rows).run();
+    }
+
+    private void collectLeaves(Collector collector) throws IOException {
+        Weight weight = searchContext.engineSearcher().searcher().createNormalizedWeight(searchContext.query());
+        List<AtomicReaderContext> leaves = slices == null
+                ? searchContext.searcher().getTopReaderContext().leaves()
+                : slices.leaves(slice);
+        try {
+            for (AtomicReaderContext leaf : leaves) {
+                collector.setNextReader(leaf);
+                BulkScorer scorer = weight.bulkScorer(leaf, !collector.acceptsDocsOutOfOrder(), leaf.reader().getLiveDocs());
+                if (scorer != null) {
+                    scorer.score(collector);
+                }
+            }
+        } finally {
+            if (slices == null) {
+                // other slices might still use them, they're released together with the PHASE releasables
+                searchContext.clearReleasables(SearchContext.Lifetime.COLLECTION);
+            }
+        }
+    }
+
+    @Override
+    public void kill(@Nullable Throwable throwable) {
+        killed = throwable == null ? new CancellationException() : throwable;
+    }
+
+    @Override
+    public boolean isKilled() {
+        return killed != null;
+    }
+
+    /**
+     * Lucene collector which aggregates the documents into states indexed by the global ordinal of their key.
+     */
+    static class StatesCollector extends Collector {
+
+        private static final int KEEP_ALIVE_AFTER_ROWS = 1_000_000;
+        private static final int INITIAL_CAPACITY = 16;
+
+        /**
+         * up to this number of global ordinals the states are always stored in an array
+         */
+        static final int DENSE_MAX_VALUE_COUNT = 1 << 16;
+
+        /**
+         * the hash map is replaced by an array once more than 1/SPARSE_GROUPS_RATIO of the ordinals are groups,
+         * an array slot costs about a fifth of a hash map entry
+         */
+        private static final int SPARSE_GROUPS_RATIO = 8;
+        private static final int SPARSE_ENTRY_BYTES = 16;
+
+        private final ExecutionState executionState;
+        private final KeepAliveListener keepAliveListener;
+        private final RamAccountingContext ramAccountingContext;
+        private final BytesRefColumnReference keyExpression;
+        private final Row inputRow;
+        private final Collection<? extends LuceneCollectorExpression<?>> expressions;
+        private final CollectExpression[] collectExpressions;
+        private final Aggregator[] aggregators;
+
+        private IndexOrdinalsFieldData globalOrdinals;
+        private RandomAccessOrds ords;
+        private Object[][] states = new Object[0][];
+        private IntObjectOpenHashMap<Object[]> sparseStates;
+        private long valueCount;
+        int denseMaxValueCount = DENSE_MAX_VALUE_COUNT;
+        private Object[] nullKeyStates;
+        private int numGroups = 0;
+        private int rowCount = 0;
+
+        StatesCollector(ExecutionState executionState,
+                        KeepAliveListener keepAliveListener,
+                        RamAccountingContext ramAccountingContext,
+                        BytesRefColumnReference keyExpression,
+                        Row inputRow,
+                        Collection<? extends LuceneCollectorExpression<?>> expressions,
+                        CollectExpression[] collectExpressions,
+                        Aggregator[] aggregators) {
+            this.executionState = executionState;
+            this.keepAliveListener = keepAliveListener;
+            this.ramAccountingContext = ramAccountingContext;
+            this.keyExpression = keyExpression;
+            this.inputRow = inputRow;
+            this.expressions = expressions;
+            this.collectExpressions = collectExpressions;
+            this.aggregators = aggregators;
+        }
+
+        @Override
+        public void setScorer(Scorer scorer) throws IOException {
+            for (LuceneCollectorExpression<?> expression : expressions) {
+                expression.setScorer(scorer);
+            }
+        }
+
+        @Override
+        public void setNextReader(AtomicReaderContext context) throws IOException {
+            keepAliveListener.keepAlive();
+            if (globalOrdinals == null) {
+                // global ordinals are built once per reader and cached by the field data service
+                globalOrdinals = keyExpression.indexFieldData().loadGlobal(ReaderUtil.getTopLevelContext(context).reader());
+            }
+            ords = globalOrdinals.load(context).getOrdinalsValues();
+            if (valueCount == 0) {
+                valueCount = ords.getValueCount();
+                if (valueCount > denseMaxValueCount) {
+                    sparseStates = new IntObjectOpenHashMap<>();
+                }
+            }
+            for (LuceneCollectorExpression<?> expression : expressions) {
+                expression.setNextReader(context);
+            }
+        }
+
+        @Override
+        public void collect(int doc) throws IOException {
+            if (executionState.isKilled()) {
+                throw new CancellationException();
+            }
+            checkCircuitBreaker();
+            rowCount++;
+            if (rowCount % KEEP_ALIVE_AFTER_ROWS == 0) {
+                keepAliveListener.keepAlive();
+            }
+            for (LuceneCollectorExpression<?> expression : expressions) {
+                expression.setNextDocId(doc);
+            }
+            for (CollectExpression collectExpression : collectExpressions) {
+                collectExpression.setNextRow(inputRow);
+            }
+
+            ords.setDocument(doc);
+            switch (ords.cardinality()) {
+                case 0:
+                    if (nullKeyStates == null) {
+                        nullKeyStates = newStates();
+                    } else {
+                        processStates(nullKeyStates);
+                    }
+                    break;
+                case 1:
+                    processRow((int) ords.ordAt(0));
+                    break;
+                default:
+                    throw new GroupByOnArrayUnsupportedException(keyExpression.columnName());
+            }
+        }
+
+        private void processRow(int ord) {
+            if (sparseStates != null) {
+                processSparseRow(ord);
+                return;
+            }
+            if (ord >= states.length) {
+                int oldLength = states.length;
+                states = Arrays.copyOf(states, ArrayUtil.oversize(
+                        Math.max(ord + 1, INITIAL_CAPACITY), RamUsageEstimator.NUM_BYTES_OBJECT_REF));
+                ramAccountingContext.addBytes((states.length - oldLength) * 4);
+            }
+            Object[] ordStates = states[ord];
+            if (ordStates == null) {
+                states[ord] = newStates();
+                numGroups++;
+            } else {
+                processStates(ordStates);
+            }
+        }
+
+        private void processSparseRow(int ord) {
+            Object[] ordStates = sparseStates.get(ord);
+            if (ordStates == null) {
+                sparseStates.put(ord, newStates());
+                ramAccountingContext.addBytes(SPARSE_ENTRY_BYTES);
+                numGroups++;
+                if (numGroups > valueCount / SPARSE_GROUPS_RATIO) {
+                    toDenseStates();
+                }
+            } else {
+                processStates(ordStates);
+            }
+        }
+
+        private void toDenseStates() {
+            states = new Object[(int) valueCount][];
+            ramAccountingContext.addBytes(valueCount * 4);
+            for (IntObjectCursor<Object[]> cursor : sparseStates) {
+                states[cursor.key] = cursor.value;
+            }
+            sparseStates = null;
+        }
+
+        private Object[] newStates() {
+            Object[] newStates = new Object[aggregators.length];
+            for (int i = 0; i < aggregators.length; i++) {
+                newStates[i] = aggregators[i].processRow(aggregators[i].prepareState());
+            }
+            // the states array itself; the states are accounted by the aggregators
+            ramAccountingContext.addBytes(RamAccountingContext.roundUp(12 + aggregators.length * 4));
+            return newStates;
+        }
+
+        private void processStates(Object[] ordStates) {
+            for (int i = 0; i < aggregators.length; i++) {
+                ordStates[i] = aggregators[i].processRow(ordStates[i]);
+            }
+        }
+
+        private void checkCircuitBreaker() throws UnexpectedCollectionTerminatedException {
+            if (ramAccountingContext.trippedBreaker()) {
+                throw new UnexpectedCollectionTerminatedException(
+                        CrateCircuitBreakerService.breakingExceptionMessage(ramAccountingContext.contextId(),
+                                ramAccountingContext.limit()));
+            }
+        }
+
+        @Override
+        public boolean acceptsDocsOutOfOrder() {
+            return false;
+        }
+
+        /**
+         * @return one row per group, containing the key followed by the aggregation results.
+         * The groups are ordered by their key, the group with the null key comes last.
+         */
+        List<Row> rows() {
+            List<Row> rows = new ArrayList<>(numGroups + 1);
+            if (sparseStates != null) {
+                int[] sortedOrds = sparseStates.keys().toArray();
+                Arrays.sort(sortedOrds);
+                for (int ord : sortedOrds) {
+                    rows.add(toRow(BytesRef.deepCopyOf(ords.lookupOrd(ord)), sparseStates.get(ord)));
+                }
+                sparseStates = null;
+            }
+            for (int ord = 0; ord < states.length; ord++) {
+                Object[] ordStates = states[ord];
+                if (ordStates != null) {
+                    rows.add(toRow(BytesRef.deepCopyOf(ords.lookupOrd(ord)), ordStates));
+                }
+            }
+            if (nullKeyStates != null) {
+                rows.add(toRow(null, nullKeyStates));
+            }
+            states = null;
+            return rows;
+        }
+
+        private Row toRow(@Nullable BytesRef key, Object[] ordStates) {
+            Object[] cells = new Object[1 + aggregators.length];
+            cells[0] = key;
+            for (int i = 0; i < aggregators.length; i++) {
+                cells[i + 1] = aggregators[i].finishCollect(ordStates[i]);
+            }
+            return new RowN(cells);
+        }
+    }
+}
@@ -119,7 +119,7 @@ public class MultiShardScoreDocCollector implements CrateCollector, ExecutionSta
 
             this.orderedCollectorsMap = new IntObjectOpenHashMap<>(orderedDocCollectors.size());
             for (OrderedDocCollector orderedDocCollector : orderedDocCollectors) {
-                this.orderedCollectorsMap.put(orderedDocCollector.shardId(), orderedDocCollector);
+                this.orderedCollectorsMap.put(orderedDocCollector.number(), orderedDocCollector);
             }
         }
     }
@@ -180,9 +180,9 @@ public class MultiShardScoreDocCollector implements CrateCollector, ExecutionSta
                         if (singleShard) {
                             runWithoutThreads(orderedDocCollectors.get(0));
                         } else {
-                            int shardId = pagingIterator.exhaustedIterable();
-                            LOGGER.trace("Iterator {} exhausted. Retrieving more data", shardId);
-                            runWithoutThreads(orderedCollectorsMap.get(shardId));
+                            int number = pagingIterator.exhaustedIterable();
+                            LOGGER.trace("Iterator {} exhausted. Retrieving more data", number);
+                            runWithoutThreads(orderedCollectorsMap.get(number));
                         }
                     }
                     break;
@@ -33,10 +33,12 @@ import io.crate.operation.merge.NumberedIterable;
 import io.crate.operation.reference.doc.lucene.CollectorContext;
 import io.crate.operation.reference.doc.lucene.LuceneCollectorExpression;
 import io.crate.operation.reference.doc.lucene.LuceneMissingValue;
+import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.queries.BooleanFilter;
 import org.apache.lucene.search.*;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.lucene.MinimumScoreCollector;
 import org.elasticsearch.search.internal.ContextIndexSearcher;
 import org.elasticsearch.search.internal.SearchContext;
 
@@ -60,10 +62,12 @@ public class OrderedDocCollector implements Callable<NumberedIterable<Row>>, Aut
     private final Sort sort;
     private final Collection<LuceneCollectorExpression<?>> expressions;
     private final NumberedIterable<Row> empty;
-    private final int shardId;
+    private final int number;
     private final ScoreDocRowFunction rowFunction;
     private final DummyScorer scorer;
-    private final ContextIndexSearcher searcher;
+    private final ContextIndexSearcher contextSearcher;
+    private final IndexSearcher searcher;
+    private final SegmentSlices slices;
 
     private final Object[] missingValues;
 
@@ -74,7 +78,15 @@ public class OrderedDocCollector implements Callable<NumberedIterable<Row>>, Aut
     volatile boolean exhausted = false;
 
 
+    /**
+     * @param number identifies the rows of this collector when they're merged with the rows of other collectors
+     * @param slices if not null only the leaves of the given slice are searched.
+     *               The searchContext is shared by all slices and closed by the one closed last.
+     */
     public OrderedDocCollector(SearchContext searchContext,
+                               int number,
+                               @Nullable SegmentSlices slices,
+                               int slice,
                                boolean doDocsScores,
                                int batchSize,
                                CollectorContext collectorContext,
@@ -83,22 +95,28 @@ public class OrderedDocCollector implements Callable<NumberedIterable<Row>>, Aut
                                List<Input<?>> inputs,
                                Collection<LuceneCollectorExpression<?>> expressions) {
         this.searchContext = searchContext;
-        this.shardId = searchContext.indexShard().shardId().id();
+        this.number = number;
+        this.slices = slices;
         this.doDocsScores = doDocsScores;
         this.batchSize = batchSize;
         this.orderBy = orderBy;
-        searcher = searchContext.searcher();
+        contextSearcher = searchContext.searcher();
+        if (slices == null) {
+            searcher = contextSearcher;
+        } else {
+            searcher = new SliceSearcher(contextSearcher, slices.leaves(slice), searchContext.minimumScore());
+        }
         this.collectorContext = collectorContext;
         this.sort = sort;
         this.scorer = new DummyScorer();
         this.expressions = expressions;
         this.rowFunction = new ScoreDocRowFunction(
-                searcher.getIndexReader(),
+                contextSearcher.getIndexReader(),
                 inputs,
                 expressions,
                 scorer
         );
-        empty = new NumberedIterable<>(shardId, Collections.<Row>emptyList());
+        empty = new NumberedIterable<>(number, Collections.<Row>emptyList());
         missingValues = new Object[orderBy.orderBySymbols().size()];
         for (int i = 0; i < orderBy.orderBySymbols().size(); i++) {
             missingValues[i] = LuceneMissingValue.missingValue(orderBy, i);
@@ -127,7 +145,11 @@ public class OrderedDocCollector implements Callable<NumberedIterable<Row>>, Aut
 
     @Override
     public void close() {
-        searcher.finishStage(ContextIndexSearcher.Stage.MAIN_QUERY);
+        if (slices != null && !slices.release()) {
+            // other slices are still using the searchContext
+            return;
+        }
+        contextSearcher.finishStage(ContextIndexSearcher.Stage.MAIN_QUERY);
         searchContext.clearReleasables(SearchContext.Lifetime.PHASE);
         searchContext.close();
     }
@@ -137,7 +159,7 @@ public class OrderedDocCollector implements Callable<NumberedIterable<Row>>, Aut
         if (scoreDocs.length > 0) {
             lastDoc = (FieldDoc) scoreDocs[scoreDocs.length - 1];
         }
-        return new NumberedIterable<>(shardId, Iterables.transform(Arrays.asList(scoreDocs), rowFunction));
+        return new NumberedIterable<>(number, Iterables.transform(Arrays.asList(scoreDocs), rowFunction));
     }
 
     private NumberedIterable<Row> searchMore() throws IOException {
@@ -155,7 +177,7 @@ public class OrderedDocCollector implements Callable<NumberedIterable<Row>>, Aut
             expression.startCollect(collectorContext);
             expression.setScorer(scorer);
         }
-        searcher.inStage(ContextIndexSearcher.Stage.MAIN_QUERY);
+        contextSearcher.inStage(ContextIndexSearcher.Stage.MAIN_QUERY);
         TopFieldDocs topFieldDocs = searcher.search(searchContext.query(), null, batchSize, sort, doDocsScores, false);
         return scoreDocToIterable(topFieldDocs.scoreDocs);
     }
@@ -214,7 +236,42 @@ public class OrderedDocCollector implements Callable<NumberedIterable<Row>>, Aut
         }
     }
 
-    public int shardId() {
-        return shardId;
+    public int number() {
+        return number;
+    }
+
+    /**
+     * searcher which only searches the leaves of a segment slice.
+     * The weights are still created by the {@link ContextIndexSearcher} of the shard
+     * so that all slices score the documents the same way.
+     */
+    private static class SliceSearcher extends IndexSearcher {
+
+        private final ContextIndexSearcher contextSearcher;
+        private final List<AtomicReaderContext> sliceLeaves;
+        private final Float minimumScore;
+
+        SliceSearcher(ContextIndexSearcher contextSearcher,
+                      List<AtomicReaderContext> sliceLeaves,
+                      @Nullable Float minimumScore) {
+            super(contextSearcher.getTopReaderContext());
+            this.contextSearcher = contextSearcher;
+            this.sliceLeaves = sliceLeaves;
+            this.minimumScore = minimumScore;
+            setSimilarity(contextSearcher.getSimilarity());
+        }
+
+        @Override
+        public Weight createNormalizedWeight(Query query) throws IOException {
+            return contextSearcher.createNormalizedWeight(query);
+        }
+
+        @Override
+        protected void search(List<AtomicReaderContext> leaves, Weight weight, Collector collector) throws IOException {
+            if (minimumScore != null) {
+                collector = new MinimumScoreCollector(collector, minimumScore);
+            }
+            super.search(sliceLeaves, weight, collector);
+        }
     }
 }
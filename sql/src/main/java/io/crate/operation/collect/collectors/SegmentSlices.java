@@ -0,0 +1,163 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect.collectors;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.analyze.symbol.Aggregation;
+import io.crate.planner.projection.AggregationProjection;
+import io.crate.planner.projection.GroupProjection;
+import io.crate.planner.projection.Projection;
+import org.apache.lucene.index.AtomicReaderContext;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * partitions the segments of a shard into slices which can be collected concurrently.
+ *
+ * All slices share the search context of the shard, so it must only be released
+ * by the collector which finishes last, see {@link #release()}.
+ */
+public class SegmentSlices {
+
+    /**
+     * shards are only split if every slice gets at least this many documents
+     */
+    static final int MIN_DOCS_PER_SLICE = 100_000;
+
+    private static final Comparator<AtomicReaderContext> BY_MAX_DOC_DESC = new Comparator<AtomicReaderContext>() {
+        @Override
+        public int compare(AtomicReaderContext o1, AtomicReaderContext o2) {
+            return Integer.compare(o2.reader().maxDoc(), o1.reader().maxDoc());
+        }
+    };
+
+    private static final Comparator<AtomicReaderContext> BY_ORD = new Comparator<AtomicReaderContext>() {
+        @Override
+        public int compare(AtomicReaderContext o1, AtomicReaderContext o2) {
+            return Integer.compare(o1.ord, o2.ord);
+        }
+    };
+
+    private final List<List<AtomicReaderContext>> slices;
+    private final AtomicInteger pendingSlices;
+
+    private SegmentSlices(List<List<AtomicReaderContext>> slices) {
+        this.slices = slices;
+        this.pendingSlices = new AtomicInteger(slices.size());
+    }
+
+    /**
+     * distributes the leaves to at most <code>maxSlices</code> slices so that each slice
+     * has about the same number of documents. Leaves within a slice keep their order.
+     */
+    public static SegmentSlices create(List<AtomicReaderContext> leaves, int maxSlices) {
+        return create(leaves, maxSlices, MIN_DOCS_PER_SLICE);
+    }
+
+    static SegmentSlices create(List<AtomicReaderContext> leaves, int maxSlices, int minDocsPerSlice) {
+        long numDocs = 0;
+        for (AtomicReaderContext leaf : leaves) {
+            numDocs += leaf.reader().maxDoc();
+        }
+        int numSlices = (int) Math.min(Math.min(maxSlices, leaves.size()), numDocs / minDocsPerSlice);
+        if (numSlices <= 1) {
+            return new SegmentSlices(ImmutableList.<List<AtomicReaderContext>>of(leaves));
+        }
+
+        List<AtomicReaderContext> sortedLeaves = new ArrayList<>(leaves);
+        Collections.sort(sortedLeaves, BY_MAX_DOC_DESC);
+        final long[] sliceDocs = new long[numSlices];
+        PriorityQueue<Integer> smallestSlice = new PriorityQueue<>(numSlices, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Long.compare(sliceDocs[o1], sliceDocs[o2]);
+            }
+        });
+        List<List<AtomicReaderContext>> slices = new ArrayList<>(numSlices);
+        for (int i = 0; i < numSlices; i++) {
+            slices.add(new ArrayList<AtomicReaderContext>());
+            smallestSlice.add(i);
+        }
+        for (AtomicReaderContext leaf : sortedLeaves) {
+            Integer slice = smallestSlice.poll();
+            slices.get(slice).add(leaf);
+            sliceDocs[slice] += leaf.reader().maxDoc();
+            smallestSlice.add(slice);
+        }
+        for (List<AtomicReaderContext> slice : slices) {
+            Collections.sort(slice, BY_ORD);
+        }
+        return new SegmentSlices(slices);
+    }
+
+    /**
+     * The slices of a shard are consumed by separate shard projectors, so they can only be collected
+     * concurrently if the results of these projectors are merged later on.
+     * This is the case if every shard projection is a group projection planned as a partial step or an
+     * aggregation projection emitting partial aggregation states. Final groups (even without aggregations),
+     * final aggregations, HAVING filters or limits at shard level need all rows of the shard.
+     */
+    public static boolean canMergeSlices(List<? extends Projection> shardProjections) {
+        if (shardProjections.isEmpty()) {
+            return false;
+        }
+        for (Projection projection : shardProjections) {
+            if (projection instanceof GroupProjection) {
+                if (((GroupProjection) projection).mode() != Aggregation.Step.PARTIAL) {
+                    return false;
+                }
+            } else if (projection instanceof AggregationProjection) {
+                List<Aggregation> aggregations = ((AggregationProjection) projection).aggregations();
+                if (aggregations.isEmpty()) {
+                    return false;
+                }
+                for (Aggregation aggregation : aggregations) {
+                    if (aggregation.toStep() != Aggregation.Step.PARTIAL) {
+                        return false;
+                    }
+                }
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int numSlices() {
+        return slices.size();
+    }
+
+    public List<AtomicReaderContext> leaves(int slice) {
+        return slices.get(slice);
+    }
+
+    /**
+     * must be called once by every slice after it has been collected
+     *
+     * @return true if all slices have been released
+     */
+    public boolean release() {
+        return pendingSlices.decrementAndGet() == 0;
+    }
+}
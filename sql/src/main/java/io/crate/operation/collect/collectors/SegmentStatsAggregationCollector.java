@@ -0,0 +1,371 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect.collectors;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.crate.action.sql.query.CrateSearchContext;
+import io.crate.analyze.symbol.Aggregation;
+import io.crate.analyze.symbol.InputColumn;
+import io.crate.analyze.symbol.Reference;
+import io.crate.analyze.symbol.Symbol;
+import io.crate.blob.v2.BlobIndices;
+import io.crate.core.collections.Row;
+import io.crate.core.collections.RowN;
+import io.crate.jobs.ExecutionState;
+import io.crate.jobs.KeepAliveListener;
+import io.crate.metadata.RowGranularity;
+import io.crate.metadata.doc.DocSysColumns;
+import io.crate.operation.aggregation.Aggregator;
+import io.crate.operation.aggregation.impl.CountAggregation;
+import io.crate.operation.aggregation.impl.MaximumAggregation;
+import io.crate.operation.aggregation.impl.MinimumAggregation;
+import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.collect.CrateCollector;
+import io.crate.operation.projectors.IterableRowEmitter;
+import io.crate.operation.projectors.RowReceiver;
+import io.crate.operation.reference.doc.lucene.CollectorContext;
+import io.crate.operation.reference.doc.lucene.LuceneCollectorExpression;
+import io.crate.planner.node.dql.CollectPhase;
+import io.crate.planner.projection.AggregationProjection;
+import io.crate.planner.projection.Projection;
+import io.crate.types.*;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.NumericUtils;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.search.internal.SearchContext;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Computes the partial results of global <code>count(*)</code>, <code>min(column)</code> and <code>max(column)</code>
+ * aggregations of a shard without a query from the statistics of its segments instead of visiting every document.
+ *
+ * The count is the number of live documents of a segment and min/max are read from the terms dictionary
+ * of the numeric column. The terms dictionary still contains the values of deleted documents, so min/max
+ * of segments with deletions, and of segments with a column which is not indexed, are collected document by
+ * document.
+ *
+ * The collector emits a single row with the partial aggregation states, which is why the
+ * aggregation projection of the collect phase has to be replaced by the one returned by
+ * {@link #mergeProjection(AggregationProjection)}.
+ */
+public class SegmentStatsAggregationCollector implements CrateCollector, ExecutionState {
+
+    private static final ESLogger LOGGER = Loggers.getLogger(SegmentStatsAggregationCollector.class);
+    private static final int KEEP_ALIVE_AFTER_ROWS = 1_000_000;
+    private static final Set<DataType> NUMERIC_TYPES = ImmutableSet.<DataType>of(
+            DataTypes.LONG,
+            DataTypes.TIMESTAMP,
+            DataTypes.INTEGER,
+            DataTypes.SHORT,
+            DataTypes.BYTE,
+            DataTypes.DOUBLE,
+            DataTypes.FLOAT
+    );
+
+    enum Kind {
+        COUNT, MIN, MAX
+    }
+
+    private final CrateSearchContext searchContext;
+    private final KeepAliveListener keepAliveListener;
+    private final RowReceiver rowReceiver;
+    private final Kind[] kinds;
+    private final String[] columns;
+    private final DataType[] columnTypes;
+    private final Aggregator[] aggregators;
+    private final Row inputRow;
+    private final Collection<? extends LuceneCollectorExpression<?>> expressions;
+    private final CollectExpression[] collectExpressions;
+    private final CollectorContext collectorContext;
+    private volatile Throwable killed;
+
+    /**
+     * @param aggregations the aggregations of the projection, {@link #canCollect(CollectPhase)} must be true
+     * @param aggregators the aggregators for the aggregations which are used for segments which are scanned
+     * @param collectExpressions the expressions of the aggregation inputs, reading from the inputRow
+     */
+    public SegmentStatsAggregationCollector(CrateSearchContext searchContext,
+                                            KeepAliveListener keepAliveListener,
+                                            RowReceiver rowReceiver,
+                                            List<Aggregation> aggregations,
+                                            List<Symbol> toCollect,
+                                            Aggregator[] aggregators,
+                                            Row inputRow,
+                                            Collection<? extends LuceneCollectorExpression<?>> expressions,
+                                            CollectExpression[] collectExpressions) {
+        this.searchContext = searchContext;
+        this.keepAliveListener = keepAliveListener;
+        this.rowReceiver = rowReceiver;
+        this.aggregators = aggregators;
+        this.inputRow = inputRow;
+        this.expressions = expressions;
+        this.collectExpressions = collectExpressions;
+        kinds = new Kind[aggregations.size()];
+        columns = new String[aggregations.size()];
+        columnTypes = new DataType[aggregations.size()];
+        for (int i = 0; i < kinds.length; i++) {
+            Aggregation aggregation = aggregations.get(i);
+            kinds[i] = kind(aggregation, toCollect);
+            assert kinds[i] != null : "aggregation can't be computed from segment statistics";
+            if (kinds[i] != Kind.COUNT) {
+                Reference reference = (Reference) toCollect.get(((InputColumn) aggregation.inputs().get(0)).index());
+                columns[i] = reference.info().ident().columnIdent().fqn();
+                columnTypes[i] = reference.valueType();
+            }
+        }
+        collectorContext = new CollectorContext(
+                searchContext.mapperService(),
+                searchContext.fieldData(),
+                new CollectorFieldsVisitor(expressions.size()),
+                ((int) searchContext.id())
+        );
+    }
+
+    /**
+     * @return true if the collect phase has no query and its first projection only consists of aggregations
+     *         which can be computed from the segment statistics
+     */
+    public static boolean canCollect(CollectPhase collectPhase) {
+        if (collectPhase.maxRowGranularity() != RowGranularity.DOC
+            || collectPhase.orderBy() != null
+            || collectPhase.whereClause().hasQuery()
+            || collectPhase.whereClause().noMatch()
+            || !collectPhase.hasProjections()) {
+            return false;
+        }
+        Projection projection = collectPhase.projections().get(0);
+        if (!(projection instanceof AggregationProjection)) {
+            return false;
+        }
+        List<Aggregation> aggregations = ((AggregationProjection) projection).aggregations();
+        if (aggregations.isEmpty()) {
+            return false;
+        }
+        for (Aggregation aggregation : aggregations) {
+            if (aggregation.fromStep() != Aggregation.Step.ITER || kind(aggregation, collectPhase.toCollect()) == null) {
+                return false;
+            }
+        }
+        for (Map<String, List<Integer>> indexShards : collectPhase.routing().locations().values()) {
+            if (indexShards == null) {
+                continue;
+            }
+            for (String index : indexShards.keySet()) {
+                if (BlobIndices.isBlobIndex(index)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return a projection which continues the aggregations from the partial results emitted by this collector
+     */
+    public static AggregationProjection mergeProjection(AggregationProjection projection) {
+        List<Aggregation> aggregations = projection.aggregations();
+        List<Aggregation> mergeAggregations = new ArrayList<>(aggregations.size());
+        for (int i = 0; i < aggregations.size(); i++) {
+            Aggregation aggregation = aggregations.get(i);
+            mergeAggregations.add(aggregation.fromPartial(new InputColumn(i, aggregation.valueType())));
+        }
+        return new AggregationProjection(mergeAggregations);
+    }
+
+    @Nullable
+    private static Kind kind(Aggregation aggregation, List<Symbol> toCollect) {
+        String name = aggregation.functionIdent().name();
+        if (name.equals(CountAggregation.NAME)) {
+            return aggregation.inputs().isEmpty() ? Kind.COUNT : null;
+        }
+        Kind kind;
+        if (name.equals(MinimumAggregation.NAME)) {
+            kind = Kind.MIN;
+        } else if (name.equals(MaximumAggregation.NAME)) {
+            kind = Kind.MAX;
+        } else {
+            return null;
+        }
+        if (aggregation.inputs().size() != 1 || !(aggregation.inputs().get(0) instanceof InputColumn)) {
+            return null;
+        }
+        Symbol symbol = toCollect.get(((InputColumn) aggregation.inputs().get(0)).index());
+        if (!(symbol instanceof Reference)) {
+            return null;
+        }
+        Reference reference = (Reference) symbol;
+        if (reference.info().granularity() != RowGranularity.DOC
+            || DocSysColumns.COLUMN_IDENTS.containsKey(reference.info().ident().columnIdent())
+            || !NUMERIC_TYPES.contains(reference.valueType())) {
+            return null;
+        }
+        return kind;
+    }
+
+    @Override
+    public void doCollect() {
+        Object[] cells = new Object[aggregators.length];
+        try {
+            Object[] states = new Object[aggregators.length];
+            for (int i = 0; i < aggregators.length; i++) {
+                states[i] = aggregators[i].prepareState();
+            }
+            for (LuceneCollectorExpression<?> expression : expressions) {
+                expression.startCollect(collectorContext);
+            }
+            int scanned = 0;
+            List<AtomicReaderContext> leaves = searchContext.searcher().getTopReaderContext().leaves();
+            for (AtomicReaderContext leaf : leaves) {
+                keepAliveListener.keepAlive();
+                throwIfKilled();
+                if (hasUsableStats(leaf.reader(), kinds, columns)) {
+                    reduceStats(leaf.reader(), states);
+                } else {
+                    scan(leaf, states);
+                    scanned++;
+                }
+            }
+            if (LOGGER.isTraceEnabled()) {
+                LOGGER.trace("{} aggregated {} segments from statistics, scanned {} segments",
+                        searchContext.indexShard().shardId(), leaves.size() - scanned, scanned);
+            }
+            for (int i = 0; i < aggregators.length; i++) {
+                cells[i] = aggregators[i].finishCollect(states[i]);
+            }
+        } catch (Throwable t) {
+            rowReceiver.fail(killed == null ? t : killed);
+            return;
+        } finally {
+            searchContext.clearReleasables(SearchContext.Lifetime.PHASE);
+        }
+        new IterableRowEmitter(rowReceiver, this, ImmutableList.<Row>of(new RowN(cells))).run();
+    }
+
+    private void throwIfKilled() {
+        if (killed != null) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * the number of live documents excludes deleted documents, but the terms dictionary doesn't,
+     * so min/max can only be read from the statistics of segments without deletions
+     */
+    static boolean hasUsableStats(AtomicReader reader, Kind[] kinds, String[] columns) throws IOException {
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] == Kind.COUNT) {
+                continue;
+            }
+            if (reader.hasDeletions()) {
+                return false;
+            }
+            FieldInfo fieldInfo = reader.getFieldInfos().fieldInfo(columns[i]);
+            // no field info means no document of the segment has a value
+            if (fieldInfo != null && (!fieldInfo.isIndexed() || reader.terms(columns[i]) == null)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void reduceStats(AtomicReader reader, Object[] states) throws IOException {
+        for (int i = 0; i < kinds.length; i++) {
+            Object partial;
+            if (kinds[i] == Kind.COUNT) {
+                partial = (long) reader.numDocs();
+            } else {
+                Terms terms = reader.terms(columns[i]);
+                if (terms == null) {
+                    continue;
+                }
+                partial = value(terms, columnTypes[i], kinds[i] == Kind.MIN);
+            }
+            states[i] = aggregators[i].reducePartial(states[i], partial);
+        }
+    }
+
+    /**
+     * decodes the minimum or maximum of the numeric terms as they're indexed by the number field mappers
+     */
+    static Object value(Terms terms, DataType type, boolean min) throws IOException {
+        switch (type.id()) {
+            case LongType.ID:
+            case TimestampType.ID:
+                return min ? NumericUtils.getMinLong(terms) : NumericUtils.getMaxLong(terms);
+            case DoubleType.ID:
+                return NumericUtils.sortableLongToDouble(
+                        min ? NumericUtils.getMinLong(terms) : NumericUtils.getMaxLong(terms));
+            case FloatType.ID:
+                return NumericUtils.sortableIntToFloat(
+                        min ? NumericUtils.getMinInt(terms) : NumericUtils.getMaxInt(terms));
+            default:
+                return type.value(min ? NumericUtils.getMinInt(terms) : NumericUtils.getMaxInt(terms));
+        }
+    }
+
+    private void scan(AtomicReaderContext leaf, Object[] states) throws IOException {
+        for (LuceneCollectorExpression<?> expression : expressions) {
+            expression.setNextReader(leaf);
+        }
+        Bits liveDocs = leaf.reader().getLiveDocs();
+        int maxDoc = leaf.reader().maxDoc();
+        for (int doc = 0; doc < maxDoc; doc++) {
+            if (liveDocs != null && !liveDocs.get(doc)) {
+                continue;
+            }
+            if (doc % KEEP_ALIVE_AFTER_ROWS == 0) {
+                keepAliveListener.keepAlive();
+                throwIfKilled();
+            }
+            for (LuceneCollectorExpression<?> expression : expressions) {
+                expression.setNextDocId(doc);
+            }
+            for (CollectExpression collectExpression : collectExpressions) {
+                collectExpression.setNextRow(inputRow);
+            }
+            for (int i = 0; i < aggregators.length; i++) {
+                states[i] = aggregators[i].processRow(states[i]);
+            }
+        }
+    }
+
+    @Override
+    public void kill(@Nullable Throwable throwable) {
+        killed = throwable == null ? new CancellationException() : throwable;
+    }
+
+    @Override
+    public boolean isKilled() {
+        return killed != null;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect.files;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Converts CSV lines into JSON objects using the column names of the header line.
+ *
+ * Values are parsed directly from the line bytes; quoted values may contain separators and
+ * escaped quotes (""), empty unquoted values are converted to null.
+ * Line breaks within quoted values are not supported.
+ */
+class CsvLineParser {
+
+    private static final byte SEPARATOR = ',';
+    private static final byte QUOTE = '"';
+
+    private final String[] columns;
+    private final BytesRef value = new BytesRef();
+    private byte[] scratch = new byte[256];
+    private boolean quoted;
+
+    CsvLineParser(byte[] header) {
+        List<String> columnNames = new ArrayList<>();
+        int pos = 0;
+        while (pos <= header.length) {
+            pos = parseField(header, pos);
+            if (value.length == 0) {
+                throw new IllegalArgumentException("CSV header contains an empty column name");
+            }
+            columnNames.add(new String(value.bytes, value.offset, value.length, StandardCharsets.UTF_8));
+        }
+        columns = columnNames.toArray(new String[columnNames.size()]);
+    }
+
+    byte[] toJson(byte[] line) throws IOException {
+        XContentBuilder builder = XContentFactory.jsonBuilder().startObject();
+        int pos = 0;
+        int column = 0;
+        while (pos <= line.length) {
+            if (column == columns.length) {
+                throw new IllegalArgumentException(String.format(Locale.ENGLISH,
+                        "CSV line contains more values than the header has columns (%d)", columns.length));
+            }
+            pos = parseField(line, pos);
+            if (value.length == 0 && !quoted) {
+                builder.nullField(columns[column]);
+            } else {
+                builder.utf8Field(columns[column], value);
+            }
+            column++;
+        }
+        return builder.endObject().bytes().toBytes();
+    }
+
+    /**
+     * parses the value starting at {@code pos} into {@link #value}
+     *
+     * @return the position after the separator that terminates the value
+     */
+    private int parseField(byte[] line, int pos) {
+        if (pos < line.length && line[pos] == QUOTE) {
+            quoted = true;
+            int length = 0;
+            int i = pos + 1;
+            while (true) {
+                if (i == line.length) {
+                    throw new IllegalArgumentException("CSV line contains an unterminated quoted value");
+                }
+                byte b = line[i];
+                i++;
+                if (b == QUOTE) {
+                    if (i == line.length || line[i] != QUOTE) {
+                        break;
+                    }
+                    i++;
+                }
+                if (length == scratch.length) {
+                    scratch = Arrays.copyOf(scratch, scratch.length * 2);
+                }
+                scratch[length++] = b;
+            }
+            if (i < line.length && line[i] != SEPARATOR) {
+                throw new IllegalArgumentException("CSV line contains characters after a closing quote");
+            }
+            value.bytes = scratch;
+            value.offset = 0;
+            value.length = length;
+            return i + 1;
+        }
+        quoted = false;
+        int end = pos;
+        while (end < line.length && line[end] != SEPARATOR) {
+            end++;
+        }
+        value.bytes = line;
+        value.offset = pos;
+        value.length = end - pos;
+        return end + 1;
+    }
+}
@@ -44,5 +44,21 @@ public interface FileInput {
 
     InputStream getStream(URI uri) throws IOException;
 
+    /**
+     * @return the size of the resource in bytes or -1 if the resource can't be read starting from an arbitrary
+     *         position using {@link #getStream(URI, long, long)}
+     */
+    long size(URI uri) throws IOException;
+
+    /**
+     * returns a stream of the resource which starts at the given byte position.
+     * Only supported if {@link #size(URI)} doesn't return -1.
+     *
+     * @param end the position up to which the caller expects to read. Implementations may use it to limit the
+     *            data requested up front, but the stream must still return the rest of the resource if it is
+     *            read further (e.g. to complete the last line of a chunk).
+     */
+    InputStream getStream(URI uri, long position, long end) throws IOException;
+
     boolean sharedStorageDefault();
 }
@@ -23,7 +23,6 @@ package io.crate.operation.collect.files;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Predicate;
-import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import io.crate.jobs.KeepAliveListener;
@@ -36,13 +35,10 @@ import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 
 import javax.annotation.Nullable;
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.SocketTimeoutException;
 import java.net.URI;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.List;
@@ -56,12 +52,23 @@ public class FileReadingCollector implements CrateCollector, RowUpstream {
 
     private static final ESLogger LOGGER = Loggers.getLogger(FileReadingCollector.class);
     public static final int MAX_SOCKET_TIMEOUT_RETRIES = 5;
+
+    /**
+     * uncompressed files which support reading from a position are split into chunks of this size
+     * which are distributed among the readers
+     */
+    public static final long CHUNK_SIZE = 32 * 1024 * 1024;
+
     private final Map<String, FileInputFactory> fileInputFactoryMap;
     private final URI fileUri;
     private final Predicate<URI> globPredicate;
     private final Boolean shared;
     private final int numReaders;
     private final int readerNumber;
+    private final int numThreads;
+    private final int threadNumber;
+    private final FileFormat format;
+    private final long chunkSize;
     private final InputRow row;
     private final KeepAliveListener keepAliveListener;
     private URI preGlobUri;
@@ -97,7 +104,8 @@ public class FileReadingCollector implements CrateCollector, RowUpstream {
     }
 
     public enum FileFormat {
-        JSON
+        JSON,
+        CSV
     }
 
     public FileReadingCollector(String fileUri,
@@ -111,6 +119,30 @@ public class FileReadingCollector implements CrateCollector, RowUpstream {
                                 KeepAliveListener keepAliveListener,
                                 int numReaders,
                                 int readerNumber) {
+        this(fileUri, inputs, collectorExpressions, downstream, format, compression, additionalFileInputFactories,
+                shared, keepAliveListener, numReaders, readerNumber, 1, 0, CHUNK_SIZE);
+    }
+
+    /**
+     * @param numReaders number of nodes which read the files; used to distribute the files and chunks
+     *                   if the storage is shared
+     * @param numThreads number of collectors which read the files on this node; files and chunks are
+     *                   distributed among them
+     */
+    public FileReadingCollector(String fileUri,
+                                List<Input<?>> inputs,
+                                List<LineCollectorExpression<?>> collectorExpressions,
+                                RowReceiver downstream,
+                                FileFormat format,
+                                String compression,
+                                Map<String, FileInputFactory> additionalFileInputFactories,
+                                Boolean shared,
+                                KeepAliveListener keepAliveListener,
+                                int numReaders,
+                                int readerNumber,
+                                int numThreads,
+                                int threadNumber,
+                                long chunkSize) {
         this.keepAliveListener = keepAliveListener;
         if (fileUri.startsWith("/")) {
             // using Paths.get().toUri instead of new URI(...) as it also encodes umlauts and other special characters
@@ -151,6 +183,10 @@ public class FileReadingCollector implements CrateCollector, RowUpstream {
         this.shared = shared;
         this.numReaders = numReaders;
         this.readerNumber = readerNumber;
+        this.numThreads = numThreads;
+        this.threadNumber = threadNumber;
+        this.format = format;
+        this.chunkSize = chunkSize;
         Matcher hasGlobMatcher = HAS_GLOBS_PATTERN.matcher(this.fileUri.toString());
         if (!hasGlobMatcher.matches()) {
             globPredicate = null;
@@ -190,7 +226,8 @@ public class FileReadingCollector implements CrateCollector, RowUpstream {
             }
             return;
         }
-        Predicate<URI> uriPredicate = generateUriPredicate(fileInput);
+        boolean sharedStorage = MoreObjects.firstNonNull(shared, fileInput.sharedStorageDefault());
+        Predicate<URI> uriPredicate = MoreObjects.firstNonNull(globPredicate, MATCH_ALL_PREDICATE);
 
         CollectorContext collectorContext = new CollectorContext();
         for (LineCollectorExpression<?> collectorExpression : collectorExpressions) {
@@ -200,8 +237,30 @@ public class FileReadingCollector implements CrateCollector, RowUpstream {
 
         try {
             uris = getUris(fileInput, uriPredicate);
+            int numChunksOnNode = 0;
+            uriLoop:
             for (URI uri : uris) {
-                readLines(fileInput, collectorContext, uri, 0, 0);
+                long size = compressed ? -1 : fileInput.size(uri);
+                long numChunks = size > chunkSize ? (size + chunkSize - 1) / chunkSize : 1;
+                for (long chunk = 0; chunk < numChunks; chunk++) {
+                    if (sharedStorage && !isNodeReader(uri, chunk)) {
+                        continue;
+                    }
+                    if (numChunksOnNode++ % numThreads != threadNumber) {
+                        continue;
+                    }
+                    boolean wantMore;
+                    if (numChunks == 1) {
+                        wantMore = readLines(fileInput, collectorContext, uri, 0, 0);
+                    } else {
+                        long start = chunk * chunkSize;
+                        long end = chunk == numChunks - 1 ? size : start + chunkSize;
+                        wantMore = readChunk(fileInput, collectorContext, uri, start, end, 0, 0);
+                    }
+                    if (!wantMore) {
+                        break uriLoop;
+                    }
+                }
             }
             downstream.finish();
         } catch (Throwable e) {
@@ -214,41 +273,39 @@ public class FileReadingCollector implements CrateCollector, RowUpstream {
         killed = true;
     }
 
-    private void readLines(FileInput fileInput,
-                           CollectorContext collectorContext,
-                           URI uri,
-                           long startLine,
-                           int retry) throws IOException {
+    /**
+     * reads all lines of the resource
+     *
+     * @return false if the downstream doesn't want any more rows
+     */
+    private boolean readLines(FileInput fileInput,
+                              CollectorContext collectorContext,
+                              URI uri,
+                              long startLine,
+                              int retry) throws IOException {
         InputStream inputStream = fileInput.getStream(uri);
         if (inputStream == null) {
-            return;
+            return true;
         }
 
-        String line;
+        byte[] line;
         long linesRead = 0L;
-        int keepAliveCount = 0;
-        try (BufferedReader reader = createReader(inputStream)) {
+        CsvLineParser csvLineParser = null;
+        try (LineReader reader = createReader(inputStream)) {
             while ((line = reader.readLine()) != null) {
-                if (killed) {
-                    throw new CancellationException();
-                }
-
-                keepAliveCount++;
-                if (keepAliveCount > 100_00) {
-                    keepAliveListener.keepAlive();
-                    keepAliveCount = 0;
-                }
-
                 linesRead++;
-                if (linesRead < startLine) {
+                if (line.length == 0) { // skip empty lines
                     continue;
                 }
-                if (line.length() == 0) { // skip empty lines
+                if (format == FileFormat.CSV && csvLineParser == null) {
+                    csvLineParser = new CsvLineParser(line);
+                    continue;
+                }
+                if (linesRead < startLine) {
                     continue;
                 }
-                collectorContext.lineContext().rawSource(line.getBytes(StandardCharsets.UTF_8));
-                if (!downstream.setNextRow(row)) {
-                    break;
+                if (!emitLine(collectorContext, csvLineParser, line, linesRead)) {
+                    return false;
                 }
             }
         } catch (SocketTimeoutException e) {
@@ -256,7 +313,7 @@ public class FileReadingCollector implements CrateCollector, RowUpstream {
                 LOGGER.info("Timeout during COPY FROM '{}' after {} retries", e, uri.toString(), retry);
                 throw e;
             } else {
-                readLines(fileInput, collectorContext, uri, linesRead + 1, retry + 1);
+                return readLines(fileInput, collectorContext, uri, linesRead + 1, retry + 1);
             }
         } catch (Exception e) {
             // it's nice to know which exact file/uri threw an error
@@ -264,17 +321,115 @@ public class FileReadingCollector implements CrateCollector, RowUpstream {
             LOGGER.info("Error during COPY FROM '{}'", e, uri.toString());
             throw e;
         }
+        return true;
     }
 
-    private BufferedReader createReader(InputStream inputStream) throws IOException {
-        BufferedReader reader;
-        if (compressed) {
-            reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(inputStream),
-                    StandardCharsets.UTF_8));
+    /**
+     * reads the lines which start within the byte range [start, end) of the resource.
+     * A line which starts within the range is read completely even if it exceeds the end of the range.
+     *
+     * @param startLine the lines of the chunk before this line have already been emitted by a previous try
+     * @return false if the downstream doesn't want any more rows
+     */
+    private boolean readChunk(FileInput fileInput,
+                              CollectorContext collectorContext,
+                              URI uri,
+                              long start,
+                              long end,
+                              long startLine,
+                              int retry) throws IOException {
+        CsvLineParser csvLineParser = null;
+        if (format == FileFormat.CSV && start > 0) {
+            csvLineParser = readCsvHeader(fileInput, uri);
+            if (csvLineParser == null) {
+                return true;
+            }
+        }
+        // start reading at the byte before the chunk to find out if the first line starts
+        // exactly at the chunk boundary or if it belongs to the previous chunk
+        long streamStart = start == 0 ? 0 : start - 1;
+        InputStream inputStream = fileInput.getStream(uri, streamStart, end);
+        if (inputStream == null) {
+            return true;
+        }
+        byte[] line;
+        long linesRead = 0L;
+        try (LineReader reader = createReader(inputStream)) {
+            if (start > 0) {
+                reader.readLine(); // remainder of the line which starts in the previous chunk
+            }
+            while (streamStart + reader.position() < end && (line = reader.readLine()) != null) {
+                linesRead++;
+                if (line.length == 0) {
+                    continue;
+                }
+                if (format == FileFormat.CSV && csvLineParser == null) {
+                    csvLineParser = new CsvLineParser(line);
+                    continue;
+                }
+                if (linesRead < startLine) {
+                    continue;
+                }
+                if (!emitLine(collectorContext, csvLineParser, line, linesRead)) {
+                    return false;
+                }
+            }
+        } catch (SocketTimeoutException e) {
+            if (retry > MAX_SOCKET_TIMEOUT_RETRIES) {
+                LOGGER.info("Timeout during COPY FROM '{}' (bytes {} to {}) after {} retries",
+                        e, uri.toString(), start, end, retry);
+                throw e;
+            } else {
+                return readChunk(fileInput, collectorContext, uri, start, end, linesRead + 1, retry + 1);
+            }
+        } catch (Exception e) {
+            LOGGER.info("Error during COPY FROM '{}' (bytes {} to {})", e, uri.toString(), start, end);
+            throw e;
+        }
+        return true;
+    }
+
+    @Nullable
+    private CsvLineParser readCsvHeader(FileInput fileInput, URI uri) throws IOException {
+        // only the first line is needed, don't request the whole resource
+        InputStream inputStream = fileInput.getStream(uri, 0, 0);
+        if (inputStream == null) {
+            return null;
+        }
+        try (LineReader reader = createReader(inputStream)) {
+            byte[] line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length > 0) {
+                    return new CsvLineParser(line);
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean emitLine(CollectorContext collectorContext,
+                             @Nullable CsvLineParser csvLineParser,
+                             byte[] line,
+                             long lineNumber) throws IOException {
+        if (killed) {
+            throw new CancellationException();
+        }
+        if (lineNumber % 100_00 == 0) {
+            keepAliveListener.keepAlive();
+        }
+        if (csvLineParser == null) {
+            collectorContext.lineContext().rawSource(line);
         } else {
-            reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+            collectorContext.lineContext().rawSource(csvLineParser.toJson(line));
+        }
+        return downstream.setNextRow(row);
+    }
+
+    private LineReader createReader(InputStream inputStream) throws IOException {
+        if (compressed) {
+            return new LineReader(new GZIPInputStream(inputStream));
         }
-        return reader;
+        return new LineReader(inputStream);
     }
 
     private List<URI> getUris(FileInput fileInput, Predicate<URI> uriPredicate) throws IOException {
@@ -289,28 +444,16 @@ public class FileReadingCollector implements CrateCollector, RowUpstream {
         return uris;
     }
 
-    private Predicate<URI> generateUriPredicate(FileInput fileInput) {
-        Predicate<URI> moduloPredicate;
-        boolean sharedStorage = MoreObjects.firstNonNull(shared, fileInput.sharedStorageDefault());
-        if (sharedStorage) {
-            moduloPredicate = new Predicate<URI>() {
-                @Override
-                public boolean apply(URI input) {
-                    int hash = input.hashCode();
-                    if (hash == Integer.MIN_VALUE) {
-                        hash = 0; // Math.abs(Integer.MIN_VALUE) == Integer.MIN_VALUE
-                    }
-                    return Math.abs(hash) % numReaders == readerNumber;
-                }
-            };
-        } else {
-            moduloPredicate = MATCH_ALL_PREDICATE;
-        }
-
-        if (globPredicate != null) {
-            return Predicates.and(moduloPredicate, globPredicate);
+    /**
+     * decides if this node reads the given chunk of a file on shared storage.
+     * The first chunk of a file is assigned by the hash of the uri, the following chunks go to the next readers.
+     */
+    private boolean isNodeReader(URI uri, long chunk) {
+        int hash = uri.hashCode();
+        if (hash == Integer.MIN_VALUE) {
+            hash = 0; // Math.abs(Integer.MIN_VALUE) == Integer.MIN_VALUE
         }
-        return moduloPredicate;
+        return (Math.abs(hash) + chunk) % numReaders == readerNumber;
     }
 
 }
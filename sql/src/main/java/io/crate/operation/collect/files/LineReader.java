@@ -0,0 +1,125 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect.files;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads newline separated lines from an InputStream without decoding them.
+ *
+ * The lines are returned as byte arrays without the line terminator (\n or \r\n) so they can be
+ * handed to the {@link io.crate.operation.reference.file.LineContext} without
+ * going through a String.
+ */
+class LineReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream inputStream;
+    private final byte[] buffer;
+    private int bufferPos = 0;
+    private int bufferEnd = 0;
+    private long position = 0;
+
+    LineReader(InputStream inputStream) {
+        this(inputStream, BUFFER_SIZE);
+    }
+
+    LineReader(InputStream inputStream, int bufferSize) {
+        this.inputStream = inputStream;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * @return the number of bytes consumed from the stream by the lines read so far,
+     *         which is the position at which the next line starts.
+     */
+    long position() {
+        return position;
+    }
+
+    /**
+     * @return the next line or null if the end of the stream has been reached
+     */
+    byte[] readLine() throws IOException {
+        byte[] line = null;
+        int lineLength = 0;
+        while (true) {
+            if (bufferPos == bufferEnd && !fill()) {
+                if (line == null) {
+                    return null;
+                }
+                return stripCarriageReturn(line, lineLength);
+            }
+            int start = bufferPos;
+            int end = start;
+            while (end < bufferEnd && buffer[end] != '\n') {
+                end++;
+            }
+            boolean foundNewLine = end < bufferEnd;
+            int length = end - start;
+            if (line == null) {
+                line = Arrays.copyOfRange(buffer, start, end);
+            } else {
+                if (lineLength + length > line.length) {
+                    line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+                }
+                System.arraycopy(buffer, start, line, lineLength, length);
+            }
+            lineLength += length;
+            bufferPos = foundNewLine ? end + 1 : end;
+            position += bufferPos - start;
+            if (foundNewLine) {
+                return stripCarriageReturn(line, lineLength);
+            }
+        }
+    }
+
+    private boolean fill() throws IOException {
+        int read = inputStream.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        bufferPos = 0;
+        bufferEnd = read;
+        return true;
+    }
+
+    private static byte[] stripCarriageReturn(byte[] line, int length) {
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        if (length == line.length) {
+            return line;
+        }
+        return Arrays.copyOf(line, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+}
@@ -81,6 +81,24 @@ public class LocalFsFileInput implements FileInput {
         }
     }
 
+    @Override
+    public long size(URI uri) {
+        return new File(uri).length();
+    }
+
+    @Override
+    public InputStream getStream(URI uri, long position, long end) throws IOException {
+        File file = new File(uri);
+        FileInputStream inputStream;
+        try {
+            inputStream = new FileInputStream(file);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        inputStream.getChannel().position(position);
+        return inputStream;
+    }
+
     @Override
     public boolean sharedStorageDefault() {
         return false;
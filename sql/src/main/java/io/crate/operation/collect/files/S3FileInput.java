@@ -22,8 +22,12 @@
 package io.crate.operation.collect.files;
 
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.google.common.base.Predicate;
 import io.crate.external.S3ClientHelper;
@@ -41,6 +45,12 @@ public class S3FileInput implements FileInput {
     private AmazonS3 client; // to prevent early GC during getObjectContent() in getStream()
     private static final ESLogger logger = Loggers.getLogger(S3FileInput.class);
 
+    /**
+     * bytes requested in addition to the expected end of a ranged read, enough to complete the last line usually
+     */
+    static final long RANGE_SLACK = 64 * 1024;
+    private static final int RANGE_NOT_SATISFIABLE = 416;
+
     final S3ClientHelper clientBuilder;
 
     public S3FileInput() {
@@ -98,8 +108,143 @@ public class S3FileInput implements FileInput {
         return null;
     }
 
+    @Override
+    public long size(URI uri) throws IOException {
+        if (client == null) {
+            client = clientBuilder.client(uri);
+        }
+        ObjectMetadata metadata = client.getObjectMetadata(uri.getHost(), uri.getPath().substring(1));
+        return metadata == null ? -1 : metadata.getContentLength();
+    }
+
+    @Override
+    public InputStream getStream(URI uri, long position, long end) throws IOException {
+        if (client == null) {
+            client = clientBuilder.client(uri);
+        }
+        RangedObjectInputStream inputStream = new RangedObjectInputStream(
+                client, uri.getHost(), uri.getPath().substring(1), position, Math.max(0, end - position) + RANGE_SLACK);
+        if (!inputStream.open()) {
+            return null;
+        }
+        return inputStream;
+    }
+
     @Override
     public boolean sharedStorageDefault() {
         return true;
     }
+
+    /**
+     * Reads an object starting at a position using ranged GET requests.
+     *
+     * The first range ends shortly after the expected end, a following range is only requested if the stream is read
+     * further (doubling its size each time). The requests are bounded so that closing the stream (which drains
+     * the response to re-use the connection) doesn't transfer the rest of the object.
+     */
+    static class RangedObjectInputStream extends InputStream {
+
+        private final AmazonS3 client;
+        private final String bucketName;
+        private final String key;
+
+        private long position;
+        private long rangeSize;
+        private long rangeEnd;
+        private S3ObjectInputStream current;
+        private boolean eof = false;
+
+        RangedObjectInputStream(AmazonS3 client, String bucketName, String key, long position, long rangeSize) {
+            this.client = client;
+            this.bucketName = bucketName;
+            this.key = key;
+            this.position = position;
+            this.rangeSize = rangeSize;
+        }
+
+        /**
+         * requests the next range, returns false if the object doesn't exist or has no more bytes
+         */
+        boolean open() {
+            GetObjectRequest request = new GetObjectRequest(bucketName, key);
+            request.setRange(position, position + rangeSize - 1);
+            S3Object object;
+            try {
+                object = client.getObject(request);
+            } catch (AmazonS3Exception e) {
+                if (e.getStatusCode() == RANGE_NOT_SATISFIABLE) {
+                    // the previous range ended exactly at the end of the object
+                    return false;
+                }
+                throw e;
+            }
+            if (object == null) {
+                return false;
+            }
+            current = object.getObjectContent();
+            rangeEnd = position + rangeSize;
+            rangeSize *= 2;
+            return true;
+        }
+
+        /**
+         * returns true if the current range is read completely and a following range might contain more bytes
+         */
+        private boolean nextRange() throws IOException {
+            boolean objectHasMore = position >= rangeEnd;
+            current.close();
+            current = null;
+            if (!objectHasMore || !open()) {
+                eof = true;
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            while (!eof) {
+                int b = current.read();
+                if (b >= 0) {
+                    position++;
+                    return b;
+                }
+                nextRange();
+            }
+            return -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (!eof) {
+                int read = current.read(b, off, len);
+                if (read > 0) {
+                    position += read;
+                    return read;
+                }
+                if (read < 0) {
+                    nextRange();
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (current == null) {
+                return;
+            }
+            if (rangeEnd - position > RANGE_SLACK) {
+                // the stream wasn't read up to the expected end, don't drain the remaining range
+                current.abort();
+            } else {
+                current.close();
+            }
+            current = null;
+            eof = true;
+        }
+    }
 }
@@ -34,6 +34,7 @@ import io.crate.metadata.sys.SysClusterTableInfo;
 import io.crate.metadata.sys.SysSchemaInfo;
 import io.crate.metadata.table.TableInfo;
 import io.crate.operation.ImplementationSymbolVisitor;
+import io.crate.operation.TempFiles;
 import io.crate.operation.collect.CrateCollector;
 import io.crate.operation.collect.JobCollectContext;
 import io.crate.operation.projectors.ProjectionToProjectorVisitor;
@@ -68,6 +69,7 @@ public class CollectSourceResolver {
                                  Functions functions,
                                  NestedReferenceResolver clusterReferenceResolver,
                                  Settings settings,
+                                 TempFiles tempFiles,
                                  ThreadPool threadPool,
                                  TransportActionProvider transportActionProvider,
                                  BulkRetryCoordinatorPool bulkRetryCoordinatorPool,
@@ -84,6 +86,7 @@ public class CollectSourceResolver {
                 clusterService,
                 threadPool,
                 settings,
+                tempFiles,
                 transportActionProvider,
                 bulkRetryCoordinatorPool,
                 nodeImplementationSymbolVisitor,
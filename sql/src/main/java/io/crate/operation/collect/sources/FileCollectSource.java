@@ -25,12 +25,14 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import io.crate.analyze.symbol.ValueSymbolVisitor;
 import io.crate.metadata.Functions;
+import io.crate.operation.RowDownstream;
 import io.crate.operation.collect.CrateCollector;
 import io.crate.operation.collect.JobCollectContext;
 import io.crate.operation.collect.RowsCollector;
 import io.crate.operation.collect.files.FileCollectInputSymbolVisitor;
 import io.crate.operation.collect.files.FileInputFactory;
 import io.crate.operation.collect.files.FileReadingCollector;
+import io.crate.operation.projectors.RowMergers;
 import io.crate.operation.projectors.RowReceiver;
 import io.crate.operation.reference.file.FileLineReferenceResolver;
 import io.crate.planner.node.dql.CollectPhase;
@@ -38,20 +40,32 @@ import io.crate.planner.node.dql.FileUriCollectPhase;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 @Singleton
 public class FileCollectSource implements CollectSource {
 
+    /**
+     * maximum number of threads used to read files and file chunks concurrently on a node
+     */
+    public static final String MAX_FILE_READERS_PER_NODE = "collect.max_file_readers_per_node";
+
     private final ClusterService clusterService;
     private final FileCollectInputSymbolVisitor fileInputSymbolVisitor;
+    private final int maxFileReaders;
 
     @Inject
-    public FileCollectSource(Functions functions, ClusterService clusterService) {
+    public FileCollectSource(Functions functions, ClusterService clusterService, Settings settings) {
         fileInputSymbolVisitor = new FileCollectInputSymbolVisitor(functions, FileLineReferenceResolver.INSTANCE);
         this.clusterService = clusterService;
+        this.maxFileReaders = settings.getAsInt(MAX_FILE_READERS_PER_NODE,
+                Math.max(1, Math.min(4, EsExecutors.boundedNumberOfProcessors(settings) / 2)));
     }
 
     @Override
@@ -61,7 +75,6 @@ public class FileCollectSource implements CollectSource {
             return ImmutableList.<CrateCollector>of(RowsCollector.empty(downstream));
         }
 
-        FileCollectInputSymbolVisitor.Context context = fileInputSymbolVisitor.extractImplementations(collectPhase.toCollect());
         FileUriCollectPhase fileUriCollectPhase = (FileUriCollectPhase) collectPhase;
 
         // FileUriCollectPhase is only used in copy plans which never require ordering
@@ -70,18 +83,31 @@ public class FileCollectSource implements CollectSource {
         String[] readers = fileUriCollectPhase.executionNodes().toArray(
                 new String[fileUriCollectPhase.executionNodes().size()]);
         Arrays.sort(readers);
-        return ImmutableList.<CrateCollector>of(new FileReadingCollector(
+        int readerNumber = Arrays.binarySearch(readers, clusterService.state().nodes().localNodeId());
+
+        RowDownstream rowDownstream = maxFileReaders == 1 ? null : RowMergers.passThroughRowMerger(downstream);
+        List<CrateCollector> collectors = new ArrayList<>(maxFileReaders);
+        for (int threadNumber = 0; threadNumber < maxFileReaders; threadNumber++) {
+            // each collector needs its own input implementations as they're bound to the line of the collector
+            FileCollectInputSymbolVisitor.Context context =
+                    fileInputSymbolVisitor.extractImplementations(collectPhase.toCollect());
+            collectors.add(new FileReadingCollector(
                     ValueSymbolVisitor.STRING.process(fileUriCollectPhase.targetUri()),
                     context.topLevelInputs(),
                     context.expressions(),
-                    downstream,
+                    rowDownstream == null ? downstream : rowDownstream.newRowReceiver(),
                     fileUriCollectPhase.fileFormat(),
                     fileUriCollectPhase.compression(),
                     ImmutableMap.<String, FileInputFactory>of(),
                     fileUriCollectPhase.sharedStorage(),
                     jobCollectContext.keepAliveListener(),
                     readers.length,
-                    Arrays.binarySearch(readers, clusterService.state().nodes().localNodeId())
-        ));
+                    readerNumber,
+                    maxFileReaders,
+                    threadNumber,
+                    FileReadingCollector.CHUNK_SIZE
+            ));
+        }
+        return collectors;
     }
 }
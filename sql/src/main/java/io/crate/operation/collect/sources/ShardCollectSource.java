@@ -39,18 +39,22 @@ import io.crate.metadata.PartitionName;
 import io.crate.metadata.RowGranularity;
 import io.crate.metadata.shard.unassigned.UnassignedShard;
 import io.crate.operation.ImplementationSymbolVisitor;
+import io.crate.operation.TempFiles;
 import io.crate.operation.collect.CrateCollector;
 import io.crate.operation.collect.JobCollectContext;
 import io.crate.operation.collect.RowsCollector;
 import io.crate.operation.collect.ShardCollectService;
 import io.crate.operation.collect.collectors.MultiShardScoreDocCollector;
 import io.crate.operation.collect.collectors.OrderedDocCollector;
+import io.crate.operation.collect.collectors.SegmentStatsAggregationCollector;
 import io.crate.operation.projectors.*;
 import io.crate.operation.projectors.sorting.OrderingByPosition;
 import io.crate.operation.reference.sys.node.NodeSysExpression;
 import io.crate.operation.reference.sys.node.NodeSysReferenceResolver;
 import io.crate.planner.consumer.OrderByPositionVisitor;
 import io.crate.planner.node.dql.CollectPhase;
+import io.crate.planner.projection.AggregationProjection;
+import io.crate.planner.projection.Projection;
 import org.elasticsearch.action.bulk.BulkRetryCoordinatorPool;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.cluster.routing.ShardRoutingState;
@@ -58,6 +62,7 @@ import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Injector;
 import org.elasticsearch.common.inject.Singleton;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
 import org.elasticsearch.index.IndexService;
 import org.elasticsearch.index.IndexShardMissingException;
 import org.elasticsearch.index.shard.IllegalIndexShardStateException;
@@ -66,6 +71,7 @@ import org.elasticsearch.indices.IndexMissingException;
 import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.threadpool.ThreadPool;
 
+import javax.annotation.Nullable;
 import java.util.*;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutorService;
@@ -73,7 +79,13 @@ import java.util.concurrent.ExecutorService;
 @Singleton
 public class ShardCollectSource implements CollectSource {
 
+    /**
+     * maximum number of threads used to collect the segments of a single shard concurrently
+     */
+    public static final String MAX_THREADS_PER_SHARD = "collect.max_threads_per_shard";
+
     private final Settings settings;
+    private final TempFiles tempFiles;
     private final IndicesService indicesService;
     private final Functions functions;
     private final ClusterService clusterService;
@@ -83,9 +95,11 @@ public class ShardCollectSource implements CollectSource {
     private final BulkRetryCoordinatorPool bulkRetryCoordinatorPool;
     private final NodeSysExpression nodeSysExpression;
     private final ListeningExecutorService executor;
+    private final int maxThreadsPerShard;
 
     @Inject
     public ShardCollectSource(Settings settings,
+                              TempFiles tempFiles,
                               IndicesService indicesService,
                               Functions functions,
                               ClusterService clusterService,
@@ -95,6 +109,7 @@ public class ShardCollectSource implements CollectSource {
                               SystemCollectSource systemCollectSource,
                               NodeSysExpression nodeSysExpression) {
         this.settings = settings;
+        this.tempFiles = tempFiles;
         this.indicesService = indicesService;
         this.functions = functions;
         this.clusterService = clusterService;
@@ -104,6 +119,11 @@ public class ShardCollectSource implements CollectSource {
         this.transportActionProvider = transportActionProvider;
         this.bulkRetryCoordinatorPool = bulkRetryCoordinatorPool;
         this.nodeSysExpression = nodeSysExpression;
+        this.maxThreadsPerShard = settings.getAsInt(MAX_THREADS_PER_SHARD, defaultMaxThreadsPerShard(settings));
+    }
+
+    private static int defaultMaxThreadsPerShard(Settings settings) {
+        return Math.max(1, Math.min(4, EsExecutors.boundedNumberOfProcessors(settings) / 2));
     }
 
     @Override
@@ -119,6 +139,7 @@ public class ShardCollectSource implements CollectSource {
                 clusterService,
                 threadPool,
                 settings,
+                tempFiles,
                 transportActionProvider,
                 bulkRetryCoordinatorPool,
                 implementationSymbolVisitor,
@@ -152,10 +173,23 @@ public class ShardCollectSource implements CollectSource {
         // actual shards might be less if table is partitioned and a partition has been deleted meanwhile
         int maxNumShards = normalizedPhase.routing().numShards(localNodeId);
 
+        // shards are only split into segment slices if each slice can get its own shard projector
+        int maxThreads = hasShardProjection(normalizedPhase) ? maxThreadsPerShard : 1;
+        int maxNumShardProjectors = maxNumShards * maxThreads;
+
+        // global count/min/max aggregations without a query are computed from the segment statistics of each shard,
+        // the aggregation projection then continues from the partial results of the shards
+        List<Projection> projections = normalizedPhase.projections();
+        AggregationProjection segmentStatsProjection = null;
+        if (SegmentStatsAggregationCollector.canCollect(normalizedPhase)) {
+            segmentStatsProjection = (AggregationProjection) projections.get(0);
+            projections = new ArrayList<>(projections);
+            projections.set(0, SegmentStatsAggregationCollector.mergeProjection(segmentStatsProjection));
+        }
         ShardProjectorChain projectorChain = ShardProjectorChain.passThroughMerge(
                 normalizedPhase.jobId(),
-                maxNumShards,
-                normalizedPhase.projections(),
+                maxNumShardProjectors,
+                projections,
                 downstream,
                 projectorFactory,
                 jobCollectContext.queryPhaseRamAccountingContext());
@@ -169,14 +203,23 @@ public class ShardCollectSource implements CollectSource {
         } else {
             Map<String, List<Integer>> indexShards = locations.get(localNodeId);
             if (indexShards != null) {
-                shardCollectors.addAll(
-                        getDocCollectors(jobCollectContext, normalizedPhase, projectorChain, indexShards));
+                shardCollectors.addAll(getDocCollectors(
+                        jobCollectContext, normalizedPhase, projectorChain, indexShards, maxThreads, segmentStatsProjection));
             }
         }
         projectorChain.prepare(jobCollectContext);
         return shardCollectors;
     }
 
+    private static boolean hasShardProjection(CollectPhase collectPhase) {
+        for (Projection projection : collectPhase.projections()) {
+            if (projection.requiredGranularity() == RowGranularity.SHARD) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private CrateCollector createMultiShardScoreDocCollector(CollectPhase collectPhase,
                                                              FlatProjectorChain flatProjectorChain,
                                                              JobCollectContext jobCollectContext,
@@ -195,7 +238,8 @@ public class ShardCollectSource implements CollectSource {
                 try {
                     Injector shardInjector = context.indexService().shardInjectorSafe(shardId);
                     ShardCollectService shardCollectService = shardInjector.getInstance(ShardCollectService.class);
-                    orderedDocCollectors.add(shardCollectService.getOrderedCollector(collectPhase, context, jobCollectContext));
+                    orderedDocCollectors.addAll(shardCollectService.getOrderedCollectors(
+                            collectPhase, context, jobCollectContext, maxThreadsPerShard, orderedDocCollectors.size()));
                 } catch (IndexShardMissingException | CancellationException | IllegalIndexShardStateException e) {
                     throw e;
                 } catch (IndexMissingException e) {
@@ -227,7 +271,9 @@ public class ShardCollectSource implements CollectSource {
     private Collection<CrateCollector> getDocCollectors(JobCollectContext jobCollectContext,
                                                         CollectPhase collectPhase,
                                                         ShardProjectorChain projectorChain,
-                                                        Map<String, List<Integer>> indexShards) {
+                                                        Map<String, List<Integer>> indexShards,
+                                                        int maxThreads,
+                                                        @Nullable AggregationProjection segmentStatsProjection) {
 
         List<CrateCollector> crateCollectors = new ArrayList<>();
         for (Map.Entry<String, List<Integer>> entry : indexShards.entrySet()) {
@@ -247,12 +293,17 @@ public class ShardCollectSource implements CollectSource {
                 try {
                     shardInjector = indexService.shardInjectorSafe(shardId);
                     ShardCollectService shardCollectService = shardInjector.getInstance(ShardCollectService.class);
-                    CrateCollector collector = shardCollectService.getDocCollector(
+                    if (segmentStatsProjection != null) {
+                        crateCollectors.add(shardCollectService.getSegmentStatsCollector(
+                                collectPhase, segmentStatsProjection, projectorChain, jobCollectContext));
+                        continue;
+                    }
+                    crateCollectors.addAll(shardCollectService.getDocCollectors(
                             collectPhase,
                             projectorChain,
-                            jobCollectContext
-                    );
-                    crateCollectors.add(collector);
+                            jobCollectContext,
+                            maxThreads
+                    ));
                 } catch (IndexShardMissingException | CancellationException | IllegalIndexShardStateException e) {
                     projectorChain.fail(e);
                     throw e;
@@ -0,0 +1,891 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.join;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.crate.Streamer;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.breaker.RowSizeEstimator;
+import io.crate.core.collections.Row;
+import io.crate.core.collections.RowN;
+import io.crate.jobs.ExecutionState;
+import io.crate.operation.RowUpstream;
+import io.crate.operation.projectors.ListenableRowReceiver;
+import io.crate.operation.projectors.Requirement;
+import io.crate.operation.projectors.RowReceiver;
+import io.crate.types.DataType;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Joins the rows of two inputs which have equal join keys.
+ *
+ * All rows of the build side are put into a hash table, the rows of the probe side are looked up in it as they arrive.
+ * The probe side is paused until the build side has finished. Unlike the {@link NestedLoopOperation}
+ * none of the sides has to be repeated.
+ *
+ * The resulting rows always consist of the left row followed by the right row.
+ * If the right side is the build side, the rows are emitted in the order of the left side.
+ *
+ * Build rows are distributed into partitions by the hash of their key. If spilling is enabled and the build side
+ * exceeds its memory budget or the breaker is about to trip (see {@link #SOFT_LIMIT_DIVISOR}), whole partitions are
+ * written to disk (grace hash join). Partitions are spilled before a row is added to the breaker,
+ * since a tripped breaker fails the whole query.
+ * Probe rows of such a partition are written to disk as well and joined after both sides have finished,
+ * so the order of the left side isn't retained in that case.
+ *
+ * A spilled partition which doesn't fit into the memory that is left once both sides have finished is
+ * split into sub-partitions using a different hash (see {@link #MAX_REPARTITION_LEVEL}). If it can't be split,
+ * e.g. because most of its rows have the same key, its build rows are loaded in blocks which fit into memory
+ * and the spilled probe rows are read once per block.
+ */
+public class HashJoinOperation implements RowUpstream {
+
+    private final static ESLogger LOGGER = Loggers.getLogger(HashJoinOperation.class);
+
+    static final int NUM_PARTITIONS = 16;
+    private static final int PARTITION_BITS = Integer.numberOfTrailingZeros(NUM_PARTITIONS);
+
+    /**
+     * spilled partitions are split at most this many times before they are joined block by block
+     */
+    static final int MAX_REPARTITION_LEVEL = 3;
+    private static final int MAX_INITIAL_CAPACITY = 1 << 16;
+
+    static final long DEFAULT_MEMORY_BUDGET = new ByteSizeValue(64, ByteSizeUnit.MB).bytes();
+    static final long MIN_MEMORY_BUDGET = new ByteSizeValue(1, ByteSizeUnit.MB).bytes();
+
+    /**
+     * partitions are spilled once less than 1/SOFT_LIMIT_DIVISOR of the breaker limit is left
+     */
+    static final int SOFT_LIMIT_DIVISOR = 10;
+
+    // hash map entry, the key and the list holding the rows
+    private static final long KEY_OVERHEAD = 64;
+    private static final long ROW_OVERHEAD = 8;
+
+    private final int phaseId;
+    private final RowReceiver downstream;
+    private final int[] buildKeys;
+    private final int[] probeKeys;
+    private final boolean buildLeft;
+    private final RamAccountingContext ramAccountingContext;
+    private final RowSizeEstimator buildRowSizeEstimator;
+    private final int buildRowSize;
+    private final long memoryBudget;
+    private final long softLimitBytes;
+    @Nullable
+    private final Streamer<?>[] buildStreamers;
+    @Nullable
+    private final Streamer<?>[] probeStreamers;
+    private final Path tmpDirectory;
+
+    private final Partition[] partitions;
+    private final BuildRowReceiver build;
+    private final ProbeRowReceiver probe;
+    private final NestedLoopOperation.CombinedRow combinedRow = new NestedLoopOperation.CombinedRow();
+
+    private final Object lock = new Object();
+    private boolean buildFinished = false;
+    private boolean probeFinished = false;
+    private Row pendingProbeRow = null;
+
+    private final AtomicBoolean failed = new AtomicBoolean(false);
+    private long usedBytes = 0;
+    private volatile boolean downstreamWantsMore = true;
+    private volatile boolean paused = false;
+    private volatile boolean joinFinishing = false;
+    private volatile Iterator<Row> pendingRows = null;
+
+    /**
+     * @param leftTypes         the types of the rows of the left side
+     * @param rightTypes        the types of the rows of the right side
+     * @param leftJoinKeys      the positions of the join keys within the left rows
+     * @param rightJoinKeys     the positions of the join keys within the right rows, in the same order as the left ones
+     * @param buildLeft         if true the left side is hashed and the right side probes, otherwise the other way around
+     * @param expectedBuildRows estimated number of rows of the build side used to size the hash table, -1 if unknown
+     * @param spillable         if true the build side may be spilled to disk if it exceeds its memory budget
+     * @param tmpDirectory      the directory spilled partitions are written to
+     */
+    public HashJoinOperation(int phaseId,
+                             RowReceiver rowReceiver,
+                             List<? extends DataType> leftTypes,
+                             List<? extends DataType> rightTypes,
+                             int[] leftJoinKeys,
+                             int[] rightJoinKeys,
+                             boolean buildLeft,
+                             long expectedBuildRows,
+                             boolean spillable,
+                             RamAccountingContext ramAccountingContext,
+                             Path tmpDirectory) {
+        this(phaseId, rowReceiver, leftTypes, rightTypes, leftJoinKeys, rightJoinKeys, buildLeft, expectedBuildRows,
+                spillable, ramAccountingContext, tmpDirectory, memoryBudget(ramAccountingContext));
+    }
+
+    @VisibleForTesting
+    HashJoinOperation(int phaseId,
+                      RowReceiver rowReceiver,
+                      List<? extends DataType> leftTypes,
+                      List<? extends DataType> rightTypes,
+                      int[] leftJoinKeys,
+                      int[] rightJoinKeys,
+                      boolean buildLeft,
+                      long expectedBuildRows,
+                      boolean spillable,
+                      RamAccountingContext ramAccountingContext,
+                      Path tmpDirectory,
+                      long memoryBudget) {
+        assert leftJoinKeys.length > 0 && leftJoinKeys.length == rightJoinKeys.length : "invalid join keys";
+        this.phaseId = phaseId;
+        this.downstream = rowReceiver;
+        this.buildLeft = buildLeft;
+        this.ramAccountingContext = ramAccountingContext;
+        this.memoryBudget = memoryBudget;
+        this.softLimitBytes = ramAccountingContext.limit() / SOFT_LIMIT_DIVISOR;
+        this.tmpDirectory = tmpDirectory;
+
+        List<? extends DataType> buildTypes = buildLeft ? leftTypes : rightTypes;
+        List<? extends DataType> probeTypes = buildLeft ? rightTypes : leftTypes;
+        buildKeys = buildLeft ? leftJoinKeys : rightJoinKeys;
+        probeKeys = buildLeft ? rightJoinKeys : leftJoinKeys;
+        buildRowSizeEstimator = new RowSizeEstimator(buildTypes);
+        buildRowSize = buildTypes.size();
+        if (spillable) {
+            buildStreamers = streamers(buildTypes);
+            probeStreamers = streamers(probeTypes);
+        } else {
+            buildStreamers = null;
+            probeStreamers = null;
+        }
+
+        int expectedPartitionSize = 16;
+        if (expectedBuildRows > 0) {
+            expectedPartitionSize = (int) Math.min(MAX_INITIAL_CAPACITY, expectedBuildRows / NUM_PARTITIONS + 1);
+        }
+        partitions = new Partition[NUM_PARTITIONS];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new Partition(expectedPartitionSize, 0);
+        }
+
+        downstream.setUpstream(this);
+        build = new BuildRowReceiver();
+        probe = new ProbeRowReceiver();
+    }
+
+    /**
+     * the build side is spilled if it exceeds half of the breaker limit
+     */
+    static long memoryBudget(RamAccountingContext ramAccountingContext) {
+        long limit = ramAccountingContext.limit();
+        if (limit <= 0) {
+            return DEFAULT_MEMORY_BUDGET;
+        }
+        return Math.max(MIN_MEMORY_BUDGET, limit / 2);
+    }
+
+    @Nullable
+    private static Streamer<?>[] streamers(List<? extends DataType> types) {
+        Streamer<?>[] streamers = new Streamer[types.size()];
+        for (int i = 0; i < streamers.length; i++) {
+            streamers[i] = types.get(i).streamer();
+            if (streamers[i] == null) {
+                return null;
+            }
+        }
+        return streamers;
+    }
+
+    public ListenableRowReceiver leftRowReceiver() {
+        return buildLeft ? build : probe;
+    }
+
+    public ListenableRowReceiver rightRowReceiver() {
+        return buildLeft ? probe : build;
+    }
+
+    @Override
+    public void pause() {
+        paused = true;
+        if (probe.upstream != null) {
+            probe.upstream.pause();
+        }
+    }
+
+    @Override
+    public void resume(boolean async) {
+        paused = false;
+        Iterator<Row> rows = pendingRows;
+        if (rows != null) {
+            pendingRows = null;
+            emit(rows);
+            if (pendingRows != null) {
+                return;
+            }
+        }
+        if (joinFinishing) {
+            finishDownstream();
+        } else {
+            probe.upstream.resume(async);
+        }
+    }
+
+    @Override
+    public void repeat() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * the join key of a row, null if any of the key values is null as null never matches
+     */
+    @Nullable
+    private static Object joinKey(Row row, int[] keyPositions) {
+        if (keyPositions.length == 1) {
+            return row.get(keyPositions[0]);
+        }
+        Object[] key = new Object[keyPositions.length];
+        for (int i = 0; i < keyPositions.length; i++) {
+            Object value = row.get(keyPositions[i]);
+            if (value == null) {
+                return null;
+            }
+            key[i] = value;
+        }
+        return Arrays.asList(key);
+    }
+
+    private Partition partition(Object key) {
+        return partitions[partitionIndex(key, 0)];
+    }
+
+    /**
+     * the partition of a key on the given level of repartitioning. The hash is rotated by a different
+     * distance on each level, so that keys of the same partition are spread if it is split again.
+     */
+    private static int partitionIndex(Object key, int level) {
+        // use the high bits, the low bits are used by the hash table of the partition
+        int hash = Integer.rotateLeft(key.hashCode(), level * 8) * 0x9E3779B9;
+        return hash >>> (Integer.SIZE - PARTITION_BITS);
+    }
+
+    private boolean spillable() {
+        return buildStreamers != null && probeStreamers != null;
+    }
+
+    private void addBuildRow(Row row) throws IOException {
+        Object key = joinKey(row, buildKeys);
+        if (key == null) {
+            return;
+        }
+        Object[] cells = row.materialize();
+        Partition partition = partition(key);
+        if (!partition.isSpilled() && spillable()) {
+            // upper bound, the key overhead is only added for new keys
+            long rowBytes = buildRowSizeEstimator.estimateSize(cells) + ROW_OVERHEAD + KEY_OVERHEAD;
+            while (mustSpill(rowBytes)) {
+                if (!spillLargestPartition()) {
+                    break;
+                }
+            }
+        }
+        if (partition.isSpilled()) {
+            partition.addSpilled(cells);
+            return;
+        }
+        long bytes = partition.add(key, cells);
+        usedBytes += bytes;
+        ramAccountingContext.addBytes(bytes);
+    }
+
+    /**
+     * partitions must be spilled if adding the row exceeds the memory budget or if the breaker would be
+     * left with less than the soft limit. In the latter case at least half of the soft limit is kept, spilling
+     * tiny partitions doesn't free enough memory if other contexts use most of the breaker.
+     */
+    private boolean mustSpill(long rowBytes) {
+        if (usedBytes + rowBytes > memoryBudget) {
+            return true;
+        }
+        return usedBytes >= softLimitBytes / 2
+               && ramAccountingContext.remainingBytes() - rowBytes < softLimitBytes;
+    }
+
+    private boolean spillLargestPartition() throws IOException {
+        Partition largest = null;
+        for (Partition partition : partitions) {
+            if (!partition.isSpilled() && (largest == null || partition.usedBytes > largest.usedBytes)) {
+                largest = partition;
+            }
+        }
+        if (largest == null || largest.usedBytes == 0) {
+            return false;
+        }
+        LOGGER.debug("[{}] spilling hash join partition with an estimated size of {}",
+                phaseId, new ByteSizeValue(largest.usedBytes));
+        long bytes = largest.spill(buildStreamers, probeStreamers);
+        usedBytes -= bytes;
+        ramAccountingContext.addBytes(-bytes);
+        return true;
+    }
+
+    private boolean probeRow(Row row) throws IOException {
+        if (!downstreamWantsMore || failed.get()) {
+            return false;
+        }
+        Object key = joinKey(row, probeKeys);
+        if (key == null) {
+            return true;
+        }
+        Partition partition = partition(key);
+        if (partition.isSpilled()) {
+            partition.probeFile.add(row.materialize());
+            return true;
+        }
+        List<Object[]> buildRows = partition.rows.get(key);
+        if (buildRows == null) {
+            return true;
+        }
+        return emit(new MatchingRows(row, buildRows.iterator()));
+    }
+
+    /**
+     * emits rows until the downstream doesn't need any more rows or pauses.
+     * In the later case the remaining rows are emitted on resume.
+     */
+    private boolean emit(Iterator<Row> rows) {
+        while (rows.hasNext()) {
+            boolean wantsMore = downstream.setNextRow(rows.next());
+            if (!wantsMore) {
+                LOGGER.trace("[{}] downstream doesn't need any more rows", phaseId);
+                downstreamWantsMore = false;
+                return false;
+            }
+            if (paused && rows.hasNext()) {
+                if (rows instanceof MatchingRows) {
+                    ((MatchingRows) rows).detach();
+                }
+                pendingRows = rows;
+                return true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * called once both sides have finished, joins the spilled partitions
+     */
+    private void finishJoin() {
+        if (failed.get()) {
+            return;
+        }
+        joinFinishing = true;
+        if (downstreamWantsMore) {
+            try {
+                emit(spilledRows());
+            } catch (Throwable t) {
+                fail(t);
+                return;
+            }
+            if (pendingRows != null) {
+                return;
+            }
+        }
+        finishDownstream();
+    }
+
+    private void finishDownstream() {
+        releasePartitions();
+        downstream.finish();
+    }
+
+    private void fail(Throwable t) {
+        if (failed.compareAndSet(false, true)) {
+            releasePartitions();
+            downstream.fail(t);
+        }
+    }
+
+    private void releasePartitions() {
+        for (Partition partition : partitions) {
+            ramAccountingContext.addBytes(-partition.close());
+        }
+    }
+
+    /**
+     * the in-memory partitions aren't needed anymore once the probe side has finished, they are released
+     * so that their memory can be used to join the spilled partitions
+     */
+    private Iterator<Row> spilledRows() {
+        List<Partition> spilled = new ArrayList<>();
+        for (Partition partition : partitions) {
+            if (partition.isSpilled()) {
+                spilled.add(partition);
+            } else {
+                ramAccountingContext.addBytes(-partition.close());
+            }
+        }
+        if (spilled.isEmpty()) {
+            return Collections.emptyIterator();
+        }
+        return new SpilledPartitionsIterator(spilled.iterator());
+    }
+
+    /**
+     * the number of bytes the build rows of a spilled partition may use once they are loaded again
+     */
+    private long joinBudget() {
+        long remaining = ramAccountingContext.remainingBytes() - softLimitBytes;
+        return Math.max(0, Math.min(memoryBudget, remaining));
+    }
+
+    /**
+     * joins spilled partitions one after another, each partition is closed once its rows have been emitted
+     */
+    private class SpilledPartitionsIterator extends AbstractIterator<Row> {
+
+        private final Iterator<Partition> spilled;
+        private Partition current = null;
+        private Iterator<Row> rows = Collections.emptyIterator();
+
+        SpilledPartitionsIterator(Iterator<Partition> spilled) {
+            this.spilled = spilled;
+        }
+
+        @Override
+        protected Row computeNext() {
+            while (!rows.hasNext()) {
+                if (current != null) {
+                    ramAccountingContext.addBytes(-current.close());
+                    current = null;
+                }
+                if (!spilled.hasNext()) {
+                    return endOfData();
+                }
+                current = spilled.next();
+                try {
+                    rows = current.join();
+                } catch (IOException e) {
+                    throw Throwables.propagate(e);
+                }
+            }
+            return rows.next();
+        }
+    }
+
+    /**
+     * joins a probe row with the build rows of the same key
+     */
+    private class MatchingRows implements Iterator<Row> {
+
+        private final Iterator<Object[]> buildRows;
+        private final RowN buildRow = new RowN(buildRowSize);
+        private Row probeRow;
+
+        MatchingRows(Row probeRow, Iterator<Object[]> buildRows) {
+            this.probeRow = probeRow;
+            this.buildRows = buildRows;
+        }
+
+        /**
+         * the probe row might be re-used by the upstream once the rows are continued later
+         */
+        void detach() {
+            probeRow = new RowN(probeRow.materialize());
+        }
+
+        @Override
+        public boolean hasNext() {
+            return buildRows.hasNext();
+        }
+
+        @Override
+        public Row next() {
+            buildRow.cells(buildRows.next());
+            if (buildLeft) {
+                combinedRow.outerRow = buildRow;
+                combinedRow.innerRow = probeRow;
+            } else {
+                combinedRow.outerRow = probeRow;
+                combinedRow.innerRow = buildRow;
+            }
+            return combinedRow;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private class Partition {
+
+        private final int level;
+        private Map<Object, List<Object[]>> rows;
+        private long usedBytes = 0;
+
+        private PartitionFile buildFile;
+        private PartitionFile probeFile;
+        // estimated number of bytes the spilled build rows use once they are loaded again
+        private long spilledBytes = 0;
+        @Nullable
+        private List<Partition> subPartitions;
+
+        Partition(int expectedSize, int level) {
+            this.level = level;
+            rows = new HashMap<>(Math.max(16, (int) (expectedSize / 0.75f) + 1));
+        }
+
+        boolean isSpilled() {
+            return buildFile != null;
+        }
+
+        long add(Object key, Object[] cells) {
+            long bytes = buildRowSizeEstimator.estimateSize(cells) + ROW_OVERHEAD;
+            List<Object[]> keyRows = rows.get(key);
+            if (keyRows == null) {
+                keyRows = new ArrayList<>(1);
+                rows.put(key, keyRows);
+                bytes += KEY_OVERHEAD;
+            }
+            keyRows.add(cells);
+            usedBytes += bytes;
+            return bytes;
+        }
+
+        /**
+         * writes the build rows to disk, returns the number of bytes released
+         */
+        long spill(Streamer<?>[] buildStreamers, Streamer<?>[] probeStreamers) throws IOException {
+            buildFile = new PartitionFile(buildStreamers, tmpDirectory);
+            probeFile = new PartitionFile(probeStreamers, tmpDirectory);
+            for (List<Object[]> keyRows : rows.values()) {
+                for (Object[] row : keyRows) {
+                    buildFile.add(row);
+                }
+            }
+            rows = new HashMap<>();
+            spilledBytes = usedBytes;
+            long bytes = usedBytes;
+            usedBytes = 0;
+            return bytes;
+        }
+
+        void addSpilled(Object[] cells) throws IOException {
+            buildFile.add(cells);
+            // upper bound, the key overhead is only added for new keys once the rows are loaded
+            spilledBytes += buildRowSizeEstimator.estimateSize(cells) + ROW_OVERHEAD + KEY_OVERHEAD;
+        }
+
+        /**
+         * joins the spilled build rows with the spilled probe rows.
+         * The build rows are loaded at once if they fit into the memory which is left,
+         * otherwise the partition is split or joined block by block.
+         */
+        Iterator<Row> join() throws IOException {
+            if (probeFile.numRows() == 0) {
+                return Collections.emptyIterator();
+            }
+            long budget = joinBudget();
+            if (spilledBytes <= budget) {
+                loadBlock(buildFile.iterator(), Long.MAX_VALUE);
+                return probe();
+            }
+            if (level < MAX_REPARTITION_LEVEL) {
+                subPartitions = repartition();
+                if (subPartitions != null) {
+                    LOGGER.debug("[{}] split spilled hash join partition with an estimated size of {} on level {}",
+                            phaseId, new ByteSizeValue(spilledBytes), level);
+                    return new SpilledPartitionsIterator(subPartitions.iterator());
+                }
+            }
+            LOGGER.debug("[{}] joining spilled hash join partition with an estimated size of {} in blocks of {}",
+                    phaseId, new ByteSizeValue(spilledBytes), new ByteSizeValue(budget));
+            return blockJoin(budget);
+        }
+
+        /**
+         * distributes the spilled rows into sub-partitions using the hash of the next level.
+         * Returns null if all build rows would end up in the same sub-partition.
+         */
+        @Nullable
+        private List<Partition> repartition() throws IOException {
+            List<Partition> result = new ArrayList<>(NUM_PARTITIONS);
+            for (int i = 0; i < NUM_PARTITIONS; i++) {
+                Partition partition = new Partition(0, level + 1);
+                result.add(partition);
+                partition.spill(buildStreamers, probeStreamers);
+            }
+            RowN buildRow = new RowN(buildRowSize);
+            for (Object[] cells : buildFile) {
+                buildRow.cells(cells);
+                result.get(partitionIndex(joinKey(buildRow, buildKeys), level + 1)).addSpilled(cells);
+            }
+            for (Partition partition : result) {
+                if (partition.buildFile.numRows() == buildFile.numRows()) {
+                    for (Partition p : result) {
+                        p.close();
+                    }
+                    return null;
+                }
+            }
+            RowN probeRow = new RowN(probeStreamers.length);
+            for (Object[] cells : probeFile) {
+                probeRow.cells(cells);
+                result.get(partitionIndex(joinKey(probeRow, probeKeys), level + 1)).probeFile.add(cells);
+            }
+            closeFile(buildFile);
+            closeFile(probeFile);
+            return result;
+        }
+
+        /**
+         * loads build rows into the hash table until they use more than the given number of bytes,
+         * the rows of the previous block are released.
+         */
+        private void loadBlock(Iterator<Object[]> buildRows, long maxBytes) {
+            ramAccountingContext.addBytes(-usedBytes);
+            usedBytes = 0;
+            rows = new HashMap<>();
+            RowN buildRow = new RowN(buildRowSize);
+            while (buildRows.hasNext() && usedBytes < maxBytes) {
+                Object[] cells = buildRows.next();
+                buildRow.cells(cells);
+                Object key = joinKey(buildRow, buildKeys);
+                ramAccountingContext.addBytes(add(key, cells));
+            }
+        }
+
+        /**
+         * joins the spilled probe rows with the build rows which are currently loaded
+         */
+        private Iterator<Row> probe() {
+            return Iterators.concat(Iterators.transform(probeFile.iterator(), new Function<Object[], Iterator<Row>>() {
+                @Nullable
+                @Override
+                public Iterator<Row> apply(Object[] probeCells) {
+                    RowN probeRow = new RowN(probeCells);
+                    Object key = joinKey(probeRow, probeKeys);
+                    List<Object[]> buildRows = rows.get(key);
+                    if (buildRows == null) {
+                        return Collections.emptyIterator();
+                    }
+                    return new MatchingRows(probeRow, buildRows.iterator());
+                }
+            }));
+        }
+
+        /**
+         * loads the build rows block by block and reads the probe rows once per block
+         */
+        private Iterator<Row> blockJoin(final long maxBlockBytes) {
+            final Iterator<Object[]> buildRows = buildFile.iterator();
+            return new AbstractIterator<Row>() {
+
+                private Iterator<Row> blockRows = Collections.emptyIterator();
+
+                @Override
+                protected Row computeNext() {
+                    while (!blockRows.hasNext()) {
+                        if (!buildRows.hasNext()) {
+                            return endOfData();
+                        }
+                        loadBlock(buildRows, maxBlockBytes);
+                        blockRows = probe();
+                    }
+                    return blockRows.next();
+                }
+            };
+        }
+
+        /**
+         * releases the rows and deletes the spilled files, returns the number of bytes released
+         */
+        long close() {
+            rows = null;
+            closeFile(buildFile);
+            closeFile(probeFile);
+            long bytes = usedBytes;
+            usedBytes = 0;
+            if (subPartitions != null) {
+                for (Partition partition : subPartitions) {
+                    bytes += partition.close();
+                }
+                subPartitions = null;
+            }
+            return bytes;
+        }
+
+        private void closeFile(@Nullable PartitionFile file) {
+            if (file == null) {
+                return;
+            }
+            try {
+                file.close();
+            } catch (IOException e) {
+                LOGGER.warn("[{}] could not delete hash join partition file", e, phaseId);
+            }
+        }
+    }
+
+    private abstract class AbstractRowReceiver implements ListenableRowReceiver {
+
+        final SettableFuture<Void> finished = SettableFuture.create();
+        volatile RowUpstream upstream;
+
+        @Override
+        public ListenableFuture<Void> finishFuture() {
+            return finished;
+        }
+
+        @Override
+        public void prepare(ExecutionState executionState) {
+        }
+
+        @Override
+        public void setUpstream(RowUpstream rowUpstream) {
+            assert rowUpstream != null : "rowUpstream must not be null";
+            this.upstream = rowUpstream;
+        }
+
+        @Override
+        public Set<Requirement> requirements() {
+            return downstream.requirements();
+        }
+
+        @Override
+        public void fail(Throwable throwable) {
+            HashJoinOperation.this.fail(throwable);
+            finished.setException(throwable);
+        }
+    }
+
+    private class BuildRowReceiver extends AbstractRowReceiver {
+
+        @Override
+        public boolean setNextRow(Row row) {
+            if (!downstreamWantsMore || failed.get()) {
+                return false;
+            }
+            try {
+                addBuildRow(row);
+            } catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+            return true;
+        }
+
+        @Override
+        public void finish() {
+            LOGGER.trace("[{}] build side finished", phaseId);
+            Row probeRow;
+            boolean probeDone;
+            synchronized (lock) {
+                buildFinished = true;
+                probeRow = pendingProbeRow;
+                pendingProbeRow = null;
+                probeDone = probeFinished;
+            }
+            finished.set(null);
+            if (probeDone) {
+                finishJoin();
+            } else if (probeRow != null) {
+                try {
+                    probeRow(probeRow);
+                } catch (Throwable t) {
+                    probe.fail(t);
+                }
+                if (!paused) {
+                    probe.upstream.resume(false);
+                }
+            }
+        }
+
+        @Override
+        public void fail(Throwable throwable) {
+            super.fail(throwable);
+            Row probeRow;
+            synchronized (lock) {
+                buildFinished = true;
+                probeRow = pendingProbeRow;
+                pendingProbeRow = null;
+            }
+            if (probeRow != null) {
+                // probe side is paused, resume it so that it can finish
+                probe.upstream.resume(false);
+            }
+        }
+    }
+
+    private class ProbeRowReceiver extends AbstractRowReceiver {
+
+        // local non-volatile variable for faster access for the usual case
+        private boolean buildDone = false;
+
+        @Override
+        public boolean setNextRow(Row row) {
+            if (!buildDone) {
+                synchronized (lock) {
+                    if (!buildFinished) {
+                        LOGGER.trace("[{}] probe side received a row, pausing until the build side has finished", phaseId);
+                        pendingProbeRow = new RowN(row.materialize());
+                        upstream.pause();
+                        return true;
+                    }
+                }
+                buildDone = true;
+            }
+            try {
+                return probeRow(row);
+            } catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+        }
+
+        @Override
+        public void finish() {
+            LOGGER.trace("[{}] probe side finished", phaseId);
+            boolean buildIsFinished;
+            synchronized (lock) {
+                probeFinished = true;
+                buildIsFinished = buildFinished;
+            }
+            finished.set(null);
+            if (buildIsFinished) {
+                finishJoin();
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.join;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import io.crate.Streamer;
+import io.crate.operation.TempFiles;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * The rows of a hash join partition which have been spilled to a local temporary file.
+ *
+ * Rows are appended until the file is read, afterwards it can be read multiple times.
+ * Reading it again invalidates the previously returned iterator.
+ */
+class PartitionFile implements Iterable<Object[]>, Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final Streamer<?>[] streamers;
+
+    @Nullable
+    private StreamOutput out;
+    @Nullable
+    private StreamInput in;
+    private int numRows = 0;
+
+    PartitionFile(Streamer<?>[] streamers, Path directory) throws IOException {
+        this.streamers = streamers;
+        path = TempFiles.create(directory, "crate-join-", ".partition");
+        out = new OutputStreamStreamOutput(new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE));
+    }
+
+    public void add(Object[] row) throws IOException {
+        assert out != null : "can't add rows to a partition file which is read";
+        for (int i = 0; i < streamers.length; i++) {
+            streamers[i].writeValueTo(out, row[i]);
+        }
+        numRows++;
+    }
+
+    public int numRows() {
+        return numRows;
+    }
+
+    @Override
+    public Iterator<Object[]> iterator() {
+        try {
+            closeOutput();
+            if (in != null) {
+                in.close();
+            }
+            in = new InputStreamStreamInput(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE));
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        final StreamInput input = in;
+        return new AbstractIterator<Object[]>() {
+
+            private int pos = 0;
+
+            @Override
+            protected Object[] computeNext() {
+                if (pos >= numRows) {
+                    return endOfData();
+                }
+                pos++;
+                Object[] row = new Object[streamers.length];
+                try {
+                    for (int i = 0; i < streamers.length; i++) {
+                        row[i] = streamers[i].readValueFrom(input);
+                    }
+                } catch (IOException e) {
+                    throw Throwables.propagate(e);
+                }
+                return row;
+            }
+        };
+    }
+
+    private void closeOutput() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    /**
+     * closes the file and deletes it
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            closeOutput();
+            if (in != null) {
+                in.close();
+                in = null;
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
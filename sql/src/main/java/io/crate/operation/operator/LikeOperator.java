@@ -21,14 +21,18 @@
 
 package io.crate.operation.operator;
 
-import io.crate.analyze.symbol.Function;
+import io.crate.analyze.symbol.Literal;
 import io.crate.analyze.symbol.Symbol;
+import io.crate.analyze.symbol.SymbolType;
 import io.crate.metadata.FunctionInfo;
 import io.crate.metadata.Scalar;
 import io.crate.operation.Input;
 import io.crate.types.DataTypes;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
 
+import javax.annotation.Nullable;
+import java.util.List;
 import java.util.regex.Pattern;
 
 public class LikeOperator extends Operator<BytesRef> {
@@ -63,12 +67,84 @@ public class LikeOperator extends Operator<BytesRef> {
             return null;
         }
 
-        return matches(expression.utf8ToString(), pattern.utf8ToString());
+        return likeMatcher(pattern.utf8ToString()).matches(expression);
     }
 
-    private boolean matches(String expression, String pattern) {
-        return Pattern.compile(
-                patternToRegex(pattern, DEFAULT_ESCAPE, true), Pattern.DOTALL).matcher(expression).matches();
+    private static Pattern compilePattern(String pattern) {
+        return Pattern.compile(patternToRegex(pattern, DEFAULT_ESCAPE, true), Pattern.DOTALL);
+    }
+
+    /**
+     * if the pattern is a literal it is translated only once into a matcher which is then used for every row.
+     * Otherwise the matcher of the last pattern is kept and reused as long as the pattern doesn't change.
+     * Patterns like 'abc', 'abc%', '%abc' and '%abc%' are matched directly on the utf-8 bytes,
+     * all other patterns fall back to a precompiled regular expression.
+     */
+    @Override
+    public Scalar<Boolean, BytesRef> compile(List<Symbol> arguments) {
+        assert arguments.size() == 2;
+        Symbol pattern = arguments.get(1);
+        if (pattern.symbolType() != SymbolType.LITERAL) {
+            return new CachingLikeOperator(info);
+        }
+        Object patternValue = ((Literal) pattern).value();
+        if (patternValue == null) {
+            return this;
+        }
+        return new CompiledLikeOperator(info, likeMatcher(((BytesRef) patternValue).utf8ToString()));
+    }
+
+    static LikeMatcher likeMatcher(String pattern) {
+        LikeMatcher matcher = simpleLikeMatcher(pattern, DEFAULT_ESCAPE);
+        if (matcher == null) {
+            matcher = new RegexLikeMatcher(compilePattern(pattern));
+        }
+        return matcher;
+    }
+
+    /**
+     * @return a matcher for patterns which only contain wildcards ('%') at the start and/or end
+     *         or null if the pattern is more complex
+     */
+    @Nullable
+    private static LikeMatcher simpleLikeMatcher(String pattern, char escapeChar) {
+        StringBuilder literal = new StringBuilder(pattern.length());
+        boolean leadingWildcard = false;
+        boolean trailingWildcard = false;
+        boolean escaped = false;
+        for (char currentChar : pattern.toCharArray()) {
+            if (!escaped && currentChar == escapeChar) {
+                escaped = true;
+                continue;
+            }
+            if (!escaped && currentChar == '%') {
+                if (literal.length() == 0) {
+                    leadingWildcard = true;
+                } else {
+                    trailingWildcard = true;
+                }
+            } else if (!escaped && currentChar == '_') {
+                return null;
+            } else {
+                if (trailingWildcard) {
+                    // wildcard in the middle of the pattern
+                    return null;
+                }
+                literal.append(currentChar);
+            }
+            escaped = false;
+        }
+        BytesRef bytes = new BytesRef(literal);
+        if (leadingWildcard && trailingWildcard) {
+            return new ContainsMatcher(bytes);
+        }
+        if (leadingWildcard) {
+            return new SuffixMatcher(bytes);
+        }
+        if (trailingWildcard) {
+            return new PrefixMatcher(bytes);
+        }
+        return new ExactMatcher(bytes);
     }
 
     public static String patternToRegex(String patternString, char escapeChar, boolean shouldEscape) {
@@ -123,4 +199,154 @@ public class LikeOperator extends Operator<BytesRef> {
         return regex.toString();
     }
 
+    interface LikeMatcher {
+        boolean matches(BytesRef value);
+    }
+
+    static class ExactMatcher implements LikeMatcher {
+
+        private final BytesRef literal;
+
+        ExactMatcher(BytesRef literal) {
+            this.literal = literal;
+        }
+
+        @Override
+        public boolean matches(BytesRef value) {
+            return literal.bytesEquals(value);
+        }
+    }
+
+    static class PrefixMatcher implements LikeMatcher {
+
+        private final BytesRef prefix;
+
+        PrefixMatcher(BytesRef prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public boolean matches(BytesRef value) {
+            return StringHelper.startsWith(value, prefix);
+        }
+    }
+
+    static class SuffixMatcher implements LikeMatcher {
+
+        private final BytesRef suffix;
+
+        SuffixMatcher(BytesRef suffix) {
+            this.suffix = suffix;
+        }
+
+        @Override
+        public boolean matches(BytesRef value) {
+            return StringHelper.endsWith(value, suffix);
+        }
+    }
+
+    /**
+     * utf-8 is self-synchronizing, so a byte-wise substring search can't match in the middle of a character.
+     */
+    static class ContainsMatcher implements LikeMatcher {
+
+        private final BytesRef infix;
+
+        ContainsMatcher(BytesRef infix) {
+            this.infix = infix;
+        }
+
+        @Override
+        public boolean matches(BytesRef value) {
+            int infixLength = infix.length;
+            if (infixLength == 0) {
+                return true;
+            }
+            byte[] infixBytes = infix.bytes;
+            int infixOffset = infix.offset;
+            byte first = infixBytes[infixOffset];
+            byte[] bytes = value.bytes;
+            int last = value.offset + value.length - infixLength;
+            outer:
+            for (int i = value.offset; i <= last; i++) {
+                if (bytes[i] != first) {
+                    continue;
+                }
+                for (int j = 1; j < infixLength; j++) {
+                    if (bytes[i + j] != infixBytes[infixOffset + j]) {
+                        continue outer;
+                    }
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+
+    static class RegexLikeMatcher implements LikeMatcher {
+
+        private final Pattern pattern;
+
+        RegexLikeMatcher(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        public boolean matches(BytesRef value) {
+            return pattern.matcher(value.utf8ToString()).matches();
+        }
+    }
+
+    private static class CompiledLikeOperator extends LikeOperator {
+
+        private final LikeMatcher matcher;
+
+        CompiledLikeOperator(FunctionInfo info, LikeMatcher matcher) {
+            super(info);
+            this.matcher = matcher;
+        }
+
+        @Override
+        public Boolean evaluate(Input<BytesRef>... args) {
+            assert (args != null);
+            assert (args.length == 2);
+
+            BytesRef expression = args[0].value();
+            if (expression == null || args[1].value() == null) {
+                return null;
+            }
+            return matcher.matches(expression);
+        }
+    }
+
+    /**
+     * used for patterns which aren't literals, e.g. column references.
+     * Not thread-safe, an instance is created for each compiled function.
+     */
+    private static class CachingLikeOperator extends LikeOperator {
+
+        private BytesRef lastPattern;
+        private LikeMatcher lastMatcher;
+
+        CachingLikeOperator(FunctionInfo info) {
+            super(info);
+        }
+
+        @Override
+        public Boolean evaluate(Input<BytesRef>... args) {
+            assert (args != null);
+            assert (args.length == 2);
+
+            BytesRef expression = args[0].value();
+            BytesRef pattern = args[1].value();
+            if (expression == null || pattern == null) {
+                return null;
+            }
+            if (lastPattern == null || !lastPattern.bytesEquals(pattern)) {
+                lastMatcher = likeMatcher(pattern.utf8ToString());
+                lastPattern = BytesRef.deepCopyOf(pattern);
+            }
+            return lastMatcher.matches(expression);
+        }
+    }
 }
@@ -24,11 +24,14 @@ package io.crate.operation.operator;
 import io.crate.analyze.symbol.Function;
 import io.crate.analyze.symbol.Literal;
 import io.crate.analyze.symbol.Symbol;
+import io.crate.analyze.symbol.SymbolType;
 import io.crate.metadata.FunctionInfo;
+import io.crate.metadata.Scalar;
 import io.crate.operation.Input;
 import io.crate.types.DataTypes;
 import org.apache.lucene.util.BytesRef;
 
+import java.util.List;
 import java.util.regex.Pattern;
 
 
@@ -54,8 +57,28 @@ public class RegexpMatchCaseInsensitiveOperator extends Operator<BytesRef> {
             return null;
         }
 
-        Pattern p = Pattern.compile(pattern.utf8ToString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
-        return p.matcher(source.utf8ToString()).matches();
+        return compilePattern(pattern).matcher(source.utf8ToString()).matches();
+    }
+
+    private static Pattern compilePattern(BytesRef pattern) {
+        return Pattern.compile(pattern.utf8ToString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    }
+
+    /**
+     * if the pattern is a literal it is compiled once instead of once per row.
+     */
+    @Override
+    public Scalar<Boolean, BytesRef> compile(List<Symbol> arguments) {
+        assert arguments.size() == 2;
+        Symbol pattern = arguments.get(1);
+        if (pattern.symbolType() != SymbolType.LITERAL) {
+            return this;
+        }
+        BytesRef patternValue = (BytesRef) ((Literal) pattern).value();
+        if (patternValue == null) {
+            return this;
+        }
+        return new CompiledRegexpMatchCaseInsensitiveOperator(compilePattern(patternValue));
     }
 
     @Override
@@ -83,4 +106,23 @@ public class RegexpMatchCaseInsensitiveOperator extends Operator<BytesRef> {
                 )
         );
     }
+
+    private static class CompiledRegexpMatchCaseInsensitiveOperator extends RegexpMatchCaseInsensitiveOperator {
+
+        private final Pattern pattern;
+
+        CompiledRegexpMatchCaseInsensitiveOperator(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        public Boolean evaluate(Input<BytesRef>... args) {
+            assert args.length == 2 : "invalid number of arguments";
+            BytesRef source = args[0].value();
+            if (source == null || args[1].value() == null) {
+                return null;
+            }
+            return pattern.matcher(source.utf8ToString()).matches();
+        }
+    }
 }
@@ -24,13 +24,19 @@ package io.crate.operation.operator;
 import io.crate.analyze.symbol.Function;
 import io.crate.analyze.symbol.Literal;
 import io.crate.analyze.symbol.Symbol;
+import io.crate.analyze.symbol.SymbolType;
 import io.crate.metadata.FunctionInfo;
+import io.crate.metadata.Scalar;
 import io.crate.operation.Input;
 import io.crate.types.DataTypes;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.automaton.ByteRunAutomaton;
 import org.apache.lucene.util.automaton.RegExp;
 
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.regex.Pattern;
+
 import static io.crate.operation.scalar.regex.RegexMatcher.isPcrePattern;
 
 
@@ -58,10 +64,32 @@ public class RegexpMatchOperator extends Operator<BytesRef> {
         if (isPcrePattern(pattern)) {
             return source.utf8ToString().matches(pattern.utf8ToString());
         } else {
-            RegExp regexp = new RegExp(pattern.utf8ToString());
-            ByteRunAutomaton regexpRunAutomaton = new ByteRunAutomaton(regexp.toAutomaton());
-            return regexpRunAutomaton.run(source.bytes, source.offset, source.length);
+            return toRunAutomaton(pattern).run(source.bytes, source.offset, source.length);
+        }
+    }
+
+    private static ByteRunAutomaton toRunAutomaton(BytesRef pattern) {
+        return new ByteRunAutomaton(new RegExp(pattern.utf8ToString()).toAutomaton());
+    }
+
+    /**
+     * if the pattern is a literal the regular expression or automaton is built once instead of once per row.
+     */
+    @Override
+    public Scalar<Boolean, BytesRef> compile(List<Symbol> arguments) {
+        assert arguments.size() == 2;
+        Symbol pattern = arguments.get(1);
+        if (pattern.symbolType() != SymbolType.LITERAL) {
+            return this;
+        }
+        BytesRef patternValue = (BytesRef) ((Literal) pattern).value();
+        if (patternValue == null) {
+            return this;
         }
+        if (isPcrePattern(patternValue)) {
+            return new CompiledRegexpMatchOperator(Pattern.compile(patternValue.utf8ToString()), null);
+        }
+        return new CompiledRegexpMatchOperator(null, toRunAutomaton(patternValue));
     }
 
     @Override
@@ -89,4 +117,28 @@ public class RegexpMatchOperator extends Operator<BytesRef> {
                 )
         );
     }
+
+    private static class CompiledRegexpMatchOperator extends RegexpMatchOperator {
+
+        private final Pattern pattern;
+        private final ByteRunAutomaton runAutomaton;
+
+        CompiledRegexpMatchOperator(@Nullable Pattern pattern, @Nullable ByteRunAutomaton runAutomaton) {
+            this.pattern = pattern;
+            this.runAutomaton = runAutomaton;
+        }
+
+        @Override
+        public Boolean evaluate(Input<BytesRef>... args) {
+            assert args.length == 2 : "invalid number of arguments";
+            BytesRef source = args[0].value();
+            if (source == null || args[1].value() == null) {
+                return null;
+            }
+            if (runAutomaton == null) {
+                return pattern.matcher(source.utf8ToString()).matches();
+            }
+            return runAutomaton.run(source.bytes, source.offset, source.length);
+        }
+    }
 }
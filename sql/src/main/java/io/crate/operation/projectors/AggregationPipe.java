@@ -30,13 +30,14 @@ import io.crate.operation.collect.CollectExpression;
 
 import java.util.Set;
 
-public class AggregationPipe extends AbstractProjector {
+public class AggregationPipe extends AbstractProjector implements BatchRowReceiver {
 
     private final Aggregator[] aggregators;
     private final Set<CollectExpression<Row, ?>> collectExpressions;
     private final Object[] cells;
     private final Row row;
     private final Object[] states;
+    private final boolean[] columnar;
 
     public AggregationPipe(Set<CollectExpression<Row, ?>> collectExpressions,
                            AggregationContext[] aggregations,
@@ -44,6 +45,7 @@ public class AggregationPipe extends AbstractProjector {
         cells = new Object[aggregations.length];
         row = new RowN(cells);
         states = new Object[aggregations.length];
+        columnar = new boolean[aggregations.length];
         this.collectExpressions = collectExpressions;
         aggregators = new Aggregator[aggregations.length];
         for (int i = 0; i < aggregators.length; i++) {
@@ -71,6 +73,40 @@ public class AggregationPipe extends AbstractProjector {
         return true;
     }
 
+    @Override
+    public boolean acceptsBatches() {
+        // the result row is only emitted once all rows have been aggregated
+        return true;
+    }
+
+    @Override
+    public boolean setNextBatch(RowBatch batch) {
+        int numRowWise = 0;
+        for (int i = 0; i < aggregators.length; i++) {
+            columnar[i] = aggregators[i].canProcessBatch(batch);
+            if (columnar[i]) {
+                states[i] = aggregators[i].processBatch(states[i], batch);
+            } else {
+                numRowWise++;
+            }
+        }
+        if (numRowWise == 0) {
+            return true;
+        }
+        for (int i = 0; i < batch.numRows(); i++) {
+            Row batchRow = batch.row(i);
+            for (CollectExpression<Row, ?> collectExpression : collectExpressions) {
+                collectExpression.setNextRow(batchRow);
+            }
+            for (int j = 0; j < aggregators.length; j++) {
+                if (!columnar[j]) {
+                    states[j] = aggregators[j].processRow(states[j]);
+                }
+            }
+        }
+        return true;
+    }
+
     @Override
     public void fail(Throwable t) {
         downstream.fail(t);
@@ -0,0 +1,50 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors;
+
+/**
+ * a {@link RowReceiver} which is able to receive a whole {@link RowBatch} at once.
+ *
+ * Upstreams which produce rows in batches check {@link #acceptsBatches()} once before they
+ * start to send rows, and call either {@link #setNextBatch(RowBatch)} or
+ * {@link #setNextRow(io.crate.core.collections.Row)} afterwards - but never both.
+ */
+public interface BatchRowReceiver extends RowReceiver {
+
+    /**
+     * @return true if this receiver and its downstreams are able to process batches.
+     *         This is only the case if they never pause their upstream, as
+     *         a batch can't be interrupted.
+     */
+    boolean acceptsBatches();
+
+    /**
+     * Feed the receiver with all selected rows of the batch.
+     *
+     * The batch is reused by the upstream after the call returns. The receiver may narrow
+     * the selection of the batch before forwarding it to its downstream.
+     *
+     * @return false if the downstream does not need any more rows, true otherwise.
+     */
+    boolean setNextBatch(RowBatch batch);
+}
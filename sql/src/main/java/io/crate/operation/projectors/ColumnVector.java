@@ -0,0 +1,188 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors;
+
+import io.crate.types.DataType;
+import io.crate.types.DoubleType;
+import io.crate.types.LongType;
+import io.crate.types.TimestampType;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * the values of a single column of a {@link RowBatch}.
+ *
+ * Numeric values are stored unboxed in primitive arrays so that batch aware
+ * operations can process them in tight loops, all other values are stored as objects.
+ */
+public abstract class ColumnVector {
+
+    // one bit per row, set if the value of the row is null
+    private final long[] nulls;
+    private int numNulls = 0;
+
+    protected ColumnVector(int capacity) {
+        nulls = new long[(capacity + 63) >>> 6];
+    }
+
+    public static ColumnVector forType(DataType type, int capacity) {
+        switch (type.id()) {
+            case LongType.ID:
+            case TimestampType.ID:
+                return new LongVector(capacity);
+            case DoubleType.ID:
+                return new DoubleVector(capacity);
+            default:
+                return new ObjectVector(capacity);
+        }
+    }
+
+    public boolean isNull(int row) {
+        return (nulls[row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * @return false if none of the values set since the last {@link #reset()} is null,
+     *         loops can skip the null checks in that case
+     */
+    public boolean hasNulls() {
+        return numNulls > 0;
+    }
+
+    protected void setNull(int row, boolean isNull) {
+        long bit = 1L << row;
+        boolean wasNull = (nulls[row >>> 6] & bit) != 0;
+        if (isNull && !wasNull) {
+            nulls[row >>> 6] |= bit;
+            numNulls++;
+        } else if (!isNull && wasNull) {
+            nulls[row >>> 6] &= ~bit;
+            numNulls--;
+        }
+    }
+
+    void reset() {
+        Arrays.fill(nulls, 0L);
+        numNulls = 0;
+    }
+
+    /**
+     * @return the value of the row as primitive long, only supported by {@link LongVector}
+     */
+    public long getLong(int row) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " doesn't support getLong");
+    }
+
+    /**
+     * @return the value of the row as primitive double, only supported by {@link DoubleVector}
+     */
+    public double getDouble(int row) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " doesn't support getDouble");
+    }
+
+    public abstract Object get(int row);
+
+    public abstract void set(int row, @Nullable Object value);
+
+    public static class LongVector extends ColumnVector {
+
+        public final long[] values;
+
+        public LongVector(int capacity) {
+            super(capacity);
+            values = new long[capacity];
+        }
+
+        @Override
+        public long getLong(int row) {
+            return values[row];
+        }
+
+        @Override
+        public Object get(int row) {
+            return isNull(row) ? null : values[row];
+        }
+
+        @Override
+        public void set(int row, @Nullable Object value) {
+            if (value == null) {
+                setNull(row, true);
+            } else {
+                setNull(row, false);
+                values[row] = ((Number) value).longValue();
+            }
+        }
+    }
+
+    public static class DoubleVector extends ColumnVector {
+
+        public final double[] values;
+
+        public DoubleVector(int capacity) {
+            super(capacity);
+            values = new double[capacity];
+        }
+
+        @Override
+        public double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        public Object get(int row) {
+            return isNull(row) ? null : values[row];
+        }
+
+        @Override
+        public void set(int row, @Nullable Object value) {
+            if (value == null) {
+                setNull(row, true);
+            } else {
+                setNull(row, false);
+                values[row] = ((Number) value).doubleValue();
+            }
+        }
+    }
+
+    public static class ObjectVector extends ColumnVector {
+
+        private final Object[] values;
+
+        public ObjectVector(int capacity) {
+            super(capacity);
+            values = new Object[capacity];
+        }
+
+        @Override
+        public Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        public void set(int row, @Nullable Object value) {
+            setNull(row, value == null);
+            values[row] = value;
+        }
+    }
+}
@@ -22,11 +22,15 @@
 
 package io.crate.operation.projectors;
 
+import com.carrotsearch.hppc.IntArrayList;
+import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import io.crate.core.collections.Row;
+import io.crate.core.collections.RowN;
 import io.crate.executor.transport.ShardRequest;
 import io.crate.executor.transport.TransportActionProvider;
 import io.crate.jobs.ExecutionState;
+import io.crate.operation.Input;
 import io.crate.operation.collect.CollectExpression;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.action.bulk.BulkRetryCoordinatorPool;
@@ -36,6 +40,12 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.mapper.Uid;
 import org.elasticsearch.index.shard.ShardId;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -46,6 +56,12 @@ public abstract class DMLProjector<Request extends ShardRequest> extends Abstrac
 
     private final ShardId shardId;
     private final CollectExpression<Row, ?> collectUidExpression;
+    private final Collection<CollectExpression<Row, ?>> bulkConditionExpressions;
+    private final List<Input<Boolean>> bulkConditions;
+    /**
+     * the argument set of each item, in the order the items were added
+     */
+    private final IntArrayList itemArgumentSets = new IntArrayList();
     private final AtomicBoolean failed = new AtomicBoolean(false);
 
     protected final ClusterService clusterService;
@@ -63,24 +79,50 @@ public abstract class DMLProjector<Request extends ShardRequest> extends Abstrac
                         BulkRetryCoordinatorPool bulkRetryCoordinatorPool,
                         CollectExpression<Row, ?> collectUidExpression,
                         UUID jobId) {
+        this(clusterService, settings, shardId, transportActionProvider, bulkRetryCoordinatorPool, collectUidExpression,
+                Collections.<CollectExpression<Row, ?>>emptyList(), Collections.<Input<Boolean>>emptyList(), jobId);
+    }
+
+    /**
+     * @param bulkConditions one condition per argument set of a bulk operation; an item is created
+     *                       for every argument set whose condition is true for the row.
+     */
+    public DMLProjector(ClusterService clusterService,
+                        Settings settings,
+                        ShardId shardId,
+                        TransportActionProvider transportActionProvider,
+                        BulkRetryCoordinatorPool bulkRetryCoordinatorPool,
+                        CollectExpression<Row, ?> collectUidExpression,
+                        Collection<CollectExpression<Row, ?>> bulkConditionExpressions,
+                        List<Input<Boolean>> bulkConditions,
+                        UUID jobId) {
         this.clusterService = clusterService;
         this.settings = settings;
         this.transportActionProvider = transportActionProvider;
         this.bulkRetryCoordinatorPool = bulkRetryCoordinatorPool;
         this.shardId = shardId;
         this.collectUidExpression = collectUidExpression;
+        this.bulkConditionExpressions = bulkConditionExpressions;
+        this.bulkConditions = bulkConditions;
         this.jobId = jobId;
     }
 
     protected abstract BulkShardProcessor<Request> createBulkShardProcessor(int bulkSize);
 
-    protected abstract ShardRequest.Item createItem(String id);
+    /**
+     * @param argumentSet the index of the argument set for bulk operations, otherwise 0
+     */
+    protected abstract ShardRequest.Item createItem(String id, int argumentSet);
 
     @Override
     public void prepare(ExecutionState executionState) {
         super.prepare(executionState);
         bulkShardProcessor = createBulkShardProcessor(DEFAULT_BULK_SIZE);
-        Futures.addCallback(bulkShardProcessor.result(), new BulkProcessorFutureCallback(failed, downstream));
+        if (bulkConditions.isEmpty()) {
+            Futures.addCallback(bulkShardProcessor.result(), new BulkProcessorFutureCallback(failed, downstream));
+        } else {
+            Futures.addCallback(bulkShardProcessor.result(), new BulkRowCountsCallback());
+        }
     }
 
     @Override
@@ -89,7 +131,19 @@ public abstract class DMLProjector<Request extends ShardRequest> extends Abstrac
         collectUidExpression.setNextRow(row);
         Uid uid = Uid.createUid(((BytesRef)collectUidExpression.value()).utf8ToString());
         // routing is already resolved
-        bulkShardProcessor.addForExistingShard(shardId, createItem(uid.id()), null);
+        if (bulkConditions.isEmpty()) {
+            bulkShardProcessor.addForExistingShard(shardId, createItem(uid.id(), 0), null);
+            return true;
+        }
+        for (CollectExpression<Row, ?> expression : bulkConditionExpressions) {
+            expression.setNextRow(row);
+        }
+        for (int i = 0; i < bulkConditions.size(); i++) {
+            if (Boolean.TRUE.equals(bulkConditions.get(i).value())) {
+                itemArgumentSets.add(i);
+                bulkShardProcessor.addForExistingShard(shardId, createItem(uid.id(), i), null);
+            }
+        }
         return true;
     }
 
@@ -109,4 +163,36 @@ public abstract class DMLProjector<Request extends ShardRequest> extends Abstrac
             bulkShardProcessor.close();
         }
     }
+
+    /**
+     * emits a single row with the number of succeeded items of each argument set
+     */
+    private class BulkRowCountsCallback implements FutureCallback<BitSet> {
+
+        @Override
+        public void onSuccess(@Nullable BitSet result) {
+            if (failed.get()) {
+                return;
+            }
+            long[] counts = new long[bulkConditions.size()];
+            if (result != null) {
+                for (int location = result.nextSetBit(0); location >= 0; location = result.nextSetBit(location + 1)) {
+                    counts[itemArgumentSets.get(location)]++;
+                }
+            }
+            Object[] rowCounts = new Object[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                rowCounts[i] = counts[i];
+            }
+            downstream.setNextRow(new RowN(rowCounts));
+            downstream.finish();
+        }
+
+        @Override
+        public void onFailure(@Nonnull Throwable t) {
+            if (!failed.get()) {
+                downstream.fail(t);
+            }
+        }
+    }
 }
@@ -27,6 +27,7 @@ import io.crate.executor.transport.ShardDeleteRequest;
 import io.crate.executor.transport.ShardRequest;
 import io.crate.executor.transport.TransportActionProvider;
 import io.crate.metadata.settings.CrateSettings;
+import io.crate.operation.Input;
 import io.crate.operation.collect.CollectExpression;
 import org.elasticsearch.action.bulk.BulkRetryCoordinatorPool;
 import org.elasticsearch.action.bulk.BulkShardProcessor;
@@ -34,6 +35,8 @@ import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.shard.ShardId;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 public class DeleteProjector extends DMLProjector<ShardDeleteRequest> {
@@ -49,6 +52,19 @@ public class DeleteProjector extends DMLProjector<ShardDeleteRequest> {
                 collectUidExpression, jobId);
     }
 
+    public DeleteProjector(ClusterService clusterService,
+                           Settings settings,
+                           ShardId shardId,
+                           TransportActionProvider transportActionProvider,
+                           BulkRetryCoordinatorPool bulkRetryCoordinatorPool,
+                           CollectExpression<Row, ?> collectUidExpression,
+                           Collection<CollectExpression<Row, ?>> bulkConditionExpressions,
+                           List<Input<Boolean>> bulkConditions,
+                           UUID jobId) {
+        super(clusterService, settings, shardId, transportActionProvider, bulkRetryCoordinatorPool,
+                collectUidExpression, bulkConditionExpressions, bulkConditions, jobId);
+    }
+
     @Override
     protected BulkShardProcessor<ShardDeleteRequest> createBulkShardProcessor(int bulkSize) {
         ShardDeleteRequest.Builder builder = new ShardDeleteRequest.Builder(
@@ -69,7 +85,7 @@ public class DeleteProjector extends DMLProjector<ShardDeleteRequest> {
     }
 
     @Override
-    protected ShardRequest.Item createItem(String id) {
+    protected ShardRequest.Item createItem(String id, int argumentSet) {
         return new ShardDeleteRequest.Item(id);
     }
 }
@@ -21,20 +21,34 @@
 
 package io.crate.operation.projectors;
 
+import io.crate.analyze.symbol.Symbol;
 import io.crate.core.collections.Row;
 import io.crate.operation.Input;
 import io.crate.operation.collect.CollectExpression;
 
+import javax.annotation.Nullable;
 import java.util.Collection;
 
-public class FilterProjector extends AbstractProjector {
+public class FilterProjector extends AbstractProjector implements BatchRowReceiver {
 
     private final Collection<CollectExpression<Row, ?>> collectExpressions;
     private final Input<Boolean> condition;
+    private final VectorCondition vectorCondition;
 
     public FilterProjector(Collection<CollectExpression<Row, ?>> collectExpressions, Input<Boolean> condition) {
+        this(collectExpressions, condition, null);
+    }
+
+    /**
+     * @param query the symbol the condition was built from, if it is a {@link VectorCondition}
+     *              it is evaluated directly on the column vectors of batches
+     */
+    public FilterProjector(Collection<CollectExpression<Row, ?>> collectExpressions,
+                           Input<Boolean> condition,
+                           @Nullable Symbol query) {
         this.collectExpressions = collectExpressions;
         this.condition = condition;
+        this.vectorCondition = VectorCondition.of(query);
     }
 
     @Override
@@ -50,6 +64,30 @@ public class FilterProjector extends AbstractProjector {
         return true;
     }
 
+    @Override
+    public boolean acceptsBatches() {
+        return RowReceivers.acceptsBatches(downstream);
+    }
+
+    @Override
+    public boolean setNextBatch(RowBatch batch) {
+        if (vectorCondition == null || !vectorCondition.select(batch)) {
+            int[] selection = batch.selection();
+            int numSelected = 0;
+            for (int i = 0; i < batch.numRows(); i++) {
+                Row row = batch.row(i);
+                for (CollectExpression<Row, ?> collectExpression : collectExpressions) {
+                    collectExpression.setNextRow(row);
+                }
+                if (InputCondition.matches(condition)) {
+                    selection[numSelected++] = batch.rowIndex(i);
+                }
+            }
+            batch.select(numSelected);
+        }
+        return batch.numRows() == 0 || ((BatchRowReceiver) downstream).setNextBatch(batch);
+    }
+
     @Override
     public void finish() {
         downstream.finish();
@@ -21,10 +21,15 @@
 
 package io.crate.operation.projectors;
 
+import com.carrotsearch.hppc.LongObjectOpenHashMap;
+import com.carrotsearch.hppc.cursors.LongObjectCursor;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Sets;
+import io.crate.Streamer;
 import io.crate.breaker.RamAccountingContext;
 import io.crate.breaker.SizeEstimator;
 import io.crate.breaker.SizeEstimatorFactory;
@@ -35,17 +40,27 @@ import io.crate.operation.AggregationContext;
 import io.crate.operation.Input;
 import io.crate.operation.aggregation.Aggregator;
 import io.crate.operation.collect.CollectExpression;
-import io.crate.types.DataType;
-import io.crate.types.DataTypes;
+import io.crate.operation.collect.InputCollectExpression;
+import io.crate.types.*;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.ByteBlockPool;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefHash;
+import org.apache.lucene.util.Counter;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.unit.ByteSizeValue;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
 import java.util.*;
 
-public class GroupingProjector extends AbstractProjector {
+public class GroupingProjector extends AbstractProjector implements BatchRowReceiver {
 
 
     private static final ESLogger logger = Loggers.getLogger(GroupingProjector.class);
@@ -75,13 +90,50 @@ public class GroupingProjector extends AbstractProjector {
 
         // grouper object size overhead
         ramAccountingContext.addBytes(8);
+        grouper = createGrouper(keyInputs, keyTypes, collectExpressions, aggregators);
+    }
+
+    /**
+     * choose a grouper specialized for the key types.
+     *
+     * integral keys are stored unboxed in a primitive open addressing map,
+     * string keys in a pooled {@link BytesRefHash} and multiple primitive keys are serialized
+     * into a single composite key which is stored in a pooled {@link BytesRefHash} as well.
+     * All other keys fall back to the generic {@link java.util.HashMap} based groupers.
+     */
+    private Grouper createGrouper(List<Input<?>> keyInputs,
+                                  List<? extends DataType> keyTypes,
+                                  CollectExpression[] collectExpressions,
+                                  Aggregator[] aggregators) {
         if (keyInputs.size() == 1) {
-            grouper = new SingleKeyGrouper(keyInputs.get(0), keyTypes.get(0), collectExpressions, aggregators);
-        } else {
-            grouper = new ManyKeyGrouper(keyInputs, keyTypes, collectExpressions, aggregators);
+            DataType keyType = keyTypes.get(0);
+            switch (keyType.id()) {
+                case ByteType.ID:
+                case ShortType.ID:
+                case IntegerType.ID:
+                case LongType.ID:
+                case TimestampType.ID:
+                    return new LongKeyGrouper(keyInputs.get(0), keyType, collectExpressions, aggregators);
+                case StringType.ID:
+                case IpType.ID:
+                    return new BytesRefKeyGrouper(keyInputs.get(0), keyType, collectExpressions, aggregators);
+                default:
+                    return new SingleKeyGrouper(keyInputs.get(0), keyType, collectExpressions, aggregators);
+            }
+        }
+        if (Iterables.all(keyTypes, IS_PRIMITIVE)) {
+            return new SerializedKeyGrouper(keyInputs, keyTypes, collectExpressions, aggregators);
         }
+        return new ManyKeyGrouper(keyInputs, keyTypes, collectExpressions, aggregators);
     }
 
+    private static final Predicate<DataType> IS_PRIMITIVE = new Predicate<DataType>() {
+        @Override
+        public boolean apply(@Nullable DataType input) {
+            return input != null && DataTypes.isPrimitive(input);
+        }
+    };
+
     private static boolean allTypesKnown(List<? extends DataType> keyTypes) {
         return Iterables.all(keyTypes, new Predicate<DataType>() {
             @Override
@@ -102,6 +154,17 @@ public class GroupingProjector extends AbstractProjector {
         return grouper.setNextRow(row);
     }
 
+    @Override
+    public boolean acceptsBatches() {
+        // rows are only emitted once all rows have been grouped
+        return true;
+    }
+
+    @Override
+    public boolean setNextBatch(RowBatch batch) {
+        return grouper.setNextBatch(batch);
+    }
+
     @Override
     public void finish() {
         grouper.finish();
@@ -148,9 +211,190 @@ public class GroupingProjector extends AbstractProjector {
         }
     }
 
+    private Object[] newStates(Aggregator[] aggregators) {
+        Object[] states = emptyStates(aggregators);
+        processStates(states, aggregators);
+        return states;
+    }
+
+    /**
+     * states of a new group which haven't processed any row yet
+     */
+    private Object[] emptyStates(Aggregator[] aggregators) {
+        Object[] states = new Object[aggregators.length];
+        for (int i = 0; i < aggregators.length; i++) {
+            states[i] = aggregators[i].prepareState();
+        }
+        // the states array itself; the states are accounted by the aggregators
+        ramAccountingContext.addBytes(RamAccountingContext.roundUp(12 + aggregators.length * 4));
+        return states;
+    }
+
+    /**
+     * accounts the multi-dimension `rows` array which is used to emit the result
+     *
+     * @return false if the circuit breaker tripped, the downstream has been failed in that case
+     */
+    private boolean accountResultRows(int numRows, int rowSize) {
+        try {
+            // 1st level
+            ramAccountingContext.addBytes(RamAccountingContext.roundUp(12 + numRows * 4));
+            // 2nd level
+            ramAccountingContext.addBytes(RamAccountingContext.roundUp(12 + rowSize * 4));
+        } catch (CircuitBreakingException e) {
+            downstream.fail(e);
+            return false;
+        }
+        return true;
+    }
+
+    private static void processStates(Object[] states, Aggregator[] aggregators) {
+        for (int i = 0; i < aggregators.length; i++) {
+            states[i] = aggregators[i].processRow(states[i]);
+        }
+    }
+
+    private static void statesToRow(Object[] states, Object[] cells, int offset, Aggregator[] aggregators) {
+        for (int i = 0; i < states.length; i++) {
+            cells[offset + i] = aggregators[i].finishCollect(states[i]);
+        }
+    }
+
+    /**
+     * feeds the selected rows of the batch one by one into the grouper,
+     * used by groupers which can't read their keys from the column vectors of the batch
+     */
+    private static boolean setNextRows(Grouper grouper, RowBatch batch) {
+        for (int i = 0; i < batch.numRows(); i++) {
+            if (!grouper.setNextRow(batch.row(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the index of the batch column the key is read from, or -1 if the key is computed
+     */
+    private static int keyColumn(Input keyInput) {
+        return keyInput instanceof InputCollectExpression ? ((InputCollectExpression) keyInput).position() : -1;
+    }
+
+    private static void setRow(CollectExpression[] collectExpressions, Row row) {
+        for (CollectExpression collectExpression : collectExpressions) {
+            collectExpression.setNextRow(row);
+        }
+    }
+
+    /**
+     * Aggregates the rows of a batch group by group.
+     *
+     * The grouper resolves the states of each selected row using {@link #add(Object[])}, {@link #aggregate()}
+     * then selects the rows of each group in a view on the batch and feeds them at once into the aggregators
+     * which can process columns, like {@link AggregationPipe} does for a global aggregation.
+     * The other aggregators process the rows of the group one by one.
+     */
+    private static class BatchAggregator {
+
+        private final CollectExpression[] collectExpressions;
+        private final Aggregator[] aggregators;
+        private final boolean[] columnar;
+        private final IdentityHashMap<Object[], Integer> groupIds = new IdentityHashMap<>();
+        private RowBatch batch;
+        private RowBatch view;
+        private Object[][] groupStates = new Object[0][];
+        private int[] rowGroups = new int[0];
+        private int[] offsets = new int[1];
+        private int numRows;
+
+        BatchAggregator(CollectExpression[] collectExpressions, Aggregator[] aggregators) {
+            this.collectExpressions = collectExpressions;
+            this.aggregators = aggregators;
+            this.columnar = new boolean[aggregators.length];
+        }
+
+        void start(RowBatch batch) {
+            if (batch != this.batch) {
+                // batches are reused by their producer, so is the view
+                this.batch = batch;
+                view = batch.view();
+            }
+            int capacity = batch.capacity();
+            if (rowGroups.length < capacity) {
+                groupStates = new Object[capacity][];
+                rowGroups = new int[capacity];
+                offsets = new int[capacity + 1];
+            }
+            numRows = 0;
+        }
+
+        /**
+         * @param states the states of the group of the next selected row of the batch
+         */
+        void add(Object[] states) {
+            Integer groupId = groupIds.get(states);
+            if (groupId == null) {
+                groupId = groupIds.size();
+                groupIds.put(states, groupId);
+                groupStates[groupId] = states;
+            }
+            rowGroups[numRows] = groupId;
+            numRows++;
+        }
+
+        void aggregate() {
+            int numGroups = groupIds.size();
+            boolean rowWise = false;
+            for (int i = 0; i < aggregators.length; i++) {
+                columnar[i] = aggregators[i].canProcessBatch(batch);
+                rowWise |= !columnar[i];
+            }
+
+            // sort the positions of the rows by their group into the selection vector of the view
+            Arrays.fill(offsets, 0, numGroups + 1, 0);
+            for (int n = 0; n < numRows; n++) {
+                offsets[rowGroups[n] + 1]++;
+            }
+            for (int g = 0; g < numGroups; g++) {
+                offsets[g + 1] += offsets[g];
+            }
+            int[] selection = view.selection();
+            for (int n = 0; n < numRows; n++) {
+                selection[offsets[rowGroups[n]]++] = batch.rowIndex(n);
+            }
+
+            int start = 0;
+            for (int g = 0; g < numGroups; g++) {
+                // offsets[g] now points to the end of the group
+                view.select(start, offsets[g] - start);
+                start = offsets[g];
+                Object[] states = groupStates[g];
+                for (int i = 0; i < aggregators.length; i++) {
+                    if (columnar[i]) {
+                        states[i] = aggregators[i].processBatch(states[i], view);
+                    }
+                }
+                if (rowWise) {
+                    for (int n = 0; n < view.numRows(); n++) {
+                        setRow(collectExpressions, view.row(n));
+                        for (int i = 0; i < aggregators.length; i++) {
+                            if (!columnar[i]) {
+                                states[i] = aggregators[i].processRow(states[i]);
+                            }
+                        }
+                    }
+                }
+            }
+            Arrays.fill(groupStates, 0, numGroups, null);
+            groupIds.clear();
+        }
+    }
+
     private interface Grouper extends AutoCloseable {
         boolean setNextRow(final Row row);
 
+        boolean setNextBatch(RowBatch batch);
+
         void finish();
         void prepare(ExecutionState executionState);
     }
@@ -205,6 +449,11 @@ public class GroupingProjector extends AbstractProjector {
             return true;
         }
 
+        @Override
+        public boolean setNextBatch(RowBatch batch) {
+            return setNextRows(this, batch);
+        }
+
         @Override
         public void finish() {
             try {
@@ -314,6 +563,11 @@ public class GroupingProjector extends AbstractProjector {
             return true;
         }
 
+        @Override
+        public boolean setNextBatch(RowBatch batch) {
+            return setNextRows(this, batch);
+        }
+
         @Override
         public void finish() {
             try {
@@ -357,6 +611,569 @@ public class GroupingProjector extends AbstractProjector {
         }
     }
 
+    /**
+     * Grouper for integral keys (byte, short, integer, long, timestamp).
+     *
+     * The keys are stored unboxed in a primitive open addressing map; the null key is kept separately.
+     */
+    private class LongKeyGrouper implements Grouper {
+
+        // long key + object reference + allocated flag per slot
+        private static final int BYTES_PER_SLOT = 8 + 4 + 1;
+
+        private final LongObjectOpenHashMap<Object[]> result;
+        private final Aggregator[] aggregators;
+        private final Input keyInput;
+        private final DataType keyType;
+        private final int keyColumn;
+        private final CollectExpression[] collectExpressions;
+        private final BatchAggregator batchAggregator;
+        private Object[] nullKeyStates;
+        private int accountedSlots;
+        private ExecutionState executionState;
+
+        public LongKeyGrouper(Input keyInput,
+                              DataType keyType,
+                              CollectExpression[] collectExpressions,
+                              Aggregator[] aggregators) {
+            this.keyInput = keyInput;
+            this.keyColumn = keyColumn(keyInput);
+            this.keyType = keyType;
+            this.collectExpressions = collectExpressions;
+            this.aggregators = aggregators;
+            this.batchAggregator = new BatchAggregator(collectExpressions, aggregators);
+            this.result = new LongObjectOpenHashMap<>();
+            accountSlots();
+        }
+
+        private void accountSlots() {
+            int slots = result.keys.length;
+            if (slots != accountedSlots) {
+                ramAccountingContext.addBytes((slots - accountedSlots) * BYTES_PER_SLOT);
+                accountedSlots = slots;
+            }
+        }
+
+        @Override
+        public boolean setNextRow(Row row) {
+            setRow(collectExpressions, row);
+            Object key = keyInput.value();
+            if (key == null) {
+                processNullKey();
+            } else {
+                processKey(((Number) key).longValue());
+            }
+            return true;
+        }
+
+        /**
+         * reads the keys directly from the key column of the batch, unboxed if it is stored in a primitive vector,
+         * and aggregates the rows of each group at once
+         */
+        @Override
+        public boolean setNextBatch(RowBatch batch) {
+            if (keyColumn < 0) {
+                return setNextRows(this, batch);
+            }
+            ColumnVector keys = batch.column(keyColumn);
+            long[] longKeys = keys instanceof ColumnVector.LongVector ? ((ColumnVector.LongVector) keys).values : null;
+            boolean hasNulls = keys.hasNulls();
+            int numRows = batch.numRows();
+            batchAggregator.start(batch);
+            for (int i = 0; i < numRows; i++) {
+                int index = batch.rowIndex(i);
+                if (hasNulls && keys.isNull(index)) {
+                    if (nullKeyStates == null) {
+                        nullKeyStates = emptyStates(aggregators);
+                    }
+                    batchAggregator.add(nullKeyStates);
+                } else if (longKeys != null) {
+                    batchAggregator.add(statesOf(longKeys[index]));
+                } else {
+                    batchAggregator.add(statesOf(((Number) keys.get(index)).longValue()));
+                }
+            }
+            batchAggregator.aggregate();
+            return true;
+        }
+
+        /**
+         * @return the states of the group, empty states if the group is new
+         */
+        private Object[] statesOf(long key) {
+            Object[] states = result.get(key);
+            if (states == null) {
+                states = emptyStates(aggregators);
+                result.put(key, states);
+                accountSlots();
+            }
+            return states;
+        }
+
+        private void processNullKey() {
+            if (nullKeyStates == null) {
+                nullKeyStates = newStates(aggregators);
+            } else {
+                processStates(nullKeyStates, aggregators);
+            }
+        }
+
+        private void processKey(long key) {
+            Object[] states = result.get(key);
+            if (states == null) {
+                states = newStates(aggregators);
+                result.put(key, states);
+                accountSlots();
+            } else {
+                processStates(states, aggregators);
+            }
+        }
+
+        @Override
+        public void finish() {
+            int numRows = result.size() + (nullKeyStates == null ? 0 : 1);
+            if (!accountResultRows(numRows, 1 + aggregators.length)) {
+                return;
+            }
+            final RowN row = new RowN(1 + aggregators.length); // 1 for key
+            final Object[] cells = new Object[row.size()];
+            Iterable<Row> rows = Iterables.transform(result, new Function<LongObjectCursor<Object[]>, Row>() {
+                @Nullable
+                @Override
+                public Row apply(@Nullable LongObjectCursor<Object[]> input) {
+                    assert input != null : "input must not be null";
+                    cells[0] = keyType.value(input.key);
+                    statesToRow(input.value, cells, 1, aggregators);
+                    row.cells(cells);
+                    return row;
+                }
+            });
+            if (nullKeyStates != null) {
+                rows = Iterables.concat(rows, new NullKeyRow(nullKeyStates, 1, aggregators));
+            }
+            IterableRowEmitter rowEmitter = new IterableRowEmitter(downstream, executionState, rows);
+            rowEmitter.run();
+        }
+
+        @Override
+        public void prepare(ExecutionState executionState) {
+            this.executionState = executionState;
+        }
+
+        @Override
+        public void close() throws Exception {
+            result.clear();
+            nullKeyStates = null;
+        }
+    }
+
+    /**
+     * Grouper for string like keys.
+     *
+     * The key bytes are copied into a pooled {@link BytesRefHash} instead of retaining a BytesRef per group.
+     */
+    private class BytesRefKeyGrouper implements Grouper {
+
+        private final BytesRefStatesTable result;
+        private final Aggregator[] aggregators;
+        private final Input keyInput;
+        private final DataType keyType;
+        private final int keyColumn;
+        private final CollectExpression[] collectExpressions;
+        private final BatchAggregator batchAggregator;
+        private Object[] nullKeyStates;
+        private ExecutionState executionState;
+
+        public BytesRefKeyGrouper(Input keyInput,
+                                  DataType keyType,
+                                  CollectExpression[] collectExpressions,
+                                  Aggregator[] aggregators) {
+            this.keyInput = keyInput;
+            this.keyColumn = keyColumn(keyInput);
+            this.keyType = keyType;
+            this.collectExpressions = collectExpressions;
+            this.aggregators = aggregators;
+            this.batchAggregator = new BatchAggregator(collectExpressions, aggregators);
+            this.result = new BytesRefStatesTable(aggregators);
+        }
+
+        @Override
+        public boolean setNextRow(Row row) {
+            setRow(collectExpressions, row);
+            processKey(keyInput.value());
+            return true;
+        }
+
+        /**
+         * reads the keys directly from the key column of the batch and aggregates the rows of each group at once
+         */
+        @Override
+        public boolean setNextBatch(RowBatch batch) {
+            if (keyColumn < 0) {
+                return setNextRows(this, batch);
+            }
+            ColumnVector keys = batch.column(keyColumn);
+            int numRows = batch.numRows();
+            batchAggregator.start(batch);
+            for (int i = 0; i < numRows; i++) {
+                Object key = keys.get(batch.rowIndex(i));
+                if (key == null) {
+                    if (nullKeyStates == null) {
+                        nullKeyStates = emptyStates(aggregators);
+                    }
+                    batchAggregator.add(nullKeyStates);
+                } else {
+                    batchAggregator.add(result.statesOf(toBytesRef(key)));
+                }
+            }
+            batchAggregator.aggregate();
+            return true;
+        }
+
+        private BytesRef toBytesRef(Object key) {
+            if (key instanceof BytesRef) {
+                return (BytesRef) key;
+            }
+            return (BytesRef) keyType.value(key);
+        }
+
+        private void processKey(@Nullable Object key) {
+            if (key == null) {
+                if (nullKeyStates == null) {
+                    nullKeyStates = newStates(aggregators);
+                } else {
+                    processStates(nullKeyStates, aggregators);
+                }
+                return;
+            }
+            result.processRow(toBytesRef(key));
+        }
+
+        @Override
+        public void finish() {
+            int numRows = result.size() + (nullKeyStates == null ? 0 : 1);
+            if (!accountResultRows(numRows, 1 + aggregators.length)) {
+                return;
+            }
+            final RowN row = new RowN(1 + aggregators.length); // 1 for key
+            final Object[] cells = new Object[row.size()];
+            Iterable<Row> rows = Iterables.transform(result, new Function<Map.Entry<BytesRef, Object[]>, Row>() {
+                @Nullable
+                @Override
+                public Row apply(@Nullable Map.Entry<BytesRef, Object[]> input) {
+                    assert input != null : "input must not be null";
+                    cells[0] = keyType.value(BytesRef.deepCopyOf(input.getKey()));
+                    statesToRow(input.getValue(), cells, 1, aggregators);
+                    row.cells(cells);
+                    return row;
+                }
+            });
+            if (nullKeyStates != null) {
+                rows = Iterables.concat(rows, new NullKeyRow(nullKeyStates, 1, aggregators));
+            }
+            IterableRowEmitter rowEmitter = new IterableRowEmitter(downstream, executionState, rows);
+            rowEmitter.run();
+        }
+
+        @Override
+        public void prepare(ExecutionState executionState) {
+            this.executionState = executionState;
+        }
+
+        @Override
+        public void close() throws Exception {
+            result.close();
+            nullKeyStates = null;
+        }
+    }
+
+    /**
+     * Grouper for multiple primitive keys.
+     *
+     * The key values are serialized with their {@link Streamer} into a single composite key
+     * which is stored in a pooled {@link BytesRefHash}. This avoids allocating a key list per row and
+     * replaces the list equals()/hashCode() with a byte comparison.
+     * The key values are only deserialized once per group if the result is emitted.
+     */
+    private class SerializedKeyGrouper implements Grouper {
+
+        private final BytesRefStatesTable result;
+        private final Aggregator[] aggregators;
+        private final List<Input<?>> keyInputs;
+        private final List<? extends DataType> keyTypes;
+        private final Streamer[] keyStreamers;
+        private final CollectExpression[] collectExpressions;
+        private final BatchAggregator batchAggregator;
+        private final int[] keyColumns;
+        private final BytesStreamOutput keyOut = new BytesStreamOutput();
+        private ExecutionState executionState;
+
+        public SerializedKeyGrouper(List<Input<?>> keyInputs,
+                                    List<? extends DataType> keyTypes,
+                                    CollectExpression[] collectExpressions,
+                                    Aggregator[] aggregators) {
+            this.keyInputs = keyInputs;
+            this.keyTypes = keyTypes;
+            this.keyStreamers = DataTypes.getStreamer(keyTypes);
+            this.collectExpressions = collectExpressions;
+            this.aggregators = aggregators;
+            this.batchAggregator = new BatchAggregator(collectExpressions, aggregators);
+            this.result = new BytesRefStatesTable(aggregators);
+            keyColumns = new int[keyInputs.size()];
+            for (int i = 0; i < keyColumns.length; i++) {
+                keyColumns[i] = keyColumn(keyInputs.get(i));
+            }
+        }
+
+        @Override
+        public boolean setNextRow(Row row) {
+            for (CollectExpression collectExpression : collectExpressions) {
+                collectExpression.setNextRow(row);
+            }
+
+            keyOut.reset();
+            try {
+                for (int i = 0; i < keyStreamers.length; i++) {
+                    keyStreamers[i].writeValueTo(keyOut, keyTypes.get(i).value(keyInputs.get(i).value()));
+                }
+            } catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+            result.processRow(keyOut.bytes().toBytesRef());
+            return true;
+        }
+
+        /**
+         * reads the keys directly from the key columns of the batch and aggregates the rows of each group at once
+         */
+        @Override
+        public boolean setNextBatch(RowBatch batch) {
+            for (int keyColumn : keyColumns) {
+                if (keyColumn < 0) {
+                    return setNextRows(this, batch);
+                }
+            }
+            int numRows = batch.numRows();
+            batchAggregator.start(batch);
+            try {
+                for (int i = 0; i < numRows; i++) {
+                    int index = batch.rowIndex(i);
+                    keyOut.reset();
+                    for (int k = 0; k < keyStreamers.length; k++) {
+                        keyStreamers[k].writeValueTo(keyOut, keyTypes.get(k).value(batch.column(keyColumns[k]).get(index)));
+                    }
+                    batchAggregator.add(result.statesOf(keyOut.bytes().toBytesRef()));
+                }
+            } catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+            batchAggregator.aggregate();
+            return true;
+        }
+
+        @Override
+        public void finish() {
+            if (!accountResultRows(result.size(), keyStreamers.length + aggregators.length)) {
+                return;
+            }
+            final RowN row = new RowN(keyStreamers.length + aggregators.length);
+            final Object[] cells = new Object[row.size()];
+            Iterable<Row> rows = Iterables.transform(result, new Function<Map.Entry<BytesRef, Object[]>, Row>() {
+                @Nullable
+                @Override
+                public Row apply(@Nullable Map.Entry<BytesRef, Object[]> input) {
+                    assert input != null : "input must not be null";
+                    // deserialized values may point into the key bytes, so use a private copy
+                    BytesRef key = BytesRef.deepCopyOf(input.getKey());
+                    StreamInput in = new BytesStreamInput(key.bytes, key.offset, key.length);
+                    try {
+                        for (int i = 0; i < keyStreamers.length; i++) {
+                            cells[i] = keyTypes.get(i).value(keyStreamers[i].readValueFrom(in));
+                        }
+                    } catch (IOException e) {
+                        throw Throwables.propagate(e);
+                    }
+                    statesToRow(input.getValue(), cells, keyStreamers.length, aggregators);
+                    row.cells(cells);
+                    return row;
+                }
+            });
+            IterableRowEmitter rowEmitter = new IterableRowEmitter(downstream, executionState, rows);
+            rowEmitter.run();
+        }
+
+        @Override
+        public void prepare(ExecutionState executionState) {
+            this.executionState = executionState;
+        }
+
+        @Override
+        public void close() throws Exception {
+            result.close();
+        }
+    }
+
+    /**
+     * Maps BytesRef keys to aggregation states.
+     *
+     * Keys are copied into the byte blocks of a {@link BytesRefHash} and identified by their dense ordinal,
+     * the states are stored in an array indexed by that ordinal.
+     * Keys which exceed the maximum length supported by the byte blocks are kept in an overflow {@link HashMap}.
+     */
+    private class BytesRefStatesTable implements Iterable<Map.Entry<BytesRef, Object[]>> {
+
+        private static final int MAX_POOLED_KEY_LENGTH = ByteBlockPool.BYTE_BLOCK_SIZE - 2;
+
+        private final Aggregator[] aggregators;
+        private final Counter bytesUsed = Counter.newCounter();
+        private final BytesRefHash hash;
+        private final Map<BytesRef, Object[]> overflow = new HashMap<>();
+        private Object[][] states = new Object[BytesRefHash.DEFAULT_CAPACITY][];
+        private long accountedBytes = 0;
+
+        BytesRefStatesTable(Aggregator[] aggregators) {
+            this.aggregators = aggregators;
+            this.hash = new BytesRefHash(
+                    new ByteBlockPool(new ByteBlockPool.DirectTrackingAllocator(bytesUsed)),
+                    BytesRefHash.DEFAULT_CAPACITY,
+                    new BytesRefHash.DirectBytesStartArray(BytesRefHash.DEFAULT_CAPACITY, bytesUsed));
+            ramAccountingContext.addBytes(RamAccountingContext.roundUp(12 + states.length * 4));
+            accountPool();
+        }
+
+        int size() {
+            return hash.size() + overflow.size();
+        }
+
+        private void accountPool() {
+            long used = bytesUsed.get();
+            if (used != accountedBytes) {
+                ramAccountingContext.addBytes(used - accountedBytes);
+                accountedBytes = used;
+            }
+        }
+
+        void processRow(BytesRef key) {
+            if (key.length > MAX_POOLED_KEY_LENGTH) {
+                processOverflowRow(key);
+                return;
+            }
+            int ord = hash.add(key);
+            if (ord < 0) {
+                processStates(states[-ord - 1], aggregators);
+                return;
+            }
+            growStates(ord);
+            states[ord] = newStates(aggregators);
+            accountPool();
+        }
+
+        /**
+         * @return the states of the group, empty states if the group is new
+         */
+        Object[] statesOf(BytesRef key) {
+            if (key.length > MAX_POOLED_KEY_LENGTH) {
+                Object[] keyStates = overflow.get(key);
+                if (keyStates == null) {
+                    keyStates = emptyStates(aggregators);
+                    ramAccountingContext.addBytes(
+                            RamAccountingContext.roundUp(key.length + 64) + 24); // 24 bytes overhead per entry
+                    overflow.put(BytesRef.deepCopyOf(key), keyStates);
+                }
+                return keyStates;
+            }
+            int ord = hash.add(key);
+            if (ord < 0) {
+                return states[-ord - 1];
+            }
+            growStates(ord);
+            states[ord] = emptyStates(aggregators);
+            accountPool();
+            return states[ord];
+        }
+
+        private void growStates(int ord) {
+            if (ord >= states.length) {
+                int oldLength = states.length;
+                states = Arrays.copyOf(states, ArrayUtil.oversize(ord + 1, RamUsageEstimator.NUM_BYTES_OBJECT_REF));
+                ramAccountingContext.addBytes((states.length - oldLength) * 4);
+            }
+        }
+
+        private void processOverflowRow(BytesRef key) {
+            Object[] keyStates = overflow.get(key);
+            if (keyStates == null) {
+                keyStates = newStates(aggregators);
+                ramAccountingContext.addBytes(
+                        RamAccountingContext.roundUp(key.length + 64) + 24); // 24 bytes overhead per entry
+                overflow.put(BytesRef.deepCopyOf(key), keyStates);
+            } else {
+                processStates(keyStates, aggregators);
+            }
+        }
+
+        @Override
+        public Iterator<Map.Entry<BytesRef, Object[]>> iterator() {
+            Iterator<Map.Entry<BytesRef, Object[]>> pooled = new Iterator<Map.Entry<BytesRef, Object[]>>() {
+
+                private final int size = hash.size();
+                private final BytesRef spare = new BytesRef();
+                private int ord = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return ord < size;
+                }
+
+                @Override
+                public Map.Entry<BytesRef, Object[]> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    hash.get(ord, spare);
+                    Map.Entry<BytesRef, Object[]> entry = new AbstractMap.SimpleImmutableEntry<>(spare, states[ord]);
+                    ord++;
+                    return entry;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("remove is not supported");
+                }
+            };
+            return Iterators.concat(pooled, overflow.entrySet().iterator());
+        }
+
+        void close() {
+            hash.close();
+            overflow.clear();
+            states = null;
+        }
+    }
+
+    /**
+     * single row containing the result of the group with a null key (or all keys null)
+     */
+    private static class NullKeyRow implements Iterable<Row> {
+
+        private final Object[] states;
+        private final int numKeys;
+        private final Aggregator[] aggregators;
+
+        NullKeyRow(Object[] states, int numKeys, Aggregator[] aggregators) {
+            this.states = states;
+            this.numKeys = numKeys;
+            this.aggregators = aggregators;
+        }
+
+        @Override
+        public Iterator<Row> iterator() {
+            Object[] cells = new Object[numKeys + aggregators.length];
+            statesToRow(states, cells, numKeys, aggregators);
+            return Iterators.<Row>singletonIterator(new RowN(cells));
+        }
+    }
+
     @Override
     public Set<Requirement> requirements() {
         if (requirements == null) {
@@ -32,6 +32,7 @@ import io.crate.planner.node.StreamerVisitor;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Singleton;
+import org.elasticsearch.common.settings.Settings;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -43,14 +44,27 @@ public class InternalRowDownstreamFactory implements RowDownstreamFactory {
     private final ClusterService clusterService;
     private final TransportDistributedResultAction transportDistributedResultAction;
     private final KeepAliveTimers keepAliveTimers;
+    private final long pageSizeInBytes;
+    private final long creditInBytes;
 
     @Inject
-    public InternalRowDownstreamFactory(ClusterService clusterService,
+    public InternalRowDownstreamFactory(Settings settings,
+                                        ClusterService clusterService,
                                         TransportDistributedResultAction transportDistributedResultAction,
                                         KeepAliveTimers keepAliveTimers) {
         this.clusterService = clusterService;
         this.transportDistributedResultAction = transportDistributedResultAction;
         this.keepAliveTimers = keepAliveTimers;
+        pageSizeInBytes = settings.getAsBytesSize(DistributingDownstream.PAGE_SIZE_BYTES_SETTING,
+                DistributingDownstream.DEFAULT_PAGE_SIZE_BYTES).bytes();
+        if (pageSizeInBytes <= 0) {
+            throw new IllegalArgumentException(DistributingDownstream.PAGE_SIZE_BYTES_SETTING + " must be positive");
+        }
+        creditInBytes = settings.getAsBytesSize(DistributingDownstream.CREDIT_BYTES_SETTING,
+                DistributingDownstream.DEFAULT_CREDIT_BYTES).bytes();
+        if (creditInBytes <= 0) {
+            throw new IllegalArgumentException(DistributingDownstream.CREDIT_BYTES_SETTING + " must be positive");
+        }
     }
 
     public RowReceiver createDownstream(NodeOperation nodeOperation,
@@ -93,7 +107,9 @@ public class InternalRowDownstreamFactory implements RowDownstreamFactory {
                 transportDistributedResultAction,
                 keepAliveTimers,
                 streamers,
-                pageSize
+                pageSize,
+                pageSizeInBytes,
+                creditInBytes
         );
 
     }
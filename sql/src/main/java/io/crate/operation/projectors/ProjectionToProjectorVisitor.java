@@ -22,6 +22,7 @@
 package io.crate.operation.projectors;
 
 import com.google.common.base.Supplier;
+import com.google.common.collect.Ordering;
 import io.crate.analyze.EvaluatingNormalizer;
 import io.crate.analyze.symbol.*;
 import io.crate.breaker.RamAccountingContext;
@@ -30,9 +31,12 @@ import io.crate.executor.transport.TransportActionProvider;
 import io.crate.metadata.ColumnIdent;
 import io.crate.operation.ImplementationSymbolVisitor;
 import io.crate.operation.Input;
+import io.crate.operation.TempFiles;
+import io.crate.operation.codegen.ExpressionCompiler;
 import io.crate.operation.collect.CollectExpression;
 import io.crate.operation.projectors.sorting.OrderingByPosition;
 import io.crate.planner.projection.*;
+import io.crate.types.DataType;
 import io.crate.types.StringType;
 import org.elasticsearch.action.bulk.BulkRetryCoordinatorPool;
 import org.elasticsearch.cluster.ClusterService;
@@ -41,6 +45,7 @@ import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import javax.annotation.Nullable;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.ThreadPoolExecutor;
 
@@ -55,12 +60,16 @@ public class ProjectionToProjectorVisitor
     private final ImplementationSymbolVisitor symbolVisitor;
     private final EvaluatingNormalizer normalizer;
 
+    private static final ExpressionCompiler EXPRESSION_COMPILER = new ExpressionCompiler();
+
     @Nullable
     private final ShardId shardId;
+    private final Path tmpDirectory;
 
     public ProjectionToProjectorVisitor(ClusterService clusterService,
                                         ThreadPool threadPool,
                                         Settings settings,
+                                        TempFiles tempFiles,
                                         TransportActionProvider transportActionProvider,
                                         BulkRetryCoordinatorPool bulkRetryCoordinatorPool,
                                         ImplementationSymbolVisitor symbolVisitor,
@@ -74,16 +83,19 @@ public class ProjectionToProjectorVisitor
         this.symbolVisitor = symbolVisitor;
         this.normalizer = normalizer;
         this.shardId = shardId;
+        this.tmpDirectory = tempFiles.directory();
     }
 
     public ProjectionToProjectorVisitor(ClusterService clusterService,
                                         ThreadPool threadPool,
                                         Settings settings,
+                                        TempFiles tempFiles,
                                         TransportActionProvider transportActionProvider,
                                         BulkRetryCoordinatorPool bulkRetryCoordinatorPool,
                                         ImplementationSymbolVisitor symbolVisitor,
                                         EvaluatingNormalizer normalizer) {
-        this(clusterService, threadPool, settings, transportActionProvider, bulkRetryCoordinatorPool, symbolVisitor, normalizer, null);
+        this(clusterService, threadPool, settings, tempFiles, transportActionProvider, bulkRetryCoordinatorPool,
+                symbolVisitor, normalizer, null);
     }
 
     @Override
@@ -92,7 +104,7 @@ public class ProjectionToProjectorVisitor
         List<Input<?>> inputs = new ArrayList<>();
         List<CollectExpression<Row, ?>> collectExpressions = new ArrayList<>();
 
-        ImplementationSymbolVisitor.Context ctx = symbolVisitor.extractImplementations(projection.outputs());
+        ImplementationSymbolVisitor.Context ctx = EXPRESSION_COMPILER.extractImplementations(projection.outputs(), symbolVisitor);
         inputs.addAll(ctx.topLevelInputs());
         collectExpressions.addAll(ctx.collectExpressions());
 
@@ -110,14 +122,31 @@ public class ProjectionToProjectorVisitor
                 orderByIndices[idx++] = i;
             }
 
-            projector = new SortingTopNProjector(
-                    inputs,
-                    collectExpressions,
-                    numOutputs,
-                    OrderingByPosition.arrayOrdering(orderByIndices, projection.reverseFlags(), projection.nullsFirst()),
-                    projection.limit(),
-                    projection.offset()
-            );
+            Ordering<Object[]> ordering = OrderingByPosition.arrayOrdering(
+                    orderByIndices, projection.reverseFlags(), projection.nullsFirst());
+            if (projection.limit() == TopN.NO_LIMIT) {
+                List<DataType> inputTypes = new ArrayList<>(Symbols.extractTypes(projection.outputs()));
+                inputTypes.addAll(Symbols.extractTypes(projection.orderBy()));
+                projector = new SortingProjector(
+                        inputs,
+                        collectExpressions,
+                        numOutputs,
+                        ordering,
+                        inputTypes,
+                        projection.offset(),
+                        context.ramAccountingContext,
+                        tmpDirectory
+                );
+            } else {
+                projector = new SortingTopNProjector(
+                        inputs,
+                        collectExpressions,
+                        numOutputs,
+                        ordering,
+                        projection.limit(),
+                        projection.offset()
+                );
+            }
         } else if (projection.limit() == TopN.NO_LIMIT
                    && projection.offset() == TopN.NO_OFFSET) {
             projector = new InputRowProjector(inputs, collectExpressions);
@@ -285,18 +314,20 @@ public class ProjectionToProjectorVisitor
 
         Input<Boolean> condition;
         if (projection.query() != null) {
-            condition = (Input) symbolVisitor.process(projection.query(), ctx);
+            condition = (Input) EXPRESSION_COMPILER.compile(projection.query(), symbolVisitor, ctx);
         } else {
             condition = Literal.newLiteral(true);
         }
 
-        return new FilterProjector(ctx.collectExpressions(), condition);
+        return new FilterProjector(ctx.collectExpressions(), condition, projection.query());
     }
 
     @Override
     public Projector visitUpdateProjection(UpdateProjection projection, Context context) {
         checkShardLevel("Update projection can only be executed on a shard");
 
+        ImplementationSymbolVisitor.Context bulkConditionsCtx = new ImplementationSymbolVisitor.Context();
+        List<Input<Boolean>> bulkConditions = resolveBulkConditions(projection, bulkConditionsCtx);
         return new UpdateProjector(
                 clusterService,
                 settings,
@@ -304,6 +335,8 @@ public class ProjectionToProjectorVisitor
                 transportActionProvider,
                 bulkRetryCoordinatorPool,
                 resolveUidCollectExpression(projection),
+                bulkConditionsCtx.collectExpressions(),
+                bulkConditions,
                 projection.assignmentsColumns(),
                 projection.assignments(),
                 projection.requiredVersion(),
@@ -314,6 +347,8 @@ public class ProjectionToProjectorVisitor
     public Projector visitDeleteProjection(DeleteProjection projection, Context context) {
         checkShardLevel("Delete projection can only be executed on a shard");
 
+        ImplementationSymbolVisitor.Context bulkConditionsCtx = new ImplementationSymbolVisitor.Context();
+        List<Input<Boolean>> bulkConditions = resolveBulkConditions(projection, bulkConditionsCtx);
         return new DeleteProjector(
                 clusterService,
                 settings,
@@ -321,6 +356,8 @@ public class ProjectionToProjectorVisitor
                 transportActionProvider,
                 bulkRetryCoordinatorPool,
                 resolveUidCollectExpression(projection),
+                bulkConditionsCtx.collectExpressions(),
+                bulkConditions,
                 context.jobId);
     }
 
@@ -338,6 +375,15 @@ public class ProjectionToProjectorVisitor
         return ctx.collectExpressions().iterator().next();
     }
 
+    @SuppressWarnings("unchecked")
+    private List<Input<Boolean>> resolveBulkConditions(DMLProjection projection, ImplementationSymbolVisitor.Context ctx) {
+        List<Input<Boolean>> conditions = new ArrayList<>(projection.bulkConditions().size());
+        for (Symbol condition : projection.bulkConditions()) {
+            conditions.add((Input<Boolean>) symbolVisitor.process(condition, ctx));
+        }
+        return conditions;
+    }
+
     @Override
     public Projector visitFetchProjection(FetchProjection projection, Context context) {
         return new FetchProjector(
@@ -0,0 +1,188 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors;
+
+import io.crate.core.collections.Buckets;
+import io.crate.core.collections.Row;
+import io.crate.types.DataType;
+
+import java.util.List;
+
+/**
+ * a batch of rows stored column wise in {@link ColumnVector}s.
+ *
+ * A batch can be narrowed down to a subset of its rows by a selection vector which contains
+ * the positions of the selected rows; consumers iterate over the rows using
+ * {@link #numRows()} and {@link #rowIndex(int)} or {@link #row(int)}.
+ *
+ * Batches are reused by their producer, so consumers must not keep references to a batch or
+ * the row returned by {@link #row(int)} after they processed it.
+ */
+public class RowBatch {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final ColumnVector[] columns;
+    private final int[] selection;
+    private final BatchRow row = new BatchRow();
+    private int size = 0;
+    private int numSelected = 0;
+    private int selectionOffset = 0;
+    private boolean selectionInUse = false;
+
+    public RowBatch(List<? extends DataType> types) {
+        this(types, DEFAULT_CAPACITY);
+    }
+
+    public RowBatch(List<? extends DataType> types, int capacity) {
+        columns = new ColumnVector[types.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = ColumnVector.forType(types.get(i), capacity);
+        }
+        selection = new int[capacity];
+    }
+
+    private RowBatch(ColumnVector[] columns, int capacity) {
+        this.columns = columns;
+        selection = new int[capacity];
+    }
+
+    /**
+     * @return a batch which shares the column vectors of this batch but has its own selection,
+     *         used to process subsets of the rows of this batch
+     */
+    public RowBatch view() {
+        return new RowBatch(columns, selection.length);
+    }
+
+    public int numColumns() {
+        return columns.length;
+    }
+
+    public ColumnVector column(int index) {
+        return columns[index];
+    }
+
+    public int capacity() {
+        return selection.length;
+    }
+
+    /**
+     * @return the number of rows added to this batch, regardless of the selection
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == selection.length;
+    }
+
+    /**
+     * copies the values of the given row into the next free position of this batch
+     */
+    public void add(Row row) {
+        assert !selectionInUse : "rows can't be added to a batch with a selection";
+        assert size < selection.length : "batch is full";
+        for (int i = 0; i < columns.length; i++) {
+            columns[i].set(size, row.get(i));
+        }
+        size++;
+    }
+
+    /**
+     * @return the number of selected rows
+     */
+    public int numRows() {
+        return selectionInUse ? numSelected : size;
+    }
+
+    /**
+     * @return the position within the column vectors of the n-th selected row
+     */
+    public int rowIndex(int n) {
+        return selectionInUse ? selection[selectionOffset + n] : n;
+    }
+
+    /**
+     * @return a shared row which is positioned on the n-th selected row
+     */
+    public Row row(int n) {
+        row.index = rowIndex(n);
+        return row;
+    }
+
+    /**
+     * the selection vector, which can be filled in place with the positions of the rows to
+     * keep before calling {@link #select(int)}
+     */
+    public int[] selection() {
+        return selection;
+    }
+
+    /**
+     * narrows this batch down to the first <code>numSelected</code> positions of the selection vector
+     */
+    public void select(int numSelected) {
+        select(0, numSelected);
+    }
+
+    /**
+     * narrows this batch down to the <code>numSelected</code> positions of the selection vector starting at offset
+     */
+    public void select(int offset, int numSelected) {
+        this.selectionOffset = offset;
+        this.numSelected = numSelected;
+        selectionInUse = true;
+    }
+
+    public void reset() {
+        for (ColumnVector column : columns) {
+            column.reset();
+        }
+        size = 0;
+        numSelected = 0;
+        selectionOffset = 0;
+        selectionInUse = false;
+    }
+
+    private class BatchRow implements Row {
+
+        private int index;
+
+        @Override
+        public int size() {
+            return columns.length;
+        }
+
+        @Override
+        public Object get(int column) {
+            return columns[column].get(index);
+        }
+
+        @Override
+        public Object[] materialize() {
+            return Buckets.materialize(this);
+        }
+    }
+}
@@ -36,6 +36,13 @@ public class RowReceivers {
         return new SettableFutureRowReceiver(rowReceiver);
     }
 
+    /**
+     * @return true if rows can be sent to the rowReceiver in {@link RowBatch}es
+     */
+    public static boolean acceptsBatches(RowReceiver rowReceiver) {
+        return rowReceiver instanceof BatchRowReceiver && ((BatchRowReceiver) rowReceiver).acceptsBatches();
+    }
+
     @ParametersAreNonnullByDefault
     private static class SettableFutureRowReceiver extends ForwardingRowReceiver implements ListenableRowReceiver {
 
@@ -174,11 +174,19 @@ public class ShardProjectorChain {
      * @return a new projector connected to the internal chain
      */
     public RowReceiver newShardDownstreamProjector(ProjectorFactory projectorFactory) {
+        return newShardDownstreamProjector(projectorFactory, rowDownstream.newRowReceiver());
+    }
+
+    /**
+     * Like {@link #newShardDownstreamProjector(ProjectorFactory)} but the shard projectors emit their rows
+     * to the given receiver, which must forward them to a receiver created by {@link #newShardOutputReceiver()}.
+     */
+    public RowReceiver newShardDownstreamProjector(ProjectorFactory projectorFactory, RowReceiver shardOutput) {
         if (shardProjectionsIndex < 0) {
-            return rowDownstream.newRowReceiver();
+            return shardOutput;
         }
 
-        RowReceiver previousProjector = rowDownstream.newRowReceiver();
+        RowReceiver previousProjector = shardOutput;
         Projector projector = null;
         for (int i = shardProjectionsIndex; i >= 0; i--) {
             projector = projectorFactory.create(projections.get(i), ramAccountingContext, jobId);
@@ -191,6 +199,21 @@ public class ShardProjectorChain {
         return projector;
     }
 
+    /**
+     * @return a receiver for the rows a shard emits after its shard projections,
+     *         which bypasses the shard projectors
+     */
+    public RowReceiver newShardOutputReceiver() {
+        return rowDownstream.newRowReceiver();
+    }
+
+    /**
+     * @return the projections which are executed on each shard, empty if there are none
+     */
+    public List<? extends Projection> shardProjections() {
+        return projections.subList(0, shardProjectionsIndex + 1);
+    }
+
     public void prepare(ExecutionState executionState) {
         this.finalDownstream.prepare(executionState);
         for (Projector projector : Lists.reverse(nodeProjectors)) {
@@ -0,0 +1,318 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
+import io.crate.Streamer;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.breaker.RowSizeEstimator;
+import io.crate.core.collections.Row;
+import io.crate.core.collections.RowN;
+import io.crate.operation.Input;
+import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.merge.NumberedIterable;
+import io.crate.operation.merge.SortedPagingIterator;
+import io.crate.operation.projectors.sorting.SortedRunFile;
+import io.crate.types.DataType;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Sorts all rows without a limit (an unbounded ORDER BY).
+ *
+ * Rows are buffered on heap until the buffered size exceeds a threshold derived from the limit of the
+ * {@link RamAccountingContext} or until the breaker is about to trip (see {@link #SOFT_LIMIT_DIVISOR}).
+ * The buffer is then sorted and spilled as a sorted run into a temporary file inside the tmp directory of the
+ * node using the {@link Streamer}s of the columns. The buffer is spilled before its rows are added to the
+ * breaker, since a tripped breaker fails the whole query. On finish the runs and the remaining buffer are
+ * k-way merged using a {@link SortedPagingIterator}.
+ *
+ * If the downstream requires to repeat the rows, spilling is disabled and all rows are kept in memory.
+ */
+public class SortingProjector extends AbstractProjector {
+
+    private static final ESLogger LOGGER = Loggers.getLogger(SortingProjector.class);
+
+    static final long DEFAULT_SPILL_THRESHOLD = new ByteSizeValue(64, ByteSizeUnit.MB).bytes();
+    static final long MIN_SPILL_THRESHOLD = new ByteSizeValue(1, ByteSizeUnit.MB).bytes();
+
+    /**
+     * the buffer is spilled once less than 1/SOFT_LIMIT_DIVISOR of the breaker limit is left
+     */
+    static final int SOFT_LIMIT_DIVISOR = 10;
+
+    private final Collection<? extends Input<?>> inputs;
+    private final Iterable<? extends CollectExpression<Row, ?>> collectExpressions;
+    private final int numOutputs;
+    private final int offset;
+    private final Ordering<Object[]> sortOrdering;
+    private final RamAccountingContext ramAccountingContext;
+    private final long spillThreshold;
+    private final long softLimitBytes;
+    private final RowSizeEstimator rowSizeEstimator;
+    @Nullable
+    private final Streamer<?>[] streamers;
+    private final Path tmpDirectory;
+
+    private final List<SortedRunFile> runs = new ArrayList<>();
+    private List<Object[]> buffer = new ArrayList<>();
+    private long bufferedBytes = 0;
+    private Set<Requirement> requirements;
+
+    /**
+     * @param inputs             contains output {@link io.crate.operation.Input}s and orderBy {@link io.crate.operation.Input}s
+     * @param collectExpressions gathered from outputs and orderBy inputs
+     * @param numOutputs         <code>inputs</code> contains this much output {@link io.crate.operation.Input}s starting form index 0
+     * @param ordering           queue ordering (see {@link io.crate.operation.projectors.sorting.OrderingByPosition}),
+     *                           rows are emitted in the reverse order of it
+     * @param inputTypes         the types of the <code>inputs</code>, used to estimate and serialize rows
+     * @param offset             the initial offset, this number of rows are skipped
+     * @param tmpDirectory       the directory the sorted runs are written to
+     */
+    public SortingProjector(Collection<? extends Input<?>> inputs,
+                            Iterable<? extends CollectExpression<Row, ?>> collectExpressions,
+                            int numOutputs,
+                            Ordering<Object[]> ordering,
+                            List<? extends DataType> inputTypes,
+                            int offset,
+                            RamAccountingContext ramAccountingContext,
+                            Path tmpDirectory) {
+        this(inputs, collectExpressions, numOutputs, ordering, inputTypes, offset, ramAccountingContext,
+                tmpDirectory, spillThreshold(ramAccountingContext));
+    }
+
+    @VisibleForTesting
+    SortingProjector(Collection<? extends Input<?>> inputs,
+                     Iterable<? extends CollectExpression<Row, ?>> collectExpressions,
+                     int numOutputs,
+                     Ordering<Object[]> ordering,
+                     List<? extends DataType> inputTypes,
+                     int offset,
+                     RamAccountingContext ramAccountingContext,
+                     Path tmpDirectory,
+                     long spillThreshold) {
+        Preconditions.checkArgument(offset >= 0, "invalid offset");
+        assert inputs.size() == inputTypes.size() : "number of input types must match the number of inputs";
+
+        this.inputs = inputs;
+        this.collectExpressions = collectExpressions;
+        this.numOutputs = numOutputs;
+        this.offset = offset;
+        this.sortOrdering = ordering.reverse();
+        this.ramAccountingContext = ramAccountingContext;
+        this.spillThreshold = spillThreshold;
+        this.softLimitBytes = ramAccountingContext.limit() / SOFT_LIMIT_DIVISOR;
+        this.tmpDirectory = tmpDirectory;
+
+        rowSizeEstimator = new RowSizeEstimator(inputTypes);
+        Streamer<?>[] streamers = new Streamer[inputTypes.size()];
+        for (int i = 0; i < inputTypes.size(); i++) {
+            streamers[i] = inputTypes.get(i).streamer();
+            if (streamers[i] == null) {
+                // values can't be serialized, rows will be kept in memory
+                streamers = null;
+                break;
+            }
+        }
+        this.streamers = streamers;
+    }
+
+    /**
+     * the buffer is spilled if it exceeds a quarter of the breaker limit
+     */
+    static long spillThreshold(RamAccountingContext ramAccountingContext) {
+        long limit = ramAccountingContext.limit();
+        if (limit <= 0) {
+            return DEFAULT_SPILL_THRESHOLD;
+        }
+        return Math.max(MIN_SPILL_THRESHOLD, limit / 4);
+    }
+
+    @Override
+    public boolean setNextRow(Row row) {
+        for (CollectExpression<Row, ?> collectExpression : collectExpressions) {
+            collectExpression.setNextRow(row);
+        }
+        Object[] cells = new Object[inputs.size()];
+        int i = 0;
+        for (Input<?> input : inputs) {
+            cells[i] = input.value();
+            i++;
+        }
+        long rowSize = rowSizeEstimator.estimateSize(cells);
+        if (mustSpill(rowSize) && canSpill()) {
+            spill();
+        }
+        buffer.add(cells);
+        bufferedBytes += rowSize;
+        ramAccountingContext.addBytes(rowSize);
+        return true;
+    }
+
+    /**
+     * the buffer must be spilled if adding the row exceeds the spill threshold or if the breaker would be
+     * left with less than the soft limit. In the latter case tiny runs are avoided if other contexts
+     * use most of the breaker, a too small buffer doesn't free enough memory anyway.
+     */
+    private boolean mustSpill(long rowSize) {
+        if (buffer.isEmpty()) {
+            return false;
+        }
+        if (bufferedBytes + rowSize > spillThreshold) {
+            return true;
+        }
+        return bufferedBytes >= softLimitBytes / 2
+               && ramAccountingContext.remainingBytes() - rowSize < softLimitBytes;
+    }
+
+    private boolean canSpill() {
+        return streamers != null && !downstream.requirements().contains(Requirement.REPEAT);
+    }
+
+    private void spill() {
+        Collections.sort(buffer, sortOrdering);
+        try {
+            runs.add(SortedRunFile.write(buffer, streamers, tmpDirectory));
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("spilled sorted run #{} with {} rows, estimated size {}",
+                    runs.size(), buffer.size(), new ByteSizeValue(bufferedBytes));
+        }
+        ramAccountingContext.addBytes(-bufferedBytes);
+        buffer = new ArrayList<>();
+        bufferedBytes = 0;
+    }
+
+    @Override
+    public void finish() {
+        Collections.sort(buffer, sortOrdering);
+        emit();
+    }
+
+    @Override
+    public void repeat() {
+        emit();
+    }
+
+    private void emit() {
+        IterableRowEmitter rowEmitter = new IterableRowEmitter(
+                new CloseRunsRowReceiver(downstream), executionState, sortedRows());
+        rowEmitter.run();
+    }
+
+    private Iterable<Row> sortedRows() {
+        Iterable<Object[]> sorted;
+        if (runs.isEmpty()) {
+            sorted = buffer;
+        } else {
+            sorted = new Iterable<Object[]>() {
+                @Override
+                public Iterator<Object[]> iterator() {
+                    List<NumberedIterable<Object[]>> iterables = new ArrayList<>(runs.size() + 1);
+                    for (int i = 0; i < runs.size(); i++) {
+                        iterables.add(new NumberedIterable<Object[]>(i, runs.get(i)));
+                    }
+                    iterables.add(new NumberedIterable<>(runs.size(), buffer));
+                    SortedPagingIterator<Object[]> mergingIterator = new SortedPagingIterator<>(sortOrdering, false);
+                    mergingIterator.merge(iterables);
+                    mergingIterator.finish();
+                    return mergingIterator;
+                }
+            };
+        }
+        return Iterables.transform(Iterables.skip(sorted, offset), new Function<Object[], Row>() {
+
+            private final RowN row = new RowN(numOutputs);
+
+            @Nullable
+            @Override
+            public Row apply(@Nullable Object[] input) {
+                row.cells(input);
+                return row;
+            }
+        });
+    }
+
+    private void closeRuns() {
+        for (SortedRunFile run : runs) {
+            try {
+                run.close();
+            } catch (IOException e) {
+                LOGGER.warn("could not delete sorted run file", e);
+            }
+        }
+        runs.clear();
+    }
+
+    @Override
+    public void fail(Throwable t) {
+        closeRuns();
+        downstream.fail(t);
+    }
+
+    @Override
+    public Set<Requirement> requirements() {
+        if (requirements == null) {
+            requirements = Sets.newEnumSet(downstream.requirements(), Requirement.class);
+            requirements.remove(Requirement.REPEAT);
+        }
+        return requirements;
+    }
+
+    /**
+     * deletes the spilled runs once all rows have been emitted
+     */
+    private class CloseRunsRowReceiver extends ForwardingRowReceiver {
+
+        public CloseRunsRowReceiver(RowReceiver rowReceiver) {
+            super(rowReceiver);
+        }
+
+        @Override
+        public void finish() {
+            closeRuns();
+            super.finish();
+        }
+
+        @Override
+        public void fail(Throwable throwable) {
+            closeRuns();
+            super.fail(throwable);
+        }
+    }
+}
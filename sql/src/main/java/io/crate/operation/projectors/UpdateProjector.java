@@ -27,6 +27,7 @@ import io.crate.executor.transport.ShardRequest;
 import io.crate.executor.transport.ShardUpsertRequest;
 import io.crate.executor.transport.TransportActionProvider;
 import io.crate.metadata.settings.CrateSettings;
+import io.crate.operation.Input;
 import io.crate.operation.collect.CollectExpression;
 import org.elasticsearch.action.bulk.BulkRetryCoordinatorPool;
 import org.elasticsearch.action.bulk.BulkShardProcessor;
@@ -35,12 +36,16 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.shard.ShardId;
 
 import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 
 public class UpdateProjector extends DMLProjector<ShardUpsertRequest> {
 
     private final String[] assignmentsColumns;
-    private final Symbol[] assignments;
+    private final Symbol[][] assignments;
     @Nullable
     private final Long requiredVersion;
 
@@ -54,11 +59,36 @@ public class UpdateProjector extends DMLProjector<ShardUpsertRequest> {
                            Symbol[] assignments,
                            @Nullable Long requiredVersion,
                            UUID jobId) {
+        this(clusterService, settings, shardId, transportActionProvider, bulkRetryCoordinatorPool,
+                collectUidExpression, Collections.<CollectExpression<Row, ?>>emptyList(),
+                Collections.<Input<Boolean>>emptyList(), assignmentsColumns, assignments, requiredVersion, jobId);
+    }
+
+    /**
+     * @param assignments the assignments of all argument sets one after another if bulkConditions isn't empty
+     */
+    public UpdateProjector(ClusterService clusterService,
+                           Settings settings,
+                           ShardId shardId,
+                           TransportActionProvider transportActionProvider,
+                           BulkRetryCoordinatorPool bulkRetryCoordinatorPool,
+                           CollectExpression<Row, ?> collectUidExpression,
+                           Collection<CollectExpression<Row, ?>> bulkConditionExpressions,
+                           List<Input<Boolean>> bulkConditions,
+                           String[] assignmentsColumns,
+                           Symbol[] assignments,
+                           @Nullable Long requiredVersion,
+                           UUID jobId) {
         super(clusterService, settings, shardId, transportActionProvider, bulkRetryCoordinatorPool,
-                collectUidExpression, jobId);
+                collectUidExpression, bulkConditionExpressions, bulkConditions, jobId);
         this.assignmentsColumns = assignmentsColumns;
-        this.assignments = assignments;
         this.requiredVersion = requiredVersion;
+        int numArgumentSets = Math.max(1, bulkConditions.size());
+        this.assignments = new Symbol[numArgumentSets][];
+        for (int i = 0; i < numArgumentSets; i++) {
+            this.assignments[i] = Arrays.copyOfRange(
+                    assignments, i * assignmentsColumns.length, (i + 1) * assignmentsColumns.length);
+        }
     }
 
     @Override
@@ -84,7 +114,7 @@ public class UpdateProjector extends DMLProjector<ShardUpsertRequest> {
     }
 
     @Override
-    protected ShardRequest.Item createItem(String id) {
-        return new ShardUpsertRequest.Item(id, assignments, null, requiredVersion);
+    protected ShardRequest.Item createItem(String id, int argumentSet) {
+        return new ShardUpsertRequest.Item(id, assignments[argumentSet], null, requiredVersion);
     }
 }
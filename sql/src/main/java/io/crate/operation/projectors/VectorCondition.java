@@ -0,0 +1,179 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+
+package io.crate.operation.projectors;
+
+import io.crate.analyze.symbol.Function;
+import io.crate.analyze.symbol.Symbol;
+import io.crate.operation.operator.*;
+
+import javax.annotation.Nullable;
+
+/**
+ * a filter condition which is evaluated directly on the primitive values of a {@link RowBatch}.
+ *
+ * Supported are comparisons of {@link VectorExpression}s, like <code>x &gt; 10</code> or
+ * <code>x * 2 &lt;= y</code>, and conjunctions of them.
+ */
+abstract class VectorCondition {
+
+    /**
+     * @return a VectorCondition if the condition is supported, otherwise null
+     */
+    @Nullable
+    static VectorCondition of(@Nullable Symbol condition) {
+        if (!(condition instanceof Function)) {
+            return null;
+        }
+        Function function = (Function) condition;
+        if (function.arguments().size() != 2) {
+            return null;
+        }
+        String name = function.info().ident().name();
+        if (name.equals(AndOperator.NAME)) {
+            VectorCondition left = of(function.arguments().get(0));
+            VectorCondition right = of(function.arguments().get(1));
+            return left == null || right == null ? null : new And(left, right);
+        }
+        return Comparison.of(function);
+    }
+
+    /**
+     * narrows the selection of the batch down to the rows matching this condition.
+     *
+     * @return false if the condition can't be evaluated on the column vectors of the batch, in which case
+     *         the condition must be evaluated row by row on the rows which are still selected.
+     */
+    abstract boolean select(RowBatch batch);
+
+    private static class And extends VectorCondition {
+
+        private final VectorCondition left;
+        private final VectorCondition right;
+
+        And(VectorCondition left, VectorCondition right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        boolean select(RowBatch batch) {
+            // rows not matching the left side don't match the conjunction either,
+            // so the selection remains valid even if the right side must be evaluated row by row
+            return left.select(batch) && right.select(batch);
+        }
+    }
+
+    private static class Comparison extends VectorCondition {
+
+        private enum Op {
+            EQ, LT, LTE, GT, GTE
+        }
+
+        private final Op op;
+        private final VectorExpression left;
+        private final VectorExpression right;
+
+        private Comparison(Op op, VectorExpression left, VectorExpression right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Nullable
+        static Comparison of(Function function) {
+            Op op = op(function.info().ident().name());
+            if (op == null) {
+                return null;
+            }
+            VectorExpression left = VectorExpression.of(function.arguments().get(0));
+            VectorExpression right = VectorExpression.of(function.arguments().get(1));
+            if (left == null || right == null || left.kind != right.kind) {
+                return null;
+            }
+            return new Comparison(op, left, right);
+        }
+
+        @Nullable
+        private static Op op(String functionName) {
+            switch (functionName) {
+                case EqOperator.NAME:
+                    return Op.EQ;
+                case LtOperator.NAME:
+                    return Op.LT;
+                case LteOperator.NAME:
+                    return Op.LTE;
+                case GtOperator.NAME:
+                    return Op.GT;
+                case GteOperator.NAME:
+                    return Op.GTE;
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        boolean select(RowBatch batch) {
+            if (!left.evaluate(batch) || !right.evaluate(batch)) {
+                return false;
+            }
+            int[] selection = batch.selection();
+            int numRows = batch.numRows();
+            int numSelected = 0;
+            if (left.kind == VectorExpression.Kind.LONG) {
+                for (int i = 0; i < numRows; i++) {
+                    int index = batch.rowIndex(i);
+                    if (!left.isNull(index) && !right.isNull(index)
+                        && matches(Long.compare(left.getLong(index), right.getLong(index)))) {
+                        selection[numSelected++] = index;
+                    }
+                }
+            } else {
+                for (int i = 0; i < numRows; i++) {
+                    int index = batch.rowIndex(i);
+                    if (!left.isNull(index) && !right.isNull(index)
+                        && matches(Double.compare(left.getDouble(index), right.getDouble(index)))) {
+                        selection[numSelected++] = index;
+                    }
+                }
+            }
+            batch.select(numSelected);
+            return true;
+        }
+
+        private boolean matches(int comparisonResult) {
+            switch (op) {
+                case EQ:
+                    return comparisonResult == 0;
+                case LT:
+                    return comparisonResult < 0;
+                case LTE:
+                    return comparisonResult <= 0;
+                case GT:
+                    return comparisonResult > 0;
+                default:
+                    return comparisonResult >= 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+
+package io.crate.operation.projectors;
+
+import io.crate.analyze.symbol.Function;
+import io.crate.analyze.symbol.InputColumn;
+import io.crate.analyze.symbol.Literal;
+import io.crate.analyze.symbol.Symbol;
+import io.crate.operation.scalar.arithmetic.*;
+import io.crate.types.DataType;
+import io.crate.types.DoubleType;
+import io.crate.types.LongType;
+import io.crate.types.TimestampType;
+
+import javax.annotation.Nullable;
+
+/**
+ * a numeric expression which is evaluated for all selected rows of a {@link RowBatch} at once.
+ *
+ * Supported are input columns stored in primitive vectors, numeric literals and the arithmetic
+ * functions on them. Like the row based functions, the result is null if one of the arguments is null.
+ * The values are addressed by the position of the row within the column vectors of the batch.
+ */
+abstract class VectorExpression {
+
+    enum Kind {
+        LONG, DOUBLE
+    }
+
+    final Kind kind;
+
+    VectorExpression(Kind kind) {
+        this.kind = kind;
+    }
+
+    /**
+     * @return a VectorExpression if the symbol and all its arguments are supported, otherwise null
+     */
+    @Nullable
+    static VectorExpression of(Symbol symbol) {
+        Kind kind = kind(symbol.valueType());
+        if (kind == null) {
+            return null;
+        }
+        if (symbol instanceof InputColumn) {
+            return new Column(((InputColumn) symbol).index(), kind);
+        }
+        if (symbol instanceof Literal) {
+            Object value = ((Literal) symbol).value();
+            return value instanceof Number ? new Constant((Number) value, kind) : null;
+        }
+        if (symbol instanceof Function) {
+            return Arithmetic.of((Function) symbol, kind);
+        }
+        return null;
+    }
+
+    /**
+     * @return the kind of the primitive vector values of the type are stored in, null if they're boxed
+     */
+    @Nullable
+    static Kind kind(DataType type) {
+        switch (type.id()) {
+            case LongType.ID:
+            case TimestampType.ID:
+                return Kind.LONG;
+            case DoubleType.ID:
+                return Kind.DOUBLE;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * evaluates the expression for all selected rows of the batch
+     *
+     * @return false if a column isn't stored in a primitive vector, the expression can't be evaluated on the batch then.
+     */
+    abstract boolean evaluate(RowBatch batch);
+
+    abstract boolean isNull(int index);
+
+    /**
+     * @return the value at the index, only valid if the kind is {@link Kind#LONG} and the value isn't null
+     */
+    abstract long getLong(int index);
+
+    /**
+     * @return the value at the index converted to double if necessary, only valid if the value isn't null
+     */
+    abstract double getDouble(int index);
+
+    private static class Column extends VectorExpression {
+
+        private final int column;
+        private ColumnVector vector;
+
+        Column(int column, Kind kind) {
+            super(kind);
+            this.column = column;
+        }
+
+        @Override
+        boolean evaluate(RowBatch batch) {
+            vector = batch.column(column);
+            if (kind == Kind.LONG) {
+                return vector instanceof ColumnVector.LongVector;
+            }
+            return vector instanceof ColumnVector.DoubleVector;
+        }
+
+        @Override
+        boolean isNull(int index) {
+            return vector.isNull(index);
+        }
+
+        @Override
+        long getLong(int index) {
+            return vector.getLong(index);
+        }
+
+        @Override
+        double getDouble(int index) {
+            return kind == Kind.LONG ? vector.getLong(index) : vector.getDouble(index);
+        }
+    }
+
+    private static class Constant extends VectorExpression {
+
+        private final long longValue;
+        private final double doubleValue;
+
+        Constant(Number value, Kind kind) {
+            super(kind);
+            longValue = value.longValue();
+            doubleValue = value.doubleValue();
+        }
+
+        @Override
+        boolean evaluate(RowBatch batch) {
+            return true;
+        }
+
+        @Override
+        boolean isNull(int index) {
+            return false;
+        }
+
+        @Override
+        long getLong(int index) {
+            return longValue;
+        }
+
+        @Override
+        double getDouble(int index) {
+            return doubleValue;
+        }
+    }
+
+    private static class Arithmetic extends VectorExpression {
+
+        private enum Op {
+            ADD, SUBTRACT, MULTIPLY, DIVIDE, MODULUS
+        }
+
+        private final Op op;
+        private final VectorExpression left;
+        private final VectorExpression right;
+        private boolean[] nulls = new boolean[0];
+        private long[] longValues = new long[0];
+        private double[] doubleValues = new double[0];
+
+        private Arithmetic(Op op, Kind kind, VectorExpression left, VectorExpression right) {
+            super(kind);
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Nullable
+        static Arithmetic of(Function function, Kind kind) {
+            Op op = op(function.info().ident().name());
+            if (op == null || function.arguments().size() != 2) {
+                return null;
+            }
+            VectorExpression left = VectorExpression.of(function.arguments().get(0));
+            VectorExpression right = VectorExpression.of(function.arguments().get(1));
+            if (left == null || right == null) {
+                return null;
+            }
+            // the long variants of the functions are only used if both arguments are integral
+            if (kind == Kind.LONG && (left.kind != Kind.LONG || right.kind != Kind.LONG)) {
+                return null;
+            }
+            return new Arithmetic(op, kind, left, right);
+        }
+
+        @Nullable
+        private static Op op(String functionName) {
+            switch (functionName) {
+                case AddFunction.NAME:
+                    return Op.ADD;
+                case SubtractFunction.NAME:
+                    return Op.SUBTRACT;
+                case MultiplyFunction.NAME:
+                    return Op.MULTIPLY;
+                case DivideFunction.NAME:
+                    return Op.DIVIDE;
+                case ModulusFunction.NAME:
+                    return Op.MODULUS;
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        boolean evaluate(RowBatch batch) {
+            if (!left.evaluate(batch) || !right.evaluate(batch)) {
+                return false;
+            }
+            int capacity = batch.capacity();
+            if (nulls.length < capacity) {
+                nulls = new boolean[capacity];
+                if (kind == Kind.LONG) {
+                    longValues = new long[capacity];
+                } else {
+                    doubleValues = new double[capacity];
+                }
+            }
+            int numRows = batch.numRows();
+            for (int i = 0; i < numRows; i++) {
+                int index = batch.rowIndex(i);
+                // null rows are skipped, a division by their placeholder value must not fail
+                nulls[index] = left.isNull(index) || right.isNull(index);
+                if (nulls[index]) {
+                    continue;
+                }
+                if (kind == Kind.LONG) {
+                    longValues[index] = apply(op, left.getLong(index), right.getLong(index));
+                } else {
+                    doubleValues[index] = apply(op, left.getDouble(index), right.getDouble(index));
+                }
+            }
+            return true;
+        }
+
+        private static long apply(Op op, long left, long right) {
+            switch (op) {
+                case ADD:
+                    return left + right;
+                case SUBTRACT:
+                    return left - right;
+                case MULTIPLY:
+                    return left * right;
+                case DIVIDE:
+                    return left / right;
+                default:
+                    return left % right;
+            }
+        }
+
+        private static double apply(Op op, double left, double right) {
+            switch (op) {
+                case ADD:
+                    return left + right;
+                case SUBTRACT:
+                    return left - right;
+                case MULTIPLY:
+                    return left * right;
+                case DIVIDE:
+                    return left / right;
+                default:
+                    return left % right;
+            }
+        }
+
+        @Override
+        boolean isNull(int index) {
+            return nulls[index];
+        }
+
+        @Override
+        long getLong(int index) {
+            return longValues[index];
+        }
+
+        @Override
+        double getDouble(int index) {
+            return kind == Kind.LONG ? longValues[index] : doubleValues[index];
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors.sorting;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import io.crate.Streamer;
+import io.crate.operation.TempFiles;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A sorted run of rows spilled to a local temporary file.
+ *
+ * The rows are written using the {@link Streamer}s of their columns and can be read back
+ * (multiple times) in the order they were written.
+ */
+public class SortedRunFile implements Iterable<Object[]>, Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final Streamer<?>[] streamers;
+    private final int numRows;
+    private final List<StreamInput> openInputs = new ArrayList<>();
+
+    private SortedRunFile(Path path, Streamer<?>[] streamers, int numRows) {
+        this.path = path;
+        this.streamers = streamers;
+        this.numRows = numRows;
+    }
+
+    /**
+     * write the given (already sorted) rows to a new temporary file inside the given directory
+     */
+    public static SortedRunFile write(Iterable<Object[]> sortedRows,
+                                      Streamer<?>[] streamers,
+                                      Path directory) throws IOException {
+        Path path = TempFiles.create(directory, "crate-sort-", ".run");
+        int numRows = 0;
+        try (StreamOutput out = new OutputStreamStreamOutput(
+                new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE))) {
+            for (Object[] row : sortedRows) {
+                for (int i = 0; i < streamers.length; i++) {
+                    streamers[i].writeValueTo(out, row[i]);
+                }
+                numRows++;
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        return new SortedRunFile(path, streamers, numRows);
+    }
+
+    public int numRows() {
+        return numRows;
+    }
+
+    public long sizeInBytes() throws IOException {
+        return Files.size(path);
+    }
+
+    @Override
+    public Iterator<Object[]> iterator() {
+        final StreamInput in;
+        try {
+            in = new InputStreamStreamInput(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE));
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        synchronized (openInputs) {
+            openInputs.add(in);
+        }
+        return new AbstractIterator<Object[]>() {
+
+            private int pos = 0;
+
+            @Override
+            protected Object[] computeNext() {
+                if (pos >= numRows) {
+                    closeInput(in);
+                    return endOfData();
+                }
+                pos++;
+                Object[] row = new Object[streamers.length];
+                try {
+                    for (int i = 0; i < streamers.length; i++) {
+                        row[i] = streamers[i].readValueFrom(in);
+                    }
+                } catch (IOException e) {
+                    closeInput(in);
+                    throw Throwables.propagate(e);
+                }
+                return row;
+            }
+        };
+    }
+
+    private void closeInput(StreamInput in) {
+        synchronized (openInputs) {
+            openInputs.remove(in);
+        }
+        try {
+            in.close();
+        } catch (IOException e) {
+            // ignore, the file is read-only and deleted on close
+        }
+    }
+
+    /**
+     * closes all open readers and deletes the file
+     */
+    @Override
+    public void close() throws IOException {
+        List<StreamInput> inputs;
+        synchronized (openInputs) {
+            inputs = new ArrayList<>(openInputs);
+            openInputs.clear();
+        }
+        for (StreamInput input : inputs) {
+            input.close();
+        }
+        Files.deleteIfExists(path);
+    }
+}
@@ -49,6 +49,13 @@ public class BytesRefColumnReference extends FieldCacheExpression<IndexOrdinalsF
         }
     }
 
+    /**
+     * @return the field data of the column, available after {@link #startCollect(CollectorContext)} has been called
+     */
+    public IndexOrdinalsFieldData indexFieldData() {
+        return indexFieldData;
+    }
+
     @Override
     public void setNextReader(AtomicReaderContext context) {
         super.setNextReader(context);
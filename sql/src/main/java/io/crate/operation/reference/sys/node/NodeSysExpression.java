@@ -23,6 +23,7 @@ package io.crate.operation.reference.sys.node;
 
 import io.crate.metadata.ReferenceImplementation;
 import io.crate.metadata.sys.SysNodesTableInfo;
+import io.crate.operation.collect.ShardResultCache;
 import io.crate.operation.reference.NestedObjectExpression;
 import io.crate.operation.reference.sys.node.fs.NodeFsExpression;
 import org.elasticsearch.cluster.ClusterService;
@@ -62,7 +63,8 @@ public class NodeSysExpression extends NestedObjectExpression {
                              NetworkService networkService,
                              NodeEnvironment nodeEnvironment,
                              Discovery discovery,
-                             ThreadPool threadPool) {
+                             ThreadPool threadPool,
+                             ShardResultCache shardResultCache) {
         this.nodeService = nodeService;
         this.osService = osService;
         this.jvmService = jvmService;
@@ -85,6 +87,8 @@ public class NodeSysExpression extends NestedObjectExpression {
                 new NodeThreadPoolsExpression(threadPool));
         childImplementations.put(SysNodesTableInfo.SYS_COL_OS_INFO,
                 new NodeOsInfoExpression(osService.info()));
+        childImplementations.put(SysNodesTableInfo.SYS_COL_SHARD_RESULT_CACHE,
+                new NodeShardResultCacheExpression(shardResultCache));
     }
 
     @Override
@@ -38,6 +38,8 @@ public class BlobShardNumDocsExpression extends SimpleObjectExpression<Long> imp
     @Override
     public Long value() {
         // TODO: cache stats result
-        return blobShard.blobStats().count();
+        long count = blobShard.blobStats().count();
+        // unknown while the stats are rebuilt
+        return count < 0 ? null : count;
     }
 }
@@ -39,7 +39,9 @@ public class BlobShardSizeExpression extends SimpleObjectExpression<Long> implem
         totalUsageSupplier = Suppliers.memoizeWithExpiration(new Supplier<Long>() {
             @Override
             public Long get() {
-                return blobShard.blobStats().totalUsage();
+                long totalUsage = blobShard.blobStats().totalUsage();
+                // unknown while the stats are rebuilt
+                return totalUsage < 0 ? null : totalUsage;
             }
         }, 10, TimeUnit.SECONDS);
     }
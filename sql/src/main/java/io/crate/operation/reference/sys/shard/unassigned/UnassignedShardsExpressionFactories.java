@@ -156,6 +156,22 @@ public class UnassignedShardsExpressionFactories {
                         };
                     }
                 })
+                .put(SysShardsTableInfo.Columns.BLOB_CACHE, new RowCollectExpressionFactory() {
+                    @Override
+                    public RowContextCollectorExpression create() {
+                        return new RowContextCollectorExpression() {
+                            @Override
+                            public Object value() {
+                                return null;
+                            }
+
+                            @Override
+                            public ReferenceImplementation getChildImplementation(String name) {
+                                return this;
+                            }
+                        };
+                    }
+                })
                 .put(SysNodesTableInfo.SYS_COL_IDENT, new RowCollectExpressionFactory() {
                     @Override
                     public RowContextCollectorExpression create() {
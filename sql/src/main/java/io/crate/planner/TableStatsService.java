@@ -23,8 +23,8 @@
 package io.crate.planner;
 
 
-import com.carrotsearch.hppc.ObjectLongMap;
-import com.carrotsearch.hppc.ObjectLongOpenHashMap;
+import com.carrotsearch.hppc.ObjectObjectMap;
+import com.carrotsearch.hppc.ObjectObjectOpenHashMap;
 import io.crate.action.sql.SQLRequest;
 import io.crate.action.sql.SQLResponse;
 import io.crate.action.sql.TransportSQLAction;
@@ -48,10 +48,12 @@ import java.util.concurrent.TimeUnit;
 @Singleton
 public class TableStatsService extends AbstractComponent implements Runnable {
 
+    // only primaries are counted, replicas would multiply the stats by the number of copies
     private static final SQLRequest REQUEST = new SQLRequest(
-            "select cast(sum(num_docs) as long), schema_name, table_name from sys.shards group by 2, 3");
+            "select cast(sum(num_docs) as long), cast(sum(size) as long), schema_name, table_name " +
+            "from sys.shards where \"primary\" = true group by 3, 4");
     private final Provider<TransportSQLAction> transportSQLAction;
-    private volatile ObjectLongMap<TableIdent> tableStats = null;
+    private volatile ObjectObjectMap<TableIdent, Stats> tableStats = null;
 
     @BindingAnnotation
     @Target({ ElementType.FIELD, ElementType.PARAMETER, ElementType.METHOD })
@@ -90,14 +92,23 @@ public class TableStatsService extends AbstractComponent implements Runnable {
                 });
     }
 
-    private static ObjectLongMap<TableIdent> statsFromResponse(SQLResponse sqlResponse) {
-        ObjectLongMap<TableIdent> newStats = new ObjectLongOpenHashMap<>((int) sqlResponse.rowCount());
+    private static ObjectObjectMap<TableIdent, Stats> statsFromResponse(SQLResponse sqlResponse) {
+        ObjectObjectMap<TableIdent, Stats> newStats = new ObjectObjectOpenHashMap<>((int) sqlResponse.rowCount());
         for (Object[] row : sqlResponse.rows()) {
-            newStats.put(new TableIdent((String) row[1], (String) row[2]), (long) row[0]);
+            newStats.put(new TableIdent((String) row[2], (String) row[3]), new Stats((long) row[0], (long) row[1]));
         }
         return newStats;
     }
 
+    private ObjectObjectMap<TableIdent, Stats> stats() {
+        ObjectObjectMap<TableIdent, Stats> stats = tableStats;
+        if (stats == null) {
+            stats = statsFromResponse(transportSQLAction.get().execute(REQUEST).actionGet(30, TimeUnit.SECONDS));
+            tableStats = stats;
+        }
+        return stats;
+    }
+
     /**
      * Returns the number of docs a table has.
      *
@@ -107,14 +118,37 @@ public class TableStatsService extends AbstractComponent implements Runnable {
      * Returns -1 if the table isn't in the cache
      */
     public long numDocs(TableIdent tableIdent) {
-        ObjectLongMap<TableIdent> stats = tableStats;
+        Stats stats = stats().get(tableIdent);
         if (stats == null) {
-            stats = statsFromResponse(transportSQLAction.get().execute(REQUEST).actionGet(30, TimeUnit.SECONDS));
-            tableStats = stats;
+            return -1;
+        }
+        return stats.numDocs;
+    }
+
+    /**
+     * Returns the size of all primary shards of a table in bytes.
+     *
+     * <p>
+     * Like {@link #numDocs(TableIdent)} this is a cached value that is periodically updated
+     * </p>
+     * Returns -1 if the table isn't in the cache
+     */
+    public long sizeInBytes(TableIdent tableIdent) {
+        Stats stats = stats().get(tableIdent);
+        if (stats == null) {
+            return -1;
         }
-        if (stats.containsKey(tableIdent)) {
-            return stats.get(tableIdent);
+        return stats.sizeInBytes;
+    }
+
+    private static class Stats {
+
+        private final long numDocs;
+        private final long sizeInBytes;
+
+        Stats(long numDocs, long sizeInBytes) {
+            this.numDocs = numDocs;
+            this.sizeInBytes = sizeInBytes;
         }
-        return -1;
     }
 }
@@ -25,18 +25,23 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
 import io.crate.Constants;
 import io.crate.analyze.*;
 import io.crate.analyze.relations.*;
 import io.crate.analyze.symbol.*;
 import io.crate.exceptions.ValidationException;
 import io.crate.metadata.TableIdent;
+import io.crate.operation.operator.AndOperator;
+import io.crate.operation.operator.EqOperator;
 import io.crate.operation.projectors.TopN;
 import io.crate.planner.TableStatsService;
 import io.crate.planner.distribution.DistributionInfo;
+import io.crate.planner.distribution.DistributionType;
 import io.crate.planner.distribution.UpstreamPhase;
 import io.crate.planner.node.NoopPlannedAnalyzedRelation;
 import io.crate.planner.node.dql.MergePhase;
+import io.crate.planner.node.dql.join.HashJoinSpec;
 import io.crate.planner.node.dql.join.NestedLoop;
 import io.crate.planner.node.dql.join.NestedLoopPhase;
 import io.crate.planner.projection.FilterProjection;
@@ -44,11 +49,16 @@ import io.crate.planner.projection.Projection;
 import io.crate.planner.projection.TopNProjection;
 import io.crate.planner.projection.builder.ProjectionBuilder;
 import io.crate.sql.tree.QualifiedName;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Singleton;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
 
 import javax.annotation.Nullable;
 import java.util.*;
@@ -60,9 +70,20 @@ public class NestedLoopConsumer implements Consumer {
     private final Visitor visitor;
     private final static ESLogger LOGGER = Loggers.getLogger(NestedLoopConsumer.class);
 
+    /**
+     * equi-joins are executed by partitioning both tables by the join key across the nodes instead of
+     * broadcasting the smaller table if broadcasting it would send more bytes than this over the network
+     */
+    public static final String MAX_BROADCAST_SIZE = "planner.join.max_broadcast_size";
+    static final ByteSizeValue DEFAULT_MAX_BROADCAST_SIZE = new ByteSizeValue(64, ByteSizeUnit.MB);
+
     @Inject
-    public NestedLoopConsumer(ClusterService clusterService, AnalysisMetaData analysisMetaData, TableStatsService tableStatsService) {
-        visitor = new Visitor(clusterService, analysisMetaData, tableStatsService);
+    public NestedLoopConsumer(Settings settings,
+                              ClusterService clusterService,
+                              AnalysisMetaData analysisMetaData,
+                              TableStatsService tableStatsService) {
+        visitor = new Visitor(clusterService, analysisMetaData, tableStatsService,
+                settings.getAsBytesSize(MAX_BROADCAST_SIZE, DEFAULT_MAX_BROADCAST_SIZE).bytes());
     }
 
     @Override
@@ -88,11 +109,16 @@ public class NestedLoopConsumer implements Consumer {
         private final ClusterService clusterService;
         private final AnalysisMetaData analysisMetaData;
         private final TableStatsService tableStatsService;
+        private final long maxBroadcastBytes;
 
-        public Visitor(ClusterService clusterService, AnalysisMetaData analysisMetaData, TableStatsService tableStatsService) {
+        public Visitor(ClusterService clusterService,
+                       AnalysisMetaData analysisMetaData,
+                       TableStatsService tableStatsService,
+                       long maxBroadcastBytes) {
             this.clusterService = clusterService;
             this.analysisMetaData = analysisMetaData;
             this.tableStatsService = tableStatsService;
+            this.maxBroadcastBytes = maxBroadcastBytes;
         }
 
         @Override
@@ -159,60 +185,98 @@ public class NestedLoopConsumer implements Consumer {
                 return new NoopPlannedAnalyzedRelation(statement, context.plannerContext().jobId());
             }
 
-            boolean broadcastLeftTable = false;
-            if (isDistributed) {
-                broadcastLeftTable = isLeftSmallerThanRight(left, right);
-                if (broadcastLeftTable) {
-                    PlannedAnalyzedRelation tmpPlan = leftPlan;
-                    leftPlan = rightPlan;
-                    rightPlan = tmpPlan;
-
-                    QueriedRelation tmpRelation = left;
-                    left = right;
-                    right = tmpRelation;
-                }
+            List<Integer> leftJoinKeys = new ArrayList<>();
+            List<Integer> rightJoinKeys = new ArrayList<>();
+            if (filterNeeded) {
+                collectJoinKeys(where.query(), statement.leftName(), statement.rightName(), leftJoinKeys, rightJoinKeys);
+            }
+            Collection<String> shuffleNodes = null;
+            if (isDistributed && !leftJoinKeys.isEmpty()) {
+                shuffleNodes = shuffleExecutionNodes(left, right, leftPlan, rightPlan);
             }
+            HashJoinSpec hashJoinSpec = null;
+            if (!leftJoinKeys.isEmpty()) {
+                hashJoinSpec = hashJoinSpec(leftJoinKeys, rightJoinKeys, left, right,
+                        orderByBeforeSplit != null, shuffleNodes == null ? 1 : shuffleNodes.size());
+            }
+
             Set<String> localExecutionNodes = ImmutableSet.of(clusterService.localNode().id());
             Collection<String> nlExecutionNodes = localExecutionNodes;
 
             MergePhase leftMerge = null;
             MergePhase rightMerge = null;
-            if (isDistributed) {
-                leftPlan.resultPhase().distributionInfo(DistributionInfo.DEFAULT_SAME_NODE);
-                nlExecutionNodes = leftPlan.resultPhase().executionNodes();
-            } else {
+            if (shuffleNodes != null) {
+                // both relations are partitioned by the first join key, so every node
+                // joins only its own partition of the left and the right relation
+                nlExecutionNodes = shuffleNodes;
                 leftMerge = mergePhase(
                         context,
                         nlExecutionNodes,
                         leftPlan.resultPhase(),
                         left.querySpec().orderBy().orNull(),
                         left.querySpec().outputs(),
-                        false);
-            }
-            if (nlExecutionNodes.size() == 1
-                && nlExecutionNodes.equals(rightPlan.resultPhase().executionNodes())) {
-                // if the left and the right plan are executed on the same single node the mergePhase
-                // should be omitted. This is the case if the left and right table have only one shards which
-                // are on the same node
-                rightPlan.resultPhase().distributionInfo(DistributionInfo.DEFAULT_SAME_NODE);
-            } else {
+                        true);
                 rightMerge = mergePhase(
                         context,
                         nlExecutionNodes,
                         rightPlan.resultPhase(),
                         right.querySpec().orderBy().orNull(),
                         right.querySpec().outputs(),
-                        isDistributed);
-                rightPlan.resultPhase().distributionInfo(DistributionInfo.DEFAULT_BROADCAST);
-            }
-
+                        true);
+                leftPlan.resultPhase().distributionInfo(
+                        new DistributionInfo(DistributionType.MODULO, hashJoinSpec.leftKeys()[0]));
+                rightPlan.resultPhase().distributionInfo(
+                        new DistributionInfo(DistributionType.MODULO, hashJoinSpec.rightKeys()[0]));
+            } else {
+                boolean broadcastLeftTable = false;
+                if (isDistributed) {
+                    broadcastLeftTable = isLeftSmallerThanRight(left, right);
+                    if (broadcastLeftTable) {
+                        PlannedAnalyzedRelation tmpPlan = leftPlan;
+                        leftPlan = rightPlan;
+                        rightPlan = tmpPlan;
+
+                        QueriedRelation tmpRelation = left;
+                        left = right;
+                        right = tmpRelation;
+                    }
+                }
+                if (isDistributed) {
+                    leftPlan.resultPhase().distributionInfo(DistributionInfo.DEFAULT_SAME_NODE);
+                    nlExecutionNodes = leftPlan.resultPhase().executionNodes();
+                } else {
+                    leftMerge = mergePhase(
+                            context,
+                            nlExecutionNodes,
+                            leftPlan.resultPhase(),
+                            left.querySpec().orderBy().orNull(),
+                            left.querySpec().outputs(),
+                            false);
+                }
+                if (nlExecutionNodes.size() == 1
+                    && nlExecutionNodes.equals(rightPlan.resultPhase().executionNodes())) {
+                    // if the left and the right plan are executed on the same single node the mergePhase
+                    // should be omitted. This is the case if the left and right table have only one shards which
+                    // are on the same node
+                    rightPlan.resultPhase().distributionInfo(DistributionInfo.DEFAULT_SAME_NODE);
+                } else {
+                    rightMerge = mergePhase(
+                            context,
+                            nlExecutionNodes,
+                            rightPlan.resultPhase(),
+                            right.querySpec().orderBy().orNull(),
+                            right.querySpec().outputs(),
+                            isDistributed);
+                    rightPlan.resultPhase().distributionInfo(DistributionInfo.DEFAULT_BROADCAST);
+                }
 
-            if (broadcastLeftTable) {
-                PlannedAnalyzedRelation tmpPlan = leftPlan;
-                leftPlan = rightPlan;
-                rightPlan = tmpPlan;
-                leftMerge = rightMerge;
-                rightMerge = null;
+                if (broadcastLeftTable) {
+                    PlannedAnalyzedRelation tmpPlan = leftPlan;
+                    leftPlan = rightPlan;
+                    rightPlan = tmpPlan;
+                    leftMerge = rightMerge;
+                    rightMerge = null;
+                }
             }
             List<Projection> projections = new ArrayList<>();
 
@@ -245,12 +309,13 @@ public class NestedLoopConsumer implements Consumer {
             NestedLoopPhase nl = new NestedLoopPhase(
                     context.plannerContext().jobId(),
                     context.plannerContext().nextExecutionPhaseId(),
-                    isDistributed ? "distributed-nested-loop" : "nested-loop",
+                    joinPhaseName(isDistributed, shuffleNodes != null, hashJoinSpec != null),
                     projections,
                     leftMerge,
                     rightMerge,
                     nlExecutionNodes
             );
+            nl.hashJoinSpec(hashJoinSpec);
             if (isDistributed) {
                 nl.distributionInfo(DistributionInfo.DEFAULT_BROADCAST);
             }
@@ -271,6 +336,136 @@ public class NestedLoopConsumer implements Consumer {
             return new NestedLoop(nl, leftPlan, rightPlan, localMergePhase);
         }
 
+        private static String joinPhaseName(boolean isDistributed, boolean isShuffled, boolean isHashJoin) {
+            String name = isHashJoin ? "hash-join" : "nested-loop";
+            if (isShuffled) {
+                return "shuffle-" + name;
+            }
+            return isDistributed ? "distributed-" + name : name;
+        }
+
+        /**
+         * returns the nodes on which a join of two large tables should be executed if both tables are
+         * re-partitioned by the join key instead of broadcasting one of them, otherwise null.
+         *
+         * Broadcasting sends the smaller table to every other node, re-partitioning sends about
+         * <code>(nodes - 1) / nodes</code> of both tables. Tables are only re-partitioned if broadcasting
+         * would send more than {@link NestedLoopConsumer#MAX_BROADCAST_SIZE} and at least as much as re-partitioning.
+         */
+        @Nullable
+        private Collection<String> shuffleExecutionNodes(QueriedRelation left,
+                                                         QueriedRelation right,
+                                                         PlannedAnalyzedRelation leftPlan,
+                                                         PlannedAnalyzedRelation rightPlan) {
+            if (!(left instanceof QueriedDocTable && right instanceof QueriedDocTable)) {
+                return null;
+            }
+            long leftBytes = sizeInBytes(left);
+            long rightBytes = sizeInBytes(right);
+            if (leftBytes < 0 || rightBytes < 0) {
+                return null;
+            }
+            Set<String> executionNodes = new TreeSet<>(leftPlan.resultPhase().executionNodes());
+            executionNodes.addAll(rightPlan.resultPhase().executionNodes());
+            int numNodes = executionNodes.size();
+            if (numNodes < 2) {
+                return null;
+            }
+            long broadcastBytes = Math.min(leftBytes, rightBytes) * (numNodes - 1);
+            long shuffleBytes = (leftBytes + rightBytes) / numNodes * (numNodes - 1);
+            if (broadcastBytes <= maxBroadcastBytes || broadcastBytes < shuffleBytes) {
+                return null;
+            }
+            LOGGER.debug("Both tables are large ({} and {} bytes), will partition them by the join key on {} nodes",
+                    leftBytes, rightBytes, numNodes);
+            return executionNodes;
+        }
+
+        /**
+         * creates a {@link HashJoinSpec} for the join keys collected from the equality predicates
+         * of the join condition. If the relations are partitioned the estimated build size is per partition.
+         *
+         * The right side is hashed and the left side probes it, so the order of the left side is retained.
+         * If the order isn't required, the smaller relation is hashed and it may be spilled to disk.
+         */
+        private HashJoinSpec hashJoinSpec(List<Integer> leftKeys,
+                                          List<Integer> rightKeys,
+                                          QueriedRelation left,
+                                          QueriedRelation right,
+                                          boolean isOrdered,
+                                          int numPartitions) {
+            long leftNumDocs = numDocs(left);
+            long rightNumDocs = numDocs(right);
+            boolean buildLeft = !isOrdered && leftNumDocs > -1 && rightNumDocs > -1 && leftNumDocs < rightNumDocs;
+            long buildNumDocs = buildLeft ? leftNumDocs : rightNumDocs;
+            return new HashJoinSpec(
+                    Ints.toArray(leftKeys),
+                    Ints.toArray(rightKeys),
+                    Symbols.extractTypes(left.querySpec().outputs()),
+                    Symbols.extractTypes(right.querySpec().outputs()),
+                    buildLeft,
+                    buildNumDocs > -1 ? buildNumDocs / numPartitions : buildNumDocs,
+                    !isOrdered
+            );
+        }
+
+        private static void collectJoinKeys(Symbol symbol,
+                                            QualifiedName leftName,
+                                            QualifiedName rightName,
+                                            List<Integer> leftKeys,
+                                            List<Integer> rightKeys) {
+            if (!(symbol instanceof Function)) {
+                return;
+            }
+            Function function = (Function) symbol;
+            String functionName = function.info().ident().name();
+            if (functionName.equals(AndOperator.NAME)) {
+                for (Symbol argument : function.arguments()) {
+                    collectJoinKeys(argument, leftName, rightName, leftKeys, rightKeys);
+                }
+            } else if (functionName.equals(EqOperator.NAME)) {
+                Symbol first = function.arguments().get(0);
+                Symbol second = function.arguments().get(1);
+                if (!(first instanceof RelationColumn && second instanceof RelationColumn)
+                    || !isHashable(first.valueType())
+                    || !first.valueType().equals(second.valueType())) {
+                    return;
+                }
+                RelationColumn firstColumn = (RelationColumn) first;
+                RelationColumn secondColumn = (RelationColumn) second;
+                if (firstColumn.relationName().equals(leftName) && secondColumn.relationName().equals(rightName)) {
+                    leftKeys.add(firstColumn.index());
+                    rightKeys.add(secondColumn.index());
+                } else if (firstColumn.relationName().equals(rightName) && secondColumn.relationName().equals(leftName)) {
+                    leftKeys.add(secondColumn.index());
+                    rightKeys.add(firstColumn.index());
+                }
+            }
+        }
+
+        /**
+         * floating point values are excluded because <code>0.0 = -0.0</code> but their hashes differ
+         */
+        private static boolean isHashable(DataType type) {
+            return DataTypes.isPrimitive(type)
+                   && !type.equals(DataTypes.DOUBLE)
+                   && !type.equals(DataTypes.FLOAT);
+        }
+
+        private long numDocs(QueriedRelation relation) {
+            if (relation instanceof QueriedTableRelation) {
+                return tableStatsService.numDocs(((QueriedTableRelation) relation).tableRelation().tableInfo().ident());
+            }
+            return -1;
+        }
+
+        private long sizeInBytes(QueriedRelation relation) {
+            if (relation instanceof QueriedTableRelation) {
+                return tableStatsService.sizeInBytes(((QueriedTableRelation) relation).tableRelation().tableInfo().ident());
+            }
+            return -1;
+        }
+
         private void addOutputsAndSymbolMap(Iterable<? extends Symbol> outputs,
                                             QualifiedName name,
                                             List<RelationColumn> nlOutputs,
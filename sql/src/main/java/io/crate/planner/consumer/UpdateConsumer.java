@@ -45,13 +45,17 @@ import io.crate.planner.node.dql.CollectPhase;
 import io.crate.planner.node.dql.MergePhase;
 import io.crate.planner.projection.Projection;
 import io.crate.planner.projection.UpdateProjection;
+import io.crate.planner.statement.BulkByQuery;
 import io.crate.types.DataTypes;
 import org.elasticsearch.cluster.routing.operation.plain.Preference;
 import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.Singleton;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 @Singleton
@@ -80,6 +84,8 @@ public class UpdateConsumer implements Consumer {
 
             List<Plan> childNodes = new ArrayList<>(statement.nestedStatements().size());
             UpsertByIdNode upsertByIdNode = null;
+            List<UpdateAnalyzedStatement.NestedAnalyzedStatement> byQueryAnalyses = new ArrayList<>();
+            List<WhereClause> byQueryWhereClauses = new ArrayList<>();
             for (UpdateAnalyzedStatement.NestedAnalyzedStatement nestedAnalysis : statement.nestedStatements()) {
                 WhereClause whereClause = nestedAnalysis.whereClause();
                 if (whereClause.noMatch()){
@@ -93,7 +99,19 @@ public class UpdateConsumer implements Consumer {
                     }
                     upsertById(nestedAnalysis, tableInfo, whereClause, upsertByIdNode);
                 } else {
-                    Plan plan = upsertByQuery(nestedAnalysis, context, tableInfo, whereClause);
+                    byQueryAnalyses.add(nestedAnalysis);
+                    byQueryWhereClauses.add(whereClause);
+                }
+            }
+            Plan bulkPlan = null;
+            if (BulkByQuery.canMerge(byQueryWhereClauses)) {
+                bulkPlan = bulkUpsertByQuery(byQueryAnalyses, byQueryWhereClauses, context, tableInfo);
+            }
+            if (bulkPlan != null) {
+                childNodes.add(bulkPlan);
+            } else {
+                for (int i = 0; i < byQueryAnalyses.size(); i++) {
+                    Plan plan = upsertByQuery(byQueryAnalyses.get(i), context, tableInfo, byQueryWhereClauses.get(i));
                     if (plan != null) {
                         childNodes.add(plan);
                     }
@@ -120,10 +138,7 @@ public class UpdateConsumer implements Consumer {
 
             if (!whereClause.noMatch() || !(tableInfo.isPartitioned() && whereClause.partitions().isEmpty())) {
                 // for updates, we always need to collect the `_uid`
-                Reference uidReference = new Reference(
-                        new ReferenceInfo(
-                                new ReferenceIdent(tableInfo.ident(), "_uid"),
-                                RowGranularity.DOC, DataTypes.STRING));
+                Reference uidReference = uidReference(tableInfo);
 
                 Tuple<String[], Symbol[]> assignments = Assignments.convert(nestedAnalysis.assignments());
 
@@ -164,6 +179,65 @@ public class UpdateConsumer implements Consumer {
             }
         }
 
+        /**
+         * updates the documents of all argument sets with a single collect phase,
+         * returns null if the argument sets don't assign the same columns
+         */
+        @Nullable
+        private Plan bulkUpsertByQuery(List<UpdateAnalyzedStatement.NestedAnalyzedStatement> nestedAnalyses,
+                                       List<WhereClause> whereClauses,
+                                       ConsumerContext consumerContext,
+                                       DocTableInfo tableInfo) {
+            String[] assignmentsColumns = null;
+            List<Symbol> assignments = new ArrayList<>();
+            for (UpdateAnalyzedStatement.NestedAnalyzedStatement nestedAnalysis : nestedAnalyses) {
+                Tuple<String[], Symbol[]> nestedAssignments = Assignments.convert(nestedAnalysis.assignments());
+                if (assignmentsColumns == null) {
+                    assignmentsColumns = nestedAssignments.v1();
+                } else if (!Arrays.equals(assignmentsColumns, nestedAssignments.v1())) {
+                    return null;
+                }
+                Collections.addAll(assignments, nestedAssignments.v2());
+            }
+            assert assignmentsColumns != null;
+
+            UpdateProjection updateProjection = new UpdateProjection(
+                    new InputColumn(0, DataTypes.STRING),
+                    BulkByQuery.conditions(whereClauses.size()),
+                    assignmentsColumns,
+                    assignments.toArray(new Symbol[assignments.size()]));
+
+            WhereClause whereClause = BulkByQuery.merge(whereClauses);
+            Planner.Context plannerContext = consumerContext.plannerContext();
+            Routing routing = plannerContext.allocateRouting(tableInfo, whereClause, Preference.PRIMARY.type());
+            CollectPhase collectPhase = new CollectPhase(
+                    plannerContext.jobId(),
+                    plannerContext.nextExecutionPhaseId(),
+                    "collect",
+                    routing,
+                    tableInfo.rowGranularity(),
+                    BulkByQuery.toCollect(uidReference(tableInfo), whereClauses),
+                    ImmutableList.<Projection>of(updateProjection),
+                    whereClause,
+                    DistributionInfo.DEFAULT_BROADCAST
+            );
+            MergePhase mergeNode = MergePhase.localMerge(
+                    plannerContext.jobId(),
+                    plannerContext.nextExecutionPhaseId(),
+                    ImmutableList.<Projection>of(BulkByQuery.rowCountsProjection(whereClauses.size())),
+                    collectPhase.executionNodes().size(),
+                    collectPhase.outputTypes()
+            );
+            return new CollectAndMerge(collectPhase, mergeNode);
+        }
+
+        private static Reference uidReference(DocTableInfo tableInfo) {
+            return new Reference(
+                    new ReferenceInfo(
+                            new ReferenceIdent(tableInfo.ident(), "_uid"),
+                            RowGranularity.DOC, DataTypes.STRING));
+        }
+
         private void upsertById(UpdateAnalyzedStatement.NestedAnalyzedStatement nestedAnalysis,
                                              DocTableInfo tableInfo,
                                              WhereClause whereClause,
@@ -49,6 +49,7 @@ public class FileUriCollectPhase extends CollectPhase {
     private Symbol targetUri;
     private String compression;
     private Boolean sharedStorage;
+    private FileReadingCollector.FileFormat fileFormat;
 
     private FileUriCollectPhase() {
         super();
@@ -62,13 +63,15 @@ public class FileUriCollectPhase extends CollectPhase {
                                List<Symbol> toCollect,
                                List<Projection> projections,
                                String compression,
-                               Boolean sharedStorage) {
+                               Boolean sharedStorage,
+                               FileReadingCollector.FileFormat fileFormat) {
         super(jobId, executionNodeId, name, routing, rowGranularity, toCollect, projections,
                 WhereClause.MATCH_ALL,
                 DistributionInfo.DEFAULT_BROADCAST);
         this.targetUri = targetUri;
         this.compression = compression;
         this.sharedStorage = sharedStorage;
+        this.fileFormat = fileFormat;
     }
 
     public Symbol targetUri() {
@@ -76,7 +79,7 @@ public class FileUriCollectPhase extends CollectPhase {
     }
 
     public FileReadingCollector.FileFormat fileFormat() {
-        return FileReadingCollector.FileFormat.JSON;
+        return fileFormat;
     }
 
     @Override
@@ -102,7 +105,8 @@ public class FileUriCollectPhase extends CollectPhase {
                 normalizedToCollect,
                 projections(),
                 compression(),
-                sharedStorage());
+                sharedStorage(),
+                fileFormat);
     }
 
     @Nullable
@@ -115,6 +119,7 @@ public class FileUriCollectPhase extends CollectPhase {
         super.readFrom(in);
         compression = in.readOptionalString();
         sharedStorage = in.readOptionalBoolean();
+        fileFormat = FileReadingCollector.FileFormat.values()[in.readVInt()];
         targetUri = Symbol.fromStream(in);
     }
 
@@ -123,6 +128,7 @@ public class FileUriCollectPhase extends CollectPhase {
         super.writeTo(out);
         out.writeOptionalString(compression);
         out.writeOptionalBoolean(sharedStorage);
+        out.writeVInt(fileFormat.ordinal());
         Symbol.toStream(targetUri, out);
     }
 
@@ -135,6 +141,7 @@ public class FileUriCollectPhase extends CollectPhase {
                 .add("outputTypes", outputTypes)
                 .add("compression", compression)
                 .add("sharedStorageDefault", sharedStorage)
+                .add("fileFormat", fileFormat)
                 .toString();
     }
 
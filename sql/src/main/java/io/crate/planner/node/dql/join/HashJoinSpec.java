@@ -0,0 +1,168 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.planner.node.dql.join;
+
+import com.google.common.base.MoreObjects;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Streamable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Describes how a {@link NestedLoopPhase} with an equi-join condition is executed as hash join.
+ *
+ * The join keys are positions within the rows of the left and right side,
+ * the key at <code>leftKeys[i]</code> has to be equal to the key at <code>rightKeys[i]</code>.
+ */
+public class HashJoinSpec implements Streamable {
+
+    private int[] leftKeys;
+    private int[] rightKeys;
+    private List<DataType> leftTypes;
+    private List<DataType> rightTypes;
+    private boolean buildLeft;
+    private long estimatedBuildRows;
+    private boolean spillable;
+
+    public HashJoinSpec() {}
+
+    /**
+     * @param buildLeft          if true the left side is hashed, otherwise the right side
+     * @param estimatedBuildRows number of rows the build side is expected to have, -1 if unknown
+     * @param spillable          if true the build side may be spilled to disk, which changes the order of the rows
+     */
+    public HashJoinSpec(int[] leftKeys,
+                        int[] rightKeys,
+                        List<DataType> leftTypes,
+                        List<DataType> rightTypes,
+                        boolean buildLeft,
+                        long estimatedBuildRows,
+                        boolean spillable) {
+        assert leftKeys.length > 0 && leftKeys.length == rightKeys.length : "invalid join keys";
+        this.leftKeys = leftKeys;
+        this.rightKeys = rightKeys;
+        this.leftTypes = leftTypes;
+        this.rightTypes = rightTypes;
+        this.buildLeft = buildLeft;
+        this.estimatedBuildRows = estimatedBuildRows;
+        this.spillable = spillable;
+    }
+
+    public int[] leftKeys() {
+        return leftKeys;
+    }
+
+    public int[] rightKeys() {
+        return rightKeys;
+    }
+
+    public List<DataType> leftTypes() {
+        return leftTypes;
+    }
+
+    public List<DataType> rightTypes() {
+        return rightTypes;
+    }
+
+    public boolean buildLeft() {
+        return buildLeft;
+    }
+
+    public long estimatedBuildRows() {
+        return estimatedBuildRows;
+    }
+
+    public boolean spillable() {
+        return spillable;
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        leftKeys = readKeys(in);
+        rightKeys = readKeys(in);
+        leftTypes = readTypes(in);
+        rightTypes = readTypes(in);
+        buildLeft = in.readBoolean();
+        estimatedBuildRows = in.readLong();
+        spillable = in.readBoolean();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        writeKeys(leftKeys, out);
+        writeKeys(rightKeys, out);
+        writeTypes(leftTypes, out);
+        writeTypes(rightTypes, out);
+        out.writeBoolean(buildLeft);
+        out.writeLong(estimatedBuildRows);
+        out.writeBoolean(spillable);
+    }
+
+    private static int[] readKeys(StreamInput in) throws IOException {
+        int[] keys = new int[in.readVInt()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = in.readVInt();
+        }
+        return keys;
+    }
+
+    private static void writeKeys(int[] keys, StreamOutput out) throws IOException {
+        out.writeVInt(keys.length);
+        for (int key : keys) {
+            out.writeVInt(key);
+        }
+    }
+
+    private static List<DataType> readTypes(StreamInput in) throws IOException {
+        int size = in.readVInt();
+        List<DataType> types = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            types.add(DataTypes.fromStream(in));
+        }
+        return types;
+    }
+
+    private static void writeTypes(List<DataType> types, StreamOutput out) throws IOException {
+        out.writeVInt(types.size());
+        for (DataType type : types) {
+            DataTypes.toStream(type, out);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("leftKeys", Arrays.toString(leftKeys))
+                .add("rightKeys", Arrays.toString(rightKeys))
+                .add("buildLeft", buildLeft)
+                .add("estimatedBuildRows", estimatedBuildRows)
+                .add("spillable", spillable)
+                .toString();
+    }
+}
@@ -54,6 +54,8 @@ public class NestedLoopPhase extends AbstractProjectionsPhase implements Upstrea
     private MergePhase leftMergePhase;
     private MergePhase rightMergePhase;
     private DistributionInfo distributionInfo = DistributionInfo.DEFAULT_SAME_NODE;
+    @Nullable
+    private HashJoinSpec hashJoinSpec;
 
     public NestedLoopPhase() {}
 
@@ -97,6 +99,18 @@ public class NestedLoopPhase extends AbstractProjectionsPhase implements Upstrea
         return rightMergePhase;
     }
 
+    /**
+     * if set, the phase is executed as hash join instead of a nested loop
+     */
+    @Nullable
+    public HashJoinSpec hashJoinSpec() {
+        return hashJoinSpec;
+    }
+
+    public void hashJoinSpec(@Nullable HashJoinSpec hashJoinSpec) {
+        this.hashJoinSpec = hashJoinSpec;
+    }
+
     @Override
     public <C, R> R accept(ExecutionPhaseVisitor<C, R> visitor, C context) {
         return visitor.visitNestedLoopPhase(this, context);
@@ -124,6 +138,10 @@ public class NestedLoopPhase extends AbstractProjectionsPhase implements Upstrea
             rightMergePhase = MergePhase.FACTORY.create();
             rightMergePhase.readFrom(in);
         }
+        if (in.readBoolean()) {
+            hashJoinSpec = new HashJoinSpec();
+            hashJoinSpec.readFrom(in);
+        }
     }
 
     @Override
@@ -153,6 +171,12 @@ public class NestedLoopPhase extends AbstractProjectionsPhase implements Upstrea
             out.writeBoolean(true);
             rightMergePhase.writeTo(out);
         }
+        if (hashJoinSpec == null) {
+            out.writeBoolean(false);
+        } else {
+            out.writeBoolean(true);
+            hashJoinSpec.writeTo(out);
+        }
     }
 
     @Override
@@ -162,7 +186,8 @@ public class NestedLoopPhase extends AbstractProjectionsPhase implements Upstrea
                 .add("name", name())
                 .add("outputTypes", outputTypes)
                 .add("jobId", jobId())
-                .add("executionNodes", executionNodes);
+                .add("executionNodes", executionNodes)
+                .add("hashJoin", hashJoinSpec);
         return helper.toString();
     }
 
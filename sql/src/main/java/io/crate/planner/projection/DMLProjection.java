@@ -32,6 +32,7 @@ import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 public abstract class DMLProjection extends Projection {
@@ -42,43 +43,77 @@ public abstract class DMLProjection extends Projection {
 
     protected Symbol uidSymbol;
 
+    /**
+     * one boolean symbol per argument set of a bulk operation which is true if the row matches the
+     * where clause of that argument set. Empty if the projection is used for a single argument set.
+     */
+    protected List<Symbol> bulkConditions = ImmutableList.of();
+
     public DMLProjection(Symbol uidSymbol) {
         this.uidSymbol = uidSymbol;
     }
 
+    public DMLProjection(Symbol uidSymbol, List<Symbol> bulkConditions) {
+        this.uidSymbol = uidSymbol;
+        this.bulkConditions = bulkConditions;
+    }
+
     public DMLProjection() {
     }
 
+    /**
+     * a single row count or, for bulk operations, one row count per argument set
+     */
     @Override
     public List<? extends Symbol> outputs() {
-        return OUTPUTS;
+        if (bulkConditions.isEmpty()) {
+            return OUTPUTS;
+        }
+        List<Symbol> outputs = new ArrayList<>(bulkConditions.size());
+        for (int i = 0; i < bulkConditions.size(); i++) {
+            outputs.add(new Value(DataTypes.LONG));
+        }
+        return outputs;
     }
 
     public Symbol uidSymbol() {
         return uidSymbol;
     }
 
+    public List<Symbol> bulkConditions() {
+        return bulkConditions;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         DMLProjection that = (DMLProjection) o;
-        return Objects.equal(uidSymbol, that.uidSymbol);
+        return Objects.equal(uidSymbol, that.uidSymbol) && Objects.equal(bulkConditions, that.bulkConditions);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(super.hashCode(), uidSymbol);
+        return Objects.hashCode(super.hashCode(), uidSymbol, bulkConditions);
     }
 
     @Override
     public void readFrom(StreamInput in) throws IOException {
         uidSymbol = Symbol.fromStream(in);
+        int numBulkConditions = in.readVInt();
+        bulkConditions = new ArrayList<>(numBulkConditions);
+        for (int i = 0; i < numBulkConditions; i++) {
+            bulkConditions.add(Symbol.fromStream(in));
+        }
     }
 
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         Symbol.toStream(uidSymbol, out);
+        out.writeVInt(bulkConditions.size());
+        for (Symbol bulkCondition : bulkConditions) {
+            Symbol.toStream(bulkCondition, out);
+        }
     }
 
     @Override
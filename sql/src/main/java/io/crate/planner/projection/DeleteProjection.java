@@ -24,6 +24,8 @@ package io.crate.planner.projection;
 
 import io.crate.analyze.symbol.Symbol;
 
+import java.util.List;
+
 public class DeleteProjection extends DMLProjection {
 
     public static final ProjectionFactory<DeleteProjection> FACTORY = new ProjectionFactory<DeleteProjection>() {
@@ -37,6 +39,10 @@ public class DeleteProjection extends DMLProjection {
         super(uidSymbol);
     }
 
+    public DeleteProjection(Symbol uidSymbol, List<Symbol> bulkConditions) {
+        super(uidSymbol, bulkConditions);
+    }
+
     public DeleteProjection() {
     }
 
@@ -38,6 +38,7 @@ public class GroupProjection extends Projection {
     List<Symbol> outputs;
 
     private RowGranularity requiredGranularity = RowGranularity.CLUSTER;
+    private Aggregation.Step mode = Aggregation.Step.FINAL;
 
     public static final ProjectionFactory<GroupProjection> FACTORY = new ProjectionFactory<GroupProjection>() {
         @Override
@@ -50,8 +51,13 @@ public class GroupProjection extends Projection {
     }
 
     public GroupProjection(List<Symbol> keys, List<Aggregation> values) {
+        this(keys, values, Aggregation.Step.FINAL);
+    }
+
+    public GroupProjection(List<Symbol> keys, List<Aggregation> values, Aggregation.Step mode) {
         this.keys = keys;
         this.values = values;
+        this.mode = mode;
     }
 
     public List<Symbol> keys() {
@@ -70,6 +76,14 @@ public class GroupProjection extends Projection {
         this.values = values;
     }
 
+    /**
+     * the step the groups are computed to. {@link Aggregation.Step#PARTIAL} if the groups emitted by this projection
+     * are merged with those of other projections later on, even if there are no aggregations.
+     */
+    public Aggregation.Step mode() {
+        return mode;
+    }
+
     @Override
     public ProjectionType projectionType() {
         return ProjectionType.GROUP;
@@ -107,6 +121,7 @@ public class GroupProjection extends Projection {
             values.add((Aggregation) Symbol.fromStream(in));
         }
         requiredGranularity = RowGranularity.fromStream(in);
+        mode = Aggregation.Step.readFrom(in);
     }
 
     @Override
@@ -121,6 +136,7 @@ public class GroupProjection extends Projection {
             Symbol.toStream(symbol, out);
         }
         RowGranularity.toStream(requiredGranularity, out);
+        Aggregation.Step.writeTo(mode, out);
     }
 
     @Override
@@ -132,6 +148,7 @@ public class GroupProjection extends Projection {
 
         if (!keys.equals(that.keys)) return false;
         if (values != null ? !values.equals(that.values) : that.values != null) return false;
+        if (mode != that.mode) return false;
 
         return true;
     }
@@ -28,6 +28,7 @@ import org.elasticsearch.common.io.stream.StreamOutput;
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 
 public class UpdateProjection extends DMLProjection {
 
@@ -38,6 +39,9 @@ public class UpdateProjection extends DMLProjection {
         }
     };
 
+    /**
+     * the assignments or, for bulk operations, the assignments of all argument sets one after another
+     */
     private Symbol[] assignments;
     // All values of this list are expected to be a FQN columnIdent.
     private String[] assignmentsColumns;
@@ -54,6 +58,17 @@ public class UpdateProjection extends DMLProjection {
         this.requiredVersion = requiredVersion;
     }
 
+    public UpdateProjection(Symbol uidSymbol,
+                            List<Symbol> bulkConditions,
+                            String[] assignmentsColumns,
+                            Symbol[] assignments) {
+        super(uidSymbol, bulkConditions);
+        assert assignments.length == bulkConditions.size() * assignmentsColumns.length
+                : "there must be one assignment per column and argument set";
+        this.assignmentsColumns = assignmentsColumns;
+        this.assignments = assignments;
+    }
+
     public UpdateProjection() {
     }
 
@@ -87,6 +102,7 @@ public class UpdateProjection extends DMLProjection {
 
         UpdateProjection that = (UpdateProjection) o;
 
+        if (!super.equals(o)) return false;
         if (!Arrays.equals(assignments, that.assignments)) return false;
         if (!Arrays.equals(assignmentsColumns, that.assignmentsColumns)) return false;
         if (requiredVersion != null ? !requiredVersion.equals(that.requiredVersion) : that.requiredVersion != null)
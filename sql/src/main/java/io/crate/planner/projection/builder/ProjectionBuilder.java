@@ -80,7 +80,7 @@ public class ProjectionBuilder {
 
         InputCreatingVisitor.Context context = new InputCreatingVisitor.Context(inputs);
         ArrayList<Aggregation> aggregations = getAggregations(values, fromStep, toStep, context);
-        return new GroupProjection(inputVisitor.process(keys, context), aggregations);
+        return new GroupProjection(inputVisitor.process(keys, context), aggregations, toStep);
     }
 
     private ArrayList<Aggregation> getAggregations(Collection<Function> functions,
@@ -0,0 +1,159 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.planner.statement;
+
+import com.google.common.base.Predicate;
+import io.crate.analyze.WhereClause;
+import io.crate.analyze.symbol.*;
+import io.crate.metadata.ReferenceInfo;
+import io.crate.metadata.doc.DocSysColumns;
+import io.crate.operation.aggregation.impl.CountAggregation;
+import io.crate.operation.operator.OrOperator;
+import io.crate.operation.predicate.MatchPredicate;
+import io.crate.planner.projection.AggregationProjection;
+import io.crate.types.DataTypes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Helpers to execute the argument sets of a bulk UPDATE or DELETE by query with a single collect phase.
+ *
+ * The collect phase uses the disjunction of all where clauses as query and collects the _uid followed
+ * by one boolean column per argument set which tells whether the document matches the where clause
+ * of that argument set. The DML projection then issues one request item per matching argument set and
+ * returns one row count per argument set.
+ */
+public class BulkByQuery {
+
+    private static final Predicate<Symbol> NOT_EVALUABLE_PER_ROW = new Predicate<Symbol>() {
+        @Override
+        public boolean apply(Symbol input) {
+            if (input instanceof Function) {
+                return ((Function) input).info().ident().name().equals(MatchPredicate.NAME);
+            }
+            if (input instanceof Reference) {
+                ReferenceInfo info = ((Reference) input).info();
+                // the lucene query and the evaluation of the value differ for analyzed and array columns
+                return info.indexType() == ReferenceInfo.IndexType.ANALYZED
+                       || DataTypes.isCollectionType(info.type())
+                       || info.ident().columnIdent().equals(DocSysColumns.VERSION);
+            }
+            return false;
+        }
+    };
+
+    private BulkByQuery() {
+    }
+
+    /**
+     * @return true if the where clauses can be merged into a single collect phase.
+     *         This is the case if there are several of them, all run on the same partitions
+     *         and their queries can be evaluated for each collected document.
+     */
+    public static boolean canMerge(List<WhereClause> whereClauses) {
+        if (whereClauses.size() < 2) {
+            return false;
+        }
+        List<String> partitions = whereClauses.get(0).partitions();
+        for (WhereClause whereClause : whereClauses) {
+            if (whereClause.noMatch()
+                || whereClause.docKeys().isPresent()
+                || !whereClause.partitions().equals(partitions)) {
+                return false;
+            }
+            if (whereClause.hasQuery() && SymbolVisitors.any(NOT_EVALUABLE_PER_ROW, whereClause.query())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return a where clause which matches every document that is matched by one of the whereClauses
+     */
+    public static WhereClause merge(List<WhereClause> whereClauses) {
+        assert canMerge(whereClauses) : "whereClauses can't be merged";
+        List<String> partitions = new ArrayList<>(whereClauses.get(0).partitions());
+        List<Symbol> queries = new ArrayList<>(whereClauses.size());
+        for (WhereClause whereClause : whereClauses) {
+            if (!whereClause.hasQuery()) {
+                return new WhereClause(null, null, partitions);
+            }
+            queries.add(whereClause.query());
+        }
+        return new WhereClause(or(queries, 0, queries.size()), null, partitions);
+    }
+
+    /**
+     * build a balanced tree of OR functions so that a large number of argument sets doesn't result in
+     * a deeply nested query
+     */
+    private static Symbol or(List<Symbol> queries, int from, int to) {
+        if (to - from == 1) {
+            return queries.get(from);
+        }
+        int mid = (from + to) >>> 1;
+        return new Function(OrOperator.INFO, Arrays.asList(or(queries, from, mid), or(queries, mid, to)));
+    }
+
+    /**
+     * @return the symbols to collect: the uidReference followed by the query of each where clause
+     */
+    public static List<Symbol> toCollect(Reference uidReference, List<WhereClause> whereClauses) {
+        List<Symbol> toCollect = new ArrayList<>(whereClauses.size() + 1);
+        toCollect.add(uidReference);
+        for (WhereClause whereClause : whereClauses) {
+            toCollect.add(whereClause.hasQuery() ? whereClause.query() : Literal.BOOLEAN_TRUE);
+        }
+        return toCollect;
+    }
+
+    /**
+     * @return the inputs of the collected queries, see {@link #toCollect(Reference, List)}
+     */
+    public static List<Symbol> conditions(int numArgumentSets) {
+        List<Symbol> conditions = new ArrayList<>(numArgumentSets);
+        for (int i = 0; i < numArgumentSets; i++) {
+            conditions.add(new InputColumn(i + 1, DataTypes.BOOLEAN));
+        }
+        return conditions;
+    }
+
+    /**
+     * @return a projection which sums up the row counts of each argument set
+     */
+    public static AggregationProjection rowCountsProjection(int numArgumentSets) {
+        List<Aggregation> aggregations = new ArrayList<>(numArgumentSets);
+        for (int i = 0; i < numArgumentSets; i++) {
+            aggregations.add(Aggregation.finalAggregation(
+                    CountAggregation.COUNT_STAR_FUNCTION,
+                    Collections.<Symbol>singletonList(new InputColumn(i, DataTypes.LONG)),
+                    Aggregation.Step.PARTIAL
+            ));
+        }
+        return new AggregationProjection(aggregations);
+    }
+}
@@ -173,7 +173,8 @@ public class CopyStatementPlanner {
                 toCollect,
                 projections,
                 analysis.settings().get("compression", null),
-                analysis.settings().getAsBoolean("shared", null)
+                analysis.settings().getAsBoolean("shared", null),
+                analysis.fileFormat()
         );
 
         return new CollectAndMerge(collectPhase, MergePhase.localMerge(
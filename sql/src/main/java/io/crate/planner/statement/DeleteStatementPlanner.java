@@ -90,6 +90,7 @@ public class DeleteStatementPlanner {
                                Planner.Context context) {
 
         List<Plan> planNodes = new ArrayList<>();
+        List<WhereClause> byQueryWhereClauses = new ArrayList<>();
         IterablePlan iterablePlan = new IterablePlan(context.jobId());
         for (WhereClause whereClause : whereClauses) {
             String[] indices = Planner.indices(tableInfo, whereClause);
@@ -97,10 +98,17 @@ public class DeleteStatementPlanner {
                 if (!whereClause.hasQuery() && tableInfo.isPartitioned()) {
                     iterablePlan.add(new ESDeletePartitionNode(indices));
                 } else {
-                    planNodes.add(collectWithDeleteProjection(tableInfo, whereClause, context));
+                    byQueryWhereClauses.add(whereClause);
                 }
             }
         }
+        if (BulkByQuery.canMerge(byQueryWhereClauses)) {
+            planNodes.add(bulkCollectWithDeleteProjection(tableInfo, byQueryWhereClauses, context));
+        } else {
+            for (WhereClause whereClause : byQueryWhereClauses) {
+                planNodes.add(collectWithDeleteProjection(tableInfo, whereClause, context));
+            }
+        }
         if (!iterablePlan.isEmpty()) {
             planNodes.add(iterablePlan);
         }
@@ -116,14 +124,48 @@ public class DeleteStatementPlanner {
                                              WhereClause whereClause,
                                              Planner.Context plannerContext) {
         // for delete, we always need to collect the `_uid`
-        Reference uidReference = new Reference(
+        DeleteProjection deleteProjection = new DeleteProjection(
+                new InputColumn(0, DataTypes.STRING));
+        return collectAndMerge(
+                tableInfo,
+                whereClause,
+                ImmutableList.<Symbol>of(uidReference(tableInfo)),
+                deleteProjection,
+                CountAggregation.PARTIAL_COUNT_AGGREGATION_PROJECTION,
+                plannerContext);
+    }
+
+    /**
+     * deletes the documents of all argument sets of a bulk request with a single collect phase
+     */
+    private Plan bulkCollectWithDeleteProjection(TableInfo tableInfo,
+                                                 List<WhereClause> whereClauses,
+                                                 Planner.Context plannerContext) {
+        DeleteProjection deleteProjection = new DeleteProjection(
+                new InputColumn(0, DataTypes.STRING),
+                BulkByQuery.conditions(whereClauses.size()));
+        return collectAndMerge(
+                tableInfo,
+                BulkByQuery.merge(whereClauses),
+                BulkByQuery.toCollect(uidReference(tableInfo), whereClauses),
+                deleteProjection,
+                BulkByQuery.rowCountsProjection(whereClauses.size()),
+                plannerContext);
+    }
+
+    private static Reference uidReference(TableInfo tableInfo) {
+        return new Reference(
                 new ReferenceInfo(
                         new ReferenceIdent(tableInfo.ident(), "_uid"),
                         RowGranularity.DOC, DataTypes.STRING));
+    }
 
-        DeleteProjection deleteProjection = new DeleteProjection(
-                new InputColumn(0, DataTypes.STRING));
-
+    private static Plan collectAndMerge(TableInfo tableInfo,
+                                        WhereClause whereClause,
+                                        List<Symbol> toCollect,
+                                        DeleteProjection deleteProjection,
+                                        Projection mergeProjection,
+                                        Planner.Context plannerContext) {
         Routing routing = plannerContext.allocateRouting(tableInfo, whereClause, Preference.PRIMARY.type());
         CollectPhase collectPhase = new CollectPhase(
                 plannerContext.jobId(),
@@ -131,7 +173,7 @@ public class DeleteStatementPlanner {
                 "collect",
                 routing,
                 tableInfo.rowGranularity(),
-                ImmutableList.<Symbol>of(uidReference),
+                toCollect,
                 ImmutableList.<Projection>of(deleteProjection),
                 whereClause,
                 DistributionInfo.DEFAULT_BROADCAST
@@ -139,7 +181,7 @@ public class DeleteStatementPlanner {
         MergePhase mergeNode = MergePhase.localMerge(
                 plannerContext.jobId(),
                 plannerContext.nextExecutionPhaseId(),
-                ImmutableList.<Projection>of(CountAggregation.PARTIAL_COUNT_AGGREGATION_PROJECTION),
+                ImmutableList.of(mergeProjection),
                 collectPhase.executionNodes().size(),
                 collectPhase.outputTypes()
         );
@@ -23,6 +23,7 @@ package io.crate.plugin;
 
 import io.crate.action.sql.DDLStatementDispatcher;
 import io.crate.metadata.FulltextAnalyzerResolver;
+import io.crate.operation.TempFiles;
 import io.crate.planner.TableStatsService;
 import io.crate.service.SQLService;
 import org.elasticsearch.common.inject.AbstractModule;
@@ -36,6 +37,8 @@ public class SQLModule extends AbstractModule {
         bind(SQLService.class).asEagerSingleton();
         bind(DDLStatementDispatcher.class).asEagerSingleton();
         bind(FulltextAnalyzerResolver.class).asEagerSingleton();
+        // deletes the temporary files left over from a previous run of the node
+        bind(TempFiles.class).asEagerSingleton();
 
         bind(TimeValue.class).annotatedWith(TableStatsService.StatsUpdateInterval.class).toInstance(TimeValue.timeValueSeconds(60));
     }
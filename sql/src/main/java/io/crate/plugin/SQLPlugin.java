@@ -56,6 +56,7 @@ import io.crate.operation.reference.sys.shard.SysShardExpressionModule;
 import io.crate.operation.reference.sys.shard.blob.BlobShardExpressionModule;
 import io.crate.operation.scalar.ScalarFunctionModule;
 import io.crate.rest.action.RestSQLAction;
+import io.crate.rest.action.RestSQLCursorAction;
 import io.crate.service.SQLService;
 import org.elasticsearch.action.ActionModule;
 import org.elasticsearch.action.bulk.BulkModule;
@@ -164,6 +165,7 @@ public class SQLPlugin extends AbstractPlugin {
 
     public void onModule(RestModule restModule) {
         restModule.addRestAction(RestSQLAction.class);
+        restModule.addRestAction(RestSQLCursorAction.class);
     }
 
     public void onModule(ClusterDynamicSettingsModule clusterDynamicSettingsModule) {
@@ -42,6 +42,7 @@ public class RestSQLAction extends BaseRestHandler {
 
     private static final String REQUEST_HEADER_USER = "User";
     private static final String SCHEMA_HEADER = "Default-Schema";
+    private static final String ACCEPT_HEADER = "Accept";
 
     @Inject
     public RestSQLAction(Settings settings, Client client, RestController controller) {
@@ -108,6 +109,7 @@ public class RestSQLAction extends BaseRestHandler {
         requestBuilder.stmt(context.stmt());
         requestBuilder.args(context.args());
         requestBuilder.includeTypesOnResponse(request.paramAsBoolean("types", false));
+        requestBuilder.fetchSize(request.paramAsInt("fetch_size", 0));
         addFlags(requestBuilder, request);
         requestBuilder.setSchema(request.header(SCHEMA_HEADER));
         requestBuilder.execute(RestSQLAction.<SQLResponse>newListener(request, channel));
@@ -123,7 +125,7 @@ public class RestSQLAction extends BaseRestHandler {
         requestBuilder.execute(RestSQLAction.<SQLBulkResponse>newListener(request, channel));
     }
 
-    private static <TResponse extends SQLBaseResponse> ActionListener<TResponse> newListener(
+    static <TResponse extends SQLBaseResponse> ActionListener<TResponse> newListener(
             RestRequest request, RestChannel channel) {
         return new SQLResponseListener<>(request, channel);
     }
@@ -142,6 +144,11 @@ public class RestSQLAction extends BaseRestHandler {
         @Override
         public void onResponse(TResponse tResponse) {
             try {
+                if (tResponse instanceof SQLResponse && acceptsBinary(request)) {
+                    channel.sendResponse(new BytesRestResponse(RestStatus.OK, SQLBinaryResponse.CONTENT_TYPE,
+                            SQLBinaryResponse.encode((SQLResponse) tResponse)));
+                    return;
+                }
                 XContentBuilder builder = channel.newBuilder();
                 tResponse.toXContent(builder, request);
                 channel.sendResponse(new BytesRestResponse(RestStatus.OK, builder));
@@ -150,6 +157,11 @@ public class RestSQLAction extends BaseRestHandler {
             }
         }
 
+        private static boolean acceptsBinary(RestRequest request) {
+            String accept = request.header(ACCEPT_HEADER);
+            return accept != null && accept.contains(SQLBinaryResponse.CONTENT_TYPE);
+        }
+
         @Override
         public void onFailure(Throwable e) {
             try {
@@ -0,0 +1,99 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.rest.action;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import io.crate.action.sql.Cursors;
+import io.crate.action.sql.SQLActionException;
+import io.crate.action.sql.SQLResponse;
+import io.crate.exceptions.CursorUnknownException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.rest.*;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Fetches the next page of a cursor opened by a <code>/_sql</code> request with a <code>fetch_size</code>
+ * or closes it.
+ *
+ * Cursors are held by the node which executed the statement, so they have to be fetched from the same node.
+ */
+public class RestSQLCursorAction extends BaseRestHandler {
+
+    private static final String CURSOR_PARAM = "cursor";
+    private static final int CURSOR_UNKNOWN_ERROR_CODE = 4049;
+
+    private final Cursors cursors;
+
+    @Inject
+    public RestSQLCursorAction(Settings settings, Client client, RestController controller, Cursors cursors) {
+        super(settings, controller, client);
+        this.cursors = cursors;
+
+        controller.registerHandler(RestRequest.Method.GET, "/_sql/cursor/{" + CURSOR_PARAM + "}", this);
+        controller.registerHandler(RestRequest.Method.DELETE, "/_sql/cursor/{" + CURSOR_PARAM + "}", this);
+    }
+
+    @Override
+    public void handleRequest(final RestRequest request, final RestChannel channel, Client client) throws Exception {
+        String cursor = request.param(CURSOR_PARAM);
+        try {
+            if (request.method() == RestRequest.Method.DELETE) {
+                cursors.close(cursor);
+                XContentBuilder builder = channel.newBuilder();
+                builder.startObject().endObject();
+                channel.sendResponse(new BytesRestResponse(RestStatus.OK, builder));
+            } else {
+                final ActionListener<SQLResponse> listener = RestSQLAction.newListener(request, channel);
+                Futures.addCallback(cursors.fetch(cursor), new FutureCallback<SQLResponse>() {
+                    @Override
+                    public void onSuccess(@Nullable SQLResponse result) {
+                        listener.onResponse(result);
+                    }
+
+                    @Override
+                    public void onFailure(@Nonnull Throwable t) {
+                        if (t instanceof CursorUnknownException) {
+                            sendCursorUnknown(channel, (CursorUnknownException) t);
+                        } else {
+                            listener.onFailure(t);
+                        }
+                    }
+                });
+            }
+        } catch (CursorUnknownException e) {
+            sendCursorUnknown(channel, e);
+        }
+    }
+
+    private static void sendCursorUnknown(RestChannel channel, CursorUnknownException e) {
+        channel.sendResponse(new CrateThrowableRestResponse(channel,
+                new SQLActionException(e.getMessage(), CURSOR_UNKNOWN_ERROR_CODE, RestStatus.NOT_FOUND, null)));
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.action.sql;
+
+import io.crate.analyze.Analysis;
+import io.crate.analyze.AnalysisMetaData;
+import io.crate.analyze.BaseAnalyzerTest;
+import io.crate.analyze.ParameterContext;
+import io.crate.analyze.SelectAnalyzedStatement;
+import io.crate.analyze.relations.QueriedDocTable;
+import io.crate.analyze.relations.QueriedRelation;
+import io.crate.metadata.MetaDataModule;
+import io.crate.metadata.Schemas;
+import io.crate.metadata.sys.MetaDataSysModule;
+import io.crate.metadata.table.SchemaInfo;
+import io.crate.operation.aggregation.impl.AggregationImplModule;
+import io.crate.operation.operator.OperatorModule;
+import io.crate.operation.predicate.PredicateModule;
+import io.crate.operation.scalar.ScalarFunctionModule;
+import io.crate.sql.parser.SqlParser;
+import io.crate.sql.tree.Statement;
+import io.crate.testing.MockedClusterServiceModule;
+import org.elasticsearch.common.inject.Module;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static io.crate.testing.TestingHelpers.isDocKey;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AnalysisCacheTest extends BaseAnalyzerTest {
+
+    private static final String LOOKUP = "select name from users where id = 1";
+
+    static class TestMetaDataModule extends MetaDataModule {
+        @Override
+        protected void bindSchemas() {
+            super.bindSchemas();
+            SchemaInfo schemaInfo = mock(SchemaInfo.class);
+            when(schemaInfo.getTableInfo(USER_TABLE_IDENT.name())).thenReturn(USER_TABLE_INFO);
+            schemaBinder.addBinding(Schemas.DEFAULT_SCHEMA_NAME).toInstance(schemaInfo);
+        }
+    }
+
+    @Override
+    protected List<Module> getModules() {
+        List<Module> modules = super.getModules();
+        modules.addAll(Arrays.<Module>asList(
+                new MockedClusterServiceModule(),
+                new TestMetaDataModule(),
+                new MetaDataSysModule(),
+                new OperatorModule(),
+                new AggregationImplModule(),
+                new PredicateModule(),
+                new ScalarFunctionModule()
+        ));
+        return modules;
+    }
+
+    private boolean isReusable(String stmt, Object... args) {
+        Statement statement = SqlParser.createStatement(stmt);
+        return AnalysisCache.isReusable(statement, analysis(stmt, args));
+    }
+
+    @Test
+    public void testStatementsPlannedWithoutModifyingTheAnalysisAreReusable() throws Exception {
+        assertThat(isReusable(LOOKUP), is(true));
+        assertThat(isReusable("select name from users where id in (1, 2) order by name"), is(true));
+        assertThat(isReusable("select count(*) from users where name = 'Arthur'"), is(true));
+        assertThat(isReusable("select name, count(*) from users group by name"), is(true));
+        assertThat(isReusable("select name from users where 1 = 2"), is(true));
+    }
+
+    @Test
+    public void testOtherStatementsAreNotReusable() throws Exception {
+        // planned as query then fetch, which modifies the analyzed relation
+        assertThat(isReusable("select name from users where name = 'Arthur'"), is(false));
+        assertThat(isReusable("select name from users where id = 1 and _version = 2"), is(false));
+        assertThat(isReusable("delete from users where id = 1"), is(false));
+    }
+
+    @Test
+    public void testStatementsWithParametersInTheWhereClauseAreReusable() throws Exception {
+        assertThat(isReusable("select name from users where id = ?", 1L), is(true));
+        assertThat(isReusable("select count(*) from users where name = ?", "Arthur"), is(true));
+        assertThat(isReusable("select u.name from users u where u.id = $1", 1L), is(true));
+    }
+
+    @Test
+    public void testStatementsWithParametersOutsideOfTheWhereClauseAreNotReusable() throws Exception {
+        assertThat(isReusable("select name, ? from users where id = 1", "foo"), is(false));
+        assertThat(isReusable("select count(*) from users where id = ? limit ?", 1L, 10), is(false));
+        assertThat(isReusable("select name, count(*) from users where id = 1 group by name having count(*) > ?", 1L),
+                is(false));
+    }
+
+    @Test
+    public void testTimeDependentStatementsAreNotReusable() throws Exception {
+        assertThat(isReusable("select current_timestamp from users where id = 1"), is(false));
+        assertThat(isReusable("select random() from users where id = 1"), is(false));
+        assertThat(isReusable("select count(*) from users where random() > 0.5"), is(false));
+    }
+
+    @Test
+    public void testEntriesAreKeyedBySchemaAndMetaDataVersion() throws Exception {
+        AnalysisCache cache = new AnalysisCache(injector.getInstance(AnalysisMetaData.class));
+        Analysis analysis = analysis(LOOKUP);
+        cache.put(LOOKUP, SqlParser.createStatement(LOOKUP), analysis, 1L);
+        assertThat(cache.size(), is(1L));
+
+        ParameterContext noArgs = new ParameterContext(
+                new Object[0], new Object[0][], Schemas.DEFAULT_SCHEMA_NAME);
+        assertThat(cache.get(LOOKUP, noArgs, 1L), sameInstance(analysis));
+        assertThat(cache.get(LOOKUP, noArgs, 2L), nullValue());
+
+        ParameterContext otherSchema = new ParameterContext(new Object[0], new Object[0][], "foo");
+        assertThat(cache.get(LOOKUP, otherSchema, 1L), nullValue());
+        ParameterContext bulkArgs = new ParameterContext(
+                new Object[0], new Object[][] { new Object[] { 1L } }, Schemas.DEFAULT_SCHEMA_NAME);
+        assertThat(cache.get(LOOKUP, bulkArgs, 1L), nullValue());
+    }
+
+    @Test
+    public void testParametersAreBoundToTheCachedAnalysis() throws Exception {
+        String stmt = "select name from users where id = ?";
+        AnalysisCache cache = new AnalysisCache(injector.getInstance(AnalysisMetaData.class));
+        Analysis analysis = analysis(stmt, new Object[] { 1L });
+        cache.put(stmt, SqlParser.createStatement(stmt), analysis, 1L);
+
+        ParameterContext args = new ParameterContext(
+                new Object[] { 2L }, new Object[0][], Schemas.DEFAULT_SCHEMA_NAME);
+        Analysis bound = cache.get(stmt, args, 1L);
+        assertThat(bound, not(sameInstance(analysis)));
+        assertThat(bound.parameterContext(), sameInstance(args));
+
+        QueriedDocTable cached = (QueriedDocTable) analysis.rootRelation();
+        QueriedDocTable relation = (QueriedDocTable) bound.rootRelation();
+        assertThat(((SelectAnalyzedStatement) bound.analyzedStatement()).relation(),
+                sameInstance((QueriedRelation) relation));
+        assertThat(relation.querySpec().outputs(), is(cached.querySpec().outputs()));
+        assertThat(relation.fields().size(), is(1));
+        assertThat(relation.querySpec().where().docKeys().get(), contains(isDocKey(2L)));
+        assertThat(cached.querySpec().where().docKeys().get(), contains(isDocKey(1L)));
+    }
+
+    @Test
+    public void testBoundAnalysisWhichIsNotPlannedReadOnlyIsNotReturned() throws Exception {
+        String stmt = "select name from users where ? and name = 'Arthur'";
+        AnalysisCache cache = new AnalysisCache(injector.getInstance(AnalysisMetaData.class));
+        // planned without matches
+        Analysis analysis = analysis(stmt, new Object[] { false });
+        cache.put(stmt, SqlParser.createStatement(stmt), analysis, 1L);
+        assertThat(cache.size(), is(1L));
+
+        // planned as query then fetch
+        ParameterContext args = new ParameterContext(
+                new Object[] { true }, new Object[0][], Schemas.DEFAULT_SCHEMA_NAME);
+        assertThat(cache.get(stmt, args, 1L), nullValue());
+    }
+}
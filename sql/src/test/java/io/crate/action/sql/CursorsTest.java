@@ -0,0 +1,162 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.action.sql;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.crate.action.job.TransportKeepAliveAction;
+import io.crate.core.collections.Row1;
+import io.crate.executor.TaskResult;
+import io.crate.executor.transport.kill.KillJobsRequest;
+import io.crate.executor.transport.kill.TransportKillJobsNodeAction;
+import io.crate.jobs.KeepAliveTimers;
+import io.crate.operation.PagingResultRowDownstream;
+import io.crate.operation.RowUpstream;
+import io.crate.operation.collect.StatsTables;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.elasticsearch.test.ElasticsearchTestCase.assertBusy;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.*;
+
+public class CursorsTest extends CrateUnitTest {
+
+    private ScheduledExecutorService scheduledExecutorService;
+    private KeepAliveTimers keepAliveTimers;
+    private TransportKillJobsNodeAction killJobsNodeAction;
+    private StatsTables statsTables;
+
+    @Before
+    public void prepare() throws Exception {
+        scheduledExecutorService = Executors.newScheduledThreadPool(1);
+
+        ThreadPool threadPool = mock(ThreadPool.class);
+        when(threadPool.estimatedTimeInMillis()).thenAnswer(new Answer<Long>() {
+            @Override
+            public Long answer(InvocationOnMock invocation) throws Throwable {
+                return System.currentTimeMillis();
+            }
+        });
+        when(threadPool.scheduleWithFixedDelay(any(Runnable.class), any(TimeValue.class))).thenAnswer(new Answer<ScheduledFuture<?>>() {
+            @Override
+            public ScheduledFuture<?> answer(InvocationOnMock invocation) throws Throwable {
+                Runnable runnable = (Runnable) invocation.getArguments()[0];
+                TimeValue interval = (TimeValue) invocation.getArguments()[1];
+                return scheduledExecutorService.scheduleWithFixedDelay(
+                        runnable, interval.getMillis(), interval.getMillis(), TimeUnit.MILLISECONDS);
+            }
+        });
+        keepAliveTimers = new KeepAliveTimers(threadPool, TimeValue.timeValueMillis(0), mock(TransportKeepAliveAction.class));
+        killJobsNodeAction = mock(TransportKillJobsNodeAction.class);
+        statsTables = mock(StatsTables.class);
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        scheduledExecutorService.shutdownNow();
+    }
+
+    private Cursors cursors(String cursorKeepAlive) {
+        return new Cursors(
+                ImmutableSettings.builder().put(Cursors.KEEP_ALIVE_SETTING, cursorKeepAlive).build(),
+                keepAliveTimers,
+                TimeValue.timeValueMillis(0),
+                killJobsNodeAction,
+                statsTables);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCursorExpiresWithDisabledJobKeepAlive() throws Exception {
+        final Cursors cursors = cursors("50ms");
+        UUID jobId = UUID.randomUUID();
+        cursors.open(jobId,
+                Collections.singletonList("n1"),
+                mock(PagingResultRowDownstream.class),
+                new String[]{"x"},
+                new DataType[]{DataTypes.INTEGER},
+                false);
+        assertThat(cursors.size(), is(1));
+
+        assertBusy(new Runnable() {
+            @Override
+            public void run() {
+                assertThat(cursors.size(), is(0));
+            }
+        });
+        verify(killJobsNodeAction).executeKillOnAllNodes(any(KillJobsRequest.class), any(ActionListener.class));
+        verify(statsTables).jobFinished(jobId, "cursor expired");
+    }
+
+    @Test
+    public void testConcurrentFetchesAreServedOneAfterAnother() throws Exception {
+        Cursors cursors = cursors("1m");
+        PagingResultRowDownstream result = new PagingResultRowDownstream(SettableFuture.<TaskResult>create(), 1);
+        result.setUpstream(mock(RowUpstream.class));
+        result.setNextRow(new Row1(1));
+
+        String id = cursors.open(UUID.randomUUID(),
+                Collections.<String>emptyList(),
+                result,
+                new String[]{"x"},
+                new DataType[]{DataTypes.INTEGER},
+                false);
+        ListenableFuture<SQLResponse> first = cursors.fetch(id);
+        ListenableFuture<SQLResponse> second = cursors.fetch(id);
+        assertThat(first.isDone(), is(false));
+        assertThat(second.isDone(), is(false));
+
+        result.setNextRow(new Row1(2));
+        assertThat((Integer) first.get().rows()[0][0], is(2));
+        assertThat(second.isDone(), is(false));
+
+        result.setNextRow(new Row1(3));
+        result.finish();
+        assertThat((Integer) second.get().rows()[0][0], is(3));
+    }
+
+    @Test
+    public void testNonPositiveKeepAliveIsRejected() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage(Cursors.KEEP_ALIVE_SETTING);
+        cursors("0ms");
+    }
+}
@@ -80,4 +80,20 @@ public class SQLRequestTest extends CrateUnitTest {
         assertThat(inRequest.stmt(), is("select * from users"));
         assertThat(inRequest.getDefaultSchema(), is("foo"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testFetchSizeIsSerializedAsHeader() throws Exception {
+        SQLRequest request = new SQLRequest("select * from users");
+        assertThat(request.fetchSize(), is(0));
+        request.fetchSize(100);
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        request.writeTo(out);
+
+        BytesStreamInput in = new BytesStreamInput(out.bytes());
+        SQLRequest inRequest = new SQLRequest();
+        inRequest.readFrom(in);
+
+        assertThat(inRequest.fetchSize(), is(100));
+    }
+}
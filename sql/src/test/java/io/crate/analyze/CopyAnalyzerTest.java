@@ -35,6 +35,7 @@ import io.crate.metadata.Schemas;
 import io.crate.metadata.sys.MetaDataSysModule;
 import io.crate.metadata.table.SchemaInfo;
 import io.crate.metadata.table.TableInfo;
+import io.crate.operation.collect.files.FileReadingCollector;
 import io.crate.operation.operator.EqOperator;
 import io.crate.operation.operator.OperatorModule;
 import io.crate.planner.projection.WriterProjection;
@@ -95,6 +96,22 @@ public class CopyAnalyzerTest extends BaseAnalyzerTest {
         assertThat(analysis.uri(), isLiteral("/some/distant/file.ext"));
     }
 
+    @Test
+    public void testCopyFromWithFormat() throws Exception {
+        CopyFromAnalyzedStatement analysis = (CopyFromAnalyzedStatement) analyze("copy users from '/some/distant/file.ext'");
+        assertThat(analysis.fileFormat(), is(FileReadingCollector.FileFormat.JSON));
+
+        analysis = (CopyFromAnalyzedStatement) analyze("copy users from '/some/distant/file.csv' with (format='csv')");
+        assertThat(analysis.fileFormat(), is(FileReadingCollector.FileFormat.CSV));
+    }
+
+    @Test
+    public void testCopyFromWithInvalidFormat() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("Invalid format 'xml' for COPY FROM, supported formats are: json, csv");
+        analyze("copy users from '/some/distant/file.xml' with (format='xml')");
+    }
+
     @Test
     public void testCopyFromExistingPartitionedTable() throws Exception {
         CopyFromAnalyzedStatement analysis = (CopyFromAnalyzedStatement)analyze("copy parted from '/some/distant/file.ext'");
@@ -29,6 +29,7 @@ import io.crate.core.collections.TreeMapBuilder;
 import io.crate.metadata.Routing;
 import io.crate.metadata.RowGranularity;
 import io.crate.operation.NodeOperation;
+import io.crate.operation.NodeOperationTree;
 import io.crate.planner.distribution.DistributionInfo;
 import io.crate.planner.node.ExecutionPhase;
 import io.crate.planner.node.NodeOperationGrouper;
@@ -36,6 +37,7 @@ import io.crate.planner.node.dql.CollectPhase;
 import io.crate.planner.node.dql.MergePhase;
 import io.crate.planner.projection.Projection;
 import io.crate.types.DataType;
+import io.crate.types.DataTypes;
 import org.hamcrest.Matchers;
 import org.junit.Test;
 
@@ -93,4 +95,23 @@ public class ExecutionPhasesTaskTest {
         assertThat(groupByServer.containsKey("node4"), is(true));
         assertThat(groupByServer.get("node4"), Matchers.containsInAnyOrder(n2));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testBulkTaskHasOneResultPerRowCountOfTheMergePhases() throws Exception {
+        UUID jobId = UUID.randomUUID();
+        MergePhase bulkMerge = new MergePhase(jobId, 1, "bulkMerge", 1,
+                ImmutableList.<DataType>of(DataTypes.LONG, DataTypes.LONG, DataTypes.LONG),
+                ImmutableList.<Projection>of(), DistributionInfo.DEFAULT_BROADCAST);
+        MergePhase merge = new MergePhase(jobId, 2, "merge", 1,
+                ImmutableList.<DataType>of(DataTypes.LONG),
+                ImmutableList.<Projection>of(), DistributionInfo.DEFAULT_BROADCAST);
+
+        ExecutionPhasesTask task = new ExecutionPhasesTask(jobId, null, null, null, null, null,
+                ImmutableList.of(
+                        new NodeOperationTree(ImmutableList.<NodeOperation>of(), bulkMerge),
+                        new NodeOperationTree(ImmutableList.<NodeOperation>of(), merge)),
+                ExecutionPhasesTask.OperationType.BULK);
+
+        assertThat(task.result().size(), is(4));
+    }
+}
@@ -31,14 +31,18 @@ import io.crate.metadata.TableIdent;
 import io.crate.test.integration.CrateUnitTest;
 import io.crate.types.DataTypes;
 import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.io.stream.BytesStreamInput;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.lucene.uid.Versions;
+import org.elasticsearch.index.VersionType;
 import org.elasticsearch.index.shard.ShardId;
 import org.junit.Test;
 
 import java.util.UUID;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
 
 public class ShardUpsertRequestTest extends CrateUnitTest {
 
@@ -84,4 +88,38 @@ public class ShardUpsertRequestTest extends CrateUnitTest {
         assertThat(request, equalTo(request2));
     }
 
+    @Test
+    public void testStreamingOfIndexedItem() throws Exception {
+        ShardId shardId = new ShardId("test", 1);
+        ShardUpsertRequest request = new ShardUpsertRequest(
+                shardId,
+                null,
+                new Reference[]{idRef, nameRef},
+                null,
+                UUID.randomUUID());
+        ShardUpsertRequest.Item item = new ShardUpsertRequest.Item(
+                "99",
+                null,
+                new Object[]{99, new BytesRef("Marvin")},
+                null);
+        // set by the primary shard
+        item.indexedOnPrimary(new BytesArray("{\"id\": 99, \"name\": \"Marvin\"}"), "99", 3L, VersionType.EXTERNAL);
+        request.add(1, item);
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        request.writeTo(out);
+
+        BytesStreamInput in = new BytesStreamInput(out.bytes());
+        ShardUpsertRequest request2 = new ShardUpsertRequest();
+        request2.readFrom(in);
+
+        assertThat(request, equalTo(request2));
+        ShardUpsertRequest.Item item2 = request2.items().get(0);
+        assertThat(item2.source().toUtf8(), is("{\"id\": 99, \"name\": \"Marvin\"}"));
+        assertThat(item2.routing(), is("99"));
+        assertThat(item2.replicaVersion(), is(3L));
+        assertThat(item2.replicaVersionType(), is(VersionType.EXTERNAL));
+        // the version requested by the user isn't changed
+        assertThat(item2.version(), is(Versions.MATCH_ANY));
+    }
 }
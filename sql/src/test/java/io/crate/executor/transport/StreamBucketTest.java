@@ -0,0 +1,150 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.executor.transport;
+
+import io.crate.Streamer;
+import io.crate.core.collections.Bucket;
+import io.crate.core.collections.Row;
+import io.crate.core.collections.RowN;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.Version;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.junit.Test;
+
+import java.util.Iterator;
+
+import static io.crate.testing.TestingHelpers.isRow;
+import static org.hamcrest.Matchers.is;
+
+public class StreamBucketTest extends CrateUnitTest {
+
+    private static final Streamer<?>[] STREAMERS = new Streamer[]{
+            DataTypes.INTEGER.streamer(), DataTypes.STRING.streamer()};
+
+    private StreamBucket createBucket() throws Exception {
+        StreamBucket.Builder builder = new StreamBucket.Builder(STREAMERS);
+        builder.add(new RowN(new Object[]{1, new BytesRef("foo")}));
+        builder.add(new RowN(new Object[]{2, null}));
+        builder.add(new RowN(new Object[]{3, new BytesRef("bar")}));
+        return builder.build();
+    }
+
+    private StreamBucket stream(Bucket bucket) throws Exception {
+        return stream(bucket, Version.CURRENT);
+    }
+
+    private StreamBucket stream(Bucket bucket, Version version) throws Exception {
+        BytesStreamOutput out = new BytesStreamOutput();
+        out.setVersion(version);
+        StreamBucket.writeBucket(out, STREAMERS, bucket);
+        StreamBucket streamed = new StreamBucket(STREAMERS);
+        BytesStreamInput in = new BytesStreamInput(out.bytes());
+        in.setVersion(version);
+        streamed.readFrom(in);
+        return streamed;
+    }
+
+    @Test
+    public void testStreaming() throws Exception {
+        StreamBucket bucket = stream(createBucket());
+
+        assertThat(bucket.size(), is(3));
+        Iterator<Row> it = bucket.iterator();
+        assertThat(it.next(), isRow(1, "foo"));
+        assertThat(it.next(), isRow(2, null));
+        assertThat(it.next(), isRow(3, "bar"));
+        assertThat(it.hasNext(), is(false));
+    }
+
+    @Test
+    public void testStreamingOfReceivedBucket() throws Exception {
+        StreamBucket bucket = stream(stream(createBucket()));
+
+        Iterator<Row> it = bucket.iterator();
+        assertThat(it.next(), isRow(1, "foo"));
+        assertThat(it.next(), isRow(2, null));
+        assertThat(it.next(), isRow(3, "bar"));
+    }
+
+    @Test
+    public void testRowLayoutForNodesBeforeColumnarVersion() throws Exception {
+        BytesStreamOutput out = new BytesStreamOutput();
+        out.setVersion(Version.V_1_7_2);
+        createBucket().writeTo(out);
+
+        BytesStreamOutput expected = new BytesStreamOutput();
+        BytesStreamOutput values = new BytesStreamOutput();
+        for (Object[] row : new Object[][]{{1, new BytesRef("foo")}, {2, null}, {3, new BytesRef("bar")}}) {
+            DataTypes.INTEGER.streamer().writeValueTo(values, row[0]);
+            DataTypes.STRING.streamer().writeValueTo(values, row[1]);
+        }
+        expected.writeVInt(3);
+        expected.writeBytesReference(values.bytes());
+        assertThat(out.bytes().toBytesArray(), is(expected.bytes().toBytesArray()));
+    }
+
+    @Test
+    public void testStreamingBetweenLayouts() throws Exception {
+        StreamBucket bucket = stream(stream(createBucket(), Version.V_1_7_2), Version.CURRENT);
+
+        Iterator<Row> it = bucket.iterator();
+        assertThat(it.next(), isRow(1, "foo"));
+        assertThat(it.next(), isRow(2, null));
+        assertThat(it.next(), isRow(3, "bar"));
+        assertThat(it.hasNext(), is(false));
+    }
+
+    @Test
+    public void testColumnsAreReadIndependently() throws Exception {
+        StreamBucket bucket = stream(createBucket());
+
+        Iterator<Row> it = bucket.iterator();
+        assertThat((Integer) it.next().get(0), is(1));
+        it.next();
+        Row row = it.next();
+        assertThat((BytesRef) row.get(1), is(new BytesRef("bar")));
+        assertThat((Integer) row.get(0), is(3));
+        assertThat((BytesRef) row.get(1), is(new BytesRef("bar")));
+    }
+
+    @Test
+    public void testBuilderReset() throws Exception {
+        StreamBucket.Builder builder = new StreamBucket.Builder(STREAMERS);
+        builder.add(new RowN(new Object[]{1, new BytesRef("foo")}));
+        StreamBucket first = builder.build();
+        builder.reset();
+        builder.add(new RowN(new Object[]{2, new BytesRef("bar")}));
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        builder.writeToStream(out);
+        StreamBucket second = new StreamBucket(STREAMERS);
+        second.readFrom(new BytesStreamInput(out.bytes()));
+
+        assertThat(first.iterator().next(), isRow(1, "foo"));
+        assertThat(second.size(), is(1));
+        assertThat(second.iterator().next(), isRow(2, "bar"));
+    }
+}
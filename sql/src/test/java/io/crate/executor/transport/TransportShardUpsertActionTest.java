@@ -34,17 +34,24 @@ import io.crate.types.DataTypes;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.index.IndexResponse;
-import org.elasticsearch.action.index.TransportIndexAction;
 import org.elasticsearch.action.support.ActionFilters;
 import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.action.index.MappingUpdatedAction;
 import org.elasticsearch.cluster.action.shard.ShardStateAction;
 import org.elasticsearch.common.collect.MapBuilder;
 import org.elasticsearch.common.inject.Injector;
 import org.elasticsearch.common.inject.ModulesBuilder;
 import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.index.Index;
+import org.elasticsearch.index.IndexService;
+import org.elasticsearch.index.VersionType;
+import org.elasticsearch.index.engine.DocumentAlreadyExistsException;
+import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.index.mapper.SourceToParse;
+import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.indices.IndexMissingException;
 import org.elasticsearch.indices.IndicesService;
@@ -52,6 +59,7 @@ import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.TransportService;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -59,7 +67,9 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import static io.crate.testing.TestingHelpers.getFunctions;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
-import static org.mockito.Mockito.mock;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.*;
 
 public class TransportShardUpsertActionTest extends CrateUnitTest {
 
@@ -72,14 +82,14 @@ public class TransportShardUpsertActionTest extends CrateUnitTest {
                                                  ClusterService clusterService,
                                                  TransportService transportService,
                                                  ActionFilters actionFilters,
-                                                 TransportIndexAction indexAction,
+                                                 MappingUpdatedAction mappingUpdatedAction,
                                                  IndicesService indicesService,
                                                  JobContextService jobContextService,
                                                  ShardStateAction shardStateAction,
                                                  Functions functions,
                                                  Schemas schemas) {
             super(settings, threadPool, clusterService, transportService, actionFilters,
-                    jobContextService, indexAction, indicesService, shardStateAction, functions, schemas);
+                    jobContextService, mappingUpdatedAction, indicesService, shardStateAction, functions, schemas);
         }
 
         @Override
@@ -106,7 +116,7 @@ public class TransportShardUpsertActionTest extends CrateUnitTest {
                 mock(ClusterService.class),
                 mock(TransportService.class),
                 mock(ActionFilters.class),
-                mock(TransportIndexAction.class),
+                mock(MappingUpdatedAction.class),
                 mock(IndicesService.class),
                 mock(JobContextService.class),
                 mock(ShardStateAction.class),
@@ -145,6 +155,70 @@ public class TransportShardUpsertActionTest extends CrateUnitTest {
         assertThat(response.failures().get(0).message(), is("IndexMissingException[[characters] missing]"));
     }
 
+    @Test
+    public void testItemsIndexedBeforeAFailureAreReplicated() throws Exception {
+        TableIdent charactersIdent = new TableIdent(null, "characters");
+        final Reference idRef = new Reference(new ReferenceInfo(
+                new ReferenceIdent(charactersIdent, "id"), RowGranularity.DOC, DataTypes.SHORT));
+
+        IndexShard indexShard = mock(IndexShard.class);
+        IndexService indexService = mock(IndexService.class);
+        when(indexService.shardSafe(0)).thenReturn(indexShard);
+        IndicesService indicesService = mock(IndicesService.class);
+        when(indicesService.indexServiceSafe("characters")).thenReturn(indexService);
+
+        TransportShardUpsertAction action = new TransportShardUpsertAction(
+                ImmutableSettings.EMPTY,
+                mock(ThreadPool.class),
+                mock(ClusterService.class),
+                mock(TransportService.class),
+                mock(ActionFilters.class),
+                mock(JobContextService.class),
+                mock(MappingUpdatedAction.class),
+                indicesService,
+                mock(ShardStateAction.class),
+                getFunctions(),
+                mock(Schemas.class)) {
+            @Override
+            protected IndexResponse indexItem(DocTableInfo tableInfo,
+                                              ShardUpsertRequest request,
+                                              ShardUpsertRequest.Item item,
+                                              ShardId shardId,
+                                              boolean tryInsertFirst,
+                                              int retryCount) throws ElasticsearchException {
+                if (item.id().equals("2")) {
+                    throw new DocumentAlreadyExistsException(shardId, request.type(), item.id());
+                }
+                item.indexedOnPrimary(new BytesArray("{\"id\": 1}"), null, 1L, VersionType.INTERNAL.versionTypeForReplicationAndRecovery());
+                return new IndexResponse(shardId.getIndex(), request.type(), item.id(), 1L, true);
+            }
+        };
+
+        ShardId shardId = new ShardId("characters", 0);
+        final ShardUpsertRequest request = new ShardUpsertRequest(
+                shardId, null, new Reference[]{idRef}, null, UUID.randomUUID());
+        request.add(1, new ShardUpsertRequest.Item("1", null, new Object[]{1}, null));
+        request.add(2, new ShardUpsertRequest.Item("2", null, new Object[]{2}, null));
+        request.add(3, new ShardUpsertRequest.Item("3", null, new Object[]{3}, null));
+
+        ShardResponse response = action.processRequestItems(shardId, request, new AtomicBoolean(false));
+
+        // the failure stops the execution but is returned so that the replication still happens
+        assertThat(response.failure(), instanceOf(DocumentAlreadyExistsException.class));
+        assertThat(response.itemIndices().size(), is(2));
+        assertThat(response.failures().get(0), nullValue());
+        assertThat(response.failures().get(1), notNullValue());
+        assertThat(request.items().get(0).source(), notNullValue());
+        assertThat(request.items().get(1).source(), nullValue());
+        assertThat(request.items().get(2).source(), nullValue());
+
+        action.processRequestItemsOnReplica(shardId, request, new AtomicBoolean(false));
+        ArgumentCaptor<SourceToParse> sourceCaptor = ArgumentCaptor.forClass(SourceToParse.class);
+        verify(indexShard, times(1)).prepareIndex(sourceCaptor.capture(), eq(1L), any(VersionType.class),
+                eq(Engine.Operation.Origin.REPLICA), anyBoolean());
+        assertThat(sourceCaptor.getValue().id(), is("1"));
+    }
+
     @Test
     public void testProcessGeneratedColumns() throws Exception {
         Map<String, Object> updatedColumns = MapBuilder.<String, Object>newMapBuilder()
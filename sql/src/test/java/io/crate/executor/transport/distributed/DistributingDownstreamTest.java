@@ -33,6 +33,8 @@ import io.crate.executor.transport.Transports;
 import io.crate.jobs.ExecutionState;
 import io.crate.jobs.JobContextService;
 import io.crate.jobs.KeepAliveTimers;
+import io.crate.operation.Paging;
+import io.crate.operation.RowUpstream;
 import io.crate.test.integration.CrateUnitTest;
 import io.crate.testing.RowSender;
 import io.crate.types.DataTypes;
@@ -149,7 +151,9 @@ public class DistributingDownstreamTest extends CrateUnitTest {
                 transportDistributedResultAction,
                 mock(KeepAliveTimers.class, Answers.RETURNS_MOCKS.get()),
                 streamers,
-                pageSize
+                pageSize,
+                DistributingDownstream.DEFAULT_PAGE_SIZE_BYTES.bytes(),
+                1L // no credit for a second page in flight
         );
 
         final List<Row> rows = new ArrayList<>();
@@ -255,4 +259,159 @@ public class DistributingDownstreamTest extends CrateUnitTest {
         rowSender.run();
         assertThat(requestsReceived.get(), is(3));
     }
+
+    @Test
+    public void testSeveralPagesInFlightWithinCredit() throws Exception {
+        Streamer[] streamers = new Streamer[] {DataTypes.INTEGER.streamer() };
+        final List<ActionListener<DistributedResultResponse>> pendingListeners = new ArrayList<>();
+        final List<DistributedResultRequest> requests = new ArrayList<>();
+        TransportDistributedResultAction transportDistributedResultAction = new TransportDistributedResultAction(
+                mock(Transports.class),
+                mock(JobContextService.class),
+                mock(ThreadPool.class),
+                mock(TransportService.class),
+                ImmutableSettings.EMPTY) {
+
+            @Override
+            public void pushResult(String node, DistributedResultRequest request, ActionListener<DistributedResultResponse> listener) {
+                requests.add(request);
+                pendingListeners.add(listener);
+            }
+        };
+        DistributingDownstream dd = new DistributingDownstream(
+                UUID.randomUUID(),
+                new BroadcastingBucketBuilder(streamers, 1),
+                1,
+                (byte) 0,
+                0,
+                ImmutableList.of("n1"),
+                transportDistributedResultAction,
+                mock(KeepAliveTimers.class, Answers.RETURNS_MOCKS.get()),
+                streamers,
+                2,
+                DistributingDownstream.DEFAULT_PAGE_SIZE_BYTES.bytes(),
+                DistributingDownstream.DEFAULT_CREDIT_BYTES.bytes()
+        );
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            rows.add(new Row1(i));
+        }
+        RowSender rowSender = new RowSender(rows, dd, MoreExecutors.directExecutor());
+        rowSender.run();
+
+        // 3 full pages are sent without waiting for a response, the last one waits for them
+        assertThat(rowSender.numPauses(), is(0));
+        assertThat(requests.size(), is(3));
+        for (int i = 0; i < requests.size(); i++) {
+            assertThat(requests.get(i).pageIdx(), is(i));
+            assertThat(requests.get(i).isLast(), is(false));
+        }
+
+        for (ActionListener<DistributedResultResponse> listener : ImmutableList.copyOf(pendingListeners)) {
+            listener.onResponse(new DistributedResultResponse(true));
+        }
+        assertThat(requests.size(), is(4));
+        assertThat(requests.get(3).pageIdx(), is(3));
+        assertThat(requests.get(3).isLast(), is(true));
+        assertThat(requests.get(3).rows().size(), is(1));
+    }
+
+    @Test
+    public void testCreditGrantedByDownstreamLimitsPagesInFlight() throws Exception {
+        Streamer[] streamers = new Streamer[] {DataTypes.INTEGER.streamer() };
+        final List<ActionListener<DistributedResultResponse>> pendingListeners = new ArrayList<>();
+        final List<DistributedResultRequest> requests = new ArrayList<>();
+        TransportDistributedResultAction transportDistributedResultAction = new TransportDistributedResultAction(
+                mock(Transports.class),
+                mock(JobContextService.class),
+                mock(ThreadPool.class),
+                mock(TransportService.class),
+                ImmutableSettings.EMPTY) {
+
+            @Override
+            public void pushResult(String node, DistributedResultRequest request, ActionListener<DistributedResultResponse> listener) {
+                requests.add(request);
+                pendingListeners.add(listener);
+            }
+        };
+        DistributingDownstream dd = new DistributingDownstream(
+                UUID.randomUUID(),
+                new BroadcastingBucketBuilder(streamers, 1),
+                1,
+                (byte) 0,
+                0,
+                ImmutableList.of("n1"),
+                transportDistributedResultAction,
+                mock(KeepAliveTimers.class, Answers.RETURNS_MOCKS.get()),
+                streamers,
+                2,
+                DistributingDownstream.DEFAULT_PAGE_SIZE_BYTES.bytes(),
+                DistributingDownstream.DEFAULT_CREDIT_BYTES.bytes()
+        );
+        RowUpstream upstream = mock(RowUpstream.class);
+        dd.setUpstream(upstream);
+
+        dd.setNextRow(new Row1(1));
+        dd.setNextRow(new Row1(2));
+        assertThat(requests.size(), is(1));
+        // the downstream has no memory left
+        pendingListeners.get(0).onResponse(new DistributedResultResponse(true, 0L));
+
+        for (int i = 3; i <= 6; i++) {
+            dd.setNextRow(new Row1(i));
+        }
+        // the third page has to wait until the second one is consumed
+        assertThat(requests.size(), is(2));
+        verify(upstream).pause();
+
+        pendingListeners.get(1).onResponse(new DistributedResultResponse(true, 0L));
+        assertThat(requests.size(), is(3));
+    }
+
+    @Test
+    public void testPageIsSentOnceItReachesPageSizeInBytes() throws Exception {
+        Streamer[] streamers = new Streamer[] {DataTypes.STRING.streamer() };
+        final List<DistributedResultRequest> requests = new ArrayList<>();
+        TransportDistributedResultAction transportDistributedResultAction = new TransportDistributedResultAction(
+                mock(Transports.class),
+                mock(JobContextService.class),
+                mock(ThreadPool.class),
+                mock(TransportService.class),
+                ImmutableSettings.EMPTY) {
+
+            @Override
+            public void pushResult(String node, DistributedResultRequest request, ActionListener<DistributedResultResponse> listener) {
+                requests.add(request);
+                listener.onResponse(new DistributedResultResponse(true));
+            }
+        };
+        DistributingDownstream dd = new DistributingDownstream(
+                UUID.randomUUID(),
+                new BroadcastingBucketBuilder(streamers, 1),
+                1,
+                (byte) 0,
+                0,
+                ImmutableList.of("n1"),
+                transportDistributedResultAction,
+                mock(KeepAliveTimers.class, Answers.RETURNS_MOCKS.get()),
+                streamers,
+                Paging.PAGE_SIZE,
+                100L,
+                DistributingDownstream.DEFAULT_CREDIT_BYTES.bytes()
+        );
+        BytesRef value = new BytesRef(new byte[49]);
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            rows.add(new Row1(value));
+        }
+        RowSender rowSender = new RowSender(rows, dd, MoreExecutors.directExecutor());
+        rowSender.run();
+
+        // each value takes up 50 bytes, so two of them fill a page
+        assertThat(requests.size(), is(3));
+        assertThat(requests.get(0).rows().size(), is(2));
+        assertThat(requests.get(1).rows().size(), is(2));
+        assertThat(requests.get(2).rows().size(), is(1));
+        assertThat(requests.get(2).isLast(), is(true));
+    }
 }
@@ -350,6 +350,24 @@ public class InsertIntoIntegrationTest extends SQLTransportIntegrationTest {
         execute("insert into test (pk_col, message) values (?, ?)", args);
     }
 
+    @Test
+    public void testItemsIndexedBeforeAFailureAreReplicated() throws Exception {
+        execute("create table t (id int primary key, name string) " +
+                "clustered into 1 shards with (number_of_replicas = 1)");
+        ensureGreen();
+
+        try {
+            execute("insert into t (id, name) values (1, 'Arthur'), (1, 'Trillian')");
+            fail("inserting a duplicate primary key must fail");
+        } catch (SQLActionException e) {
+            assertThat(e.getMessage(), containsString("A document with the same primary key exists already"));
+        }
+
+        GetResponse response = client().prepareGet("t", "default", "1").setPreference("_replica").execute().actionGet();
+        assertTrue(response.isExists());
+        assertThat((String) response.getSourceAsMap().get("name"), is("Arthur"));
+    }
+
     @Test
     public void testInsertWithPKMissingOnInsert() throws Exception {
         this.setup.createTestTableWithPrimaryKey();
@@ -212,10 +212,10 @@ public class JoinIntegrationTest extends SQLTransportIntegrationTest {
                 "limit 4");
         assertThat(response.rowCount(), is(4L));
         assertThat(printedTable(response.rows()),
-                is("strict| id\n" +
-                   "strict| num_docs\n" +
-                   "strict| orphan_partition\n" +
-                   "strict| partition_ident\n"));
+                is("strict| blob_cache\n" +
+                   "strict| blob_cache['hits']\n" +
+                   "strict| blob_cache['misses']\n" +
+                   "strict| id\n"));
     }
 
     @Test
@@ -142,15 +142,16 @@ public class SysShardsTest extends ClassLifecycleIntegrationTest {
         SQLResponse response = transportExecutor.exec(
             "select * from sys.shards where table_name = 'characters'");
         assertEquals(10L, response.rowCount());
-        assertEquals(12, response.cols().length);
+        assertEquals(13, response.cols().length);
     }
 
     @Test
     public void testSelectStarAllTables() throws Exception {
         SQLResponse response = transportExecutor.exec("select * from sys.shards");
         assertEquals(30L, response.rowCount());
-        assertEquals(12, response.cols().length);
+        assertEquals(13, response.cols().length);
         assertThat(response.cols(), arrayContaining(
+                "blob_cache",
                 "id",
                 "num_docs",
                 "orphan_partition",
@@ -170,7 +171,7 @@ public class SysShardsTest extends ClassLifecycleIntegrationTest {
         SQLResponse response = transportExecutor.exec(
             "select * from sys.shards where table_name like 'charact%'");
         assertEquals(10L, response.rowCount());
-        assertEquals(12, response.cols().length);
+        assertEquals(13, response.cols().length);
     }
 
     @Test
@@ -178,7 +179,7 @@ public class SysShardsTest extends ClassLifecycleIntegrationTest {
         SQLResponse response = transportExecutor.exec(
             "select * from sys.shards where table_name not like 'quotes%'");
         assertEquals(20L, response.rowCount());
-        assertEquals(12, response.cols().length);
+        assertEquals(13, response.cols().length);
     }
 
     @Test
@@ -186,7 +187,7 @@ public class SysShardsTest extends ClassLifecycleIntegrationTest {
         SQLResponse response = transportExecutor.exec(
             "select * from sys.shards where table_name in ('characters')");
         assertEquals(10L, response.rowCount());
-        assertEquals(12, response.cols().length);
+        assertEquals(13, response.cols().length);
     }
 
     @Test
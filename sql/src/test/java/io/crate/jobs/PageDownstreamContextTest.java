@@ -21,6 +21,7 @@
 
 package io.crate.jobs;
 
+import com.google.common.collect.Iterables;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.SettableFuture;
@@ -30,21 +31,26 @@ import io.crate.core.collections.Bucket;
 import io.crate.core.collections.BucketPage;
 import io.crate.core.collections.Row1;
 import io.crate.core.collections.SingleRowBucket;
+import io.crate.executor.transport.StreamBucket;
 import io.crate.operation.PageConsumeListener;
 import io.crate.operation.PageDownstream;
 import io.crate.operation.PageResultListener;
 import io.crate.operation.projectors.FlatProjectorChain;
 import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.DataTypes;
 import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
 import org.elasticsearch.common.breaker.NoopCircuitBreaker;
 import org.hamcrest.Matchers;
 import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.hamcrest.Matchers.is;
@@ -170,4 +176,111 @@ public class PageDownstreamContextTest extends CrateUnitTest {
         // check closed is back to passive
         assertThat(ctx.subContextMode(), is(ExecutionSubContext.SubContextMode.PASSIVE));
     }
-}
\ No newline at end of file
+
+    private static Bucket bucket(BucketPage page, int bucketIdx) throws Exception {
+        return Iterables.get(page.buckets(), bucketIdx).get();
+    }
+
+    @Test
+    public void testPagesAreConsumedInOrderOfTheirPageIdx() throws Exception {
+        final List<BucketPage> pages = new ArrayList<>();
+        final List<PageConsumeListener> consumeListeners = new ArrayList<>();
+        PageDownstream downstream = mock(PageDownstream.class);
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                pages.add((BucketPage) invocation.getArguments()[0]);
+                consumeListeners.add((PageConsumeListener) invocation.getArguments()[1]);
+                return null;
+            }
+        }).when(downstream).nextPage(any(BucketPage.class), any(PageConsumeListener.class));
+        PageResultListener resultListener = mock(PageResultListener.class);
+        PageDownstreamContext ctx = new PageDownstreamContext(1, "dummy", downstream, new Streamer[0], RAM_ACCOUNTING_CONTEXT, 2, mock(FlatProjectorChain.class));
+
+        // second page of bucket 0 arrives first
+        ctx.setBucket(0, 1, new SingleRowBucket(new Row1("b")), false, resultListener);
+        assertThat(pages.size(), is(0));
+
+        ctx.setBucket(0, 0, new SingleRowBucket(new Row1("a")), false, resultListener);
+        ctx.setBucket(1, 0, new SingleRowBucket(new Row1("x")), true, resultListener);
+        assertThat(pages.size(), is(1));
+        assertThat(bucket(pages.get(0), 0).iterator().next().get(0), is((Object) "a"));
+
+        // the next page is only started once the first one is consumed
+        ctx.setBucket(0, 2, new SingleRowBucket(new Row1("c")), true, resultListener);
+        assertThat(pages.size(), is(1));
+        consumeListeners.get(0).needMore();
+
+        assertThat(pages.size(), is(2));
+        assertThat(bucket(pages.get(1), 0).iterator().next().get(0), is((Object) "b"));
+        assertThat(bucket(pages.get(1), 1).size(), is(0));
+
+        consumeListeners.get(1).needMore();
+        assertThat(pages.size(), is(3));
+        assertThat(bucket(pages.get(2), 0).iterator().next().get(0), is((Object) "c"));
+    }
+
+    private static StreamBucket streamBucket(long value) throws Exception {
+        StreamBucket.Builder builder = new StreamBucket.Builder(new Streamer[]{DataTypes.LONG.streamer()});
+        builder.add(new Row1(value));
+        return builder.build();
+    }
+
+    @Test
+    public void testBucketsAreAccountedUntilTheirPageIsConsumed() throws Exception {
+        final List<PageConsumeListener> consumeListeners = new ArrayList<>();
+        PageDownstream downstream = mock(PageDownstream.class);
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                consumeListeners.add((PageConsumeListener) invocation.getArguments()[1]);
+                return null;
+            }
+        }).when(downstream).nextPage(any(BucketPage.class), any(PageConsumeListener.class));
+        RamAccountingContext ramAccountingContext = mock(RamAccountingContext.class);
+        PageDownstreamContext ctx = new PageDownstreamContext(1, "dummy", downstream, new Streamer[0], ramAccountingContext, 2, mock(FlatProjectorChain.class));
+
+        StreamBucket bucket = streamBucket(1L);
+        long bytes = bucket.sizeInBytes();
+        assertThat(bytes > 0, is(true));
+
+        ctx.setBucket(0, 0, bucket, false, mock(PageResultListener.class));
+        // the second page of bucket 0 is buffered until the first one is consumed
+        ctx.setBucket(0, 1, streamBucket(2L), false, mock(PageResultListener.class));
+        verify(ramAccountingContext, times(2)).addBytes(bytes);
+        verify(ramAccountingContext, never()).addBytes(-bytes);
+
+        ctx.setBucket(1, 0, streamBucket(3L), false, mock(PageResultListener.class));
+        consumeListeners.get(0).needMore();
+        verify(ramAccountingContext).addBytes(-2 * bytes);
+
+        ctx.setBucket(1, 1, streamBucket(4L), true, mock(PageResultListener.class));
+        consumeListeners.get(1).finish();
+        verify(ramAccountingContext, times(2)).addBytes(-2 * bytes);
+    }
+
+    @Test
+    public void testBucketTrippingTheBreakerFailsThePage() throws Exception {
+        final List<BucketPage> pages = new ArrayList<>();
+        PageDownstream downstream = mock(PageDownstream.class);
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                pages.add((BucketPage) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(downstream).nextPage(any(BucketPage.class), any(PageConsumeListener.class));
+        RamAccountingContext ramAccountingContext = mock(RamAccountingContext.class);
+        doThrow(new CircuitBreakingException("too large")).when(ramAccountingContext).addBytes(anyLong());
+        PageDownstreamContext ctx = new PageDownstreamContext(1, "dummy", downstream, new Streamer[0], ramAccountingContext, 1, mock(FlatProjectorChain.class));
+
+        PageResultListener resultListener = mock(PageResultListener.class);
+        ctx.setBucket(0, 0, streamBucket(1L), false, resultListener);
+        verify(resultListener).needMore(false);
+
+        assertThat(pages.size(), is(1));
+        expectedException.expect(ExecutionException.class);
+        expectedException.expectMessage("too large");
+        bucket(pages.get(0), 0);
+    }
+}
@@ -167,7 +167,38 @@ public class SQLResponseTest extends CrateUnitTest {
         assertEquals(r1.rowCount(), r2.rowCount());
     }
 
+    @Test
+    public void testResponseWithCursorStreamable() throws Exception {
+        SQLResponse r1 = new SQLResponse(
+                new String[] {"col1"},
+                new Object[][] { new Object[] {"row1_col1"} },
+                new DataType[] { DataTypes.STRING },
+                1L,
+                0,
+                false
+        );
+        r1.cursor("c1");
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        r1.writeTo(out);
+        SQLResponse r2 = new SQLResponse();
+        r2.readFrom(new BytesStreamInput(out.bytes()));
+
+        assertThat(r2.cursor(), is("c1"));
+        assertArrayEquals(r1.rows(), r2.rows());
+    }
 
+    @Test
+    public void testXContentCursor() throws Exception {
+        SQLResponse r = new SQLResponse();
+        r.cols(new String[]{"col1"});
+        r.rows(new Object[][]{new Object[]{1}});
+        r.rowCount(1L);
+        r.cursor("c1");
+        JSONAssert.assertEquals(
+                "{\"cols\":[\"col1\"],\"rows\":[[1]],\"rowcount\":1,\"duration\":-1,\"cursor\":\"c1\"}",
+                json(r), true);
+    }
 
 
     /**
@@ -141,6 +141,7 @@ public class PageDownstreamFactoryTest extends CrateUnitTest {
                 mock(ClusterService.class),
                 threadPool,
                 ImmutableSettings.EMPTY,
+                mock(TempFiles.class),
                 mock(TransportActionProvider.class, Answers.RETURNS_DEEP_STUBS.get()),
                 mock(BulkRetryCoordinatorPool.class),
                 referenceResolver,
@@ -187,6 +188,7 @@ public class PageDownstreamFactoryTest extends CrateUnitTest {
                 mock(ClusterService.class),
                 threadPool,
                 ImmutableSettings.EMPTY,
+                mock(TempFiles.class),
                 mock(TransportActionProvider.class, Answers.RETURNS_DEEP_STUBS.get()),
                 mock(BulkRetryCoordinatorPool.class),
                 referenceResolver,
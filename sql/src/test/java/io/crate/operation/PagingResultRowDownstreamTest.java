@@ -0,0 +1,130 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.crate.core.collections.Row1;
+import io.crate.executor.TaskResult;
+import io.crate.test.integration.CrateUnitTest;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutionException;
+
+import static io.crate.testing.TestingHelpers.printedTable;
+import static org.hamcrest.Matchers.is;
+
+public class PagingResultRowDownstreamTest extends CrateUnitTest {
+
+    private static class RecordingUpstream implements RowUpstream {
+
+        private final boolean supportsPause;
+        private int pauses = 0;
+        private int resumes = 0;
+
+        RecordingUpstream(boolean supportsPause) {
+            this.supportsPause = supportsPause;
+        }
+
+        @Override
+        public void pause() {
+            if (!supportsPause) {
+                throw new UnsupportedOperationException();
+            }
+            pauses++;
+        }
+
+        @Override
+        public void resume(boolean async) {
+            resumes++;
+        }
+
+        @Override
+        public void repeat() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Test
+    public void testResultIsDeliveredInPages() throws Exception {
+        SettableFuture<TaskResult> firstPage = SettableFuture.create();
+        PagingResultRowDownstream downstream = new PagingResultRowDownstream(firstPage, 2);
+        RecordingUpstream upstream = new RecordingUpstream(true);
+        downstream.setUpstream(upstream);
+
+        downstream.setNextRow(new Row1(1));
+        assertThat(firstPage.isDone(), is(false));
+        downstream.setNextRow(new Row1(2));
+        assertThat(printedTable(firstPage.get().rows()), is("1\n2\n"));
+        assertThat(upstream.pauses, is(0));
+
+        downstream.setNextRow(new Row1(3));
+        downstream.setNextRow(new Row1(4));
+        assertThat(upstream.pauses, is(1));
+
+        ListenableFuture<TaskResult> secondPage = downstream.fetch();
+        assertThat(printedTable(secondPage.get().rows()), is("3\n4\n"));
+        assertThat(upstream.resumes, is(1));
+        assertThat(downstream.hasMore(), is(true));
+
+        ListenableFuture<TaskResult> lastPage = downstream.fetch();
+        downstream.setNextRow(new Row1(5));
+        assertThat(lastPage.isDone(), is(false));
+        downstream.finish();
+        assertThat(printedTable(lastPage.get().rows()), is("5\n"));
+        assertThat(downstream.hasMore(), is(false));
+    }
+
+    @Test
+    public void testUpstreamWhichCannotPauseIsBuffered() throws Exception {
+        SettableFuture<TaskResult> firstPage = SettableFuture.create();
+        PagingResultRowDownstream downstream = new PagingResultRowDownstream(firstPage, 1);
+        downstream.setUpstream(new RecordingUpstream(false));
+
+        for (int i = 0; i < 3; i++) {
+            downstream.setNextRow(new Row1(i));
+        }
+        downstream.finish();
+
+        assertThat(printedTable(firstPage.get().rows()), is("0\n"));
+        assertThat(printedTable(downstream.fetch().get().rows()), is("1\n"));
+        assertThat(downstream.hasMore(), is(true));
+        assertThat(printedTable(downstream.fetch().get().rows()), is("2\n"));
+        assertThat(downstream.hasMore(), is(false));
+    }
+
+    @Test
+    public void testFailureIsPropagatedToPendingPage() throws Exception {
+        SettableFuture<TaskResult> firstPage = SettableFuture.create();
+        PagingResultRowDownstream downstream = new PagingResultRowDownstream(firstPage, 10);
+        downstream.setUpstream(new RecordingUpstream(true));
+
+        downstream.setNextRow(new Row1(1));
+        downstream.fail(new IllegalStateException("dummy"));
+
+        assertThat(downstream.hasMore(), is(false));
+        expectedException.expect(ExecutionException.class);
+        expectedException.expectMessage("dummy");
+        firstPage.get();
+    }
+}
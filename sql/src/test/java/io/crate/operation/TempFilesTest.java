@@ -0,0 +1,73 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation;
+
+import io.crate.test.integration.CrateUnitTest;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.env.NodeEnvironment;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TempFilesTest extends CrateUnitTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private NodeEnvironment nodeEnvironment(Path dataPath) {
+        NodeEnvironment nodeEnvironment = mock(NodeEnvironment.class);
+        when(nodeEnvironment.hasNodeFile()).thenReturn(true);
+        when(nodeEnvironment.nodeDataPaths()).thenReturn(new Path[]{dataPath});
+        return nodeEnvironment;
+    }
+
+    @Test
+    public void testLeftoverFilesAreDeletedOnStart() throws Exception {
+        Path dataPath = folder.getRoot().toPath();
+        Path directory = dataPath.resolve("tmp");
+        Path leftover = TempFiles.create(directory, "crate-sort-", ".run");
+
+        TempFiles tempFiles = new TempFiles(ImmutableSettings.EMPTY, nodeEnvironment(dataPath));
+
+        assertThat(tempFiles.directory(), is(directory));
+        assertThat(Files.exists(leftover), is(false));
+        assertThat(Files.isDirectory(directory), is(true));
+    }
+
+    @Test
+    public void testMissingDirectoryIsCreatedOnDemand() throws Exception {
+        Path dataPath = folder.getRoot().toPath();
+        TempFiles tempFiles = new TempFiles(ImmutableSettings.EMPTY, nodeEnvironment(dataPath));
+        assertThat(Files.exists(tempFiles.directory()), is(false));
+
+        Path file = TempFiles.create(tempFiles.directory(), "crate-join-", ".partition");
+        assertThat(file.getParent(), is(tempFiles.directory()));
+    }
+}
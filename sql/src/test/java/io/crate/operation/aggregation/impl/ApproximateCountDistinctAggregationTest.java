@@ -0,0 +1,130 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.aggregation.impl;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.metadata.FunctionIdent;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.aggregation.AggregationTest;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+
+public class ApproximateCountDistinctAggregationTest extends AggregationTest {
+
+    private Object[][] executeAggregation(DataType dataType, Object[][] data) throws Exception {
+        return executeAggregation("approx_count_distinct", dataType, data);
+    }
+
+    private HyperLogLogPlusPlus sketch(long from, long to) {
+        HyperLogLogPlusPlus sketch = new HyperLogLogPlusPlus();
+        for (long i = from; i < to; i++) {
+            sketch.add(HyperLogLogPlusPlus.hash(i));
+        }
+        return sketch;
+    }
+
+    private HyperLogLogPlusPlus streamed(HyperLogLogPlusPlus sketch) throws Exception {
+        BytesStreamOutput out = new BytesStreamOutput();
+        ApproximateCountDistinctAggregation.HyperLogLogStateType.INSTANCE.writeValueTo(out, sketch);
+        return ApproximateCountDistinctAggregation.HyperLogLogStateType.INSTANCE.readValueFrom(
+                new BytesStreamInput(out.bytes()));
+    }
+
+    @Test
+    public void testReturnType() throws Exception {
+        FunctionIdent fi = new FunctionIdent("approx_count_distinct", ImmutableList.<DataType>of(DataTypes.STRING));
+        assertEquals(DataTypes.LONG, functions.get(fi).info().returnType());
+    }
+
+    @Test
+    public void testNullValuesAreIgnored() throws Exception {
+        Object[][] result = executeAggregation(DataTypes.INTEGER, new Object[][]{{null}, {null}});
+        assertThat((Long) result[0][0], is(0L));
+    }
+
+    @Test
+    public void testString() throws Exception {
+        Object[][] result = executeAggregation(DataTypes.STRING, new Object[][]{
+                {new BytesRef("Youri")}, {new BytesRef("Ruben")}, {new BytesRef("Youri")}, {new BytesRef("Ruben")}});
+        assertThat((Long) result[0][0], is(2L));
+    }
+
+    @Test
+    public void testDouble() throws Exception {
+        Object[][] result = executeAggregation(DataTypes.DOUBLE, new Object[][]{{0.7d}, {0.3d}, {0.3d}, {-0.0d}});
+        assertThat((Long) result[0][0], is(3L));
+    }
+
+    @Test
+    public void testSmallCardinalitiesAreExact() throws Exception {
+        HyperLogLogPlusPlus sketch = sketch(0, 1000);
+        assertThat(sketch.isSparse(), is(true));
+        assertThat(sketch.cardinality(), is(1000L));
+    }
+
+    @Test
+    public void testHighCardinalityIsEstimatedWithBoundedMemory() throws Exception {
+        HyperLogLogPlusPlus sketch = sketch(0, 1000000);
+        assertThat(sketch.isSparse(), is(false));
+        assertThat(sketch.ramBytesUsed(), is((long) (1 << HyperLogLogPlusPlus.PRECISION)));
+        assertThat((double) sketch.cardinality(), closeTo(1000000, 1000000 * 0.03));
+    }
+
+    @Test
+    public void testReduce() throws Exception {
+        FunctionIdent fi = new FunctionIdent("approx_count_distinct", ImmutableList.<DataType>of(DataTypes.LONG));
+        AggregationFunction impl = (AggregationFunction) functions.get(fi);
+
+        // overlapping ranges in all combinations of sparse and dense sketches
+        Object state = impl.reduce(ramAccountingContext, sketch(0, 500), sketch(250, 750));
+        assertThat((Long) impl.terminatePartial(ramAccountingContext, state), is(750L));
+
+        state = impl.reduce(ramAccountingContext, sketch(0, 500), sketch(0, 100000));
+        assertThat((double) (Long) impl.terminatePartial(ramAccountingContext, state), closeTo(100000, 3000));
+
+        state = impl.reduce(ramAccountingContext, sketch(0, 100000), sketch(50000, 150000));
+        assertThat((double) (Long) impl.terminatePartial(ramAccountingContext, state), closeTo(150000, 4500));
+
+        state = impl.reduce(ramAccountingContext, sketch(0, 100000), sketch(200000, 200100));
+        assertThat((double) (Long) impl.terminatePartial(ramAccountingContext, state), closeTo(100100, 3000));
+    }
+
+    @Test
+    public void testStreaming() throws Exception {
+        HyperLogLogPlusPlus sparse = sketch(0, 1000);
+        HyperLogLogPlusPlus streamedSparse = streamed(sparse);
+        assertThat(streamedSparse.isSparse(), is(true));
+        assertThat(streamedSparse.cardinality(), is(sparse.cardinality()));
+
+        HyperLogLogPlusPlus dense = sketch(0, 100000);
+        HyperLogLogPlusPlus streamedDense = streamed(dense);
+        assertThat(streamedDense.isSparse(), is(false));
+        assertThat(streamedDense.cardinality(), is(dense.cardinality()));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.aggregation.impl;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.analyze.symbol.Literal;
+import io.crate.metadata.FunctionIdent;
+import io.crate.operation.Input;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.aggregation.AggregationTest;
+import io.crate.types.ArrayType;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+
+public class PercentileAggregationTest extends AggregationTest {
+
+    private static final DataType DOUBLE_ARRAY = new ArrayType(DataTypes.DOUBLE);
+
+    private AggregationFunction percentile(DataType valueType, DataType fractionType) {
+        return (AggregationFunction) functions.get(
+                new FunctionIdent("percentile", ImmutableList.of(valueType, fractionType)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object aggregate(AggregationFunction impl, Object state, Input fractions, long from, long to) {
+        for (long i = from; i < to; i++) {
+            state = impl.iterate(ramAccountingContext, state, Literal.newLiteral(i), fractions);
+        }
+        return state;
+    }
+
+    @Test
+    public void testReturnTypes() throws Exception {
+        assertEquals(DataTypes.DOUBLE, percentile(DataTypes.LONG, DataTypes.DOUBLE).info().returnType());
+        assertEquals(DOUBLE_ARRAY, percentile(DataTypes.INTEGER, DOUBLE_ARRAY).info().returnType());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSingleFraction() throws Exception {
+        AggregationFunction impl = percentile(DataTypes.LONG, DataTypes.DOUBLE);
+        Object state = aggregate(impl, impl.newState(ramAccountingContext), Literal.newLiteral(0.5), 0, 10001);
+        assertThat((Double) impl.terminatePartial(ramAccountingContext, state), closeTo(5000, 50));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testMultipleFractions() throws Exception {
+        AggregationFunction impl = percentile(DataTypes.LONG, DOUBLE_ARRAY);
+        Input fractions = Literal.newLiteral(new Object[]{0.0, 0.95, 1.0}, DOUBLE_ARRAY);
+        Object state = aggregate(impl, impl.newState(ramAccountingContext), fractions, 0, 10001);
+        Object[] result = (Object[]) impl.terminatePartial(ramAccountingContext, state);
+        assertThat(result.length, is(3));
+        assertThat((Double) result[0], is(0.0));
+        assertThat((Double) result[1], closeTo(9500, 50));
+        assertThat((Double) result[2], is(10000.0));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testNoValues() throws Exception {
+        AggregationFunction impl = percentile(DataTypes.LONG, DataTypes.DOUBLE);
+        Object state = impl.iterate(ramAccountingContext, impl.newState(ramAccountingContext),
+                Literal.newLiteral(DataTypes.LONG, null), Literal.newLiteral(0.5));
+        assertThat(impl.terminatePartial(ramAccountingContext, state), nullValue());
+    }
+
+    @Test
+    public void testInvalidFraction() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("percentile fraction 1.5 must be between 0 and 1");
+        AggregationFunction impl = percentile(DataTypes.LONG, DataTypes.DOUBLE);
+        aggregate(impl, impl.newState(ramAccountingContext), Literal.newLiteral(1.5), 0, 1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReduceStreamedStates() throws Exception {
+        AggregationFunction impl = percentile(DataTypes.LONG, DataTypes.DOUBLE);
+        Input fraction = Literal.newLiteral(0.99);
+        Object state1 = aggregate(impl, impl.newState(ramAccountingContext), fraction, 0, 5000);
+        Object state2 = aggregate(impl, impl.newState(ramAccountingContext), fraction, 5000, 10001);
+
+        // the final aggregation starts with an empty state and receives the partial states of the shards
+        Object state = impl.newState(ramAccountingContext);
+        for (Object partial : new Object[]{state1, state2}) {
+            BytesStreamOutput out = new BytesStreamOutput();
+            impl.partialType().streamer().writeValueTo(out, partial);
+            Object streamed = impl.partialType().streamer().readValueFrom(new BytesStreamInput(out.bytes()));
+            state = impl.reduce(ramAccountingContext, state, streamed);
+        }
+        assertThat((Double) impl.terminatePartial(ramAccountingContext, state), closeTo(9900, 20));
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.codegen;
+
+import io.crate.analyze.symbol.Function;
+import io.crate.analyze.symbol.InputColumn;
+import io.crate.analyze.symbol.Literal;
+import io.crate.analyze.symbol.Symbol;
+import io.crate.core.collections.Row;
+import io.crate.core.collections.RowN;
+import io.crate.operation.ImplementationSymbolVisitor;
+import io.crate.operation.Input;
+import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.operator.*;
+import io.crate.operation.predicate.NotPredicate;
+import io.crate.operation.scalar.arithmetic.*;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.junit.Before;
+import org.junit.Test;
+
+import static io.crate.testing.TestingHelpers.createFunction;
+import static io.crate.testing.TestingHelpers.getFunctions;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+public class ExpressionCompilerTest extends CrateUnitTest {
+
+    private static final InputColumn INT_COLUMN = new InputColumn(0, DataTypes.INTEGER);
+    private static final InputColumn LONG_COLUMN = new InputColumn(1, DataTypes.LONG);
+    private static final InputColumn DOUBLE_COLUMN = new InputColumn(2, DataTypes.DOUBLE);
+    private static final InputColumn BOOLEAN_COLUMN = new InputColumn(3, DataTypes.BOOLEAN);
+    private static final InputColumn STRING_COLUMN = new InputColumn(4, DataTypes.STRING);
+
+    private static final Object[][] ROWS = new Object[][]{
+            new Object[]{1, 10L, 1.5, true, "foo"},
+            new Object[]{-3, 0L, -0.0, false, "bar"},
+            new Object[]{null, 7L, Double.NaN, null, null},
+            new Object[]{4, null, null, true, "foobar"},
+            new Object[]{0, -2L, 0.0, false, ""},
+    };
+
+    private ImplementationSymbolVisitor symbolVisitor;
+    private ExpressionCompiler compiler;
+
+    @Before
+    public void prepare() throws Exception {
+        symbolVisitor = new ImplementationSymbolVisitor(getFunctions());
+        compiler = new ExpressionCompiler();
+    }
+
+    private static Function function(String name, DataType returnType, Symbol... arguments) {
+        return createFunction(name, returnType, arguments);
+    }
+
+    /**
+     * asserts that the compiled expression returns the same values as the interpreted one
+     */
+    private void assertCompiledEqualsInterpreted(Symbol symbol) throws Exception {
+        ImplementationSymbolVisitor.Context compiledCtx = new ImplementationSymbolVisitor.Context();
+        Input<?> compiled = compiler.compile(symbol, symbolVisitor, compiledCtx);
+        assertThat(compiled, instanceOf(CompiledExpression.class));
+
+        ImplementationSymbolVisitor.Context interpretedCtx = new ImplementationSymbolVisitor.Context();
+        Input<?> interpreted = symbolVisitor.process(symbol, interpretedCtx);
+
+        for (Object[] cells : ROWS) {
+            Row row = new RowN(cells);
+            for (CollectExpression<Row, ?> expression : compiledCtx.collectExpressions()) {
+                expression.setNextRow(row);
+            }
+            for (CollectExpression<Row, ?> expression : interpretedCtx.collectExpressions()) {
+                expression.setNextRow(row);
+            }
+            Object expected;
+            try {
+                expected = interpreted.value();
+            } catch (ArithmeticException e) {
+                expectArithmeticException(compiled);
+                continue;
+            }
+            assertThat(symbol + " " + row, compiled.value(), is(expected));
+        }
+    }
+
+    private static void expectArithmeticException(Input<?> compiled) {
+        try {
+            compiled.value();
+            fail("expected ArithmeticException");
+        } catch (ArithmeticException ignored) {
+        }
+    }
+
+    @Test
+    public void testArithmetic() throws Exception {
+        for (String name : new String[]{AddFunction.NAME, SubtractFunction.NAME, MultiplyFunction.NAME,
+                DivideFunction.NAME, ModulusFunction.NAME}) {
+            assertCompiledEqualsInterpreted(function(name, DataTypes.LONG, INT_COLUMN, LONG_COLUMN));
+            assertCompiledEqualsInterpreted(function(name, DataTypes.LONG, LONG_COLUMN, Literal.newLiteral(3)));
+            assertCompiledEqualsInterpreted(function(name, DataTypes.DOUBLE, DOUBLE_COLUMN, INT_COLUMN));
+            assertCompiledEqualsInterpreted(function(name, DataTypes.DOUBLE, Literal.newLiteral(2.5), DOUBLE_COLUMN));
+        }
+    }
+
+    @Test
+    public void testNestedArithmetic() throws Exception {
+        Function inner = function(MultiplyFunction.NAME, DataTypes.LONG, INT_COLUMN, Literal.newLiteral(2L));
+        assertCompiledEqualsInterpreted(function(AddFunction.NAME, DataTypes.LONG, inner, LONG_COLUMN));
+        assertCompiledEqualsInterpreted(function(AddFunction.NAME, DataTypes.DOUBLE, DOUBLE_COLUMN, inner));
+    }
+
+    @Test
+    public void testComparisons() throws Exception {
+        for (String name : new String[]{EqOperator.NAME, LtOperator.NAME, LteOperator.NAME,
+                GtOperator.NAME, GteOperator.NAME}) {
+            assertCompiledEqualsInterpreted(function(name, DataTypes.BOOLEAN, INT_COLUMN, Literal.newLiteral(1)));
+            assertCompiledEqualsInterpreted(function(name, DataTypes.BOOLEAN, LONG_COLUMN, Literal.newLiteral(7L)));
+            assertCompiledEqualsInterpreted(function(name, DataTypes.BOOLEAN, DOUBLE_COLUMN, Literal.newLiteral(0.0)));
+            assertCompiledEqualsInterpreted(function(name, DataTypes.BOOLEAN, BOOLEAN_COLUMN, Literal.newLiteral(true)));
+        }
+    }
+
+    @Test
+    public void testLogicalOperators() throws Exception {
+        Function gt = function(GtOperator.NAME, DataTypes.BOOLEAN, INT_COLUMN, Literal.newLiteral(0));
+        Function lt = function(LtOperator.NAME, DataTypes.BOOLEAN, DOUBLE_COLUMN, Literal.newLiteral(1.0));
+        Literal nullLiteral = Literal.newLiteral(DataTypes.BOOLEAN, null);
+        for (String name : new String[]{AndOperator.NAME, OrOperator.NAME}) {
+            assertCompiledEqualsInterpreted(function(name, DataTypes.BOOLEAN, gt, lt));
+            assertCompiledEqualsInterpreted(function(name, DataTypes.BOOLEAN, BOOLEAN_COLUMN, gt));
+            assertCompiledEqualsInterpreted(function(name, DataTypes.BOOLEAN, lt, BOOLEAN_COLUMN));
+            assertCompiledEqualsInterpreted(function(name, DataTypes.BOOLEAN, nullLiteral, BOOLEAN_COLUMN));
+        }
+        assertCompiledEqualsInterpreted(function(NotPredicate.NAME, DataTypes.BOOLEAN, BOOLEAN_COLUMN));
+        assertCompiledEqualsInterpreted(function(NotPredicate.NAME, DataTypes.BOOLEAN,
+                function(AndOperator.NAME, DataTypes.BOOLEAN, gt, lt)));
+    }
+
+    @Test
+    public void testUnsupportedFunctionsAreInterpreted() throws Exception {
+        Function eq = function(EqOperator.NAME, DataTypes.BOOLEAN, STRING_COLUMN, Literal.newLiteral("foo"));
+        Input<?> input = compiler.compile(eq, symbolVisitor, new ImplementationSymbolVisitor.Context());
+        assertThat(input, not(instanceOf(CompiledExpression.class)));
+
+        Function gt = function(GtOperator.NAME, DataTypes.BOOLEAN, INT_COLUMN, Literal.newLiteral(0));
+        assertCompiledEqualsInterpreted(function(AndOperator.NAME, DataTypes.BOOLEAN, eq, gt));
+    }
+
+    @Test
+    public void testGeneratedClassIsReused() throws Exception {
+        Function add = function(AddFunction.NAME, DataTypes.LONG, INT_COLUMN, LONG_COLUMN);
+        Input<?> first = compiler.compile(add, symbolVisitor, new ImplementationSymbolVisitor.Context());
+        Input<?> second = compiler.compile(add, symbolVisitor, new ImplementationSymbolVisitor.Context());
+        assertThat(first, not(is((Object) second)));
+        assertEquals(first.getClass(), second.getClass());
+    }
+
+    @Test
+    public void testGeneratedClassIsReusedForOtherLiteralsAndInputs() throws Exception {
+        Function gtOne = function(GtOperator.NAME, DataTypes.BOOLEAN, LONG_COLUMN, Literal.newLiteral(1L));
+        Function gtTen = function(GtOperator.NAME, DataTypes.BOOLEAN, LONG_COLUMN, Literal.newLiteral(10L));
+        ImplementationSymbolVisitor.Context ctx = new ImplementationSymbolVisitor.Context();
+        Input<?> first = compiler.compile(gtOne, symbolVisitor, ctx);
+        Input<?> second = compiler.compile(gtTen, symbolVisitor, ctx);
+        assertEquals(first.getClass(), second.getClass());
+
+        Row row = new RowN(new Object[]{null, 7L, null, null, null});
+        for (CollectExpression<Row, ?> expression : ctx.collectExpressions()) {
+            expression.setNextRow(row);
+        }
+        assertThat(first.value(), is((Object) true));
+        assertThat(second.value(), is((Object) false));
+
+        Function addInt = function(AddFunction.NAME, DataTypes.LONG, INT_COLUMN, Literal.newLiteral(1L));
+        Function addLong = function(AddFunction.NAME, DataTypes.LONG, LONG_COLUMN, Literal.newLiteral(2L));
+        assertCompiledEqualsInterpreted(addInt);
+        assertCompiledEqualsInterpreted(addLong);
+    }
+}
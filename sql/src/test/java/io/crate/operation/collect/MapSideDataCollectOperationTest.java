@@ -27,6 +27,7 @@ import io.crate.core.collections.TreeMapBuilder;
 import io.crate.jobs.ExecutionState;
 import io.crate.jobs.KeepAliveListener;
 import io.crate.metadata.*;
+import io.crate.operation.collect.files.FileReadingCollector;
 import io.crate.operation.collect.sources.CollectSourceResolver;
 import io.crate.operation.collect.sources.FileCollectSource;
 import io.crate.operation.reference.sys.node.NodeSysExpression;
@@ -37,6 +38,7 @@ import io.crate.test.integration.CrateUnitTest;
 import io.crate.testing.CollectingRowReceiver;
 import io.crate.types.DataTypes;
 import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.test.cluster.NoopClusterService;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.junit.Rule;
@@ -72,7 +74,7 @@ public class MapSideDataCollectOperationTest extends CrateUnitTest {
         };
         CollectSourceResolver collectSourceResolver = mock(CollectSourceResolver.class);
         when(collectSourceResolver.getService(any(CollectPhase.class), anyString()))
-                .thenReturn(new FileCollectSource(functions, clusterService));
+                .thenReturn(new FileCollectSource(functions, clusterService, ImmutableSettings.EMPTY));
         MapSideDataCollectOperation collectOperation = new MapSideDataCollectOperation(
                 clusterService,
                 functions,
@@ -105,7 +107,8 @@ public class MapSideDataCollectOperationTest extends CrateUnitTest {
                 ),
                 Arrays.<Projection>asList(),
                 null,
-                false
+                false,
+                FileReadingCollector.FileFormat.JSON
         );
         String threadPoolName = JobCollectContext.threadPoolName(collectNode, "noop_id");
 
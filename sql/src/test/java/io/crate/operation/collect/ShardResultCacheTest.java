@@ -0,0 +1,182 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.crate.analyze.WhereClause;
+import io.crate.analyze.symbol.Aggregation;
+import io.crate.analyze.symbol.Function;
+import io.crate.analyze.symbol.InputColumn;
+import io.crate.analyze.symbol.Symbol;
+import io.crate.core.collections.Row;
+import io.crate.core.collections.RowN;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionInfo;
+import io.crate.metadata.RowGranularity;
+import io.crate.metadata.Routing;
+import io.crate.operation.projectors.RowReceiver;
+import io.crate.planner.distribution.DistributionInfo;
+import io.crate.planner.node.dql.CollectPhase;
+import io.crate.planner.projection.AggregationProjection;
+import io.crate.planner.projection.Projection;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.testing.CollectingRowReceiver;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static io.crate.testing.TestingHelpers.createReference;
+import static org.hamcrest.Matchers.*;
+
+public class ShardResultCacheTest extends CrateUnitTest {
+
+    private static final FunctionInfo COUNT_INFO = new FunctionInfo(
+            new FunctionIdent("count", ImmutableList.<DataType>of(DataTypes.STRING)),
+            DataTypes.LONG, FunctionInfo.Type.AGGREGATE);
+
+    private final List<Projection> projections = ImmutableList.<Projection>of(new AggregationProjection(
+            ImmutableList.of(Aggregation.partialAggregation(
+                    COUNT_INFO, DataTypes.LONG, ImmutableList.<Symbol>of(new InputColumn(0, DataTypes.STRING))))));
+
+    private ShardResultCache cache;
+    private IndexWriter writer;
+    private DirectoryReader reader;
+
+    @Before
+    public void prepare() throws Exception {
+        cache = new ShardResultCache(
+                ImmutableSettings.builder().put(ShardResultCache.SIZE, "1mb").build(),
+                new NoneCircuitBreakerService());
+        writer = new IndexWriter(new RAMDirectory(),
+                new IndexWriterConfig(Version.LUCENE_4_10_4, new KeywordAnalyzer()));
+        writer.commit();
+        reader = DirectoryReader.open(writer, true);
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        reader.close();
+        writer.close();
+    }
+
+    private static CollectPhase collectPhase(Symbol toCollect) {
+        return new CollectPhase(
+                UUID.randomUUID(),
+                0,
+                "collect",
+                new Routing(ImmutableMap.<String, Map<String, List<Integer>>>of()),
+                RowGranularity.DOC,
+                ImmutableList.of(toCollect),
+                ImmutableList.<Projection>of(),
+                WhereClause.MATCH_ALL,
+                DistributionInfo.DEFAULT_BROADCAST
+        );
+    }
+
+    private ShardResultCache.Key record(CollectPhase phase, RowReceiver receiver, long count) throws Exception {
+        ShardResultCache.Key key = cache.key(reader, phase, projections);
+        RowReceiver recording = cache.recorder(key, reader, projections).wrap(receiver);
+        recording.setNextRow(new RowN(new Object[]{count}));
+        recording.finish();
+        return key;
+    }
+
+    @Test
+    public void testDisabledByDefault() throws Exception {
+        ShardResultCache disabledCache = new ShardResultCache(ImmutableSettings.EMPTY, new NoneCircuitBreakerService());
+        assertThat(disabledCache.isCacheable(collectPhase(createReference("name", DataTypes.STRING)), projections),
+                is(false));
+    }
+
+    @Test
+    public void testOnlyShardAggregationsAreCached() throws Exception {
+        CollectPhase phase = collectPhase(createReference("name", DataTypes.STRING));
+        assertThat(cache.isCacheable(phase, projections), is(true));
+        assertThat(cache.isCacheable(phase, ImmutableList.<Projection>of()), is(false));
+
+        Function random = new Function(new FunctionInfo(
+                new FunctionIdent("random", ImmutableList.<DataType>of()), DataTypes.DOUBLE,
+                FunctionInfo.Type.SCALAR, false, false), ImmutableList.<Symbol>of());
+        assertThat(cache.isCacheable(collectPhase(random), projections), is(false));
+    }
+
+    @Test
+    public void testRecordedResultIsReturnedForSamePhaseAndReader() throws Exception {
+        CollectPhase phase = collectPhase(createReference("name", DataTypes.STRING));
+        CollectingRowReceiver receiver = new CollectingRowReceiver();
+        assertThat(cache.get(cache.key(reader, phase, projections), projections), nullValue());
+
+        record(phase, receiver, 42L);
+        assertThat(receiver.rows.size(), is(1));
+
+        // a new phase of the next execution of the same statement
+        CollectPhase samePhase = collectPhase(createReference("name", DataTypes.STRING));
+        Iterable<Row> rows = cache.get(cache.key(reader, samePhase, projections), projections);
+        assertThat(rows, notNullValue());
+        Row row = rows.iterator().next();
+        assertThat((Long) row.get(0), is(42L));
+
+        assertThat(cache.get(cache.key(reader, collectPhase(createReference("other", DataTypes.STRING)), projections),
+                projections), nullValue());
+        assertThat(cache.hits(), is(1L));
+        assertThat(cache.misses(), is(2L));
+        assertThat(cache.entries(), is(1L));
+    }
+
+    @Test
+    public void testIncompleteResultIsNotCached() throws Exception {
+        CollectPhase phase = collectPhase(createReference("name", DataTypes.STRING));
+        ShardResultCache.Key key = record(phase, CollectingRowReceiver.withLimit(1), 42L);
+        assertThat(cache.get(key, projections), nullValue());
+    }
+
+    @Test
+    public void testEntriesAreRemovedIfReaderIsClosed() throws Exception {
+        CollectPhase phase = collectPhase(createReference("name", DataTypes.STRING));
+        ShardResultCache.Key key = record(phase, new CollectingRowReceiver(), 42L);
+        assertThat(cache.entries(), is(1L));
+
+        DirectoryReader newReader = DirectoryReader.openIfChanged(reader, writer, true);
+        assertThat(newReader, nullValue()); // nothing changed, so the result is still valid
+
+        reader.close();
+        assertThat(cache.entries(), is(0L));
+        assertThat(cache.get(key, projections), nullValue());
+        reader = DirectoryReader.open(writer, true);
+    }
+}
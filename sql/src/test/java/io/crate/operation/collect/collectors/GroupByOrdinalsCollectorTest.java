@@ -0,0 +1,292 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect.collectors;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.analyze.symbol.Aggregation;
+import io.crate.analyze.symbol.Symbol;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.core.collections.Row;
+import io.crate.exceptions.GroupByOnArrayUnsupportedException;
+import io.crate.jobs.ExecutionState;
+import io.crate.jobs.KeepAliveListener;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionInfo;
+import io.crate.operation.Input;
+import io.crate.operation.InputRow;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.aggregation.Aggregator;
+import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.reference.doc.lucene.BytesRefColumnReference;
+import io.crate.operation.reference.doc.lucene.CollectorContext;
+import io.crate.operation.reference.doc.lucene.LuceneCollectorExpression;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.*;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Version;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.index.fielddata.AtomicOrdinalsFieldData;
+import org.elasticsearch.index.fielddata.FieldData;
+import org.elasticsearch.index.fielddata.IndexFieldDataService;
+import org.elasticsearch.index.fielddata.IndexOrdinalsFieldData;
+import org.elasticsearch.index.mapper.FieldMapper;
+import org.elasticsearch.index.mapper.MapperService;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import static io.crate.testing.TestingHelpers.getFunctions;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GroupByOrdinalsCollectorTest extends CrateUnitTest {
+
+    private static final RamAccountingContext RAM_ACCOUNTING_CONTEXT =
+            new RamAccountingContext("dummy", new NoopCircuitBreaker(CircuitBreaker.Name.FIELDDATA));
+
+    private final Directory directory = new RAMDirectory();
+    private DirectoryReader reader;
+
+    @After
+    public void closeIndex() throws Exception {
+        if (reader != null) {
+            reader.close();
+        }
+        directory.close();
+    }
+
+    /**
+     * pins the codec, the randomized test codecs may not support (sorted set) doc values
+     */
+    private static IndexWriterConfig writerConfig() {
+        return new IndexWriterConfig(Version.LATEST, new StandardAnalyzer()).setCodec(Codec.forName("Lucene410"));
+    }
+
+    private void index(String... values) throws IOException {
+        IndexWriter writer = new IndexWriter(directory, writerConfig());
+        for (String value : values) {
+            Document doc = new Document();
+            if (value != null) {
+                doc.add(new SortedDocValuesField("name", new BytesRef(value)));
+            }
+            writer.addDocument(doc);
+        }
+        writer.forceMerge(1);
+        writer.close();
+        reader = DirectoryReader.open(directory);
+    }
+
+    private void indexMultiValued() throws IOException {
+        IndexWriter writer = new IndexWriter(directory, writerConfig());
+        Document doc = new Document();
+        doc.add(new SortedSetDocValuesField("name", new BytesRef("a")));
+        doc.add(new SortedSetDocValuesField("name", new BytesRef("b")));
+        writer.addDocument(doc);
+        writer.close();
+        reader = DirectoryReader.open(directory);
+    }
+
+    /**
+     * the index consists of a single segment, so the segment ordinals are the global ordinals
+     */
+    private BytesRefColumnReference keyExpression(final boolean multiValued) {
+        final IndexOrdinalsFieldData fieldData = mock(IndexOrdinalsFieldData.class);
+        when(fieldData.loadGlobal(any(IndexReader.class))).thenReturn(fieldData);
+        when(fieldData.load(any(AtomicReaderContext.class))).thenAnswer(new Answer<AtomicOrdinalsFieldData>() {
+            @Override
+            public AtomicOrdinalsFieldData answer(InvocationOnMock invocation) throws Throwable {
+                AtomicReader leafReader = ((AtomicReaderContext) invocation.getArguments()[0]).reader();
+                RandomAccessOrds ords;
+                if (multiValued) {
+                    ords = FieldData.maybeSlowRandomAccessOrds(leafReader.getSortedSetDocValues("name"));
+                } else {
+                    ords = DocValues.singleton(DocValues.getSorted(leafReader, "name"));
+                }
+                AtomicOrdinalsFieldData atomicFieldData = mock(AtomicOrdinalsFieldData.class);
+                when(atomicFieldData.getOrdinalsValues()).thenReturn(ords);
+                return atomicFieldData;
+            }
+        });
+        MapperService mapperService = mock(MapperService.class);
+        FieldMapper fieldMapper = mock(FieldMapper.class);
+        when(mapperService.smartNameFieldMapper(anyString(), any(String[].class))).thenReturn(fieldMapper);
+        IndexFieldDataService fieldDataService = mock(IndexFieldDataService.class);
+        doReturn(fieldData).when(fieldDataService).getForField(fieldMapper);
+
+        BytesRefColumnReference keyExpression = new BytesRefColumnReference("name");
+        keyExpression.startCollect(new CollectorContext(mapperService, fieldDataService, new CollectorFieldsVisitor(1)));
+        return keyExpression;
+    }
+
+    private static final FunctionInfo COUNT_INFO =
+            new FunctionInfo(new FunctionIdent("count", ImmutableList.<DataType>of()), DataTypes.LONG);
+
+    private GroupByOrdinalsCollector.StatesCollector countCollector(ExecutionState executionState,
+                                                                   BytesRefColumnReference keyExpression) {
+        return countCollector(executionState, keyExpression,
+                Aggregation.partialAggregation(COUNT_INFO, DataTypes.LONG, ImmutableList.<Symbol>of()));
+    }
+
+    private GroupByOrdinalsCollector.StatesCollector countCollector(ExecutionState executionState,
+                                                                   BytesRefColumnReference keyExpression,
+                                                                   Aggregation countAggregation) {
+        Aggregator aggregator = new Aggregator(
+                RAM_ACCOUNTING_CONTEXT,
+                countAggregation,
+                (AggregationFunction) getFunctions().get(COUNT_INFO.ident()));
+        return new GroupByOrdinalsCollector.StatesCollector(
+                executionState,
+                mock(KeepAliveListener.class),
+                RAM_ACCOUNTING_CONTEXT,
+                keyExpression,
+                new InputRow(ImmutableList.<Input<?>>of(keyExpression)),
+                ImmutableList.<LuceneCollectorExpression<?>>of(keyExpression),
+                new CollectExpression[0],
+                new Aggregator[]{aggregator}
+        );
+    }
+
+    private static ExecutionState executionState(boolean killed) {
+        ExecutionState executionState = mock(ExecutionState.class);
+        when(executionState.isKilled()).thenReturn(killed);
+        return executionState;
+    }
+
+    @Test
+    public void testGroupByOrdinals() throws Exception {
+        index("b", "a", "b", null, "c", "b");
+        GroupByOrdinalsCollector.StatesCollector collector = countCollector(executionState(false), keyExpression(false));
+        new IndexSearcher(reader).search(new MatchAllDocsQuery(), collector);
+
+        List<Row> rows = collector.rows();
+        assertThat(rows.size(), is(4));
+        assertThat((BytesRef) rows.get(0).get(0), is(new BytesRef("a")));
+        assertThat((Long) rows.get(0).get(1), is(1L));
+        assertThat((BytesRef) rows.get(1).get(0), is(new BytesRef("b")));
+        assertThat((Long) rows.get(1).get(1), is(3L));
+        assertThat((BytesRef) rows.get(2).get(0), is(new BytesRef("c")));
+        assertThat((Long) rows.get(2).get(1), is(1L));
+        assertThat(rows.get(3).get(0), nullValue());
+        assertThat((Long) rows.get(3).get(1), is(1L));
+    }
+
+    @Test
+    public void testGroupByOrdinalsToFinal() throws Exception {
+        // GROUP BY on the clustered by column is aggregated to FINAL on the shard
+        index("b", "a", "b");
+        GroupByOrdinalsCollector.StatesCollector collector = countCollector(executionState(false), keyExpression(false),
+                Aggregation.finalAggregation(COUNT_INFO, ImmutableList.<Symbol>of(), Aggregation.Step.ITER));
+        new IndexSearcher(reader).search(new MatchAllDocsQuery(), collector);
+
+        List<Row> rows = collector.rows();
+        assertThat(rows.size(), is(2));
+        assertThat((BytesRef) rows.get(0).get(0), is(new BytesRef("a")));
+        assertThat((Long) rows.get(0).get(1), is(1L));
+        assertThat((BytesRef) rows.get(1).get(0), is(new BytesRef("b")));
+        assertThat((Long) rows.get(1).get(1), is(2L));
+    }
+
+    @Test
+    public void testGroupByOrdinalsWithSparseStates() throws Exception {
+        IndexWriter writer = new IndexWriter(directory, writerConfig());
+        for (int i = 0; i < 20; i++) {
+            Document doc = new Document();
+            doc.add(new StringField("name", "k" + i, Field.Store.NO));
+            doc.add(new SortedDocValuesField("name", new BytesRef("k" + i)));
+            writer.addDocument(doc);
+            if (i == 3) {
+                writer.addDocument(doc);
+            }
+        }
+        writer.forceMerge(1);
+        writer.close();
+        reader = DirectoryReader.open(directory);
+
+        GroupByOrdinalsCollector.StatesCollector collector = countCollector(executionState(false), keyExpression(false));
+        collector.denseMaxValueCount = 0;
+        BooleanQuery query = new BooleanQuery();
+        query.add(new TermQuery(new Term("name", "k3")), BooleanClause.Occur.SHOULD);
+        query.add(new TermQuery(new Term("name", "k1")), BooleanClause.Occur.SHOULD);
+        new IndexSearcher(reader).search(query, collector);
+
+        List<Row> rows = collector.rows();
+        assertThat(rows.size(), is(2));
+        assertThat((BytesRef) rows.get(0).get(0), is(new BytesRef("k1")));
+        assertThat((Long) rows.get(0).get(1), is(1L));
+        assertThat((BytesRef) rows.get(1).get(0), is(new BytesRef("k3")));
+        assertThat((Long) rows.get(1).get(1), is(2L));
+    }
+
+    @Test
+    public void testNoMatchingDocs() throws Exception {
+        index("a", "b");
+        GroupByOrdinalsCollector.StatesCollector collector = countCollector(executionState(false), keyExpression(false));
+        new IndexSearcher(reader).search(new TermQuery(new Term("name", "c")), collector);
+        assertThat(collector.rows().size(), is(0));
+    }
+
+    @Test
+    public void testGroupByMultiValuedColumn() throws Exception {
+        indexMultiValued();
+        GroupByOrdinalsCollector.StatesCollector collector = countCollector(executionState(false), keyExpression(true));
+
+        expectedException.expect(GroupByOnArrayUnsupportedException.class);
+        new IndexSearcher(reader).search(new MatchAllDocsQuery(), collector);
+    }
+
+    @Test
+    public void testKilledCollectorStopsCollecting() throws Exception {
+        index("a", "b");
+        GroupByOrdinalsCollector.StatesCollector collector = countCollector(executionState(true), keyExpression(false));
+
+        expectedException.expect(CancellationException.class);
+        new IndexSearcher(reader).search(new MatchAllDocsQuery(), collector);
+    }
+}
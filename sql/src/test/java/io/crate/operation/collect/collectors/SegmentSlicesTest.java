@@ -0,0 +1,163 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect.collectors;
+
+import com.google.common.collect.ImmutableList;
+import io.crate.analyze.symbol.Aggregation;
+import io.crate.analyze.symbol.InputColumn;
+import io.crate.analyze.symbol.Symbol;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionInfo;
+import io.crate.planner.projection.AggregationProjection;
+import io.crate.planner.projection.GroupProjection;
+import io.crate.planner.projection.Projection;
+import io.crate.planner.projection.TopNProjection;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.*;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.*;
+
+public class SegmentSlicesTest extends CrateUnitTest {
+
+    private Directory directory;
+    private IndexReader reader;
+
+    @Before
+    public void prepare() throws Exception {
+        directory = new RAMDirectory();
+        IndexWriterConfig cfg = new IndexWriterConfig(Version.LATEST, new StandardAnalyzer());
+        cfg.setMergePolicy(NoMergePolicy.INSTANCE);
+        IndexWriter w = new IndexWriter(directory, cfg);
+        // segments with 40, 30, 20 and 10 docs
+        for (int numDocs : new int[]{40, 30, 20, 10}) {
+            for (int i = 0; i < numDocs; i++) {
+                Document doc = new Document();
+                doc.add(new StringField("x", "foo", Field.Store.NO));
+                w.addDocument(doc);
+            }
+            w.commit();
+        }
+        w.close();
+        reader = DirectoryReader.open(directory);
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        reader.close();
+        directory.close();
+    }
+
+    private static int numDocs(List<AtomicReaderContext> leaves) {
+        int numDocs = 0;
+        for (AtomicReaderContext leaf : leaves) {
+            numDocs += leaf.reader().maxDoc();
+        }
+        return numDocs;
+    }
+
+    @Test
+    public void testSlicesAreBalanced() throws Exception {
+        List<AtomicReaderContext> leaves = reader.leaves();
+        assertThat(leaves.size(), is(4));
+
+        SegmentSlices slices = SegmentSlices.create(leaves, 2, 10);
+        assertThat(slices.numSlices(), is(2));
+        assertThat(numDocs(slices.leaves(0)), is(50));
+        assertThat(numDocs(slices.leaves(1)), is(50));
+
+        Set<AtomicReaderContext> allLeaves = new HashSet<>();
+        for (int i = 0; i < slices.numSlices(); i++) {
+            int lastOrd = -1;
+            for (AtomicReaderContext leaf : slices.leaves(i)) {
+                assertThat(leaf.ord, greaterThan(lastOrd));
+                lastOrd = leaf.ord;
+                allLeaves.add(leaf);
+            }
+        }
+        assertThat(allLeaves.size(), is(4));
+    }
+
+    @Test
+    public void testNumSlicesIsLimitedByNumberOfLeaves() throws Exception {
+        SegmentSlices slices = SegmentSlices.create(reader.leaves(), 10, 1);
+        assertThat(slices.numSlices(), is(4));
+    }
+
+    @Test
+    public void testSmallShardIsNotSplit() throws IOException {
+        SegmentSlices slices = SegmentSlices.create(reader.leaves(), 4);
+        assertThat(slices.numSlices(), is(1));
+        assertThat(slices.leaves(0), is(reader.leaves()));
+    }
+
+    @Test
+    public void testCanMergeSlicesOfPartialAggregations() throws Exception {
+        FunctionInfo countInfo = new FunctionInfo(new FunctionIdent("count", ImmutableList.<DataType>of()), DataTypes.LONG);
+        Aggregation partialCount = Aggregation.partialAggregation(countInfo, DataTypes.LONG, ImmutableList.<Symbol>of());
+        Aggregation finalCount = Aggregation.finalAggregation(countInfo, ImmutableList.<Symbol>of(), Aggregation.Step.ITER);
+        List<Symbol> keys = ImmutableList.<Symbol>of(new InputColumn(0, DataTypes.STRING));
+
+        assertThat(SegmentSlices.canMergeSlices(ImmutableList.of(
+                new GroupProjection(keys, ImmutableList.of(partialCount), Aggregation.Step.PARTIAL))), is(true));
+        assertThat(SegmentSlices.canMergeSlices(ImmutableList.of(
+                new GroupProjection(keys, ImmutableList.<Aggregation>of(), Aggregation.Step.PARTIAL))), is(true));
+        assertThat(SegmentSlices.canMergeSlices(ImmutableList.of(
+                new AggregationProjection(ImmutableList.of(partialCount)))), is(true));
+
+        assertThat(SegmentSlices.canMergeSlices(ImmutableList.<Projection>of()), is(false));
+        assertThat(SegmentSlices.canMergeSlices(ImmutableList.of(
+                new GroupProjection(keys, ImmutableList.of(finalCount), Aggregation.Step.FINAL))), is(false));
+        // e.g. select distinct of a clustered by column which is grouped completely on the shard
+        assertThat(SegmentSlices.canMergeSlices(ImmutableList.of(
+                new GroupProjection(keys, ImmutableList.<Aggregation>of(), Aggregation.Step.FINAL))), is(false));
+        assertThat(SegmentSlices.canMergeSlices(ImmutableList.of(
+                new GroupProjection(keys, ImmutableList.of(partialCount), Aggregation.Step.PARTIAL),
+                new TopNProjection(10, 0))), is(false));
+    }
+
+    @Test
+    public void testReleasedByLastSlice() throws Exception {
+        SegmentSlices slices = SegmentSlices.create(reader.leaves(), 3, 10);
+        assertThat(slices.numSlices(), is(3));
+        assertThat(slices.release(), is(false));
+        assertThat(slices.release(), is(false));
+        assertThat(slices.release(), is(true));
+    }
+}
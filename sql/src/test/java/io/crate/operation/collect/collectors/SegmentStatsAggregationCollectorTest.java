@@ -0,0 +1,190 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.collect.collectors;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.crate.analyze.WhereClause;
+import io.crate.analyze.symbol.Aggregation;
+import io.crate.analyze.symbol.InputColumn;
+import io.crate.analyze.symbol.Symbol;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionInfo;
+import io.crate.metadata.RowGranularity;
+import io.crate.metadata.Routing;
+import io.crate.planner.distribution.DistributionInfo;
+import io.crate.planner.node.dql.CollectPhase;
+import io.crate.planner.projection.AggregationProjection;
+import io.crate.planner.projection.Projection;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.*;
+import org.apache.lucene.index.*;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static io.crate.testing.TestingHelpers.createReference;
+import static org.hamcrest.Matchers.is;
+
+public class SegmentStatsAggregationCollectorTest extends CrateUnitTest {
+
+    private static Aggregation aggregation(String name, DataType type, Symbol... inputs) {
+        ImmutableList.Builder<DataType> argumentTypes = ImmutableList.builder();
+        for (Symbol input : inputs) {
+            argumentTypes.add(input.valueType());
+        }
+        FunctionInfo info = new FunctionInfo(
+                new FunctionIdent(name, argumentTypes.build()), type, FunctionInfo.Type.AGGREGATE);
+        return Aggregation.partialAggregation(info, type, ImmutableList.copyOf(inputs));
+    }
+
+    private static CollectPhase collectPhase(Symbol toCollect, WhereClause whereClause, Aggregation... aggregations) {
+        return new CollectPhase(
+                UUID.randomUUID(),
+                0,
+                "collect",
+                new Routing(ImmutableMap.<String, Map<String, List<Integer>>>of()),
+                RowGranularity.DOC,
+                ImmutableList.of(toCollect),
+                ImmutableList.<Projection>of(new AggregationProjection(ImmutableList.copyOf(aggregations))),
+                whereClause,
+                DistributionInfo.DEFAULT_BROADCAST
+        );
+    }
+
+    @Test
+    public void testCanCollectCountMinMax() throws Exception {
+        InputColumn ts = new InputColumn(0, DataTypes.TIMESTAMP);
+        CollectPhase phase = collectPhase(createReference("ts", DataTypes.TIMESTAMP), WhereClause.MATCH_ALL,
+                aggregation("count", DataTypes.LONG),
+                aggregation("min", DataTypes.TIMESTAMP, ts),
+                aggregation("max", DataTypes.TIMESTAMP, ts));
+        assertThat(SegmentStatsAggregationCollector.canCollect(phase), is(true));
+    }
+
+    @Test
+    public void testCannotCollectWithQuery() throws Exception {
+        CollectPhase phase = collectPhase(createReference("flag", DataTypes.BOOLEAN),
+                new WhereClause(createReference("flag", DataTypes.BOOLEAN)),
+                aggregation("count", DataTypes.LONG));
+        assertThat(SegmentStatsAggregationCollector.canCollect(phase), is(false));
+    }
+
+    @Test
+    public void testCannotCollectUnsupportedAggregations() throws Exception {
+        InputColumn name = new InputColumn(0, DataTypes.STRING);
+        CollectPhase phase = collectPhase(createReference("name", DataTypes.STRING), WhereClause.MATCH_ALL,
+                aggregation("min", DataTypes.STRING, name));
+        assertThat(SegmentStatsAggregationCollector.canCollect(phase), is(false));
+
+        phase = collectPhase(createReference("name", DataTypes.STRING), WhereClause.MATCH_ALL,
+                aggregation("count", DataTypes.LONG, name));
+        assertThat(SegmentStatsAggregationCollector.canCollect(phase), is(false));
+
+        InputColumn x = new InputColumn(0, DataTypes.LONG);
+        phase = collectPhase(createReference("x", DataTypes.LONG), WhereClause.MATCH_ALL,
+                aggregation("sum", DataTypes.LONG, x));
+        assertThat(SegmentStatsAggregationCollector.canCollect(phase), is(false));
+
+        phase = collectPhase(createReference("_version", DataTypes.LONG), WhereClause.MATCH_ALL,
+                aggregation("max", DataTypes.LONG, x));
+        assertThat(SegmentStatsAggregationCollector.canCollect(phase), is(false));
+    }
+
+    @Test
+    public void testMergeProjection() throws Exception {
+        InputColumn x = new InputColumn(0, DataTypes.LONG);
+        AggregationProjection projection = new AggregationProjection(ImmutableList.of(
+                aggregation("count", DataTypes.LONG), aggregation("max", DataTypes.LONG, x)));
+
+        AggregationProjection merge = SegmentStatsAggregationCollector.mergeProjection(projection);
+        assertThat(merge.aggregations().size(), is(2));
+        for (int i = 0; i < 2; i++) {
+            Aggregation aggregation = merge.aggregations().get(i);
+            assertThat(aggregation.fromStep(), is(Aggregation.Step.PARTIAL));
+            assertThat(aggregation.toStep(), is(Aggregation.Step.PARTIAL));
+            assertThat(aggregation.functionIdent(), is(projection.aggregations().get(i).functionIdent()));
+            assertThat(aggregation.inputs(), is((List<Symbol>) ImmutableList.<Symbol>of(new InputColumn(i, DataTypes.LONG))));
+        }
+    }
+
+    @Test
+    public void testMinMaxFromTerms() throws Exception {
+        RAMDirectory directory = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(Version.LUCENE_4_10_4, new KeywordAnalyzer()));
+        long[] values = new long[]{42L, -7L, 1449999900000L, 3L};
+        for (long value : values) {
+            Document doc = new Document();
+            doc.add(new LongField("l", value, Field.Store.NO));
+            doc.add(new IntField("i", (int) (value % 1000), Field.Store.NO));
+            doc.add(new DoubleField("d", value / 10.0, Field.Store.NO));
+            doc.add(new FloatField("f", value / 4.0f, Field.Store.NO));
+            writer.addDocument(doc);
+        }
+        writer.close();
+        DirectoryReader reader = DirectoryReader.open(directory);
+        AtomicReader leaf = SlowCompositeReaderWrapper.wrap(reader);
+
+        assertThat((Long) SegmentStatsAggregationCollector.value(leaf.terms("l"), DataTypes.TIMESTAMP, true), is(-7L));
+        assertThat((Long) SegmentStatsAggregationCollector.value(leaf.terms("l"), DataTypes.LONG, false), is(1449999900000L));
+        assertThat((Integer) SegmentStatsAggregationCollector.value(leaf.terms("i"), DataTypes.INTEGER, true), is(-7));
+        assertThat((Short) SegmentStatsAggregationCollector.value(leaf.terms("i"), DataTypes.SHORT, false), is((short) 42));
+        assertThat((Double) SegmentStatsAggregationCollector.value(leaf.terms("d"), DataTypes.DOUBLE, true), is(-0.7d));
+        assertThat((Float) SegmentStatsAggregationCollector.value(leaf.terms("f"), DataTypes.FLOAT, false), is(1449999900000L / 4.0f));
+        reader.close();
+    }
+
+    @Test
+    public void testCountIsReadFromStatsOfSegmentsWithDeletions() throws Exception {
+        RAMDirectory directory = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(Version.LUCENE_4_10_4, new KeywordAnalyzer()));
+        for (long value = 0; value < 3; value++) {
+            Document doc = new Document();
+            doc.add(new StringField("id", String.valueOf(value), Field.Store.NO));
+            doc.add(new LongField("l", value, Field.Store.NO));
+            writer.addDocument(doc);
+        }
+        writer.commit();
+        writer.deleteDocuments(new Term("id", "2"));
+        writer.close();
+        DirectoryReader reader = DirectoryReader.open(directory);
+        AtomicReader leaf = SlowCompositeReaderWrapper.wrap(reader);
+        assertThat(leaf.hasDeletions(), is(true));
+        assertThat(leaf.numDocs(), is(2));
+
+        SegmentStatsAggregationCollector.Kind[] count = {SegmentStatsAggregationCollector.Kind.COUNT};
+        assertThat(SegmentStatsAggregationCollector.hasUsableStats(leaf, count, new String[]{null}), is(true));
+        // the terms dictionary still contains the value of the deleted document
+        SegmentStatsAggregationCollector.Kind[] countAndMax =
+                {SegmentStatsAggregationCollector.Kind.COUNT, SegmentStatsAggregationCollector.Kind.MAX};
+        assertThat(SegmentStatsAggregationCollector.hasUsableStats(leaf, countAndMax, new String[]{null, "l"}), is(false));
+        reader.close();
+    }
+}
@@ -23,7 +23,10 @@ package io.crate.operation.collect.files;
 
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectInputStream;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
@@ -43,6 +46,7 @@ import io.crate.test.integration.CrateUnitTest;
 import io.crate.testing.CollectingRowReceiver;
 import io.crate.testing.TestingHelpers;
 import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -52,15 +56,19 @@ import org.mockito.stubbing.Answer;
 
 import java.io.*;
 import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Set;
 import java.util.zip.GZIPOutputStream;
 
 import static io.crate.testing.TestingHelpers.createReference;
 import static io.crate.testing.TestingHelpers.isRow;
+import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.mock;
@@ -72,16 +80,23 @@ public class FileReadingCollectorTest extends CrateUnitTest {
     private static File tmpFile;
     private static File tmpFileGz;
     private static File tmpFileEmptyLine;
+    private static File tmpFileCsv;
+    private static File tmpFileLarge;
     private FileCollectInputSymbolVisitor inputSymbolVisitor;
+    private byte[] s3Content;
 
     @BeforeClass
     public static void setUpClass() throws Exception {
         Path copy_from = Files.createTempDirectory("copy_from");
         Path copy_from_gz = Files.createTempDirectory("copy_from_gz");
         Path copy_from_empty = Files.createTempDirectory("copy_from_empty");
+        Path copy_from_csv = Files.createTempDirectory("copy_from_csv");
+        Path copy_from_large = Files.createTempDirectory("copy_from_large");
         tmpFileGz = File.createTempFile("fileReadingCollector", ".json.gz", copy_from_gz.toFile());
         tmpFile = File.createTempFile("fileReadingCollector", ".json", copy_from.toFile());
         tmpFileEmptyLine = File.createTempFile("emptyLine", ".json", copy_from_empty.toFile());
+        tmpFileCsv = File.createTempFile("fileReadingCollector", ".csv", copy_from_csv.toFile());
+        tmpFileLarge = File.createTempFile("fileReadingCollector", ".csv", copy_from_large.toFile());
         try (BufferedWriter writer =
                      new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(tmpFileGz))))) {
             writer.write("{\"name\": \"Arthur\", \"id\": 4, \"details\": {\"age\": 38}}\n");
@@ -96,6 +111,20 @@ public class FileReadingCollectorTest extends CrateUnitTest {
             writer.write("\n");
             writer.write("{\"id\": 5, \"name\": \"Trillian\", \"details\": {\"age\": 33}}\n");
         }
+        try (FileWriter writer = new FileWriter(tmpFileCsv)) {
+            writer.write("name,id,quote\r\n");
+            writer.write("Arthur,4,\r\n");
+            writer.write("\"Trillian, Tricia\",5,\"\"\"Don't Panic\"\"\"\r\n");
+        }
+        try (FileWriter writer = new FileWriter(tmpFileLarge)) {
+            writer.write("id,name\n");
+            for (int i = 0; i < 100; i++) {
+                writer.write(i + ",name " + i + "\n");
+                if (i % 10 == 0) {
+                    writer.write("\n");
+                }
+            }
+        }
     }
 
     @Before
@@ -113,6 +142,8 @@ public class FileReadingCollectorTest extends CrateUnitTest {
         tmpFile.delete();
         tmpFileGz.delete();
         tmpFileEmptyLine.delete();
+        tmpFileCsv.delete();
+        tmpFileLarge.delete();
     }
 
     @Test
@@ -173,6 +204,46 @@ public class FileReadingCollectorTest extends CrateUnitTest {
         assertCorrectResult(projector.result());
     }
 
+    @Test
+    public void testCollectFromCsv() throws Throwable {
+        CollectingRowReceiver projector = getObjects(Paths.get(tmpFileCsv.toURI()).toUri().toString(),
+                null, FileReadingCollector.FileFormat.CSV);
+        assertThat(TestingHelpers.printedTable(projector.result()), is(
+                "{\"name\":\"Arthur\",\"id\":\"4\",\"quote\":null}\n" +
+                "{\"name\":\"Trillian, Tricia\",\"id\":\"5\",\"quote\":\"\\\"Don't Panic\\\"\"}\n"));
+    }
+
+    @Test
+    public void testCollectChunksWithMultipleThreads() throws Throwable {
+        String uri = Paths.get(tmpFileLarge.toURI()).toUri().toString();
+        Set<String> lines = new HashSet<>();
+        int numRows = 0;
+        for (int threadNumber = 0; threadNumber < 3; threadNumber++) {
+            CollectingRowReceiver projector = new CollectingRowReceiver();
+            FileReadingCollector collector = createCollector(uri, null, FileReadingCollector.FileFormat.CSV,
+                    mock(S3ObjectInputStream.class), projector, 3, threadNumber, 64L);
+            collector.doCollect();
+            for (Row row : projector.result()) {
+                lines.add(((BytesRef) row.get(0)).utf8ToString());
+                numRows++;
+            }
+        }
+        assertThat(numRows, is(100));
+        assertThat(lines.size(), is(100));
+        assertThat(lines, hasItems("{\"id\":\"0\",\"name\":\"name 0\"}", "{\"id\":\"99\",\"name\":\"name 99\"}"));
+    }
+
+    @Test
+    public void testCollectS3ObjectInChunks() throws Throwable {
+        s3Content = "foo\nbar\nbaz\n".getBytes(StandardCharsets.UTF_8);
+        CollectingRowReceiver projector = new CollectingRowReceiver();
+        FileReadingCollector collector = createCollector("s3://fakebucket/foo", null, FileReadingCollector.FileFormat.JSON,
+                mock(S3ObjectInputStream.class), projector, 1, 0, 5L);
+        collector.doCollect();
+
+        assertThat(TestingHelpers.printedTable(projector.result()), is("foo\nbar\nbaz\n"));
+    }
+
     @Test
     public void testCollectWithOneSocketTimeout() throws Throwable {
         S3ObjectInputStream inputStream = mock(S3ObjectInputStream.class);
@@ -209,13 +280,37 @@ public class FileReadingCollectorTest extends CrateUnitTest {
     }
 
     private CollectingRowReceiver getObjects(String fileUri, String compression) throws Throwable {
+        return getObjects(fileUri, compression, FileReadingCollector.FileFormat.JSON);
+    }
+
+    private CollectingRowReceiver getObjects(String fileUri,
+                                             String compression,
+                                             FileReadingCollector.FileFormat format) throws Throwable {
         S3ObjectInputStream inputStream = mock(S3ObjectInputStream.class);
         when(inputStream.read(new byte[anyInt()], anyInt(), anyByte())).thenReturn(-1);
-        return getObjects(fileUri, compression, inputStream);
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        FileReadingCollector collector = createCollector(fileUri, compression, format, inputStream, rowReceiver,
+                1, 0, FileReadingCollector.CHUNK_SIZE);
+        collector.doCollect();
+        return rowReceiver;
     }
 
     private CollectingRowReceiver getObjects(String fileUri, String compression, final S3ObjectInputStream s3InputStream) throws Throwable {
         CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        FileReadingCollector collector = createCollector(fileUri, compression, FileReadingCollector.FileFormat.JSON,
+                s3InputStream, rowReceiver, 1, 0, FileReadingCollector.CHUNK_SIZE);
+        collector.doCollect();
+        return rowReceiver;
+    }
+
+    private FileReadingCollector createCollector(String fileUri,
+                                                 String compression,
+                                                 FileReadingCollector.FileFormat format,
+                                                 final S3ObjectInputStream s3InputStream,
+                                                 CollectingRowReceiver rowReceiver,
+                                                 int numThreads,
+                                                 int threadNumber,
+                                                 long chunkSize) throws Throwable {
         FileCollectInputSymbolVisitor.Context context =
                 inputSymbolVisitor.extractImplementations(createReference("_raw", DataTypes.STRING));
         FileReadingCollector collector = new FileReadingCollector(
@@ -223,7 +318,7 @@ public class FileReadingCollectorTest extends CrateUnitTest {
                 context.topLevelInputs(),
                 context.expressions(),
                 rowReceiver,
-                FileReadingCollector.FileFormat.JSON,
+                format,
                 compression,
                 ImmutableMap.<String, FileInputFactory>of("s3", new FileInputFactory() {
                     @Override
@@ -244,6 +339,27 @@ public class FileReadingCollectorTest extends CrateUnitTest {
                                 when(s3Object.getObjectContent()).thenReturn(s3InputStream);
                                 when(client.listNextBatchOfObjects(any(ObjectListing.class))).thenReturn(objectListing);
                                 when(objectListing.isTruncated()).thenReturn(false);
+                                if (s3Content != null) {
+                                    ObjectMetadata metadata = new ObjectMetadata();
+                                    metadata.setContentLength(s3Content.length);
+                                    when(client.getObjectMetadata("fakebucket", "foo")).thenReturn(metadata);
+                                    when(client.getObject(any(GetObjectRequest.class))).thenAnswer(new Answer<S3Object>() {
+                                        @Override
+                                        public S3Object answer(InvocationOnMock invocation) throws Throwable {
+                                            GetObjectRequest request = (GetObjectRequest) invocation.getArguments()[0];
+                                            int start = (int) request.getRange()[0];
+                                            if (start >= s3Content.length) {
+                                                AmazonS3Exception e = new AmazonS3Exception("InvalidRange");
+                                                e.setStatusCode(416);
+                                                throw e;
+                                            }
+                                            int end = (int) Math.min(request.getRange()[1] + 1, s3Content.length);
+                                            S3Object object = new S3Object();
+                                            object.setObjectContent(new ByteArrayInputStream(s3Content, start, end - start));
+                                            return object;
+                                        }
+                                    });
+                                }
                                 return client;
                             }
                         });
@@ -256,11 +372,13 @@ public class FileReadingCollectorTest extends CrateUnitTest {
                     }
                 },
                 1,
-                0
+                0,
+                numThreads,
+                threadNumber,
+                chunkSize
         );
         rowReceiver.prepare(mock(ExecutionState.class));
-        collector.doCollect();
-        return rowReceiver;
+        return collector;
     }
 
     /**
@@ -23,21 +23,35 @@
 package io.crate.operation.collect.files;
 
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.google.common.base.Predicate;
+import com.google.common.io.ByteStreams;
 import io.crate.external.S3ClientHelper;
 import io.crate.test.integration.CrateUnitTest;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.net.URI;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
 import static org.hamcrest.Matchers.is;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -92,6 +106,84 @@ public class S3FileInputTest extends CrateUnitTest {
         assertThat(uris.get(1).toString(), is("s3://fakeBucket/prefix/test2.json.gz"));
     }
 
+    @Test
+    public void testSize() throws Exception {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(1024L);
+        when(amazonS3.getObjectMetadata(BUCKET_NAME, PREFIX)).thenReturn(metadata);
+
+        assertThat(s3FileInput.size(uri), is(1024L));
+    }
+
+    @Test
+    public void testGetStreamFromPositionUsesRangedGet() throws Exception {
+        S3Object object = new S3Object();
+        object.setObjectContent(new ByteArrayInputStream(new byte[]{1, 2}));
+        when(amazonS3.getObject(any(GetObjectRequest.class))).thenReturn(object);
+
+        InputStream stream = s3FileInput.getStream(uri, 100L, 200L);
+        assertThat(stream.read(), is(1));
+
+        ArgumentCaptor<GetObjectRequest> request = ArgumentCaptor.forClass(GetObjectRequest.class);
+        verify(amazonS3).getObject(request.capture());
+        assertThat(request.getValue().getBucketName(), is(BUCKET_NAME));
+        assertThat(request.getValue().getKey(), is(PREFIX));
+        assertThat(request.getValue().getRange()[0], is(100L));
+        // the range ends shortly after the expected end instead of the end of the object
+        assertThat(request.getValue().getRange()[1], is(200L + S3FileInput.RANGE_SLACK - 1));
+    }
+
+    @Test
+    public void testRangedStreamRequestsFollowingRangesIfReadFurther() throws Exception {
+        final byte[] content = new byte[200_000];
+        getRandom().nextBytes(content);
+        AmazonS3 client = mock(AmazonS3.class);
+        when(client.getObject(any(GetObjectRequest.class))).thenAnswer(new Answer<S3Object>() {
+            @Override
+            public S3Object answer(InvocationOnMock invocation) throws Throwable {
+                long[] range = ((GetObjectRequest) invocation.getArguments()[0]).getRange();
+                int end = (int) Math.min(range[1] + 1, content.length);
+                S3Object object = new S3Object();
+                object.setObjectContent(new ByteArrayInputStream(content, (int) range[0], end - (int) range[0]));
+                return object;
+            }
+        });
+
+        S3FileInput.RangedObjectInputStream stream = new S3FileInput.RangedObjectInputStream(
+                client, BUCKET_NAME, PREFIX, 10L, 100L);
+        assertThat(stream.open(), is(true));
+        byte[] read = ByteStreams.toByteArray(stream);
+        stream.close();
+        assertThat(read, is(Arrays.copyOfRange(content, 10, content.length)));
+
+        ArgumentCaptor<GetObjectRequest> requests = ArgumentCaptor.forClass(GetObjectRequest.class);
+        verify(client, Mockito.atLeast(2)).getObject(requests.capture());
+        long expectedStart = 10L;
+        long expectedSize = 100L;
+        for (GetObjectRequest request : requests.getAllValues()) {
+            assertThat(request.getRange()[0], is(expectedStart));
+            assertThat(request.getRange()[1], is(expectedStart + expectedSize - 1));
+            expectedStart += expectedSize;
+            expectedSize *= 2;
+        }
+    }
+
+    @Test
+    public void testRangedStreamIsAbortedIfClosedBeforeTheExpectedEnd() throws Exception {
+        AmazonS3 client = mock(AmazonS3.class);
+        HttpRequestBase httpRequest = mock(HttpRequestBase.class);
+        S3Object object = new S3Object();
+        object.setObjectContent(new S3ObjectInputStream(new ByteArrayInputStream(new byte[1_000_000]), httpRequest));
+        when(client.getObject(any(GetObjectRequest.class))).thenReturn(object);
+
+        S3FileInput.RangedObjectInputStream stream = new S3FileInput.RangedObjectInputStream(
+                client, BUCKET_NAME, PREFIX, 0L, 1_000_000L);
+        assertThat(stream.open(), is(true));
+        assertThat(stream.read(), is(0));
+        stream.close();
+        verify(httpRequest).abort();
+    }
+
     private List<S3ObjectSummary> objectSummaries() {
         listObjectSummaries = new LinkedList<>();
 
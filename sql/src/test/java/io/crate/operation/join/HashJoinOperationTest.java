@@ -0,0 +1,312 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.join;
+
+import com.carrotsearch.randomizedtesting.annotations.Repeat;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.core.collections.Bucket;
+import io.crate.core.collections.Row;
+import io.crate.core.collections.RowN;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.testing.CollectingRowReceiver;
+import io.crate.testing.RowSender;
+import io.crate.testing.TestingHelpers;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.MemoryCircuitBreaker;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.core.Is.is;
+
+public class HashJoinOperationTest extends CrateUnitTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final RamAccountingContext RAM_ACCOUNTING_CONTEXT =
+            new RamAccountingContext("dummy", new NoopCircuitBreaker(CircuitBreaker.Name.FIELDDATA));
+
+    private static final List<DataType> TYPES = ImmutableList.<DataType>of(DataTypes.INTEGER, DataTypes.STRING);
+    private static final int[] FIRST_COLUMN = new int[]{0};
+
+    private List<Row> asRows(Object[]... rows) {
+        List<Row> result = new ArrayList<>(rows.length);
+        for (Object[] row : rows) {
+            for (int i = 0; i < row.length; i++) {
+                if (row[i] instanceof String) {
+                    row[i] = new BytesRef((String) row[i]);
+                }
+            }
+            result.add(new RowN(row));
+        }
+        return result;
+    }
+
+    private List<Row> leftRows() {
+        return asRows(
+                new Object[]{1, "green"},
+                new Object[]{2, "blue"},
+                new Object[]{3, "red"},
+                new Object[]{null, "black"});
+    }
+
+    private List<Row> rightRows() {
+        return asRows(
+                new Object[]{3, "small"},
+                new Object[]{2, "medium"},
+                new Object[]{3, "large"},
+                new Object[]{4, "huge"},
+                new Object[]{null, "tiny"});
+    }
+
+    private HashJoinOperation hashJoin(CollectingRowReceiver rowReceiver, boolean buildLeft) {
+        return new HashJoinOperation(0, rowReceiver, TYPES, TYPES, FIRST_COLUMN, FIRST_COLUMN, buildLeft, -1, false,
+                RAM_ACCOUNTING_CONTEXT, folder.getRoot().toPath());
+    }
+
+    private Bucket executeThreaded(HashJoinOperation hashJoin,
+                                   CollectingRowReceiver rowReceiver,
+                                   List<Row> leftRows,
+                                   List<Row> rightRows) throws Exception {
+        List<Thread> threads = new ArrayList<>(2);
+        threads.add(new Thread(new RowSender(leftRows, hashJoin.leftRowReceiver(), MoreExecutors.directExecutor())));
+        threads.add(new Thread(new RowSender(rightRows, hashJoin.rightRowReceiver(), MoreExecutors.directExecutor())));
+        Collections.shuffle(threads, getRandom());
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Bucket result = rowReceiver.result();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return result;
+    }
+
+    @Test
+    @Repeat(iterations = 5)
+    public void testHashJoinRetainsOrderOfLeftSide() throws Exception {
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        Bucket rows = executeThreaded(hashJoin(rowReceiver, false), rowReceiver, leftRows(), rightRows());
+        assertThat(TestingHelpers.printedTable(rows), is("" +
+                "2| blue| 2| medium\n" +
+                "3| red| 3| small\n" +
+                "3| red| 3| large\n"));
+    }
+
+    @Test
+    @Repeat(iterations = 5)
+    public void testHashJoinBuildLeft() throws Exception {
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        Bucket rows = executeThreaded(hashJoin(rowReceiver, true), rowReceiver, leftRows(), rightRows());
+        assertThat(TestingHelpers.printedTable(rows), is("" +
+                "3| red| 3| small\n" +
+                "2| blue| 2| medium\n" +
+                "3| red| 3| large\n"));
+    }
+
+    @Test
+    public void testProbeSideReceivesRowsBeforeBuildSideFinished() throws Exception {
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        HashJoinOperation hashJoin = hashJoin(rowReceiver, false);
+
+        RowSender leftSender = new RowSender(leftRows(), hashJoin.leftRowReceiver(), MoreExecutors.directExecutor());
+        RowSender rightSender = new RowSender(rightRows(), hashJoin.rightRowReceiver(), MoreExecutors.directExecutor());
+
+        leftSender.run();
+        assertThat(leftSender.numPauses(), is(1));
+        rightSender.run();
+
+        assertThat(rightSender.numPauses(), is(0));
+        assertThat(leftSender.numResumes(), is(1));
+        assertThat(rowReceiver.result().size(), is(3));
+    }
+
+    @Test
+    public void testBuildSideIsEmpty() throws Exception {
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        Bucket rows = executeThreaded(hashJoin(rowReceiver, false), rowReceiver, leftRows(), Collections.<Row>emptyList());
+        assertThat(rows.size(), is(0));
+    }
+
+    @Test
+    public void testProbeSideIsEmpty() throws Exception {
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        Bucket rows = executeThreaded(hashJoin(rowReceiver, false), rowReceiver, Collections.<Row>emptyList(), rightRows());
+        assertThat(rows.size(), is(0));
+    }
+
+    @Test
+    public void testHashJoinOnMultipleKeys() throws Exception {
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        HashJoinOperation hashJoin = new HashJoinOperation(0, rowReceiver, TYPES, TYPES,
+                new int[]{0, 1}, new int[]{0, 1}, false, -1, false, RAM_ACCOUNTING_CONTEXT, folder.getRoot().toPath());
+        Bucket rows = executeThreaded(hashJoin, rowReceiver,
+                asRows(new Object[]{1, "a"}, new Object[]{1, "b"}, new Object[]{2, null}),
+                asRows(new Object[]{1, "b"}, new Object[]{1, "c"}, new Object[]{2, null}));
+        assertThat(TestingHelpers.printedTable(rows), is("1| b| 1| b\n"));
+    }
+
+    @Test
+    public void testHashJoinWithPausingDownstream() throws Exception {
+        CollectingRowReceiver rowReceiver = CollectingRowReceiver.withPauseAfter(2);
+        HashJoinOperation hashJoin = hashJoin(rowReceiver, false);
+
+        RowSender leftSender = new RowSender(leftRows(), hashJoin.leftRowReceiver(), MoreExecutors.directExecutor());
+        RowSender rightSender = new RowSender(rightRows(), hashJoin.rightRowReceiver(), MoreExecutors.directExecutor());
+
+        rightSender.run();
+        leftSender.run();
+        // paused between the two matches of "red"
+        assertThat(rowReceiver.rows.size(), is(2));
+        assertThat(rowReceiver.isFinished(), is(false));
+
+        rowReceiver.resumeUpstream(false);
+        assertThat(TestingHelpers.printedTable(rowReceiver.result()), is("" +
+                "2| blue| 2| medium\n" +
+                "3| red| 3| small\n" +
+                "3| red| 3| large\n"));
+    }
+
+    @Test
+    public void testHashJoinWithLimitingDownstream() throws Exception {
+        CollectingRowReceiver rowReceiver = CollectingRowReceiver.withLimit(1);
+        Bucket rows = executeThreaded(hashJoin(rowReceiver, false), rowReceiver, leftRows(), rightRows());
+        assertThat(TestingHelpers.printedTable(rows), is("2| blue| 2| medium\n"));
+    }
+
+    @Test
+    @Repeat(iterations = 3)
+    public void testHashJoinWithSpilledPartitions() throws Exception {
+        List<Row> leftRows = new ArrayList<>();
+        List<Row> rightRows = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            leftRows.add(new RowN(new Object[]{i, new BytesRef("l" + i)}));
+            if (i % 2 == 0) {
+                rightRows.add(new RowN(new Object[]{i, new BytesRef("r" + i)}));
+                rightRows.add(new RowN(new Object[]{i, new BytesRef("r" + i)}));
+            }
+        }
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        // every partition exceeds the memory budget and is spilled
+        HashJoinOperation hashJoin = new HashJoinOperation(0, rowReceiver, TYPES, TYPES, FIRST_COLUMN, FIRST_COLUMN,
+                false, rightRows.size(), true, RAM_ACCOUNTING_CONTEXT, folder.getRoot().toPath(), 1024);
+        Bucket rows = executeThreaded(hashJoin, rowReceiver, leftRows, rightRows);
+
+        assertThat(rows.size(), is(2000));
+        int[] matches = new int[2000];
+        for (Row row : rows) {
+            int key = (Integer) row.get(0);
+            assertThat(row.get(2), is((Object) key));
+            assertThat(key % 2, is(0));
+            matches[key]++;
+        }
+        for (int i = 0; i < matches.length; i += 2) {
+            assertThat(matches[i], is(2));
+        }
+    }
+
+    @Test
+    public void testBuildSideLargerThanTheBreakerLimitIsSpilledWithoutTrippingIt() throws Exception {
+        long limit = new ByteSizeValue(8, ByteSizeUnit.MB).bytes();
+        MemoryCircuitBreaker breaker = new MemoryCircuitBreaker(
+                new ByteSizeValue(limit), 1.0, Loggers.getLogger(HashJoinOperationTest.class));
+        // most of the breaker is used by other queries
+        long usedByOthers = new ByteSizeValue(6500, ByteSizeUnit.KB).bytes();
+        breaker.addEstimateBytesAndMaybeBreak(usedByOthers, "others");
+        RamAccountingContext ramAccountingContext = new RamAccountingContext("join", breaker);
+
+        char[] chars = new char[1000];
+        Arrays.fill(chars, 'a');
+        BytesRef value = new BytesRef(new String(chars));
+        int numRows = 12000;
+        List<Row> leftRows = new ArrayList<>(numRows);
+        List<Row> rightRows = new ArrayList<>(numRows);
+        for (int i = 0; i < numRows; i++) {
+            leftRows.add(new RowN(new Object[]{i, new BytesRef("l" + i)}));
+            rightRows.add(new RowN(new Object[]{i, value}));
+        }
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        HashJoinOperation hashJoin = new HashJoinOperation(0, rowReceiver, TYPES, TYPES, FIRST_COLUMN, FIRST_COLUMN,
+                false, numRows, true, ramAccountingContext, folder.getRoot().toPath());
+        Bucket rows = executeThreaded(hashJoin, rowReceiver, leftRows, rightRows);
+
+        assertThat(rows.size(), is(numRows));
+        boolean[] matched = new boolean[numRows];
+        for (Row row : rows) {
+            int key = (Integer) row.get(0);
+            assertThat(row.get(2), is((Object) key));
+            assertThat(matched[key], is(false));
+            matched[key] = true;
+        }
+        assertThat(breaker.getTrippedCount(), is(0L));
+        assertThat(ramAccountingContext.trippedBreaker(), is(false));
+        // all partitions are released once the join has finished
+        assertThat(ramAccountingContext.remainingBytes(), is(limit - usedByOthers));
+    }
+
+    @Test
+    public void testSpilledPartitionWithSkewedKeyIsJoinedInBlocks() throws Exception {
+        List<Row> leftRows = new ArrayList<>();
+        List<Row> rightRows = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            rightRows.add(new RowN(new Object[]{1, new BytesRef("r" + i)}));
+        }
+        rightRows.add(new RowN(new Object[]{2, new BytesRef("r")}));
+        for (int i = 0; i < 3; i++) {
+            leftRows.add(new RowN(new Object[]{1, new BytesRef("l" + i)}));
+        }
+        leftRows.add(new RowN(new Object[]{2, new BytesRef("l")}));
+        leftRows.add(new RowN(new Object[]{3, new BytesRef("l")}));
+
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        // the partition of key 1 can't be split and is larger than the memory budget
+        HashJoinOperation hashJoin = new HashJoinOperation(0, rowReceiver, TYPES, TYPES, FIRST_COLUMN, FIRST_COLUMN,
+                false, rightRows.size(), true, RAM_ACCOUNTING_CONTEXT, folder.getRoot().toPath(), 1024);
+        Bucket rows = executeThreaded(hashJoin, rowReceiver, leftRows, rightRows);
+
+        assertThat(rows.size(), is(1501));
+        Set<String> matches = new HashSet<>();
+        for (Row row : rows) {
+            assertThat(row.get(2), is(row.get(0)));
+            assertThat(matches.add(row.get(1) + "-" + row.get(3)), is(true));
+        }
+        assertThat(folder.getRoot().list().length, is(0));
+    }
+}
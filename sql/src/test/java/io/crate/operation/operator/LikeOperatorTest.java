@@ -21,8 +21,10 @@
 package io.crate.operation.operator;
 
 import io.crate.analyze.symbol.Function;
+import io.crate.analyze.symbol.InputColumn;
 import io.crate.analyze.symbol.Literal;
 import io.crate.analyze.symbol.Symbol;
+import io.crate.metadata.Scalar;
 import io.crate.test.integration.CrateUnitTest;
 import io.crate.types.DataTypes;
 import org.apache.lucene.util.BytesRef;
@@ -31,6 +33,11 @@ import org.junit.Test;
 import java.util.Arrays;
 
 import static io.crate.operation.operator.LikeOperator.DEFAULT_ESCAPE;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 
 public class LikeOperatorTest extends CrateUnitTest {
 
@@ -172,4 +179,90 @@ public class LikeOperatorTest extends CrateUnitTest {
         assertNull(op.evaluate(Literal.newLiteral("foobarbaz"), brNullValue));
     }
 
+    // test compiled
+
+    private static Boolean compiledLike(String expression, String pattern) {
+        LikeOperator op = new LikeOperator(
+                LikeOperator.generateInfo(LikeOperator.NAME, DataTypes.STRING)
+        );
+        Literal<BytesRef> patternLiteral = Literal.newLiteral(pattern);
+        Scalar<Boolean, BytesRef> compiled = op.compile(Arrays.<Symbol>asList(Literal.newLiteral(expression), patternLiteral));
+        assertThat(compiled, not(sameInstance((Scalar<Boolean, BytesRef>) op)));
+        return compiled.evaluate(Literal.newLiteral(expression), patternLiteral);
+    }
+
+    @Test
+    public void testSimplePatternsUseByteMatchers() throws Exception {
+        assertThat(LikeOperator.likeMatcher("foo"), instanceOf(LikeOperator.ExactMatcher.class));
+        assertThat(LikeOperator.likeMatcher("foo%"), instanceOf(LikeOperator.PrefixMatcher.class));
+        assertThat(LikeOperator.likeMatcher("%foo"), instanceOf(LikeOperator.SuffixMatcher.class));
+        assertThat(LikeOperator.likeMatcher("%%foo%%"), instanceOf(LikeOperator.ContainsMatcher.class));
+        assertThat(LikeOperator.likeMatcher("%"), instanceOf(LikeOperator.SuffixMatcher.class));
+        assertThat(LikeOperator.likeMatcher("fo\\%o%"), instanceOf(LikeOperator.PrefixMatcher.class));
+        assertThat(LikeOperator.likeMatcher("fo_"), instanceOf(LikeOperator.RegexLikeMatcher.class));
+        assertThat(LikeOperator.likeMatcher("f%o"), instanceOf(LikeOperator.RegexLikeMatcher.class));
+    }
+
+    @Test
+    public void testCompiledLike() throws Exception {
+        assertThat(compiledLike("foo", "foo"), is(true));
+        assertThat(compiledLike("foo", "fo"), is(false));
+        assertThat(compiledLike("foobar", "foo%"), is(true));
+        assertThat(compiledLike("fo", "foo%"), is(false));
+        assertThat(compiledLike("foobar", "%bar"), is(true));
+        assertThat(compiledLike("ar", "%bar"), is(false));
+        assertThat(compiledLike("foobar", "%oba%"), is(true));
+        assertThat(compiledLike("foobar", "%obo%"), is(false));
+        assertThat(compiledLike("foofoobar", "%foob%"), is(true));
+        assertThat(compiledLike("", "%"), is(true));
+        assertThat(compiledLike("", ""), is(true));
+        assertThat(compiledLike("fo%bar", "fo\\%%"), is(true));
+        assertThat(compiledLike("foobar", "fo\\%%"), is(false));
+        assertThat(compiledLike("fo_", "%\\_"), is(true));
+        assertThat(compiledLike("foo", "%\\_"), is(false));
+        assertThat(compiledLike("foobarbaz", "foo%baz"), is(true));
+        assertThat(compiledLike("foobarbaz", "foo_baz"), is(false));
+        assertThat(compiledLike("foo\nbar", "foo%"), is(true));
+        assertThat(compiledLike("foo\nbar", "%o_b%"), is(true));
+    }
+
+    @Test
+    public void testCompiledLikeMultiByteCharacters() throws Exception {
+        assertThat(compiledLike("Привет мир", "Привет%"), is(true));
+        assertThat(compiledLike("Привет мир", "%мир"), is(true));
+        assertThat(compiledLike("Привет мир", "%ет м%"), is(true));
+        assertThat(compiledLike("Привет мир", "%мир%"), is(true));
+        assertThat(compiledLike("Привет мир", "%пр%"), is(false));
+        assertThat(compiledLike("Привет", "Приве_"), is(true));
+    }
+
+    @Test
+    public void testCompiledLikeNull() throws Exception {
+        assertThat(compiledLike(null, "foo%"), is(nullValue()));
+
+        LikeOperator op = new LikeOperator(
+                LikeOperator.generateInfo(LikeOperator.NAME, DataTypes.STRING)
+        );
+        BytesRef nullValue = null;
+        Scalar<Boolean, BytesRef> compiled = op.compile(
+                Arrays.<Symbol>asList(Literal.newLiteral("foo"), Literal.newLiteral(nullValue)));
+        assertThat(compiled, sameInstance((Scalar<Boolean, BytesRef>) op));
+    }
+
+    @Test
+    public void testCompiledLikeWithColumnPattern() throws Exception {
+        LikeOperator op = new LikeOperator(
+                LikeOperator.generateInfo(LikeOperator.NAME, DataTypes.STRING)
+        );
+        Scalar<Boolean, BytesRef> compiled = op.compile(
+                Arrays.<Symbol>asList(new InputColumn(0, DataTypes.STRING), new InputColumn(1, DataTypes.STRING)));
+        assertThat(compiled, not(sameInstance((Scalar<Boolean, BytesRef>) op)));
+
+        assertThat(compiled.evaluate(Literal.newLiteral("foobar"), Literal.newLiteral("foo%")), is(true));
+        assertThat(compiled.evaluate(Literal.newLiteral("barfoo"), Literal.newLiteral("foo%")), is(false));
+        assertThat(compiled.evaluate(Literal.newLiteral("barfoo"), Literal.newLiteral("%foo")), is(true));
+        assertThat(compiled.evaluate(Literal.newLiteral("foobar"), Literal.newLiteral("%foo")), is(false));
+        assertThat(compiled.evaluate(Literal.newLiteral("foobar"), Literal.newLiteral((String) null)), is(nullValue()));
+        assertThat(compiled.evaluate(Literal.newLiteral("foobar"), Literal.newLiteral("f_o%")), is(true));
+    }
 }
@@ -24,7 +24,9 @@ package io.crate.operation.operator;
 import io.crate.analyze.symbol.Function;
 import io.crate.analyze.symbol.Literal;
 import io.crate.analyze.symbol.Symbol;
+import io.crate.metadata.Scalar;
 import io.crate.test.integration.CrateUnitTest;
+import org.apache.lucene.util.BytesRef;
 import org.junit.Test;
 
 import java.util.Arrays;
@@ -86,4 +88,21 @@ public class RegexpMatchCaseInsensitiveOperatorTest extends CrateUnitTest {
         assertThat(regexpEvaluate("foo", null), is(nullValue()));
         assertThat(regexpEvaluate(null, null), is(nullValue()));
     }
+
+    // compiled
+
+    private Boolean compiledRegexp(String source, String pattern) {
+        RegexpMatchCaseInsensitiveOperator op = new RegexpMatchCaseInsensitiveOperator();
+        Literal<BytesRef> patternLiteral = Literal.newLiteral(pattern);
+        Scalar<Boolean, BytesRef> compiled = op.compile(Arrays.<Symbol>asList(Literal.newLiteral(source), patternLiteral));
+        return compiled.evaluate(Literal.newLiteral(source), patternLiteral);
+    }
+
+    @Test
+    public void testEvaluateCompiled() throws Exception {
+        assertThat(compiledRegexp("foo bar", "([A-Z][^ ]+ ?){2}"), is(true));
+        assertThat(compiledRegexp("foo", "([A-Z][^ ]+ ?){2}"), is(false));
+        assertThat(compiledRegexp("ÄÖÜ", "äöü"), is(true));
+        assertThat(compiledRegexp(null, "foo"), is(nullValue()));
+    }
 }
@@ -24,7 +24,9 @@ package io.crate.operation.operator;
 import io.crate.analyze.symbol.Function;
 import io.crate.analyze.symbol.Literal;
 import io.crate.analyze.symbol.Symbol;
+import io.crate.metadata.Scalar;
 import io.crate.test.integration.CrateUnitTest;
+import org.apache.lucene.util.BytesRef;
 import org.junit.Test;
 
 import java.util.Arrays;
@@ -85,4 +87,24 @@ public class RegexpMatchOperatortest extends CrateUnitTest {
         assertThat(regexpEvaluate("foo", null), is(nullValue()));
         assertThat(regexpEvaluate(null, null), is(nullValue()));
     }
+
+    // compiled
+
+    private Boolean compiledRegexp(String source, String pattern) {
+        RegexpMatchOperator op = new RegexpMatchOperator();
+        Literal<BytesRef> patternLiteral = Literal.newLiteral(pattern);
+        Scalar<Boolean, BytesRef> compiled = op.compile(Arrays.<Symbol>asList(Literal.newLiteral(source), patternLiteral));
+        return compiled.evaluate(Literal.newLiteral(source), patternLiteral);
+    }
+
+    @Test
+    public void testEvaluateCompiled() throws Exception {
+        assertThat(compiledRegexp("foo bar", "([A-Z][^ ]+ ?){2}"), is(false));
+        assertThat(compiledRegexp("Foo Bar", "([A-Z][^ ]+ ?){2}"), is(true));
+        assertThat(compiledRegexp("1000 $", "(<1-9999>) $|€"), is(true));
+        assertThat(compiledRegexp("10000 $", "(<1-9999>) $|€"), is(false));
+        assertThat(compiledRegexp("foo 123", "foo \\d+"), is(true));
+        assertThat(compiledRegexp("foo bar", "foo \\d+"), is(false));
+        assertThat(compiledRegexp(null, "foo"), is(nullValue()));
+    }
 }
@@ -15,11 +15,14 @@ import io.crate.operation.Input;
 import io.crate.operation.aggregation.AggregationFunction;
 import io.crate.operation.aggregation.impl.AggregationImplModule;
 import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.collect.InputCollectExpression;
 import io.crate.operation.collect.JobCollectContext;
 import io.crate.test.integration.CrateUnitTest;
 import io.crate.testing.CollectingRowReceiver;
+import io.crate.testing.TestingHelpers;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
+import org.apache.lucene.util.ByteBlockPool;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.breaker.NoopCircuitBreaker;
@@ -27,8 +30,12 @@ import org.elasticsearch.common.inject.ModulesBuilder;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import static io.crate.testing.TestingHelpers.getFunctions;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.core.Is.is;
 import static org.mockito.Mockito.mock;
@@ -86,18 +93,270 @@ public class GroupingProjectorTest extends CrateUnitTest {
         assertThat(rows.iterator().next().get(1), instanceOf(Long.class));
     }
 
-    class DummyInput implements Input<BytesRef> {
+    @Test
+    public void testGroupByIntegerKeyWithNullKey() throws Exception {
+        Bucket rows = countGroupBy(
+                Arrays.<DataType>asList(DataTypes.INTEGER),
+                ImmutableList.<Input<?>>of(new DummyInput(1, 2, null, 1, null, 1)));
+
+        assertThat(rows.size(), is(3));
+        assertThat(lines(rows), containsInAnyOrder("1| 3", "2| 1", "NULL| 2"));
+        for (Row row : rows) {
+            if (row.get(0) != null) {
+                assertThat(row.get(0), instanceOf(Integer.class));
+            }
+        }
+    }
+
+    @Test
+    public void testGroupByManyLongKeys() throws Exception {
+        int numKeys = 10_000;
+        Object[] keys = new Object[numKeys * 2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = (long) (i % numKeys);
+        }
+        Bucket rows = countGroupBy(Arrays.<DataType>asList(DataTypes.LONG), ImmutableList.<Input<?>>of(new DummyInput(keys)));
+
+        assertThat(rows.size(), is(numKeys));
+        for (Row row : rows) {
+            assertThat((Long) row.get(1), is(2L));
+        }
+    }
+
+    @Test
+    public void testGroupByStringKeyWithNullKey() throws Exception {
+        Bucket rows = countGroupBy(
+                Arrays.<DataType>asList(DataTypes.STRING),
+                ImmutableList.<Input<?>>of(new DummyInput(
+                        new BytesRef("foo"), null, new BytesRef("bar"), new BytesRef("foo"), new BytesRef(""))));
+
+        assertThat(lines(rows), containsInAnyOrder("foo| 2", "bar| 1", "| 1", "NULL| 1"));
+    }
+
+    @Test
+    public void testGroupByStringKeyExceedingPoolBlockSize() throws Exception {
+        BytesRef large = new BytesRef(new byte[ByteBlockPool.BYTE_BLOCK_SIZE]);
+        Bucket rows = countGroupBy(
+                Arrays.<DataType>asList(DataTypes.STRING),
+                ImmutableList.<Input<?>>of(new DummyInput(
+                        large, new BytesRef("foo"), BytesRef.deepCopyOf(large))));
+
+        assertThat(rows.size(), is(2));
+        for (Row row : rows) {
+            BytesRef key = (BytesRef) row.get(0);
+            assertThat((Long) row.get(1), is(key.length == large.length ? 2L : 1L));
+        }
+    }
+
+    @Test
+    public void testGroupByMultipleKeys() throws Exception {
+        Bucket rows = countGroupBy(
+                Arrays.<DataType>asList(DataTypes.STRING, DataTypes.LONG, DataTypes.DOUBLE),
+                ImmutableList.<Input<?>>of(
+                        new DummyInput(new BytesRef("a"), new BytesRef("a"), null, new BytesRef("a"), null),
+                        new DummyInput(1L, 1L, 2L, 2L, 2L),
+                        new DummyInput(1.5d, 1.5d, null, 1.5d, null)));
+
+        assertThat(lines(rows), containsInAnyOrder("a| 1| 1.5| 2", "a| 2| 1.5| 1", "NULL| 2| NULL| 2"));
+    }
+
+    @Test
+    public void testGroupByShortKeyReturnsShortKeys() throws Exception {
+        // uses the LongKeyGrouper
+        Bucket rows = countGroupBy(
+                Arrays.<DataType>asList(DataTypes.SHORT),
+                ImmutableList.<Input<?>>of(new DummyInput(1, 2, 1)));
+
+        assertThat(lines(rows), containsInAnyOrder("1| 2", "2| 1"));
+        for (Row row : rows) {
+            assertThat(row.get(0), instanceOf(Short.class));
+        }
+    }
+
+    @Test
+    public void testGroupByStringKeyReturnsBytesRefKeys() throws Exception {
+        // uses the BytesRefKeyGrouper
+        Bucket rows = countGroupBy(
+                Arrays.<DataType>asList(DataTypes.STRING),
+                ImmutableList.<Input<?>>of(new DummyInput("foo", new BytesRef("foo"), "bar")));
+
+        assertThat(lines(rows), containsInAnyOrder("foo| 2", "bar| 1"));
+        for (Row row : rows) {
+            assertThat(row.get(0), instanceOf(BytesRef.class));
+        }
+    }
+
+    @Test
+    public void testGroupByMultiplePrimitiveKeysReturnsKeysOfKeyTypes() throws Exception {
+        // uses the SerializedKeyGrouper
+        Bucket rows = countGroupBy(
+                Arrays.<DataType>asList(DataTypes.INTEGER, DataTypes.LONG),
+                ImmutableList.<Input<?>>of(
+                        new DummyInput(1L, 1, 2L),
+                        new DummyInput(10, 10L, 20)));
+
+        assertThat(lines(rows), containsInAnyOrder("1| 10| 2", "2| 20| 1"));
+        for (Row row : rows) {
+            assertThat(row.get(0), instanceOf(Integer.class));
+            assertThat(row.get(1), instanceOf(Long.class));
+        }
+    }
+
+    @Test
+    public void testGroupByLongKeyFromBatch() throws Exception {
+        RowBatch batch = new RowBatch(Arrays.<DataType>asList(DataTypes.LONG, DataTypes.LONG), 8);
+        for (Object key : new Object[] { 1L, 2L, 1L, null, 3L }) {
+            batch.add(new RowN(new Object[] { 0L, key }));
+        }
+        // the last row isn't selected
+        for (int i = 0; i < 4; i++) {
+            batch.selection()[i] = i;
+        }
+        batch.select(4);
+        assertThat(lines(countGroupByBatch(DataTypes.LONG, batch)), containsInAnyOrder("1| 2", "2| 1", "NULL| 1"));
+    }
+
+    @Test
+    public void testGroupByIntegerKeyFromBatch() throws Exception {
+        RowBatch batch = new RowBatch(Arrays.<DataType>asList(DataTypes.LONG, DataTypes.INTEGER), 8);
+        for (Object key : new Object[] { 1, 2, 1, null }) {
+            batch.add(new RowN(new Object[] { 0L, key }));
+        }
+        assertThat(lines(countGroupByBatch(DataTypes.INTEGER, batch)), containsInAnyOrder("1| 2", "2| 1", "NULL| 1"));
+    }
+
+    @Test
+    public void testGroupByStringKeyFromBatch() throws Exception {
+        RowBatch batch = new RowBatch(Arrays.<DataType>asList(DataTypes.LONG, DataTypes.STRING), 8);
+        for (Object key : new Object[] { new BytesRef("a"), null, new BytesRef("b"), new BytesRef("a") }) {
+            batch.add(new RowN(new Object[] { 0L, key }));
+        }
+        assertThat(lines(countGroupByBatch(DataTypes.STRING, batch)), containsInAnyOrder("a| 2", "b| 1", "NULL| 1"));
+    }
+
+    @Test
+    public void testGroupByLongKeyAggregatesTheRowsOfEachGroupOfABatch() throws Exception {
+        FunctionInfo sumInfo = new FunctionInfo(
+                new FunctionIdent("sum", ImmutableList.<DataType>of(DataTypes.LONG)), DataTypes.DOUBLE);
+        AggregationFunction sum = (AggregationFunction) getFunctions().get(sumInfo.ident());
+        final InputCollectExpression keyInput = new InputCollectExpression(1);
+        final InputCollectExpression valueInput = new InputCollectExpression(0);
+        AggregationContext columnSum = new AggregationContext(sum,
+                Aggregation.finalAggregation(sumInfo, ImmutableList.<Symbol>of(), Aggregation.Step.ITER));
+        columnSum.addInput(valueInput);
+        // not a plain column, so it's aggregated row by row
+        AggregationContext rowSum = new AggregationContext(sum,
+                Aggregation.finalAggregation(sumInfo, ImmutableList.<Symbol>of(), Aggregation.Step.ITER));
+        rowSum.addInput(new Input<Object>() {
+            @Override
+            public Object value() {
+                return valueInput.value();
+            }
+        });
+        GroupingProjector projector = new GroupingProjector(
+                Arrays.<DataType>asList(DataTypes.LONG),
+                ImmutableList.<Input<?>>of(keyInput),
+                new CollectExpression[] { keyInput, valueInput },
+                new AggregationContext[] { columnSum, rowSum },
+                RAM_ACCOUNTING_CONTEXT
+        );
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        projector.downstream(rowReceiver);
+        projector.prepare(mock(JobCollectContext.class));
+
+        RowBatch batch = new RowBatch(Arrays.<DataType>asList(DataTypes.LONG, DataTypes.LONG), 8);
+        for (long[] row : new long[][] { {1, 1}, {2, 2}, {3, 1}, {4, 2}, {5, 1} }) {
+            batch.add(new RowN(new Object[] { row[0], row[1] }));
+        }
+        assertThat(projector.setNextBatch(batch), is(true));
+        // the producer reuses the batch
+        batch.reset();
+        batch.add(new RowN(new Object[] { 10L, 2L }));
+        batch.add(new RowN(new Object[] { 20L, 3L }));
+        assertThat(projector.setNextBatch(batch), is(true));
+        projector.finish();
+
+        Map<Object, Row> rows = new HashMap<>();
+        for (Row row : rowReceiver.result()) {
+            rows.put(row.get(0), new RowN(row.materialize()));
+        }
+        assertThat(rows.size(), is(3));
+        assertThat((Double) rows.get(1L).get(1), is(9.0d));
+        assertThat((Double) rows.get(1L).get(2), is(9.0d));
+        assertThat((Double) rows.get(2L).get(1), is(16.0d));
+        assertThat((Double) rows.get(2L).get(2), is(16.0d));
+        assertThat((Double) rows.get(3L).get(1), is(20.0d));
+        assertThat((Double) rows.get(3L).get(2), is(20.0d));
+    }
+
+    private Bucket countGroupByBatch(DataType keyType, RowBatch batch) throws Exception {
+        FunctionInfo countInfo = new FunctionInfo(new FunctionIdent("count", ImmutableList.<DataType>of()), DataTypes.LONG);
+        Aggregation countAggregation =
+                Aggregation.finalAggregation(countInfo, ImmutableList.<Symbol>of(), Aggregation.Step.ITER);
+        AggregationContext aggregationContext = new AggregationContext(
+                (AggregationFunction) getFunctions().get(countInfo.ident()),
+                countAggregation);
+        InputCollectExpression keyInput = new InputCollectExpression(1);
+        GroupingProjector projector = new GroupingProjector(
+                Arrays.<DataType>asList(keyType),
+                ImmutableList.<Input<?>>of(keyInput),
+                new CollectExpression[] { keyInput },
+                new AggregationContext[] { aggregationContext },
+                RAM_ACCOUNTING_CONTEXT
+        );
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        projector.downstream(rowReceiver);
+        projector.prepare(mock(JobCollectContext.class));
+        assertThat(projector.acceptsBatches(), is(true));
+        assertThat(projector.setNextBatch(batch), is(true));
+        projector.finish();
+        return rowReceiver.result();
+    }
+
+    private Bucket countGroupBy(List<DataType> keyTypes, List<Input<?>> keyInputs) throws Exception {
+        FunctionInfo countInfo = new FunctionInfo(new FunctionIdent("count", ImmutableList.<DataType>of()), DataTypes.LONG);
+        Aggregation countAggregation =
+                Aggregation.finalAggregation(countInfo, ImmutableList.<Symbol>of(), Aggregation.Step.ITER);
+        AggregationContext aggregationContext = new AggregationContext(
+                (AggregationFunction) getFunctions().get(countInfo.ident()),
+                countAggregation);
+
+        GroupingProjector projector = new GroupingProjector(
+                keyTypes,
+                keyInputs,
+                new CollectExpression[0],
+                new AggregationContext[] { aggregationContext },
+                RAM_ACCOUNTING_CONTEXT
+        );
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        projector.downstream(rowReceiver);
+        projector.prepare(mock(JobCollectContext.class));
+
+        int numRows = ((DummyInput) keyInputs.get(0)).values.length;
+        Row emptyRow = new RowN(new Object[]{});
+        for (int i = 0; i < numRows; i++) {
+            projector.setNextRow(emptyRow);
+        }
+        projector.finish();
+        return rowReceiver.result();
+    }
+
+    private static List<String> lines(Bucket rows) {
+        return Arrays.asList(TestingHelpers.printedTable(rows).split("\n"));
+    }
+
+    class DummyInput implements Input<Object> {
 
-        private final BytesRef[] values;
+        private final Object[] values;
         private int idx;
 
-        DummyInput(BytesRef... values)  {
+        DummyInput(Object... values)  {
             this.values = values;
             this.idx = 0;
         }
 
         @Override
-        public BytesRef value() {
+        public Object value() {
             return values[idx++];
         }
     }
@@ -32,6 +32,7 @@ import io.crate.executor.transport.TransportActionProvider;
 import io.crate.jobs.ExecutionState;
 import io.crate.metadata.*;
 import io.crate.operation.ImplementationSymbolVisitor;
+import io.crate.operation.TempFiles;
 import io.crate.operation.aggregation.impl.AggregationImplModule;
 import io.crate.operation.aggregation.impl.AverageAggregation;
 import io.crate.operation.aggregation.impl.CountAggregation;
@@ -112,6 +113,7 @@ public class ProjectionToProjectorVisitorTest extends CrateUnitTest {
                 mock(ClusterService.class),
                 threadPool,
                 ImmutableSettings.EMPTY,
+                mock(TempFiles.class),
                 mock(TransportActionProvider.class, Answers.RETURNS_DEEP_STUBS.get()),
                 mock(BulkRetryCoordinatorPool.class),
                 symbolvisitor,
@@ -0,0 +1,309 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.crate.analyze.symbol.Aggregation;
+import io.crate.analyze.symbol.Function;
+import io.crate.analyze.symbol.InputColumn;
+import io.crate.analyze.symbol.Literal;
+import io.crate.analyze.symbol.Symbol;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.core.collections.Row;
+import io.crate.core.collections.RowN;
+import io.crate.metadata.FunctionIdent;
+import io.crate.metadata.FunctionInfo;
+import io.crate.operation.AggregationContext;
+import io.crate.operation.Input;
+import io.crate.operation.aggregation.AggregationFunction;
+import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.collect.InputCollectExpression;
+import io.crate.operation.operator.AndOperator;
+import io.crate.operation.operator.GtOperator;
+import io.crate.operation.operator.LtOperator;
+import io.crate.operation.operator.LteOperator;
+import io.crate.operation.scalar.arithmetic.AddFunction;
+import io.crate.operation.scalar.arithmetic.MultiplyFunction;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.testing.CollectingRowReceiver;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static io.crate.testing.TestingHelpers.getFunctions;
+import static org.hamcrest.Matchers.*;
+
+public class RowBatchTest extends CrateUnitTest {
+
+    private static final RamAccountingContext RAM_ACCOUNTING_CONTEXT =
+            new RamAccountingContext("dummy", new NoopCircuitBreaker(CircuitBreaker.Name.FIELDDATA));
+
+    private static final List<DataType> TYPES = Arrays.<DataType>asList(DataTypes.LONG, DataTypes.DOUBLE, DataTypes.STRING);
+
+    private static RowBatch batch(Object[]... rows) {
+        RowBatch batch = new RowBatch(TYPES, 4);
+        for (Object[] row : rows) {
+            batch.add(new RowN(row));
+        }
+        return batch;
+    }
+
+    @Test
+    public void testNumericColumnsAreStoredInPrimitiveVectors() throws Exception {
+        RowBatch batch = batch(
+                new Object[]{1L, 1.5d, new BytesRef("foo")},
+                new Object[]{null, null, null});
+
+        assertThat(batch.column(0), instanceOf(ColumnVector.LongVector.class));
+        assertThat(batch.column(1), instanceOf(ColumnVector.DoubleVector.class));
+        assertThat(batch.column(2), instanceOf(ColumnVector.ObjectVector.class));
+        assertThat(((ColumnVector.LongVector) batch.column(0)).values[0], is(1L));
+        assertThat(((ColumnVector.DoubleVector) batch.column(1)).values[0], is(1.5d));
+
+        assertThat(batch.size(), is(2));
+        assertThat(batch.row(0).materialize(), is(new Object[]{1L, 1.5d, new BytesRef("foo")}));
+        assertThat(batch.row(1).materialize(), is(new Object[]{null, null, null}));
+        assertThat(batch.column(0).isNull(1), is(true));
+    }
+
+    @Test
+    public void testTypedAccessorsAndNullBitmap() throws Exception {
+        RowBatch batch = batch(
+                new Object[]{1L, 1.5d, null},
+                new Object[]{2L, null, new BytesRef("foo")});
+
+        assertThat(batch.column(0).getLong(1), is(2L));
+        assertThat(batch.column(1).getDouble(0), is(1.5d));
+        assertThat(batch.column(0).hasNulls(), is(false));
+        assertThat(batch.column(1).hasNulls(), is(true));
+        assertThat(batch.column(1).isNull(0), is(false));
+        assertThat(batch.column(1).isNull(1), is(true));
+        assertThat(batch.column(2).isNull(0), is(true));
+
+        batch.reset();
+        assertThat(batch.column(1).hasNulls(), is(false));
+        assertThat(batch.column(1).isNull(1), is(false));
+    }
+
+    @Test
+    public void testAggregationPipeAggregatesColumns() throws Exception {
+        InputCollectExpression longColumn = new InputCollectExpression(0);
+        InputCollectExpression doubleColumn = new InputCollectExpression(1);
+        InputCollectExpression stringColumn = new InputCollectExpression(2);
+        AggregationPipe pipe = new AggregationPipe(
+                ImmutableSet.<CollectExpression<Row, ?>>of(longColumn, doubleColumn, stringColumn),
+                new AggregationContext[]{
+                        aggregation("count"),
+                        aggregation("count", DataTypes.STRING, stringColumn),
+                        aggregation("sum", DataTypes.LONG, longColumn),
+                        aggregation("max", DataTypes.DOUBLE, doubleColumn),
+                        aggregation("min", DataTypes.LONG, longColumn),
+                        // aggregated row by row
+                        aggregation("max", DataTypes.STRING, stringColumn)
+                },
+                RAM_ACCOUNTING_CONTEXT);
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        pipe.downstream(rowReceiver);
+
+        RowBatch batch = batch(
+                new Object[]{1L, 1.5d, new BytesRef("a")},
+                new Object[]{null, 3.5d, null},
+                new Object[]{5L, null, new BytesRef("c")},
+                new Object[]{2L, -1.0d, new BytesRef("b")});
+        batch.selection()[0] = 0;
+        batch.selection()[1] = 1;
+        batch.selection()[2] = 3;
+        batch.select(3);
+        assertThat(pipe.acceptsBatches(), is(true));
+        pipe.setNextBatch(batch);
+        pipe.setNextBatch(batch);
+        pipe.finish();
+
+        assertThat(rowReceiver.rows.size(), is(1));
+        assertThat(rowReceiver.rows.get(0), is(new Object[]{6L, 4L, 6.0d, 3.5d, 1L, new BytesRef("b")}));
+    }
+
+    private static AggregationContext aggregation(String name, DataType argumentType, Input<?> input) {
+        AggregationContext aggregationContext = aggregation(name, ImmutableList.of(argumentType));
+        aggregationContext.addInput(input);
+        return aggregationContext;
+    }
+
+    private static AggregationContext aggregation(String name) {
+        return aggregation(name, ImmutableList.<DataType>of());
+    }
+
+    private static AggregationContext aggregation(String name, List<DataType> argumentTypes) {
+        AggregationFunction function = (AggregationFunction) getFunctions().get(new FunctionIdent(name, argumentTypes));
+        Aggregation aggregation = Aggregation.finalAggregation(
+                function.info(), ImmutableList.<Symbol>of(), Aggregation.Step.ITER);
+        return new AggregationContext(function, aggregation);
+    }
+
+    @Test
+    public void testSelectionNarrowsRows() throws Exception {
+        RowBatch batch = batch(
+                new Object[]{1L, 1.0d, null},
+                new Object[]{2L, 2.0d, null},
+                new Object[]{3L, 3.0d, null},
+                new Object[]{4L, 4.0d, null});
+        assertThat(batch.isFull(), is(true));
+
+        batch.selection()[0] = 1;
+        batch.selection()[1] = 3;
+        batch.select(2);
+
+        assertThat(batch.numRows(), is(2));
+        assertThat(batch.row(0).get(0), is((Object) 2L));
+        assertThat(batch.row(1).get(0), is((Object) 4L));
+
+        batch.reset();
+        assertThat(batch.numRows(), is(0));
+        assertThat(batch.isFull(), is(false));
+    }
+
+    @Test
+    public void testFilterProjectorEvaluatesComparisonOnVector() throws Exception {
+        Symbol query = new Function(
+                new FunctionInfo(new FunctionIdent(LtOperator.NAME, Arrays.<DataType>asList(DataTypes.DOUBLE, DataTypes.DOUBLE)), DataTypes.BOOLEAN),
+                Arrays.<Symbol>asList(Literal.newLiteral(1.5d), new InputColumn(1, DataTypes.DOUBLE)));
+        Input<Boolean> condition = new Input<Boolean>() {
+            @Override
+            public Boolean value() {
+                throw new AssertionError("condition must not be evaluated row by row");
+            }
+        };
+        FilterProjector filterProjector = new FilterProjector(
+                Collections.<CollectExpression<Row, ?>>emptyList(), condition, query);
+        CollectingBatchRowReceiver rowReceiver = new CollectingBatchRowReceiver();
+        filterProjector.downstream(rowReceiver);
+        assertThat(filterProjector.acceptsBatches(), is(true));
+
+        filterProjector.setNextBatch(batch(
+                new Object[]{1L, 1.0d, null},
+                new Object[]{2L, 2.0d, null},
+                new Object[]{3L, null, null},
+                new Object[]{4L, 4.0d, null}));
+        filterProjector.finish();
+
+        assertThat(rowReceiver.rows, contains(
+                new Object[]{2L, 2.0d, null},
+                new Object[]{4L, 4.0d, null}));
+    }
+
+    private static Function function(String name, DataType argumentType, DataType returnType, Symbol left, Symbol right) {
+        return new Function(
+                new FunctionInfo(new FunctionIdent(name, Arrays.asList(argumentType, argumentType)), returnType),
+                Arrays.asList(left, right));
+    }
+
+    @Test
+    public void testFilterProjectorEvaluatesArithmeticAndConjunctionOnVectors() throws Exception {
+        // x + 1 > 2 and y * 2.0 <= 6.0
+        Symbol query = function(AndOperator.NAME, DataTypes.BOOLEAN, DataTypes.BOOLEAN,
+                function(GtOperator.NAME, DataTypes.LONG, DataTypes.BOOLEAN,
+                        function(AddFunction.NAME, DataTypes.LONG, DataTypes.LONG,
+                                new InputColumn(0, DataTypes.LONG), Literal.newLiteral(1L)),
+                        Literal.newLiteral(2L)),
+                function(LteOperator.NAME, DataTypes.DOUBLE, DataTypes.BOOLEAN,
+                        function(MultiplyFunction.NAME, DataTypes.DOUBLE, DataTypes.DOUBLE,
+                                new InputColumn(1, DataTypes.DOUBLE), Literal.newLiteral(2.0d)),
+                        Literal.newLiteral(6.0d)));
+        Input<Boolean> condition = new Input<Boolean>() {
+            @Override
+            public Boolean value() {
+                throw new AssertionError("condition must not be evaluated row by row");
+            }
+        };
+        FilterProjector filterProjector = new FilterProjector(
+                Collections.<CollectExpression<Row, ?>>emptyList(), condition, query);
+        CollectingBatchRowReceiver rowReceiver = new CollectingBatchRowReceiver();
+        filterProjector.downstream(rowReceiver);
+
+        filterProjector.setNextBatch(batch(
+                new Object[]{1L, 1.0d, null},
+                new Object[]{2L, 2.0d, null},
+                new Object[]{null, 3.0d, null},
+                new Object[]{4L, 4.0d, null}));
+        filterProjector.finish();
+
+        assertThat(rowReceiver.rows, contains(new Object[]{2L, 2.0d, null}));
+    }
+
+    @Test
+    public void testFilterProjectorEvaluatesConditionRowByRow() throws Exception {
+        final InputCollectExpression name = new InputCollectExpression(2);
+        Input<Boolean> condition = new Input<Boolean>() {
+            @Override
+            public Boolean value() {
+                return new BytesRef("foo").equals(name.value());
+            }
+        };
+        FilterProjector filterProjector = new FilterProjector(
+                ImmutableList.<CollectExpression<Row, ?>>of(name), condition);
+        CollectingBatchRowReceiver rowReceiver = new CollectingBatchRowReceiver();
+        filterProjector.downstream(rowReceiver);
+
+        filterProjector.setNextBatch(batch(
+                new Object[]{1L, 1.0d, new BytesRef("foo")},
+                new Object[]{2L, 2.0d, new BytesRef("bar")},
+                new Object[]{3L, 3.0d, new BytesRef("foo")}));
+        filterProjector.finish();
+
+        assertThat(rowReceiver.rows, contains(
+                new Object[]{1L, 1.0d, new BytesRef("foo")},
+                new Object[]{3L, 3.0d, new BytesRef("foo")}));
+    }
+
+    @Test
+    public void testFilterProjectorDoesNotAcceptBatchesIfDownstreamDoesNot() throws Exception {
+        FilterProjector filterProjector = new FilterProjector(
+                Collections.<CollectExpression<Row, ?>>emptyList(), Literal.newLiteral(true));
+        filterProjector.downstream(new CollectingRowReceiver());
+        assertThat(filterProjector.acceptsBatches(), is(false));
+    }
+
+    private static class CollectingBatchRowReceiver extends CollectingRowReceiver implements BatchRowReceiver {
+
+        @Override
+        public boolean acceptsBatches() {
+            return true;
+        }
+
+        @Override
+        public boolean setNextBatch(RowBatch batch) {
+            for (int i = 0; i < batch.numRows(); i++) {
+                setNextRow(batch.row(i));
+            }
+            return true;
+        }
+    }
+}
@@ -35,6 +35,7 @@ import io.crate.metadata.MetaDataModule;
 import io.crate.metadata.NestedReferenceResolver;
 import io.crate.metadata.RowGranularity;
 import io.crate.operation.ImplementationSymbolVisitor;
+import io.crate.operation.TempFiles;
 import io.crate.operation.aggregation.impl.AggregationImplModule;
 import io.crate.operation.aggregation.impl.CountAggregation;
 import io.crate.operation.operator.OperatorModule;
@@ -106,6 +107,7 @@ public class ShardProjectorChainTest extends CrateUnitTest {
                 new NoopClusterService(),
                 threadPool,
                 ImmutableSettings.EMPTY,
+                mock(TempFiles.class),
                 mock(TransportActionProvider.class),
                 mock(BulkRetryCoordinatorPool.class),
                 implementationSymbolVisitor,
@@ -0,0 +1,237 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.operation.projectors;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
+import io.crate.analyze.symbol.Literal;
+import io.crate.breaker.RamAccountingContext;
+import io.crate.breaker.RowSizeEstimator;
+import io.crate.core.collections.ArrayRow;
+import io.crate.core.collections.Bucket;
+import io.crate.core.collections.Row;
+import io.crate.operation.Input;
+import io.crate.operation.collect.CollectExpression;
+import io.crate.operation.collect.InputCollectExpression;
+import io.crate.operation.projectors.sorting.OrderingByPosition;
+import io.crate.test.integration.CrateUnitTest;
+import io.crate.testing.CollectingRowReceiver;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.MemoryCircuitBreaker;
+import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static io.crate.testing.TestingHelpers.isRow;
+import static org.hamcrest.core.Is.is;
+
+public class SortingProjectorTest extends CrateUnitTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final RamAccountingContext RAM_ACCOUNTING_CONTEXT =
+            new RamAccountingContext("dummy", new NoopCircuitBreaker(CircuitBreaker.Name.FIELDDATA));
+
+    private static final InputCollectExpression INPUT = new InputCollectExpression(0);
+    private static final Literal<BytesRef> STRING_LITERAL = Literal.newLiteral("foo");
+    private static final List<Input<?>> INPUTS = ImmutableList.<Input<?>>of(STRING_LITERAL, INPUT);
+    private static final List<DataType> INPUT_TYPES = Arrays.<DataType>asList(DataTypes.STRING, DataTypes.INTEGER);
+    private static final List<CollectExpression<Row, ?>> COLLECT_EXPRESSIONS = ImmutableList.<CollectExpression<Row, ?>>of(INPUT);
+    private static final Ordering<Object[]> SECOND_CELL_ORDERING = OrderingByPosition.arrayOrdering(1, false, null);
+
+    private final ArrayRow spare = new ArrayRow();
+
+    private Row spare(Object... cells) {
+        spare.cells(cells);
+        return spare;
+    }
+
+    private Projector getProjector(int numOutputs, int offset, long spillThreshold, RowReceiver rowReceiver) {
+        Projector pipe = new SortingProjector(
+                INPUTS,
+                COLLECT_EXPRESSIONS,
+                numOutputs,
+                SECOND_CELL_ORDERING,
+                INPUT_TYPES,
+                offset,
+                RAM_ACCOUNTING_CONTEXT,
+                folder.getRoot().toPath(),
+                spillThreshold
+        );
+        pipe.downstream(rowReceiver);
+        return pipe;
+    }
+
+    private void assertSorted(Bucket rows, int numOutputs, int from) {
+        int expected = from;
+        for (Row row : rows) {
+            if (numOutputs == 1) {
+                assertThat(row, isRow("foo"));
+            } else {
+                assertThat(row, isRow("foo", expected));
+            }
+            expected++;
+        }
+    }
+
+    @Test
+    public void testSortInMemory() throws Exception {
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        Projector pipe = getProjector(2, TopN.NO_OFFSET, Long.MAX_VALUE, rowReceiver);
+        for (int i = 100; i > 0; i--) {
+            assertThat(pipe.setNextRow(spare(i)), is(true));
+        }
+        pipe.finish();
+
+        Bucket rows = rowReceiver.result();
+        assertThat(rows.size(), is(100));
+        assertSorted(rows, 2, 1);
+    }
+
+    @Test
+    public void testSortWithSpilledRuns() throws Exception {
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        // every few rows exceed the threshold, results in many sorted runs
+        Projector pipe = getProjector(2, TopN.NO_OFFSET, 512, rowReceiver);
+        for (int i = 0; i < 1000; i++) {
+            // 1000 distinct values in a scrambled order
+            assertThat(pipe.setNextRow(spare((i * 7919) % 1000)), is(true));
+        }
+        pipe.finish();
+
+        Bucket rows = rowReceiver.result();
+        assertThat(rows.size(), is(1000));
+        assertSorted(rows, 2, 0);
+    }
+
+    @Test
+    public void testSortWithSpilledRunsAndOffset() throws Exception {
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        Projector pipe = getProjector(1, 990, 512, rowReceiver);
+        for (int i = 1000; i > 0; i--) {
+            assertThat(pipe.setNextRow(spare(i)), is(true));
+        }
+        pipe.finish();
+
+        Bucket rows = rowReceiver.result();
+        assertThat(rows.size(), is(10));
+        assertSorted(rows, 1, 991);
+    }
+
+    @Test
+    public void testSortWithSpilledRunsAndNullValues() throws Exception {
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        Projector pipe = getProjector(2, TopN.NO_OFFSET, 256, rowReceiver);
+        for (int i = 0; i < 100; i++) {
+            pipe.setNextRow(spare(i % 10 == 0 ? null : 100 - i));
+        }
+        pipe.finish();
+
+        Bucket rows = rowReceiver.result();
+        assertThat(rows.size(), is(100));
+        Integer previous = Integer.MIN_VALUE;
+        int nulls = 0;
+        for (Row row : rows) {
+            Integer value = (Integer) row.get(1);
+            if (value == null) {
+                nulls++;
+            } else {
+                assertThat(nulls, is(0)); // nulls are sorted last
+                assertThat(value >= previous, is(true));
+                previous = value;
+            }
+        }
+        assertThat(nulls, is(10));
+    }
+
+    @Test
+    public void testSortMoreRowsThanTheBreakerLimitWithoutTrippingIt() throws Exception {
+        long limit = new ByteSizeValue(8, ByteSizeUnit.MB).bytes();
+        MemoryCircuitBreaker breaker = new MemoryCircuitBreaker(
+                new ByteSizeValue(limit), 1.0, Loggers.getLogger(SortingProjectorTest.class));
+        // most of the breaker is used by other queries
+        long usedByOthers = new ByteSizeValue(6500, ByteSizeUnit.KB).bytes();
+        breaker.addEstimateBytesAndMaybeBreak(usedByOthers, "others");
+        RamAccountingContext ramAccountingContext = new RamAccountingContext("sort", breaker);
+
+        InputCollectExpression stringInput = new InputCollectExpression(0);
+        InputCollectExpression intInput = new InputCollectExpression(1);
+        SortingProjector projector = new SortingProjector(
+                ImmutableList.<Input<?>>of(stringInput, intInput),
+                ImmutableList.<CollectExpression<Row, ?>>of(stringInput, intInput),
+                2,
+                SECOND_CELL_ORDERING,
+                INPUT_TYPES,
+                TopN.NO_OFFSET,
+                ramAccountingContext,
+                folder.getRoot().toPath());
+        CollectingRowReceiver rowReceiver = new CollectingRowReceiver();
+        projector.downstream(rowReceiver);
+
+        char[] chars = new char[1000];
+        Arrays.fill(chars, 'a');
+        BytesRef value = new BytesRef(new String(chars));
+        int numRows = 20000;
+        long rowsSize = 0;
+        RowSizeEstimator estimator = new RowSizeEstimator(INPUT_TYPES);
+        Random random = getRandom();
+        for (int i = 0; i < numRows; i++) {
+            Object[] cells = new Object[]{value, random.nextInt()};
+            rowsSize += estimator.estimateSize(cells);
+            assertThat(projector.setNextRow(spare(cells)), is(true));
+        }
+        assertThat(rowsSize > limit, is(true));
+        projector.finish();
+
+        Bucket rows = rowReceiver.result();
+        assertThat(rows.size(), is(numRows));
+        Integer previous = Integer.MIN_VALUE;
+        for (Row row : rows) {
+            Integer current = (Integer) row.get(1);
+            assertThat(current >= previous, is(true));
+            previous = current;
+        }
+        assertThat(breaker.getTrippedCount(), is(0L));
+        assertThat(ramAccountingContext.trippedBreaker(), is(false));
+
+        ramAccountingContext.close();
+        assertThat(breaker.getUsed(), is(usedByOthers));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidOffset() throws Exception {
+        getProjector(2, -10, 512, new CollectingRowReceiver());
+    }
+}
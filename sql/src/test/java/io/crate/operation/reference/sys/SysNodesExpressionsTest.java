@@ -50,6 +50,8 @@ import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.discovery.Discovery;
 import org.elasticsearch.env.NodeEnvironment;
 import org.elasticsearch.http.HttpInfo;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
 import org.elasticsearch.monitor.jvm.JvmService;
 import org.elasticsearch.monitor.jvm.JvmStats;
 import org.elasticsearch.monitor.network.NetworkProbe;
@@ -294,6 +296,7 @@ public class SysNodesExpressionsTest extends CrateUnitTest {
             ThreadPool threadPool = new ThreadPool(getClass().getName());
             bind(ThreadPool.class).toInstance(threadPool);
 
+            bind(CircuitBreakerService.class).toInstance(new NoneCircuitBreakerService());
         }
     }
 
@@ -358,4 +358,15 @@ public class SysShardsExpressionsTest extends CrateUnitTest {
         assertEquals(expectedBytes, recovery.get("size"));
 
     }
+
+    @Test
+    public void testBlobCacheOfDocShardIsNull() throws Exception {
+        ReferenceInfo refInfo = refInfo("sys.shards.blob_cache", DataTypes.OBJECT, RowGranularity.SHARD);
+        ShardReferenceImplementation<Map<String, Object>> blobCache =
+            (ShardReferenceImplementation<Map<String, Object>>) resolver.getImplementation(refInfo);
+        assertNull(blobCache.value());
+
+        refInfo = refInfo("sys.shards.blob_cache", DataTypes.LONG, RowGranularity.SHARD, "hits");
+        assertNull(resolver.getImplementation(refInfo).value());
+    }
 }
@@ -27,8 +27,11 @@ import io.crate.metadata.table.SchemaInfo;
 import io.crate.metadata.table.TableInfo;
 import io.crate.metadata.table.TestingTableInfo;
 import io.crate.operation.aggregation.impl.AggregationImplModule;
+import io.crate.operation.collect.collectors.SegmentSlices;
+import io.crate.operation.collect.files.FileReadingCollector;
 import io.crate.operation.operator.EqOperator;
 import io.crate.operation.operator.OperatorModule;
+import io.crate.operation.operator.OrOperator;
 import io.crate.operation.predicate.PredicateModule;
 import io.crate.operation.projectors.TopN;
 import io.crate.operation.scalar.ScalarFunctionModule;
@@ -473,6 +476,23 @@ public class PlannerTest extends CrateUnitTest {
         assertThat(collectAndMerge.collectPhase().projections().get(0), instanceOf(DeleteProjection.class));
     }
 
+    @Test
+    public void testBulkDeleteByQueryPlanUsesASingleCollectPhase() throws Exception {
+        Delete plan = (Delete) plan("delete from users where name = ?", new Object[][]{
+                new Object[]{"Arthur"},
+                new Object[]{"Trillian"},
+        });
+        assertThat(plan.nodes().size(), is(1));
+
+        CollectAndMerge collectAndMerge = (CollectAndMerge) plan.nodes().get(0);
+        CollectPhase collectPhase = collectAndMerge.collectPhase();
+        assertThat(collectPhase.whereClause().query(), isFunction(OrOperator.NAME));
+        assertThat(collectPhase.toCollect().size(), is(3));
+        DeleteProjection deleteProjection = (DeleteProjection) collectPhase.projections().get(0);
+        assertThat(deleteProjection.bulkConditions().size(), is(2));
+        assertThat(collectAndMerge.localMerge().outputTypes().size(), is(2));
+    }
+
     @Test
     public void testGroupByWithAggregationAndLimit() throws Exception {
         DistributedGroupBy distributedGroupBy = plan(
@@ -1018,6 +1038,43 @@ public class PlannerTest extends CrateUnitTest {
         assertThat(mergeNode.outputTypes().size(), is(1));
     }
 
+    @Test
+    public void testBulkUpdateByQueryPlanUsesASingleCollectPhase() throws Exception {
+        Upsert plan = (Upsert) plan("update users set name = ? where name = ?", new Object[][]{
+                new Object[]{"Ford", "Arthur"},
+                new Object[]{"Zaphod", "Trillian"},
+                new Object[]{"Marvin", "Slartibartfast"},
+        });
+        assertThat(plan.nodes().size(), is(1));
+
+        CollectAndMerge planNode = (CollectAndMerge) plan.nodes().get(0);
+        CollectPhase collectPhase = planNode.collectPhase();
+        assertThat(collectPhase.whereClause().query(), isFunction(OrOperator.NAME));
+        assertThat(collectPhase.toCollect().size(), is(4));
+        assertThat(((Reference) collectPhase.toCollect().get(0)).info().ident().columnIdent().fqn(), is("_uid"));
+        assertThat(collectPhase.toCollect().get(1), isFunction(EqOperator.NAME));
+
+        UpdateProjection updateProjection = (UpdateProjection) collectPhase.projections().get(0);
+        assertThat(updateProjection.bulkConditions().size(), is(3));
+        assertThat(updateProjection.assignmentsColumns(), is(new String[]{"name"}));
+        assertThat(updateProjection.assignments().length, is(3));
+        assertThat(updateProjection.assignments()[2], isLiteral("Marvin", DataTypes.STRING));
+
+        MergePhase mergeNode = planNode.localMerge();
+        assertThat(mergeNode.outputTypes().size(), is(3));
+    }
+
+    @Test
+    public void testBulkUpdateOnAnalyzedColumnUsesACollectPhasePerArgumentSet() throws Exception {
+        Upsert plan = (Upsert) plan("update users set name = ? where text = ?", new Object[][]{
+                new Object[]{"Ford", "Arthur"},
+                new Object[]{"Zaphod", "Trillian"},
+        });
+        assertThat(plan.nodes().size(), is(2));
+        CollectPhase collectPhase = ((CollectAndMerge) plan.nodes().get(0)).collectPhase();
+        assertThat(collectPhase.toCollect().size(), is(1));
+    }
+
     @Test
     public void testUpdateByIdPlan() throws Exception {
         Upsert planNode = plan("update users set name='Vogon lyric fan' where id=1");
@@ -1116,6 +1173,14 @@ public class PlannerTest extends CrateUnitTest {
         collectPhase = (FileUriCollectPhase)plan.collectPhase();
         assertNull(collectPhase.compression());
         assertNull(collectPhase.sharedStorage());
+        assertThat(collectPhase.fileFormat(), is(FileReadingCollector.FileFormat.JSON));
+    }
+
+    @Test
+    public void testCopyFromCsvPlan() throws Exception {
+        CollectAndMerge plan = plan("copy users from '/path/to/file.csv' with (format='csv')");
+        FileUriCollectPhase collectPhase = (FileUriCollectPhase) plan.collectPhase();
+        assertThat(collectPhase.fileFormat(), is(FileReadingCollector.FileFormat.CSV));
     }
 
     @Test
@@ -1615,6 +1680,46 @@ public class PlannerTest extends CrateUnitTest {
         assertThat(localMergeNode.projections().get(0), instanceOf(TopNProjection.class));
     }
 
+    @Test
+    public void testGroupByOnClusteredByColumnWithHavingDoesNotSplitShards() throws Exception {
+        CollectAndMerge planNode = plan(
+                "select id, count(*) from users group by id having count(*) > 1");
+        List<Projection> shardProjections = planNode.collectPhase().projections();
+        assertThat(shardProjections.get(0), instanceOf(GroupProjection.class));
+        assertThat(shardProjections.get(1), instanceOf(FilterProjection.class));
+        // the shard computes the final groups, so the rows of a shard can't be grouped in several slices
+        assertThat(SegmentSlices.canMergeSlices(shardProjections), is(false));
+
+        CollectAndMerge noHaving = plan("select id, count(*) from users group by id");
+        assertThat(SegmentSlices.canMergeSlices(noHaving.collectPhase().projections()), is(false));
+
+        // groups without aggregations are final as well, slices would emit the same group several times
+        CollectAndMerge keyOnly = plan("select id from users group by id");
+        assertThat(keyOnly.collectPhase().projections().get(0), instanceOf(GroupProjection.class));
+        assertThat(SegmentSlices.canMergeSlices(keyOnly.collectPhase().projections()), is(false));
+
+        CollectAndMerge distinct = plan("select distinct id from users");
+        assertThat(SegmentSlices.canMergeSlices(distinct.collectPhase().projections()), is(false));
+
+        DistributedGroupBy distributedGroupBy = plan(
+                "select name, count(*) from users group by name having count(*) > 1");
+        assertThat(SegmentSlices.canMergeSlices(distributedGroupBy.collectNode().projections()), is(true));
+
+        DistributedGroupBy distributedKeyOnly = plan("select name from users group by name");
+        assertThat(SegmentSlices.canMergeSlices(distributedKeyOnly.collectNode().projections()), is(true));
+    }
+
+    @Test
+    public void testGroupByOnClusteredByStringColumnDoesNotSplitShards() throws Exception {
+        // a single final group projection on a string column is collected on the ordinals
+        CollectAndMerge planNode = plan("select id, count(*) from characters group by id");
+        List<Projection> shardProjections = planNode.collectPhase().projections();
+        assertThat(shardProjections.size(), is(1));
+        GroupProjection groupProjection = (GroupProjection) shardProjections.get(0);
+        assertThat(groupProjection.values().get(0).toStep(), is(Aggregation.Step.FINAL));
+        assertThat(SegmentSlices.canMergeSlices(shardProjections), is(false));
+    }
+
     @Test
     public void testGlobalAggregationHaving() throws Exception {
         CollectAndMerge globalAggregate = plan(
@@ -23,9 +23,11 @@
 package io.crate.planner;
 
 import com.google.common.collect.ImmutableSet;
+import io.crate.action.sql.Cursors;
 import io.crate.action.sql.SQLRequest;
 import io.crate.action.sql.SQLResponse;
 import io.crate.action.sql.TransportSQLAction;
+import io.crate.analyze.AnalysisMetaData;
 import io.crate.analyze.Analyzer;
 import io.crate.executor.transport.kill.TransportKillJobsNodeAction;
 import io.crate.metadata.TableIdent;
@@ -50,6 +52,7 @@ import org.junit.Test;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.Mockito.mock;
 
@@ -76,25 +79,28 @@ public class TableStatsServiceTest extends CrateUnitTest  {
                 ImmutableSettings.EMPTY,
                 threadPool,
                 mock(Analyzer.class),
+                mock(AnalysisMetaData.class),
                 mock(Planner.class),
                 mock(Provider.class),
                 mock(TransportService.class),
                 mock(StatsTables.class),
                 new ActionFilters(ImmutableSet.<ActionFilter>of()),
-                mock(TransportKillJobsNodeAction.class)
+                mock(TransportKillJobsNodeAction.class),
+                mock(Cursors.class)
         ) {
             @Override
             protected void doExecute(SQLRequest request, ActionListener<SQLResponse> listener) {
+                assertThat(request.stmt(), containsString("where \"primary\" = true"));
                 Object[] row;
                 if (numRequests.get() == 0) {
-                    row = new Object[] { 2L, "foo", "bar"};
+                    row = new Object[] { 2L, 1024L, "foo", "bar"};
                 } else {
-                    row = new Object[] { 4L, "foo", "bar"};
+                    row = new Object[] { 4L, 2048L, "foo", "bar"};
                 }
                 listener.onResponse(new SQLResponse(
-                        new String[] {"cast(sum(num_docs) as long)", "schema_name", "table_name"},
+                        new String[] {"cast(sum(num_docs) as long)", "cast(sum(size) as long)", "schema_name", "table_name"},
                         new Object[][] { row },
-                        new DataType[] {DataTypes.LONG, DataTypes.STRING, DataTypes.STRING},
+                        new DataType[] {DataTypes.LONG, DataTypes.LONG, DataTypes.STRING, DataTypes.STRING},
                         1L,
                         1L,
                         false
@@ -121,7 +127,9 @@ public class TableStatsServiceTest extends CrateUnitTest  {
         // periodic update happened
         assertThat(numRequests.get(), Matchers.greaterThanOrEqualTo(2));
         assertThat(statsService.numDocs(new TableIdent("foo", "bar")), is(4L));
+        assertThat(statsService.sizeInBytes(new TableIdent("foo", "bar")), is(2048L));
 
         assertThat(statsService.numDocs(new TableIdent("unknown", "table")), is(-1L));
+        assertThat(statsService.sizeInBytes(new TableIdent("unknown", "table")), is(-1L));
     }
 }
\ No newline at end of file
@@ -28,6 +28,7 @@ import io.crate.analyze.relations.PlannedAnalyzedRelation;
 import io.crate.analyze.repositories.RepositorySettingsModule;
 import io.crate.analyze.symbol.Function;
 import io.crate.analyze.symbol.Symbol;
+import io.crate.core.collections.TreeMapBuilder;
 import io.crate.exceptions.ValidationException;
 import io.crate.metadata.MetaDataModule;
 import io.crate.metadata.Routing;
@@ -46,11 +47,13 @@ import io.crate.planner.NoopPlan;
 import io.crate.planner.Plan;
 import io.crate.planner.Planner;
 import io.crate.planner.TableStatsService;
+import io.crate.planner.distribution.DistributionInfo;
 import io.crate.planner.distribution.DistributionType;
 import io.crate.planner.node.dql.CollectAndMerge;
 import io.crate.planner.node.dql.CollectPhase;
 import io.crate.planner.node.dql.MergePhase;
 import io.crate.planner.node.dql.QueryThenFetch;
+import io.crate.planner.node.dql.join.HashJoinSpec;
 import io.crate.planner.node.dql.join.NestedLoop;
 import io.crate.planner.node.dql.join.NestedLoopPhase;
 import io.crate.planner.projection.FetchProjection;
@@ -63,6 +66,9 @@ import io.crate.types.DataTypes;
 import org.elasticsearch.cluster.ClusterService;
 import org.elasticsearch.common.inject.Injector;
 import org.elasticsearch.common.inject.ModulesBuilder;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.hamcrest.Matchers;
 import org.junit.Before;
@@ -70,6 +76,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -110,7 +117,7 @@ public class NestedLoopConsumerTest extends CrateUnitTest {
                 .createInjector();
         analyzer = injector.getInstance(Analyzer.class);
         planner = injector.getInstance(Planner.class);
-        consumer = new NestedLoopConsumer(clusterService, mock(AnalysisMetaData.class), statsService);
+        consumer = new NestedLoopConsumer(ImmutableSettings.EMPTY, clusterService, mock(AnalysisMetaData.class), statsService);
     }
 
     private static final TableInfo EMPTY_ROUTING_TABLE = TestingTableInfo.builder(new TableIdent(DocSchemaInfo.NAME, "empty"),
@@ -118,6 +125,15 @@ public class NestedLoopConsumerTest extends CrateUnitTest {
             .add("nope", DataTypes.BOOLEAN)
             .build();
 
+    private static final TableInfo LARGE_TABLE = TestingTableInfo.builder(new TableIdent(DocSchemaInfo.NAME, "large"),
+            new Routing(TreeMapBuilder.<String, Map<String, List<Integer>>>newMapBuilder()
+                    .put("nodeOne", TreeMapBuilder.<String, List<Integer>>newMapBuilder().put("large", Arrays.asList(0, 1)).map())
+                    .put("nodeTwo", TreeMapBuilder.<String, List<Integer>>newMapBuilder().put("large", Arrays.asList(2, 3)).map())
+                    .map()))
+            .add("id", DataTypes.LONG)
+            .add("name", DataTypes.STRING)
+            .build();
+
 
     private class TestModule extends MetaDataModule {
 
@@ -129,6 +145,9 @@ public class NestedLoopConsumerTest extends CrateUnitTest {
             when(statsService.numDocs(eq(BaseAnalyzerTest.USER_TABLE_IDENT))).thenReturn(10L);
             when(statsService.numDocs(eq(BaseAnalyzerTest.USER_TABLE_IDENT_MULTI_PK))).thenReturn(5000L);
             when(statsService.numDocs(eq(EMPTY_ROUTING_TABLE.ident()))).thenReturn(0L);
+            when(statsService.numDocs(eq(LARGE_TABLE.ident()))).thenReturn(1_000_000L);
+            when(statsService.sizeInBytes(eq(BaseAnalyzerTest.USER_TABLE_IDENT))).thenReturn(1024L);
+            when(statsService.sizeInBytes(eq(LARGE_TABLE.ident()))).thenReturn(new ByteSizeValue(1, ByteSizeUnit.GB).bytes());
             bind(TableStatsService.class).toInstance(statsService);
         }
 
@@ -139,6 +158,7 @@ public class NestedLoopConsumerTest extends CrateUnitTest {
             when(schemaInfo.getTableInfo(BaseAnalyzerTest.USER_TABLE_IDENT.name())).thenReturn(BaseAnalyzerTest.USER_TABLE_INFO);
             when(schemaInfo.getTableInfo(BaseAnalyzerTest.USER_TABLE_IDENT_MULTI_PK.name())).thenReturn(BaseAnalyzerTest.USER_TABLE_INFO_MULTI_PK);
             when(schemaInfo.getTableInfo(EMPTY_ROUTING_TABLE.ident().name())).thenReturn(EMPTY_ROUTING_TABLE);
+            when(schemaInfo.getTableInfo(LARGE_TABLE.ident().name())).thenReturn(LARGE_TABLE);
             schemaBinder.addBinding(Schemas.DEFAULT_SCHEMA_NAME).toInstance(schemaInfo);
         }
     }
@@ -348,6 +368,74 @@ public class NestedLoopConsumerTest extends CrateUnitTest {
         assertThat(cpRight.toCollect(), contains(isReference("id")));
     }
 
+    @Test
+    public void testEquiJoinIsExecutedAsHashJoin() throws Exception {
+        NestedLoop nl = plan("select u1.name, u2.name from users u1, users_multi_pk u2 where u1.id = u2.id and u1.name > u2.name");
+        NestedLoopPhase phase = nl.nestedLoopPhase();
+        assertThat(phase.name(), is("distributed-hash-join"));
+        assertThat(phase.projections().get(0), instanceOf(FilterProjection.class));
+
+        HashJoinSpec hashJoinSpec = phase.hashJoinSpec();
+        assertThat(hashJoinSpec, notNullValue());
+        assertThat(hashJoinSpec.leftKeys(), is(new int[]{0}));
+        assertThat(hashJoinSpec.rightKeys(), is(new int[]{0}));
+        // no order required, the smaller table is hashed
+        assertThat(hashJoinSpec.buildLeft(), is(true));
+        assertThat(hashJoinSpec.estimatedBuildRows(), is(10L));
+        assertThat(hashJoinSpec.spillable(), is(true));
+    }
+
+    @Test
+    public void testEquiJoinOfLargeTablesIsShuffled() throws Exception {
+        NestedLoop nl = plan("select l1.name, l2.name from large l1, large l2 where l1.id = l2.id and l1.name > l2.name");
+        NestedLoopPhase phase = nl.nestedLoopPhase();
+        assertThat(phase.name(), is("shuffle-hash-join"));
+        assertThat(phase.executionNodes(), contains("nodeOne", "nodeTwo"));
+        assertThat(phase.distributionInfo(), is(DistributionInfo.DEFAULT_BROADCAST));
+
+        HashJoinSpec hashJoinSpec = phase.hashJoinSpec();
+        assertThat(hashJoinSpec, notNullValue());
+        // the build side is split across both nodes
+        assertThat(hashJoinSpec.estimatedBuildRows(), is(500_000L));
+
+        CollectPhase left = ((CollectAndMerge) nl.left()).collectPhase();
+        CollectPhase right = ((CollectAndMerge) nl.right()).collectPhase();
+        assertThat(left.distributionInfo(), is(
+                new DistributionInfo(DistributionType.MODULO, hashJoinSpec.leftKeys()[0])));
+        assertThat(right.distributionInfo(), is(
+                new DistributionInfo(DistributionType.MODULO, hashJoinSpec.rightKeys()[0])));
+
+        assertThat(phase.leftMergePhase(), notNullValue());
+        assertThat(phase.leftMergePhase().numUpstreams(), is(2));
+        assertThat(phase.rightMergePhase(), notNullValue());
+        assertThat(phase.rightMergePhase().numUpstreams(), is(2));
+        assertThat(nl.localMerge(), notNullValue());
+    }
+
+    @Test
+    public void testEquiJoinWithSmallTableIsNotShuffled() throws Exception {
+        NestedLoop nl = plan("select u.name, l.name from users u, large l where u.id = l.id and u.name > l.name");
+        assertThat(nl.nestedLoopPhase().name(), is("distributed-hash-join"));
+        assertThat(((CollectAndMerge) nl.left()).collectPhase().distributionInfo(), is(DistributionInfo.DEFAULT_BROADCAST));
+    }
+
+    @Test
+    public void testOrderedEquiJoinHashesRightSide() throws Exception {
+        NestedLoop nl = plan("select u1.name, u2.name from users u1, users_multi_pk u2 where u2.id = u1.id order by u1.name, u2.name");
+        HashJoinSpec hashJoinSpec = nl.nestedLoopPhase().hashJoinSpec();
+        assertThat(hashJoinSpec, notNullValue());
+        assertThat(hashJoinSpec.buildLeft(), is(false));
+        assertThat(hashJoinSpec.estimatedBuildRows(), is(5000L));
+        assertThat(hashJoinSpec.spillable(), is(false));
+    }
+
+    @Test
+    public void testNonEquiJoinIsExecutedAsNestedLoop() throws Exception {
+        NestedLoop nl = plan("select u1.name, u2.name from users u1, users u2 where u1.id > u2.id or u1.name = u2.name order by 1, 2");
+        assertThat(nl.nestedLoopPhase().name(), is("distributed-nested-loop"));
+        assertThat(nl.nestedLoopPhase().hashJoinSpec(), nullValue());
+    }
+
     @Test
     public void testEmptyRoutingSource() throws Exception {
         Plan plan = plan("select e.nope, u.name from empty e, users u order by e.nope, u.name");
@@ -24,6 +24,7 @@ package io.crate.planner.node.dql;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
 import io.crate.planner.distribution.DistributionInfo;
+import io.crate.planner.node.dql.join.HashJoinSpec;
 import io.crate.planner.node.dql.join.NestedLoopPhase;
 import io.crate.planner.projection.Projection;
 import io.crate.planner.projection.TopNProjection;
@@ -57,6 +58,10 @@ public class NestedLoopPhaseTest extends CrateUnitTest {
                 mp1,
                 mp2,
                 Sets.newHashSet("node1", "node2"));
+        node.hashJoinSpec(new HashJoinSpec(new int[]{1}, new int[]{0},
+                ImmutableList.<DataType>of(DataTypes.STRING, DataTypes.INTEGER),
+                ImmutableList.<DataType>of(DataTypes.INTEGER),
+                true, 100L, false));
 
         BytesStreamOutput output = new BytesStreamOutput();
         node.writeTo(output);
@@ -69,5 +74,14 @@ public class NestedLoopPhaseTest extends CrateUnitTest {
         assertThat(node.jobId(), Is.is(node2.jobId()));
         assertThat(node.name(), is(node2.name()));
         assertThat(node.outputTypes(), is(node2.outputTypes()));
+
+        HashJoinSpec hashJoinSpec = node2.hashJoinSpec();
+        assertThat(hashJoinSpec.leftKeys(), is(new int[]{1}));
+        assertThat(hashJoinSpec.rightKeys(), is(new int[]{0}));
+        assertThat(hashJoinSpec.leftTypes(), is(node.hashJoinSpec().leftTypes()));
+        assertThat(hashJoinSpec.rightTypes(), is(node.hashJoinSpec().rightTypes()));
+        assertThat(hashJoinSpec.buildLeft(), is(true));
+        assertThat(hashJoinSpec.estimatedBuildRows(), is(100L));
+        assertThat(hashJoinSpec.spillable(), is(false));
     }
 }
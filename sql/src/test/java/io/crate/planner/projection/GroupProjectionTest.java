@@ -106,4 +106,19 @@ public class GroupProjectionTest extends CrateUnitTest {
         GroupProjection p2 = (GroupProjection) Projection.fromStream(in);
         assertEquals(p, p2);
     }
+
+    @Test
+    public void testStreamingMode() throws Exception {
+        GroupProjection p = new GroupProjection(
+                ImmutableList.<Symbol>of(createReference("foo", DataTypes.STRING)),
+                ImmutableList.<Aggregation>of(),
+                Aggregation.Step.PARTIAL);
+        BytesStreamOutput out = new BytesStreamOutput();
+        Projection.toStream(p, out);
+
+        BytesStreamInput in = new BytesStreamInput(out.bytes());
+        GroupProjection p2 = (GroupProjection) Projection.fromStream(in);
+        assertThat(p2.mode(), is(Aggregation.Step.PARTIAL));
+        assertEquals(p, p2);
+    }
 }
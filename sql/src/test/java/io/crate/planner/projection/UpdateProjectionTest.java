@@ -21,8 +21,13 @@
 
 package io.crate.planner.projection;
 
+import com.google.common.collect.ImmutableList;
+import io.crate.analyze.symbol.InputColumn;
 import io.crate.analyze.symbol.Literal;
 import io.crate.analyze.symbol.Symbol;
+import io.crate.types.DataTypes;
+import org.elasticsearch.common.io.stream.BytesStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.junit.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -42,4 +47,21 @@ public class UpdateProjectionTest {
         assertThat(u1.equals(u2), is(true));
         assertThat(u1.hashCode(), is(u2.hashCode()));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testStreamingOfBulkUpdateProjection() throws Exception {
+        UpdateProjection u1 = new UpdateProjection(
+                new InputColumn(0, DataTypes.STRING),
+                ImmutableList.<Symbol>of(new InputColumn(1, DataTypes.BOOLEAN), new InputColumn(2, DataTypes.BOOLEAN)),
+                new String[] { "foo" },
+                new Symbol[] { Literal.newLiteral(1), Literal.newLiteral(2) });
+
+        BytesStreamOutput out = new BytesStreamOutput();
+        Projection.toStream(u1, out);
+        BytesStreamInput in = new BytesStreamInput(out.bytes());
+        UpdateProjection u2 = (UpdateProjection) Projection.fromStream(in);
+
+        assertThat(u2, is(u1));
+        assertThat(u2.outputs().size(), is(2));
+    }
+}